@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportCsvParser;
+
+/**
+ * Loading an airports.dat file with the byte level {@link AirportCsvParser} against the
+ * String.split loader it replaces. The generated names contain no commas, the split loader would
+ * misread them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AirportCsvBenchmark {
+
+  @Param({"100000"})
+  public int lines;
+
+  private byte[] data;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    StringBuilder file = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      file.append(i + 1).append(",\"Airport ").append(i).append(" Intl\",\"City ").append(i)
+          .append("\",\"Country\",\"").append(BenchmarkData.iata(i)).append("\",\"K")
+          .append(BenchmarkData.iata(i)).append("\",")
+          .append(String.format(Locale.ROOT, "%.6f", -60 + random.nextDouble() * 135)).append(',')
+          .append(String.format(Locale.ROOT, "%.6f", -180 + random.nextDouble() * 360))
+          .append(",").append(random.nextInt(3000)).append(",-5,\"A\"\n");
+    }
+    data = file.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public List<AirportData> split() throws IOException {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data),
+            StandardCharsets.UTF_8));
+    List<AirportData> airports = new ArrayList<AirportData>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] split = line.split(",");
+      String iata = split[4].substring(1, split[4].length() - 1);
+      if (!iata.isEmpty()) {
+        airports.add(new AirportData(iata, Double.parseDouble(split[6]), Double
+            .parseDouble(split[7])));
+      }
+    }
+    return airports;
+  }
+
+  @Benchmark
+  public List<AirportData> parser() throws IOException {
+    AirportCsvParser parser = new AirportCsvParser(new ByteArrayInputStream(data));
+    List<AirportData> airports = new ArrayList<AirportData>();
+    while (parser.next()) {
+      AirportData airport = parser.getAirport();
+      if (airport != null) {
+        airports.add(airport);
+      }
+    }
+    return airports;
+  }
+}
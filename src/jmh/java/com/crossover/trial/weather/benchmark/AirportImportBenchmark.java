@@ -0,0 +1,85 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.service.AirportImporter;
+
+/**
+ * Reading four regional files of 250k airports each with a growing fork join pool, the time should
+ * drop with the parallelism up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AirportImportBenchmark {
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  private static final int FILES = 4;
+  private static final int AIRPORTS_PER_FILE = 250000;
+
+  private final List<Path> files = new ArrayList<Path>();
+  private ForkJoinPool pool;
+  private AirportImporter importer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Random random = new Random(42);
+    for (int f = 0; f < FILES; f++) {
+      Path file = Files.createTempFile("airports-" + f, ".dat");
+      try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        for (int i = 0; i < AIRPORTS_PER_FILE; i++) {
+          String iata = BenchmarkData.iata(f * AIRPORTS_PER_FILE + i);
+          out.write(i + ",\"Airport, " + i + "\",\"City\",\"Country\",\"" + iata + "\",\"K"
+              + iata + "\","
+              + String.format(Locale.ROOT, "%.6f,%.6f", -60 + random.nextDouble() * 135,
+                  -180 + random.nextDouble() * 360) + ",0,0,\"U\"\n");
+        }
+      }
+      files.add(file);
+    }
+    pool = new ForkJoinPool(parallelism);
+    importer = new AirportImporter(pool, 1 << 20);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    pool.shutdown();
+    for (Path file : files) {
+      Files.delete(file);
+    }
+  }
+
+  @Benchmark
+  public AirportImporter.Result read() throws IOException {
+    return importer.read(files);
+  }
+}
@@ -0,0 +1,74 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportStore;
+import com.crossover.trial.weather.service.ArrayAirportStore;
+import com.crossover.trial.weather.service.IndexedAirportStore;
+
+/**
+ * Radius scans against the {@link AirportStore} implementations directly, without building
+ * results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AirportStoreBenchmark {
+
+  @Param({"indexed", "array"})
+  public String store;
+
+  @Param({"10000", "100000"})
+  public int airportCount;
+
+  @Param({"50", "500", "5000"})
+  public double radius;
+
+  private AirportStore airportStore;
+  private double[] latitudes;
+  private double[] longitudes;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    airportStore =
+        "array".equals(store) ? new ArrayAirportStore(6372.8) : new IndexedAirportStore(1.0,
+            6372.8);
+    Random random = new Random(42);
+    latitudes = new double[airportCount];
+    longitudes = new double[airportCount];
+    for (int i = 0; i < airportCount; i++) {
+      latitudes[i] = -60 + random.nextDouble() * 135;
+      longitudes[i] = -180 + random.nextDouble() * 360;
+      Airport airport = new Airport();
+      airport.setAirportData(new AirportData(BenchmarkData.iata(i), latitudes[i], longitudes[i]));
+      airportStore.put(airport);
+    }
+  }
+
+  @Benchmark
+  public void forEachWithinRadius(Blackhole blackhole) {
+    next = (next + 7919) % airportCount;
+    airportStore.forEachWithinRadius(latitudes[next], longitudes[next], radius, blackhole::consume);
+  }
+}
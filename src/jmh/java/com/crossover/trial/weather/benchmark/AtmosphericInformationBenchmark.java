@@ -0,0 +1,98 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Collector updates of a single airport's atmospheric information through the
+ * {@link AirportService}, shared between all benchmark threads to show the cost of contention. The
+ * readWrite group runs queries reading whole snapshots next to a collector publishing new ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AtmosphericInformationBenchmark {
+
+  private static final DataPointType[] TYPES = DataPointType.values();
+
+  /** the point types as collectors send them */
+  private static final String[] POINT_TYPES = new String[TYPES.length];
+  static {
+    for (int i = 0; i < TYPES.length; i++) {
+      POINT_TYPES[i] = TYPES[i].name().toLowerCase();
+    }
+  }
+
+  private final AirportService airportService = new AirportService();
+  private Airport airport;
+  private final DataPoint dataPoint =
+      new DataPoint.Builder().withFirst(10).withMedian(20).withMean(22).withLast(30).withCount(10)
+          .build();
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup
+  public void setUp() {
+    airportService.addAirport("BOS", 42.364347, -71.005181);
+    airport = airportService.getAirport("BOS");
+  }
+
+  @Benchmark
+  public AtmosphericInformation setDataPoint(Cursor cursor) throws WeatherException {
+    return update(cursor);
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(3)
+  public long read() {
+    // everything a query response touches, all from the same snapshot
+    AtmosphericInformation ai = airport.getAtmosphericInformation();
+    long sum = ai.getLastUpdateTime();
+    for (DataPointType type : TYPES) {
+      DataPoint dp = ai.getDataPoint(type);
+      if (dp != null) {
+        sum += dp.getCount();
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(1)
+  public AtmosphericInformation write(Cursor cursor) throws WeatherException {
+    return update(cursor);
+  }
+
+  private AtmosphericInformation update(Cursor cursor) throws WeatherException {
+    String pointType = POINT_TYPES[(cursor.next++ & Integer.MAX_VALUE) % POINT_TYPES.length];
+    airportService.updateAtmosphericInformation("BOS", pointType, dataPoint);
+    return airport.getAtmosphericInformation();
+  }
+}
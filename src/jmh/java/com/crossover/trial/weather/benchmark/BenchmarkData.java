@@ -0,0 +1,84 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Random;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Synthetic airport catalogs shared by the benchmarks. Uses a fixed seed so runs are comparable.
+ */
+public final class BenchmarkData {
+
+  /** the radii most clients query, in km */
+  private static final double[] STANDARD_RADII = {0, 50, 100, 250, 500};
+
+  private BenchmarkData() {}
+
+  /**
+   * @return a unique airport code for the given index, not limited to three letters so that large
+   *         catalogs can be generated
+   */
+  public static String iata(int index) {
+    return "X" + Integer.toString(index, 36).toUpperCase();
+  }
+
+  /**
+   * A sequence of query radii to cycle through, its length is a power of two.
+   *
+   * @param distribution a fixed radius in km, "standard" for the usual client radii or "uniform"
+   *        for radii uniformly distributed between 0 and 1000 km
+   */
+  public static double[] radii(String distribution) {
+    double[] radii = new double[1024];
+    Random random = new Random(42);
+    for (int i = 0; i < radii.length; i++) {
+      if ("standard".equals(distribution)) {
+        radii[i] = STANDARD_RADII[random.nextInt(STANDARD_RADII.length)];
+      } else if ("uniform".equals(distribution)) {
+        radii[i] = random.nextDouble() * 1000;
+      } else {
+        radii[i] = Double.parseDouble(distribution);
+      }
+    }
+    return radii;
+  }
+
+  /**
+   * A sequence of airport indexes to cycle through where a few hubs get most of the requests, as in
+   * production traffic. Its length is a power of two.
+   */
+  public static int[] skewedIndexes(int airportCount) {
+    int[] indexes = new int[4096];
+    Random random = new Random(42);
+    int hubs = Math.min(airportCount, 10);
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = random.nextInt(10) < 8 ? random.nextInt(hubs) : random.nextInt(airportCount);
+    }
+    return indexes;
+  }
+
+  /**
+   * Replaces the airports of the service with a random catalog where every airport has a wind
+   * reading. Latitudes are limited to where airports actually are, roughly [-60, 75].
+   *
+   * @return the codes of the generated airports
+   */
+  public static String[] populate(AirportService airportService, int airportCount)
+      throws WeatherException {
+    Random random = new Random(42);
+    airportService.clearAirports();
+    String[] codes = new String[airportCount];
+    DataPoint wind =
+        new DataPoint.Builder().withFirst(1).withMedian(5).withMean(6).withLast(10).withCount(20)
+            .build();
+    for (int i = 0; i < airportCount; i++) {
+      codes[i] = iata(i);
+      airportService.addAirport(codes[i], -60 + random.nextDouble() * 135,
+          -180 + random.nextDouble() * 360);
+      airportService.updateAtmosphericInformation(codes[i], "wind", wind);
+    }
+    return codes;
+  }
+}
@@ -0,0 +1,30 @@
+package com.crossover.trial.weather.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count and writes a JSON result file per run, so results can
+ * be compared between builds.
+ *
+ * <pre>
+ * java -Dbenchmark.threads=1,4,16 -cp target/benchmarks.jar \
+ *     com.crossover.trial.weather.benchmark.BenchmarkSuite [include regex]
+ * </pre>
+ */
+public class BenchmarkSuite {
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : BenchmarkSuite.class.getPackage().getName();
+    for (String threads : System.getProperty("benchmark.threads", "1,4,16").split(",")) {
+      Options options =
+          new OptionsBuilder().include(include).threads(Integer.parseInt(threads.trim()))
+              .resultFormat(ResultFormatType.JSON)
+              .result("target/jmh-result-" + threads.trim() + "-threads.json").build();
+      new Runner(options).run();
+    }
+  }
+}
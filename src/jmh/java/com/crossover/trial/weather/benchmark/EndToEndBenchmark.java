@@ -0,0 +1,148 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.WeatherServer;
+import com.crossover.trial.weather.WeatherServerConfig;
+import com.crossover.trial.weather.controller.RequestExecutor;
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Full HTTP round trips against an in-process Grizzly server running the weather application, the
+ * client uses keep-alive connections. Suspended requests run on the container thread or, with
+ * async, on a request executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class EndToEndBenchmark {
+
+  private static final String DATA_POINT_JSON =
+      "{\"mean\":22.0,\"first\":10,\"second\":20,\"third\":30,\"count\":10}";
+
+  @Param({"10000"})
+  public int airportCount;
+
+  @Param({"standard"})
+  public String radius;
+
+  @Param({"9190"})
+  public int port;
+
+  @Param({"false", "true"})
+  public boolean async;
+
+  /** about one in this many requests is logged, 0 for none */
+  @Param({"100"})
+  public int accessLogSample;
+
+  private HttpServer server;
+  private ExecutorService requestExecutor;
+  private String baseUrl;
+  private String[] codes;
+  private int[] requests;
+  private double[] radii;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    // the query endpoint seeds its demo airports when first loaded, do that before populating
+    RestWeatherQueryEndpoint.init();
+    codes = BenchmarkData.populate(AirportService.getInstance(), airportCount);
+    requests = BenchmarkData.skewedIndexes(airportCount);
+    radii = BenchmarkData.radii(radius);
+    baseUrl = "http://localhost:" + port;
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setUrl(baseUrl + "/");
+    config.setAccessLogSample(accessLogSample);
+    server = WeatherServer.createServer(config);
+    server.start();
+    if (async) {
+      requestExecutor = config.createRequestExecutor();
+      RequestExecutor.setExecutor(requestExecutor);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    server.shutdownNow();
+    if (requestExecutor != null) {
+      RequestExecutor.setExecutor(null);
+      requestExecutor.shutdownNow();
+    }
+  }
+
+  @Benchmark
+  public byte[] queryWeather(Cursor cursor) throws IOException {
+    int i = cursor.next++;
+    String iata = codes[requests[i & (requests.length - 1)]];
+    double r = radii[i & (radii.length - 1)];
+    HttpURLConnection connection = open("/query/weather/" + iata + "/" + r);
+    return read(connection);
+  }
+
+  @Benchmark
+  public byte[] collectWeather(Cursor cursor) throws IOException {
+    int i = cursor.next++;
+    String iata = codes[requests[i & (requests.length - 1)]];
+    HttpURLConnection connection = open("/collect/weather/" + iata + "/wind");
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type", "application/json");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(DATA_POINT_JSON.getBytes(StandardCharsets.UTF_8));
+    }
+    return read(connection);
+  }
+
+  private HttpURLConnection open(String path) throws IOException {
+    return (HttpURLConnection) new URL(baseUrl + path).openConnection();
+  }
+
+  /** reads the whole response so the connection goes back to the keep-alive cache */
+  private byte[] read(HttpURLConnection connection) throws IOException {
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException("unexpected response " + connection.getResponseCode());
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = connection.getInputStream()) {
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        body.write(buffer, 0, n);
+      }
+    }
+    return body.toByteArray();
+  }
+}
@@ -0,0 +1,97 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.controller.WeatherJson;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+
+/**
+ * The hand written {@link WeatherJson} codec against the Gson request parsing and Jackson response
+ * writing it replaces. Both sides work on raw bytes as they would behind Jersey.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+  /** the number of atmospheric information records in a query response */
+  @Param({"1", "100"})
+  public int responseSize;
+
+  private final Gson gson = new Gson();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private byte[] dataPointJson;
+  private List<AtmosphericInformation> response;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    DataPoint dp =
+        new DataPoint.Builder().withFirst(10).withMedian(20).withMean(22).withLast(30)
+            .withCount(10).build();
+    dataPointJson = gson.toJson(dp).getBytes(StandardCharsets.UTF_8);
+    response = new ArrayList<AtmosphericInformation>();
+    for (int i = 0; i < responseSize; i++) {
+      response.add(new AtmosphericInformation().withDataPoint(DataPointType.WIND, dp)
+          .withDataPoint(DataPointType.TEMPERATURE, dp));
+    }
+  }
+
+  @Benchmark
+  public DataPoint readGson() {
+    // Jersey materialized the body as a String before the Gson parse
+    String body = new String(dataPointJson, StandardCharsets.UTF_8);
+    return gson.fromJson(body, DataPoint.class);
+  }
+
+  @Benchmark
+  public DataPoint readGsonStream() {
+    return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(dataPointJson),
+        StandardCharsets.UTF_8), DataPoint.class);
+  }
+
+  @Benchmark
+  public DataPoint readWeatherJson() throws IOException {
+    return WeatherJson.readDataPoint(new ByteArrayInputStream(dataPointJson));
+  }
+
+  @Benchmark
+  public byte[] writeJackson() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    objectMapper.writeValue(out, response);
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] writeWeatherJson() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    WeatherJson.write(response, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,77 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportWeather;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Compares {@link AirportService#getNearestWeather(double, double, int)} against what clients did
+ * before, radius queries growing until they return k airports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearestBenchmark {
+
+  @Param({"10000", "100000"})
+  public int airportCount;
+
+  @Param({"1", "5", "50"})
+  public int k;
+
+  private final AirportService airportService = AirportService.getInstance();
+  private String[] codes;
+  private AirportData[] centers;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws WeatherException {
+    codes = BenchmarkData.populate(airportService, airportCount);
+    centers = new AirportData[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      centers[i] = airportService.getAirport(codes[i]).getAirportData();
+    }
+  }
+
+  @Benchmark
+  public List<AirportWeather> nearest(Cursor cursor) {
+    AirportData center = centers[Math.floorMod(cursor.next++ * 7919, centers.length)];
+    return airportService.getNearestWeather(center.getLatitude(), center.getLongitude(), k);
+  }
+
+  @Benchmark
+  public List<AtmosphericInformation> growingRadius(Cursor cursor) {
+    String iata = codes[Math.floorMod(cursor.next++ * 7919, codes.length)];
+    List<AtmosphericInformation> retval = new ArrayList<AtmosphericInformation>();
+    for (double radius = 50; retval.size() < k && radius < 40000; radius *= 2) {
+      retval = airportService.getWeatherWithinRadius(iata, radius);
+    }
+    return retval;
+  }
+}
@@ -0,0 +1,83 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * The collect path without persistence, with the write ahead log and with the log forced to disk
+ * on every group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+  /** none, log or fsync */
+  @Param({"none", "log", "fsync"})
+  public String persistence;
+
+  private final AirportService airportService = AirportService.getInstance();
+  private final DataPoint dataPoint =
+      new DataPoint.Builder().withFirst(10).withMedian(20).withMean(22).withLast(30).withCount(10)
+          .build();
+  private Path directory;
+  private PersistenceManager persistenceManager;
+  private String[] codes;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    codes = BenchmarkData.populate(airportService, 10000);
+    if (!"none".equals(persistence)) {
+      directory = Files.createTempDirectory("weather-wal");
+      persistenceManager =
+          PersistenceManager.open(directory, airportService, "fsync".equals(persistence), 0);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (persistenceManager != null) {
+      persistenceManager.close();
+      try (Stream<Path> files = Files.list(directory)) {
+        files.forEach(file -> file.toFile().delete());
+      }
+      Files.delete(directory);
+    }
+  }
+
+  @Benchmark
+  public void updateAtmosphericInformation(Cursor cursor) throws WeatherException {
+    airportService.updateAtmosphericInformation(codes[(cursor.next++ & Integer.MAX_VALUE)
+        % codes.length], "wind", dataPoint);
+  }
+}
@@ -0,0 +1,95 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.QueryCache;
+
+/**
+ * Hub heavy queries at the standard radii with and without the {@link QueryCache}, optionally
+ * with an update between queries invalidating what it touches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryCacheBenchmark {
+
+  @Param({"10000"})
+  public int airportCount;
+
+  /** the number of queries per update of a random airport, 0 for no updates */
+  @Param({"0", "10"})
+  public int queriesPerUpdate;
+
+  private final AirportService airportService = AirportService.getInstance();
+  private final DataPoint wind =
+      new DataPoint.Builder().withFirst(1).withMedian(5).withMean(6).withLast(10).withCount(20)
+          .build();
+  private QueryCache queryCache;
+  private String[] codes;
+  private int[] requests;
+  private double[] radii;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws WeatherException {
+    codes = BenchmarkData.populate(airportService, airportCount);
+    requests = BenchmarkData.skewedIndexes(airportCount);
+    radii = BenchmarkData.radii("standard");
+    queryCache = new QueryCache(airportService, 1024);
+    airportService.addListener(queryCache);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    airportService.removeListener(queryCache);
+  }
+
+  private void update(int i) throws WeatherException {
+    if (queriesPerUpdate > 0 && i % queriesPerUpdate == 0) {
+      airportService.updateAtmosphericInformation(codes[Math.floorMod(i * 7919, codes.length)],
+          "wind", wind);
+    }
+  }
+
+  @Benchmark
+  public List<AtmosphericInformation> uncached(Cursor cursor) throws WeatherException {
+    int i = cursor.next++;
+    update(i);
+    return airportService.getWeatherWithinRadius(codes[requests[i & (requests.length - 1)]],
+        radii[i & (radii.length - 1)]);
+  }
+
+  @Benchmark
+  public List<AtmosphericInformation> cached(Cursor cursor) throws WeatherException {
+    int i = cursor.next++;
+    update(i);
+    return queryCache.getWeatherWithinRadius(codes[requests[i & (requests.length - 1)]],
+        radii[i & (radii.length - 1)]);
+  }
+}
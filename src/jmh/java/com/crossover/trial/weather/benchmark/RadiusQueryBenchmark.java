@@ -0,0 +1,107 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Compares the indexed {@link AirportService#getWeatherWithinRadius(String, double)} against a
+ * linear scan over every airport, which is how radius queries used to be answered, and against
+ * {@link AirportService#getAggregateWithinRadius(String, double)} which sums the same airports up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RadiusQueryBenchmark {
+
+  @Param({"100", "10000", "100000"})
+  public int airportCount;
+
+  /** a fixed radius in km or one of the distributions of {@link BenchmarkData#radii(String)} */
+  @Param({"50", "500", "standard", "uniform"})
+  public String radius;
+
+  private final AirportService airportService = AirportService.getInstance();
+  private String[] codes;
+  private Airport[] airports;
+  private double[] radii;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws WeatherException {
+    codes = BenchmarkData.populate(airportService, airportCount);
+    airports = new Airport[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      airports[i] = airportService.getAirport(codes[i]);
+    }
+    radii = BenchmarkData.radii(radius);
+  }
+
+  @Benchmark
+  public List<AtmosphericInformation> indexed(Cursor cursor) {
+    int i = cursor.next++;
+    return airportService.getWeatherWithinRadius(codes[Math.floorMod(i * 7919, codes.length)],
+        radii[i & (radii.length - 1)]);
+  }
+
+  @Benchmark
+  public List<DataPointAggregate> aggregated(Cursor cursor) {
+    int i = cursor.next++;
+    return airportService.getAggregateWithinRadius(
+        codes[Math.floorMod(i * 7919, codes.length)], radii[i & (radii.length - 1)]);
+  }
+
+  @Benchmark
+  public List<AtmosphericInformation> linearScan(Cursor cursor) {
+    int i = cursor.next++;
+    AirportData center = airports[Math.floorMod(i * 7919, codes.length)].getAirportData();
+    double r = radii[i & (radii.length - 1)];
+    List<AtmosphericInformation> retval = new ArrayList<AtmosphericInformation>();
+    for (Airport airport : airports) {
+      if (distance(center, airport.getAirportData()) <= r) {
+        AtmosphericInformation ai = airport.getAtmosphericInformation();
+        if (ai.hasAtleastOneNotNullField()) {
+          retval.add(ai);
+        }
+      }
+    }
+    return retval;
+  }
+
+  private double distance(AirportData ad1, AirportData ad2) {
+    double deltaLat = Math.toRadians(ad2.getLatitude() - ad1.getLatitude());
+    double deltaLon = Math.toRadians(ad2.getLongitude() - ad1.getLongitude());
+    double a =
+        Math.pow(Math.sin(deltaLat / 2), 2) + Math.pow(Math.sin(deltaLon / 2), 2)
+            * Math.cos(Math.toRadians(ad1.getLatitude()))
+            * Math.cos(Math.toRadians(ad2.getLatitude()));
+    return airportService.earthRadius * 2 * Math.asin(Math.sqrt(a));
+  }
+}
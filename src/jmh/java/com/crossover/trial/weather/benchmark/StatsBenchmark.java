@@ -0,0 +1,72 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.StatsService;
+
+/**
+ * The request frequency bookkeeping done on every query and the ping computed from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsBenchmark {
+
+  @Param({"100", "10000"})
+  public int airportCount;
+
+  @Param({"standard", "uniform"})
+  public String radius;
+
+  private final StatsService statsService = StatsService.getInstance();
+  private String[] codes;
+  private int[] requests;
+  private double[] radii;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws WeatherException {
+    codes = BenchmarkData.populate(AirportService.getInstance(), airportCount);
+    requests = BenchmarkData.skewedIndexes(airportCount);
+    radii = BenchmarkData.radii(radius);
+    statsService.reset();
+    for (int i = 0; i < requests.length; i++) {
+      statsService.updateRequestFrequency(codes[requests[i]], radii[i & (radii.length - 1)]);
+    }
+  }
+
+  @Benchmark
+  public void updateRequestFrequency(Cursor cursor) {
+    int i = cursor.next++;
+    statsService.updateRequestFrequency(codes[requests[i & (requests.length - 1)]],
+        radii[i & (radii.length - 1)]);
+  }
+
+  @Benchmark
+  public Map<String, Object> getStats() {
+    return statsService.getStats();
+  }
+}
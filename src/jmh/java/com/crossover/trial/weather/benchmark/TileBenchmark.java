@@ -0,0 +1,96 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.model.WeatherTile;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Compares reading a map tile, {@link AirportService#getTile(int, int, int)}, against summing up
+ * the airports around its center on every request, and measures what maintaining the tiles costs
+ * an update, an empty zoomLevels disabling them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TileBenchmark {
+
+  @Param({"10000", "100000"})
+  public int airportCount;
+
+  @Param({"", "2,4,6"})
+  public String zoomLevels;
+
+  /** the zoom level of the tiles read, 4 tiles are about 2500 by 1250 km */
+  private static final int ZOOM = 4;
+
+  private AirportService airportService;
+  private String[] codes;
+  private AirportData[] centers;
+  private DataPoint[] dataPoints;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws WeatherException {
+    System.setProperty("weather.tiles.zoomLevels", zoomLevels);
+    airportService = new AirportService();
+    codes = BenchmarkData.populate(airportService, airportCount);
+    centers = new AirportData[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      centers[i] = airportService.getAirport(codes[i]).getAirportData();
+    }
+    dataPoints = new DataPoint[64];
+    for (int i = 0; i < dataPoints.length; i++) {
+      dataPoints[i] =
+          new DataPoint.Builder().withFirst(i).withMedian(i + 5).withMean(i + 6).withLast(i + 10)
+              .withCount(20).build();
+    }
+  }
+
+  @Benchmark
+  public WeatherTile tile(Cursor cursor) {
+    int size = 1 << ZOOM;
+    int i = Math.floorMod(cursor.next++ * 7919, size * size);
+    return airportService.getTile(ZOOM, i % size, i / size);
+  }
+
+  @Benchmark
+  public List<DataPointAggregate> aggregateAround(Cursor cursor) {
+    AirportData center = centers[Math.floorMod(cursor.next++ * 7919, centers.length)];
+    return airportService.getAggregateWithinRadius(center.getLatitude(), center.getLongitude(),
+        1000);
+  }
+
+  @Benchmark
+  public void update(Cursor cursor) {
+    int i = cursor.next++;
+    airportService.updateAtmosphericInformation(codes[Math.floorMod(i * 7919, codes.length)],
+        DataPointType.WIND, dataPoints[i & (dataPoints.length - 1)], System.currentTimeMillis());
+  }
+}
@@ -0,0 +1,91 @@
+package com.crossover.trial.weather;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.server.HttpServerFilter;
+import org.glassfish.grizzly.http.server.HttpServerProbe;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+
+/**
+ * Logs a random sample of the requests. The Grizzly threads only pick the sample and queue the
+ * lines, a daemon thread writes them to the WeatherAccess logger. Lines are dropped, and counted,
+ * when the writer can't keep up.
+ */
+public class AccessLog extends HttpServerProbe.Adapter {
+  private static final Logger LOGGER = Logger.getLogger("WeatherAccess");
+
+  private static final String START_ATTRIBUTE = AccessLog.class.getName() + ".start";
+
+  private final int sample;
+  private final BlockingQueue<String> lines = new ArrayBlockingQueue<String>(1024);
+  private final LongAdder dropped = new LongAdder();
+  private final Thread writer;
+
+  /**
+   * @param sample about one in this many requests is logged
+   */
+  public AccessLog(int sample) {
+    if (sample < 1) {
+      throw new IllegalArgumentException("sample must be positive");
+    }
+    this.sample = sample;
+    writer = new Thread(this::write, "weather-access-log");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void onRequestReceiveEvent(HttpServerFilter filter, Connection connection,
+      Request request) {
+    if (sample == 1 || ThreadLocalRandom.current().nextInt(sample) == 0) {
+      request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+    }
+  }
+
+  @Override
+  public void onRequestCompleteEvent(HttpServerFilter filter, Connection connection,
+      Response response) {
+    Request request = response.getRequest();
+    Object start = request.getAttribute(START_ATTRIBUTE);
+    if (start == null) {
+      return;
+    }
+    long micros = (System.nanoTime() - (Long) start) / 1000;
+    String line =
+        request.getRemoteAddr() + " " + request.getMethod() + " " + request.getRequestURI() + " "
+            + response.getStatus() + " " + micros + "us";
+    if (!lines.offer(line)) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * @return the number of sampled lines which weren't logged as the queue was full
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stops the writer, queued lines are discarded.
+   */
+  public void close() {
+    writer.interrupt();
+  }
+
+  private void write() {
+    try {
+      while (true) {
+        LOGGER.info(lines.take());
+      }
+    } catch (InterruptedException e) {
+      // closed
+    }
+  }
+}
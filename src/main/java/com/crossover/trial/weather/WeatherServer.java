@@ -4,19 +4,40 @@ import static java.lang.String.format;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.CompressionConfig;
+import org.glassfish.grizzly.http.CompressionConfig.CompressionMode;
 import org.glassfish.grizzly.http.server.HttpServer;
-import org.glassfish.grizzly.http.server.HttpServerFilter;
-import org.glassfish.grizzly.http.server.HttpServerProbe;
-import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import com.crossover.trial.weather.cluster.RoutingCollectorEndpoint;
+import com.crossover.trial.weather.cluster.RoutingQueryEndpoint;
+import com.crossover.trial.weather.cluster.ShardEndpoint;
+import com.crossover.trial.weather.cluster.ShardMap;
+import com.crossover.trial.weather.cluster.ShardRouter;
+import com.crossover.trial.weather.controller.AtmosphericInformationListWriter;
+import com.crossover.trial.weather.controller.AtmosphericInformationWriter;
+import com.crossover.trial.weather.controller.DataPointReader;
+import com.crossover.trial.weather.controller.RequestExecutor;
 import com.crossover.trial.weather.controller.RestWeatherCollectorEndpoint;
 import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+import com.crossover.trial.weather.replication.ReplicationNode;
+import com.crossover.trial.weather.replication.ReplicationPrimary;
+import com.crossover.trial.weather.replication.ReplicationReplica;
+import com.crossover.trial.weather.service.AirportCatalog;
+import com.crossover.trial.weather.service.AirportImporter;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.QueryCache;
+import com.crossover.trial.weather.service.StatsService;
+import com.crossover.trial.weather.service.WeatherSubscriptions;
 
 
 /**
@@ -27,34 +48,43 @@ import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
  */
 public class WeatherServer {
 
-  private static final String BASE_URL = "http://localhost:9090/";
-
   public static void main(String[] args) {
     try {
-      System.out.println("Starting Weather App local testing server: " + BASE_URL);
-
-      final ResourceConfig resourceConfig = new ResourceConfig();
-      resourceConfig.register(RestWeatherCollectorEndpoint.class);
-      resourceConfig.register(RestWeatherQueryEndpoint.class);
+      WeatherServerConfig config = WeatherServerConfig.fromSystemProperties();
+      System.out.println("Starting Weather App local testing server: " + config.getUrl());
 
-      HttpServer server =
-          GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URL), resourceConfig, false);
+      Node node = openNode();
+      HttpServer server = createServer(config, node.getResourceConfig());
+      ExecutorService requestExecutor = config.isAsync() ? config.createRequestExecutor() : null;
+      RequestExecutor.setExecutor(requestExecutor);
+      PersistenceManager opened = node.getPersistence();
+      ReplicationNode replicating = node.getReplication();
       Runtime.getRuntime().addShutdownHook(new Thread(() -> {
         server.shutdownNow();
-      }));
-
-      HttpServerProbe probe = new HttpServerProbe.Adapter() {
-        public void onRequestReceiveEvent(HttpServerFilter filter, Connection connection,
-            Request request) {
-          System.out.println(request.getRequestURI());
+        if (requestExecutor != null) {
+          requestExecutor.shutdownNow();
         }
-      };
-      server.getServerConfiguration().getMonitoringConfig().getWebServerConfig().addProbes(probe);
-
+        if (replicating != null) {
+          try {
+            replicating.close();
+          } catch (IOException e) {
+            Logger.getLogger(WeatherServer.class.getName()).log(Level.WARNING,
+                "could not stop replicating", e);
+          }
+        }
+        if (opened != null) {
+          try {
+            opened.close();
+          } catch (IOException e) {
+            Logger.getLogger(WeatherServer.class.getName()).log(Level.SEVERE,
+                "could not persist the final state", e);
+          }
+        }
+      }));
 
       // the autograder waits for this output before running automated tests, please don't remove it
       server.start();
-      System.out.println(format("Weather Server started.\n url=%s\n", BASE_URL));
+      System.out.println(format("Weather Server started.\n url=%s\n", config.getUrl()));
 
       // blocks until the process is terminated
       Thread.currentThread().join();
@@ -63,4 +93,208 @@ public class WeatherServer {
       Logger.getLogger(WeatherServer.class.getName()).log(Level.SEVERE, null, ex);
     }
   }
+
+  /**
+   * What a node opened besides its http server, as configured by the system properties.
+   */
+  public static class Node {
+    private final ResourceConfig resourceConfig;
+    private final ReplicationNode replication;
+    private final PersistenceManager persistence;
+
+    Node(ResourceConfig resourceConfig, ReplicationNode replication,
+        PersistenceManager persistence) {
+      this.resourceConfig = resourceConfig;
+      this.replication = replication;
+      this.persistence = persistence;
+    }
+
+    public ResourceConfig getResourceConfig() {
+      return resourceConfig;
+    }
+
+    /**
+     * @return the primary or replica, null if the node doesn't replicate
+     */
+    public ReplicationNode getReplication() {
+      return replication;
+    }
+
+    /**
+     * @return the persistence of the airports, null if not persisted
+     */
+    public PersistenceManager getPersistence() {
+      return persistence;
+    }
+  }
+
+  /**
+   * Loads the airports of a router, a replica or a node serving its own airports, in that order of
+   * precedence, and opens what it is configured with.
+   *
+   * @return the application and what it opened, the server isn't created yet
+   */
+  public static Node openNode() throws IOException {
+    // a router keeps no airports of its own
+    ShardRouter router = ShardRouter.openConfigured();
+    if (router != null) {
+      return new Node(createResourceConfig(router), null, null);
+    }
+    // the query endpoint seeds its sample airports when first used, which must be done before a
+    // replica starts receiving the state of its primary
+    RestWeatherQueryEndpoint.init();
+    AirportService airportService = AirportService.getInstance();
+    if (ReplicationReplica.isConfigured()) {
+      // a replica gets all of its airports from the primary
+      airportService.clearAirports();
+    }
+    ReplicationNode replication = ReplicationReplica.openConfigured(airportService);
+    PersistenceManager persistence = null;
+    ResourceConfig resourceConfig;
+    if (replication != null) {
+      resourceConfig = createReplicaResourceConfig();
+    } else {
+      // restore on top of the sample airports
+      AirportCatalog catalog = AirportCatalog.openConfigured();
+      if (catalog != null) {
+        catalog.loadInto(airportService);
+      }
+      AirportImporter.importConfigured(airportService);
+      persistence = PersistenceManager.openConfigured(airportService);
+      // a shard node keeps only its own airports of all it loaded
+      ShardMap.retainConfigured(airportService);
+      replication = ReplicationPrimary.openConfigured(airportService);
+      resourceConfig = createResourceConfig();
+    }
+    RestWeatherQueryEndpoint.setReplication(replication);
+    return new Node(resourceConfig, replication, persistence);
+  }
+
+  /**
+   * @return a server for the weather application which still has to be started
+   */
+  public static HttpServer createServer(WeatherServerConfig config) {
+    return createServer(config, createResourceConfig());
+  }
+
+  /**
+   * @return a server for the given application which still has to be started
+   */
+  public static HttpServer createServer(WeatherServerConfig config,
+      ResourceConfig resourceConfig) {
+    HttpServer server =
+        GrizzlyHttpServerFactory.createHttpServer(URI.create(config.getUrl()), resourceConfig,
+            false);
+    configureTransport(server, config);
+    if (config.isHttp2()) {
+      Logger.getLogger(WeatherServer.class.getName()).warning(
+          "HTTP/2 is not supported by this server, serving HTTP/1.1 only");
+    }
+    if (config.getAccessLogSample() > 0) {
+      server.getServerConfiguration().getMonitoringConfig().getWebServerConfig()
+          .addProbes(new AccessLog(config.getAccessLogSample()));
+    }
+    return server;
+  }
+
+  /**
+   * Applies the transport and connection settings to a server which wasn't started yet.
+   */
+  public static void configureTransport(HttpServer server, WeatherServerConfig config) {
+    for (NetworkListener listener : server.getListeners()) {
+      TCPNIOTransport transport = listener.getTransport();
+      if (config.getWorkerThreads() > 0) {
+        transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+            .setPoolName("weather-worker").setCorePoolSize(config.getWorkerThreads())
+            .setMaxPoolSize(config.getWorkerThreads()));
+      }
+      if (config.getSelectorThreads() > 0) {
+        transport.setSelectorRunnersCount(config.getSelectorThreads());
+      }
+      transport.setTcpNoDelay(config.isTcpNoDelay());
+      if (config.getKeepAliveTimeout() != null) {
+        listener.getKeepAlive().setIdleTimeoutInSeconds(config.getKeepAliveTimeout());
+      }
+      if (config.getKeepAliveMaxRequests() != null) {
+        listener.getKeepAlive().setMaxRequestsCount(config.getKeepAliveMaxRequests());
+      }
+      if (config.getMaxPendingBytes() != null) {
+        listener.setMaxPendingBytes(config.getMaxPendingBytes());
+      }
+      CompressionConfig compression = listener.getCompressionConfig();
+      compression.setCompressionMode(CompressionMode.fromString(config.getCompression()));
+      compression.setCompressionMinSize(config.getCompressionMinSize());
+      compression.setCompressableMimeTypes(config.getCompressionMimeTypes().split("\\s*,\\s*"));
+    }
+  }
+
+  /**
+   * @return the jersey application serving the query and collect endpoints, and the endpoint of
+   *         the routers on a shard node
+   */
+  public static ResourceConfig createResourceConfig() {
+    final ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.register(RestWeatherCollectorEndpoint.class);
+    resourceConfig.register(RestWeatherQueryEndpoint.class);
+    if (ShardMap.isConfigured()) {
+      resourceConfig.register(ShardEndpoint.class);
+    }
+    registerProviders(resourceConfig);
+    return resourceConfig;
+  }
+
+  /**
+   * @return the jersey application of a node serving an airport service of its own, e.g. one of
+   *         several shard nodes running in the same JVM
+   */
+  public static ResourceConfig createResourceConfig(AirportService airportService) {
+    final ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.register(new RestWeatherCollectorEndpoint(airportService));
+    resourceConfig.register(new RestWeatherQueryEndpoint(airportService, new StatsService(
+        airportService), QueryCache.create(airportService), WeatherSubscriptions
+        .create(airportService)));
+    resourceConfig.register(new ShardEndpoint(airportService));
+    registerProviders(resourceConfig);
+    return resourceConfig;
+  }
+
+  /**
+   * @return the jersey application of a read replica, serving only the query endpoint
+   */
+  public static ResourceConfig createReplicaResourceConfig() {
+    final ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.register(RestWeatherQueryEndpoint.class);
+    registerProviders(resourceConfig);
+    return resourceConfig;
+  }
+
+  /**
+   * @return the jersey application of a read replica with an airport service of its own
+   */
+  public static ResourceConfig createReplicaResourceConfig(AirportService airportService) {
+    final ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.register(new RestWeatherQueryEndpoint(airportService, new StatsService(
+        airportService), QueryCache.create(airportService), WeatherSubscriptions
+        .create(airportService)));
+    registerProviders(resourceConfig);
+    return resourceConfig;
+  }
+
+  /**
+   * @return the jersey application of a router, serving the query and collect endpoints from the
+   *         shard nodes
+   */
+  public static ResourceConfig createResourceConfig(ShardRouter router) {
+    final ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.register(new RoutingCollectorEndpoint(router));
+    resourceConfig.register(new RoutingQueryEndpoint(router));
+    registerProviders(resourceConfig);
+    return resourceConfig;
+  }
+
+  private static void registerProviders(ResourceConfig resourceConfig) {
+    resourceConfig.register(DataPointReader.class);
+    resourceConfig.register(AtmosphericInformationWriter.class);
+    resourceConfig.register(AtmosphericInformationListWriter.class);
+  }
 }
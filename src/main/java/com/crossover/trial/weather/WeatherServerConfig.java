@@ -0,0 +1,281 @@
+package com.crossover.trial.weather;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * How the weather server listens and runs requests. The settings are read from the properties
+ * file given by -Dweather.server.config, if any, and from system properties, which take
+ * precedence. All keys start with weather.server.
+ *
+ * url is the address the server binds to, http://localhost:9090/ by default.
+ *
+ * async=true runs weather queries and updates of suspended requests on a request executor instead
+ * of the Grizzly worker which received them, so a slow client only holds a cheap thread. The
+ * executor uses virtual threads when the JVM has them, unless virtualThreads=false, otherwise a
+ * pool of asyncThreads threads.
+ *
+ * workerThreads and selectorThreads size the Grizzly worker pool and the number of selector
+ * runners. keepAlive.timeout, in seconds, and keepAlive.maxRequests limit idle and reused
+ * connections, maxPendingBytes the bytes queued for writing per connection. Grizzly's defaults are
+ * kept for absent settings. tcpNoDelay is on unless set to false.
+ *
+ * compression is off, on or force; responses of compression.mimeTypes, a comma separated list, of
+ * at least compression.minSize bytes are compressed when on and the client accepts it.
+ *
+ * accessLog.sample logs about one in that many requests, 0 disables the access log.
+ *
+ * http2 is accepted, but the server only speaks HTTP/1.1 and warns about it.
+ */
+public class WeatherServerConfig {
+  private static final Logger LOGGER = Logger.getLogger(WeatherServerConfig.class.getName());
+
+  private static final String PREFIX = "weather.server.";
+
+  private String url = "http://localhost:9090/";
+  private boolean async;
+  private boolean virtualThreads = true;
+  private int asyncThreads = 256;
+  private int workerThreads;
+  private int selectorThreads;
+  private Integer keepAliveTimeout;
+  private Integer keepAliveMaxRequests;
+  private Integer maxPendingBytes;
+  private boolean tcpNoDelay = true;
+  private String compression = "off";
+  private int compressionMinSize = 1024;
+  private String compressionMimeTypes = "application/json";
+  private int accessLogSample = 100;
+  private boolean http2;
+
+  /**
+   * @return the configuration given by the configuration file and the system properties
+   * @throws IOException if the configuration file can't be read
+   */
+  public static WeatherServerConfig fromSystemProperties() throws IOException {
+    Properties properties = new Properties();
+    String file = System.getProperty(PREFIX + "config");
+    if (file != null) {
+      try (InputStream in = Files.newInputStream(Paths.get(file))) {
+        properties.load(in);
+      }
+    }
+    properties.putAll(System.getProperties());
+    return from(properties);
+  }
+
+  /**
+   * @param properties the settings, keys starting with weather.server.
+   * @return the configuration, defaults for absent settings
+   */
+  public static WeatherServerConfig from(Properties properties) {
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setUrl(properties.getProperty(PREFIX + "url", config.getUrl()));
+    config.setAsync(Boolean.parseBoolean(properties.getProperty(PREFIX + "async")));
+    config.setVirtualThreads(!"false".equals(properties.getProperty(PREFIX + "virtualThreads")));
+    config.setAsyncThreads(getInt(properties, "asyncThreads", config.getAsyncThreads()));
+    config.setWorkerThreads(getInt(properties, "workerThreads", 0));
+    config.setSelectorThreads(getInt(properties, "selectorThreads", 0));
+    config.setKeepAliveTimeout(getInteger(properties, "keepAlive.timeout"));
+    config.setKeepAliveMaxRequests(getInteger(properties, "keepAlive.maxRequests"));
+    config.setMaxPendingBytes(getInteger(properties, "maxPendingBytes"));
+    config.setTcpNoDelay(!"false".equals(properties.getProperty(PREFIX + "tcpNoDelay")));
+    config.setCompression(properties.getProperty(PREFIX + "compression", config.getCompression()));
+    config.setCompressionMinSize(getInt(properties, "compression.minSize",
+        config.getCompressionMinSize()));
+    config.setCompressionMimeTypes(properties.getProperty(PREFIX + "compression.mimeTypes",
+        config.getCompressionMimeTypes()));
+    config.setAccessLogSample(getInt(properties, "accessLog.sample", config.getAccessLogSample()));
+    config.setHttp2(Boolean.parseBoolean(properties.getProperty(PREFIX + "http2")));
+    return config;
+  }
+
+  private static Integer getInteger(Properties properties, String key) {
+    String value = properties.getProperty(PREFIX + key);
+    return value == null ? null : Integer.valueOf(value.trim());
+  }
+
+  private static int getInt(Properties properties, String key, int defaultValue) {
+    Integer value = getInteger(properties, key);
+    return value == null ? defaultValue : value;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  public int getAsyncThreads() {
+    return asyncThreads;
+  }
+
+  public void setAsyncThreads(int asyncThreads) {
+    this.asyncThreads = asyncThreads;
+  }
+
+  /**
+   * @return the size of the Grizzly worker pool, 0 for the default
+   */
+  public int getWorkerThreads() {
+    return workerThreads;
+  }
+
+  public void setWorkerThreads(int workerThreads) {
+    this.workerThreads = workerThreads;
+  }
+
+  /**
+   * @return the number of Grizzly selector runners, 0 for the default
+   */
+  public int getSelectorThreads() {
+    return selectorThreads;
+  }
+
+  public void setSelectorThreads(int selectorThreads) {
+    this.selectorThreads = selectorThreads;
+  }
+
+  /**
+   * @return the idle timeout of kept alive connections in seconds, -1 for none, null for the
+   *         default
+   */
+  public Integer getKeepAliveTimeout() {
+    return keepAliveTimeout;
+  }
+
+  public void setKeepAliveTimeout(Integer keepAliveTimeout) {
+    this.keepAliveTimeout = keepAliveTimeout;
+  }
+
+  /**
+   * @return the number of requests per kept alive connection, -1 for unlimited, null for the
+   *         default
+   */
+  public Integer getKeepAliveMaxRequests() {
+    return keepAliveMaxRequests;
+  }
+
+  public void setKeepAliveMaxRequests(Integer keepAliveMaxRequests) {
+    this.keepAliveMaxRequests = keepAliveMaxRequests;
+  }
+
+  /**
+   * @return the bytes which may be queued for writing per connection, null for the default
+   */
+  public Integer getMaxPendingBytes() {
+    return maxPendingBytes;
+  }
+
+  public void setMaxPendingBytes(Integer maxPendingBytes) {
+    this.maxPendingBytes = maxPendingBytes;
+  }
+
+  public boolean isTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  public void setTcpNoDelay(boolean tcpNoDelay) {
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
+  /**
+   * @return off, on or force
+   */
+  public String getCompression() {
+    return compression;
+  }
+
+  public void setCompression(String compression) {
+    this.compression = compression;
+  }
+
+  public int getCompressionMinSize() {
+    return compressionMinSize;
+  }
+
+  public void setCompressionMinSize(int compressionMinSize) {
+    this.compressionMinSize = compressionMinSize;
+  }
+
+  /**
+   * @return a comma separated list of the mime types to compress
+   */
+  public String getCompressionMimeTypes() {
+    return compressionMimeTypes;
+  }
+
+  public void setCompressionMimeTypes(String compressionMimeTypes) {
+    this.compressionMimeTypes = compressionMimeTypes;
+  }
+
+  /**
+   * @return about one in this many requests is logged, 0 for none
+   */
+  public int getAccessLogSample() {
+    return accessLogSample;
+  }
+
+  public void setAccessLogSample(int accessLogSample) {
+    this.accessLogSample = accessLogSample;
+  }
+
+  public boolean isHttp2() {
+    return http2;
+  }
+
+  public void setHttp2(boolean http2) {
+    this.http2 = http2;
+  }
+
+  /**
+   * @return a new executor for suspended requests, with virtual threads if configured and the JVM
+   *         supports them
+   */
+  public ExecutorService createRequestExecutor() {
+    if (virtualThreads) {
+      try {
+        // java 21 and later, looked up reflectively as the server is built for java 8
+        ExecutorService executor =
+            (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        LOGGER.info("running requests on virtual threads");
+        return executor;
+      } catch (ReflectiveOperationException e) {
+        LOGGER.info("virtual threads are not available, running requests on " + asyncThreads
+            + " threads");
+      }
+    }
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(asyncThreads, runnable -> {
+      Thread thread = new Thread(runnable, "weather-request-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -0,0 +1,262 @@
+package com.crossover.trial.weather.cluster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import com.crossover.trial.weather.controller.RequestExecutor;
+import com.crossover.trial.weather.controller.RestWeatherCollectorEndpoint;
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.controller.WeatherCollectorEndpoint;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.WeatherUpdate;
+import com.crossover.trial.weather.model.WeatherUpdateResult;
+import com.crossover.trial.weather.service.AirportCsvParser;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * The collector API of a router. Updates go to the shard owning the airport, airports are added to
+ * the shard owning their location and recorded in the router's directory.
+ */
+@Path("/collect")
+public class RoutingCollectorEndpoint implements WeatherCollectorEndpoint {
+  public final static Logger LOGGER = Logger.getLogger("WeatherRouter");
+
+  private static final Gson gson = new Gson();
+  private static final Type RESULT_LIST = new TypeToken<List<WeatherUpdateResult>>() {}.getType();
+
+  private final ShardRouter router;
+
+  public RoutingCollectorEndpoint(ShardRouter router) {
+    this.router = router;
+  }
+
+  @Override
+  public Response ping() {
+    return Response.status(Response.Status.OK).entity("ready").build();
+  }
+
+  @Override
+  public Response updateWeather(String iataCode, String pointType, String datapointJson) {
+    ShardClient owner = router.ownerOf(iataCode);
+    if (owner == null) {
+      // as a single node, updates of unknown airports are ignored
+      return Response.status(Response.Status.OK).build();
+    }
+    return ShardClient.relay(owner.updateWeather(iataCode, pointType, datapointJson));
+  }
+
+  @Override
+  public Response updateWeather(String iataCode, String pointType, DataPoint dataPoint) {
+    return updateWeather(iataCode, pointType, gson.toJson(dataPoint));
+  }
+
+  @Override
+  public void updateWeather(String iataCode, String pointType, DataPoint dataPoint,
+      AsyncResponse response) {
+    RequestExecutor.execute(response, () -> updateWeather(iataCode, pointType, dataPoint));
+  }
+
+  /**
+   * Sends every shard one batch with its records, the results are put back in request order.
+   */
+  @Override
+  public Response updateWeatherBatch(InputStream updates) {
+    List<WeatherUpdate> records;
+    try {
+      records = RestWeatherCollectorEndpoint.readUpdates(updates);
+    } catch (IOException e) {
+      LOGGER.severe(e.getMessage());
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    WeatherUpdateResult[] retval = new WeatherUpdateResult[records.size()];
+    Map<ShardClient, List<Integer>> batches = new LinkedHashMap<ShardClient, List<Integer>>();
+    for (int i = 0; i < records.size(); i++) {
+      WeatherUpdate record = records.get(i);
+      if (record == null) {
+        retval[i] =
+            new WeatherUpdateResult(null, null, Response.Status.BAD_REQUEST.getStatusCode());
+        continue;
+      }
+      ShardClient owner = record.getIata() == null ? null : router.ownerOf(record.getIata());
+      if (owner == null) {
+        retval[i] =
+            new WeatherUpdateResult(record.getIata(), record.getPointType(),
+                Response.Status.NOT_FOUND.getStatusCode());
+      } else {
+        batches.computeIfAbsent(owner, k -> new ArrayList<Integer>()).add(i);
+      }
+    }
+    for (Map.Entry<ShardClient, List<Integer>> batch : batches.entrySet()) {
+      List<WeatherUpdate> shardRecords = new ArrayList<WeatherUpdate>();
+      batch.getValue().forEach(i -> shardRecords.add(records.get(i)));
+      List<WeatherUpdateResult> results = null;
+      try {
+        Response response = batch.getKey().updateWeatherBatch(gson.toJson(shardRecords));
+        if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+          results = gson.fromJson(response.readEntity(String.class), RESULT_LIST);
+        }
+        response.close();
+      } catch (ProcessingException e) {
+        LOGGER.severe("batch update failed on " + batch.getKey().getUri() + ": " + e.getMessage());
+      }
+      for (int j = 0; j < batch.getValue().size(); j++) {
+        int i = batch.getValue().get(j);
+        retval[i] =
+            results != null ? results.get(j) : new WeatherUpdateResult(records.get(i).getIata(),
+                records.get(i).getPointType(), Response.Status.BAD_GATEWAY.getStatusCode());
+      }
+    }
+    return Response.status(Response.Status.OK).entity(Arrays.asList(retval)).build();
+  }
+
+  @Override
+  public Response getAirports() {
+    return Response.status(Response.Status.OK).entity(router.getAirportCodes()).build();
+  }
+
+  @Override
+  public Response getAirport(String iata) {
+    return Response.status(Response.Status.OK).entity(router.getAirport(iata)).build();
+  }
+
+  @Override
+  public Response addAirport(String iata, String latString, String longString) {
+    double latitude;
+    double longitude;
+    try {
+      latitude = Double.valueOf(latString);
+      longitude = Double.valueOf(longString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    if (!RestWeatherQueryEndpoint.isValidPoint(latitude, longitude)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    ShardClient owner = router.shardAt(latitude, longitude);
+    ShardClient previous = router.ownerOf(iata);
+    Response response;
+    try {
+      response = owner.addAirport(iata, latitude, longitude);
+    } catch (ProcessingException e) {
+      // the airport stays where it was
+      LOGGER.severe("adding " + iata + " failed on " + owner.getUri() + ": " + e.getMessage());
+      return Response.status(Response.Status.BAD_GATEWAY).build();
+    }
+    if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+      router.put(new AirportData(iata, latitude, longitude));
+      if (previous != null && previous != owner) {
+        // moved to a cell of another shard, which now holds it
+        deleteMoved(previous, iata);
+      }
+    }
+    return ShardClient.relay(response);
+  }
+
+  /**
+   * Deletes an airport from the shard it moved away from. Should that fail the old copy is left
+   * behind, the directory already names the new owner.
+   */
+  private void deleteMoved(ShardClient previous, String iata) {
+    try {
+      previous.deleteAirport(iata).close();
+    } catch (ProcessingException e) {
+      LOGGER.warning("moved airport " + iata + " left on " + previous.getUri() + ": "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Parses the upload and sends every shard its airports as json lines.
+   */
+  @Override
+  public Response addAirports(InputStream airports) {
+    int rejected = 0;
+    Map<ShardClient, List<AirportData>> batches =
+        new LinkedHashMap<ShardClient, List<AirportData>>();
+    boolean failed = false;
+    try {
+      AirportCsvParser parser = new AirportCsvParser(airports);
+      while (parser.next()) {
+        AirportData airportData = RestWeatherCollectorEndpoint.parseAirport(parser);
+        if (airportData == null) {
+          rejected++;
+          continue;
+        }
+        ShardClient owner = router.shardAt(airportData.getLatitude(), airportData.getLongitude());
+        batches.computeIfAbsent(owner, k -> new ArrayList<AirportData>()).add(airportData);
+      }
+    } catch (IOException e) {
+      LOGGER.severe("bulk airport upload interrupted: " + e.getMessage());
+      failed = true;
+    }
+    // as a single node, what was parsed before a failure is kept
+    int added = 0;
+    for (Map.Entry<ShardClient, List<AirportData>> batch : batches.entrySet()) {
+      StringBuilder lines = new StringBuilder();
+      for (AirportData airportData : batch.getValue()) {
+        lines.append(gson.toJson(airportData)).append('\n');
+      }
+      boolean accepted = false;
+      try {
+        Response response = batch.getKey().addAirports(lines.toString());
+        accepted = response.getStatus() == Response.Status.OK.getStatusCode();
+        response.close();
+      } catch (ProcessingException e) {
+        LOGGER.severe("bulk airport upload failed on " + batch.getKey().getUri() + ": "
+            + e.getMessage());
+      }
+      if (!accepted) {
+        // the airports stay where they were
+        rejected += batch.getValue().size();
+        continue;
+      }
+      for (AirportData airportData : batch.getValue()) {
+        ShardClient previous = router.ownerOf(airportData.getIata());
+        router.put(airportData);
+        if (previous != null && previous != batch.getKey()) {
+          deleteMoved(previous, airportData.getIata());
+        }
+      }
+      added += batch.getValue().size();
+    }
+    Map<String, Integer> retval = new HashMap<String, Integer>();
+    retval.put("added", added);
+    retval.put("rejected", rejected);
+    return Response.status(failed ? Response.Status.BAD_REQUEST : Response.Status.OK)
+        .entity(retval).build();
+  }
+
+  @Override
+  public Response deleteAirport(String iata) {
+    ShardClient owner = router.ownerOf(iata);
+    if (owner == null) {
+      return Response.status(Response.Status.OK).build();
+    }
+    Response response = owner.deleteAirport(iata);
+    if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+      router.remove(iata);
+    }
+    return ShardClient.relay(response);
+  }
+
+  @Override
+  public Response exit() {
+    System.exit(0);
+    return Response.noContent().build();
+  }
+}
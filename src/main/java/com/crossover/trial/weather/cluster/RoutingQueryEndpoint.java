@@ -0,0 +1,304 @@
+package com.crossover.trial.weather.cluster;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import com.crossover.trial.weather.controller.RequestExecutor;
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.controller.WeatherQueryEndpoint;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.StatsService;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * The query API of a router, answered by the shard nodes. A radius query is sent to every shard
+ * which may own an airport in the circle and the results are concatenated, queries about one
+ * airport go to its owner.
+ */
+@Path("/query")
+public class RoutingQueryEndpoint implements WeatherQueryEndpoint {
+  public final static Logger LOGGER = Logger.getLogger("WeatherRouter");
+
+  private static final Gson gson = new Gson();
+
+  private final ShardRouter router;
+
+  /**
+   * the frequencies of the queries the router answered, radius queries reach the shards through
+   * {@link ShardEndpoint} which doesn't count them
+   */
+  private final StatsService statsService = new StatsService();
+
+  public RoutingQueryEndpoint(ShardRouter router) {
+    this.router = router;
+  }
+
+  /**
+   * @return the total datasize, the frequencies of the queries sent to the router as a single node
+   *         has them and the ping of every shard, null for a shard which didn't answer
+   */
+  @Override
+  public String ping() {
+    JsonObject retval = new JsonObject();
+    JsonArray shards = new JsonArray();
+    int datasize = 0;
+    for (ShardClient shard : router.getShards()) {
+      try {
+        JsonObject ping = new JsonParser().parse(shard.ping()).getAsJsonObject();
+        datasize += ping.get("datasize").getAsInt();
+        shards.add(ping);
+      } catch (RuntimeException e) {
+        LOGGER.warning("no ping from " + shard.getUri() + ": " + e.getMessage());
+        shards.add(JsonNull.INSTANCE);
+      }
+    }
+    retval.addProperty("datasize", datasize);
+    retval.add("iata_freq",
+        gson.toJsonTree(statsService.getRequestFrequency(router.getAirportCodes())));
+    retval.add("radius_freq", gson.toJsonTree(statsService.getRadiusFreqHist()));
+    retval.add("shards", shards);
+    return retval.toString();
+  }
+
+  @Override
+  public Response weather(String iata, String radiusString) {
+    double radius =
+        radiusString == null || radiusString.trim().isEmpty() ? 0 : Double.valueOf(radiusString);
+    statsService.updateRequestFrequency(iata, radius);
+    AirportData center = router.getAirport(iata);
+    if (center == null) {
+      return Response.status(Response.Status.OK).entity("[]").type(MediaType.APPLICATION_JSON)
+          .build();
+    }
+    if (radius == 0) {
+      return ShardClient.relay(router.ownerOf(iata).weather(iata, radiusString));
+    }
+    return gather(() -> router.weatherWithin(center.getLatitude(), center.getLongitude(),
+        radius));
+  }
+
+  /**
+   * The owner answers for a single airport, otherwise the shards overlapping the circle sum up
+   * their airports and the router merges their aggregates.
+   */
+  @Override
+  public Response aggregate(String iata, String radiusString) {
+    double radius = RestWeatherQueryEndpoint.parseRadius(radiusString);
+    if (radius < 0) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    AirportData center = router.getAirport(iata);
+    if (center == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    statsService.updateRequestFrequency(iata, radius);
+    if (radius == 0) {
+      return ShardClient.relay(router.ownerOf(iata).aggregate(iata, "0"));
+    }
+    return gather(() -> router.aggregateWithin(center.getLatitude(), center.getLongitude(),
+        radius));
+  }
+
+  /**
+   * @return the json gathered from the shards, 404 if there is none and 502 if a shard failed to
+   *         answer
+   */
+  private Response gather(Callable<String> scatter) {
+    try {
+      String json = scatter.call();
+      if (json == null) {
+        return Response.status(Response.Status.NOT_FOUND).build();
+      }
+      return Response.status(Response.Status.OK).entity(json).type(MediaType.APPLICATION_JSON)
+          .build();
+    } catch (ExecutionException e) {
+      LOGGER.severe("a shard failed to answer: " + e.getCause());
+      return Response.status(Response.Status.BAD_GATEWAY).build();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void weather(String iata, String radiusString, AsyncResponse response) {
+    RequestExecutor.execute(response, () -> weather(iata, radiusString));
+  }
+
+  @Override
+  public Response nearest(String iata, String kString) {
+    AirportData center = router.getAirport(iata);
+    if (center == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return nearest(String.valueOf(center.getLatitude()), String.valueOf(center.getLongitude()),
+        kString);
+  }
+
+  /**
+   * Asks every shard for its nearest airports and keeps the closest of all.
+   */
+  @Override
+  public Response nearest(String latString, String longString, String kString) {
+    double latitude;
+    double longitude;
+    try {
+      latitude = Double.parseDouble(latString);
+      longitude = Double.parseDouble(longString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int k = RestWeatherQueryEndpoint.parseNearestCount(kString);
+    if (k < 0 || !RestWeatherQueryEndpoint.isValidPoint(latitude, longitude)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return gather(() -> router.nearest(latitude, longitude, k));
+  }
+
+  /**
+   * Merges the parts of the tile of the shards overlapping it.
+   */
+  @Override
+  public Response tiles(String zoomString, String xString, String yString) {
+    int zoom;
+    int x;
+    int y;
+    try {
+      zoom = Integer.parseInt(zoomString);
+      x = Integer.parseInt(xString);
+      y = Integer.parseInt(yString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return gather(() -> router.tile(zoom, x, y));
+  }
+
+  /**
+   * Asks the shards overlapping the circle and cuts the page from all their results. Pages ending
+   * beyond {@link ShardEndpoint#MAX_LIMIT} airports are a bad request.
+   */
+  @Override
+  public Response area(String latString, String longString, String radiusString,
+      String offsetString, String limitString) {
+    double latitude;
+    double longitude;
+    double radius;
+    try {
+      latitude = Double.parseDouble(latString);
+      longitude = Double.parseDouble(longString);
+      radius = Double.parseDouble(radiusString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int offset = RestWeatherQueryEndpoint.parseCount(offsetString, 0, 0, Integer.MAX_VALUE);
+    int limit =
+        RestWeatherQueryEndpoint.parseCount(limitString, DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+    if (offset < 0 || limit < 0 || !isShardLimit(offset, limit)
+        || !RestWeatherQueryEndpoint.isValidPoint(latitude, longitude) || !(radius >= 0)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return gather(() -> router.area(latitude, longitude, radius, offset, limit));
+  }
+
+  /**
+   * Asks the shards overlapping the box and cuts the page from all their results, as deep as an
+   * area query.
+   */
+  @Override
+  public Response box(String minLatString, String minLongString, String maxLatString,
+      String maxLongString, String offsetString, String limitString) {
+    double minLatitude;
+    double minLongitude;
+    double maxLatitude;
+    double maxLongitude;
+    try {
+      minLatitude = Double.parseDouble(minLatString);
+      minLongitude = Double.parseDouble(minLongString);
+      maxLatitude = Double.parseDouble(maxLatString);
+      maxLongitude = Double.parseDouble(maxLongString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int offset = RestWeatherQueryEndpoint.parseCount(offsetString, 0, 0, Integer.MAX_VALUE);
+    int limit =
+        RestWeatherQueryEndpoint.parseCount(limitString, DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+    if (offset < 0 || limit < 0 || !isShardLimit(offset, limit)
+        || !RestWeatherQueryEndpoint.isValidPoint(minLatitude, minLongitude)
+        || !RestWeatherQueryEndpoint.isValidPoint(maxLatitude, maxLongitude)
+        || minLatitude > maxLatitude) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return gather(() -> router.box(minLatitude, minLongitude, maxLatitude, maxLongitude, offset,
+        limit));
+  }
+
+  /**
+   * @return whether the shards may be asked for the airports up to the end of the page
+   */
+  private static boolean isShardLimit(int offset, int limit) {
+    return (long) offset + limit <= ShardEndpoint.MAX_LIMIT;
+  }
+
+  @Override
+  public Response history(String iata, String pointType, String fromString, String toString) {
+    ShardClient owner = router.ownerOf(iata);
+    if (owner == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return ShardClient.relay(owner.history(iata, pointType, fromString, toString));
+  }
+
+  @Override
+  public ChunkedOutput<byte[]> stream(String iata) {
+    return stream(iata, "0");
+  }
+
+  /**
+   * Redirects to the owner of the airport if it owns the whole region, streams spanning several
+   * shards aren't supported.
+   */
+  @Override
+  public ChunkedOutput<byte[]> stream(String iata, String radiusString) {
+    double radius;
+    try {
+      radius = Double.parseDouble(radiusString);
+    } catch (NumberFormatException e) {
+      throw new BadRequestException(e);
+    }
+    if (!(radius >= 0)) {
+      throw new BadRequestException();
+    }
+    AirportData center = router.getAirport(iata);
+    if (center == null) {
+      throw new NotFoundException();
+    }
+    ShardClient owner = router.ownerOf(iata);
+    if (radius > 0
+        && router.shardsWithin(center.getLatitude(), center.getLongitude(), radius).size() > 1) {
+      throw new ServerErrorException("the region spans several shards",
+          Response.Status.NOT_IMPLEMENTED);
+    }
+    throw new WebApplicationException(Response.temporaryRedirect(
+        UriBuilder.fromUri(owner.getUri()).path("query/stream").path(iata).path(radiusString)
+            .build()).build());
+  }
+}
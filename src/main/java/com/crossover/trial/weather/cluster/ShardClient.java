@@ -0,0 +1,183 @@
+package com.crossover.trial.weather.cluster;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportWeatherPage;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Calls one shard node. Responses meant for the router's own clients are relayed as they are, see
+ * {@link #relay(Response)}.
+ */
+public class ShardClient {
+  private static final Gson gson = new Gson();
+  private static final Type AIRPORT_LIST = new TypeToken<List<AirportData>>() {}.getType();
+
+  private final URI uri;
+  private final WebTarget query;
+  private final WebTarget collect;
+  private final WebTarget shard;
+
+  /**
+   * @param client the client shared by the shards of a router
+   * @param uri the base uri of the shard node, e.g. http://localhost:9091/
+   */
+  public ShardClient(Client client, URI uri) {
+    this.uri = uri;
+    WebTarget base = client.target(uri);
+    query = base.path("query");
+    collect = base.path("collect");
+    shard = base.path("shard");
+  }
+
+  public URI getUri() {
+    return uri;
+  }
+
+  /**
+   * @return a response to send to the router's client with the status, type and body of the
+   *         shard's response
+   */
+  public static Response relay(Response response) {
+    try {
+      Response.ResponseBuilder builder = Response.status(response.getStatus());
+      if (response.hasEntity()) {
+        builder.entity(response.readEntity(String.class)).type(response.getMediaType());
+      }
+      return builder.build();
+    } finally {
+      response.close();
+    }
+  }
+
+  public String ping() {
+    return query.path("ping").request(MediaType.APPLICATION_JSON).get(String.class);
+  }
+
+  public Response weather(String iata, String radius) {
+    return query.path("weather").path(iata).path(radius).request(MediaType.APPLICATION_JSON)
+        .get();
+  }
+
+  /**
+   * @return the json list of the atmospheric information with data within the radius of a point
+   */
+  public Future<String> weatherWithin(double latitude, double longitude, double radius) {
+    return shard.path("weather").path(String.valueOf(latitude)).path(String.valueOf(longitude))
+        .path(String.valueOf(radius)).request(MediaType.APPLICATION_JSON).async()
+        .get(String.class);
+  }
+
+  public Response aggregate(String iata, String radius) {
+    return query.path("aggregate").path(iata).path(radius).request(MediaType.APPLICATION_JSON)
+        .get();
+  }
+
+  /**
+   * @return the json list of the {@link DataPointAggregate} of the airports within the radius of
+   *         a point
+   */
+  public Future<String> aggregateWithin(double latitude, double longitude, double radius) {
+    return shard.path("aggregate").path(String.valueOf(latitude))
+        .path(String.valueOf(longitude)).path(String.valueOf(radius))
+        .request(MediaType.APPLICATION_JSON).async().get(String.class);
+  }
+
+  /**
+   * @return the json list of the k airports with data closest to a point
+   */
+  public Future<String> nearest(double latitude, double longitude, int k) {
+    return query.path("nearest").path(String.valueOf(latitude)).path(String.valueOf(longitude))
+        .path(String.valueOf(k)).request(MediaType.APPLICATION_JSON).async().get(String.class);
+  }
+
+  /**
+   * @return the json {@link AirportWeatherPage} of the first airports with data within the radius
+   *         of a point
+   */
+  public Future<String> area(double latitude, double longitude, double radius, int limit) {
+    return shard.path("area").path(String.valueOf(latitude)).path(String.valueOf(longitude))
+        .path(String.valueOf(radius)).queryParam("limit", limit)
+        .request(MediaType.APPLICATION_JSON).async().get(String.class);
+  }
+
+  /**
+   * @return the json {@link AirportWeatherPage} of the first airports with data within a box
+   */
+  public Future<String> box(double minLatitude, double minLongitude, double maxLatitude,
+      double maxLongitude, int limit) {
+    return shard.path("box").path(String.valueOf(minLatitude))
+        .path(String.valueOf(minLongitude)).path(String.valueOf(maxLatitude))
+        .path(String.valueOf(maxLongitude)).queryParam("limit", limit)
+        .request(MediaType.APPLICATION_JSON).async().get(String.class);
+  }
+
+  /**
+   * @return the shard's part of a tile, its response is 404 if the zoom level isn't maintained
+   */
+  public Future<Response> tile(int zoom, int x, int y) {
+    return query.path("tiles").path(String.valueOf(zoom)).path(String.valueOf(x))
+        .path(String.valueOf(y)).request(MediaType.APPLICATION_JSON).async().get();
+  }
+
+  public Response history(String iata, String pointType, String from, String to) {
+    WebTarget target = query.path("history").path(iata).path(pointType);
+    if (from != null) {
+      target = target.queryParam("from", from);
+    }
+    if (to != null) {
+      target = target.queryParam("to", to);
+    }
+    return target.request(MediaType.APPLICATION_JSON).get();
+  }
+
+  public Response updateWeather(String iata, String pointType, String dataPointJson) {
+    return collect.path("weather").path(iata).path(pointType).request()
+        .post(Entity.entity(dataPointJson, MediaType.APPLICATION_JSON));
+  }
+
+  /**
+   * @param updates a json array as for the collector's batch update
+   */
+  public Response updateWeatherBatch(String updates) {
+    return collect.path("weather").request(MediaType.APPLICATION_JSON)
+        .post(Entity.entity(updates, MediaType.APPLICATION_JSON));
+  }
+
+  public Response addAirport(String iata, double latitude, double longitude) {
+    return collect.path("airport").path(iata).path(String.valueOf(latitude))
+        .path(String.valueOf(longitude)).request().post(Entity.text(""));
+  }
+
+  /**
+   * @param airports json airport lines as for the collector's bulk upload
+   */
+  public Response addAirports(String airports) {
+    return collect.path("airports").request(MediaType.APPLICATION_JSON)
+        .post(Entity.text(airports));
+  }
+
+  public Response deleteAirport(String iata) {
+    return collect.path("airport").path(iata).request().delete();
+  }
+
+  /**
+   * @return every airport of the shard
+   */
+  public List<AirportData> airports() {
+    return gson.fromJson(shard.path("airports").request(MediaType.APPLICATION_JSON)
+        .get(String.class), AIRPORT_LIST);
+  }
+}
@@ -0,0 +1,124 @@
+package com.crossover.trial.weather.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.crossover.trial.weather.controller.WeatherQueryEndpoint;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportWeatherPage;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * What the {@link ShardRouter} asks of a node beyond the public API: the full list of its
+ * airports and the weather around a point, which needn't be an airport the node knows. Only
+ * served by nodes configured as a shard, see {@link ShardMap#isConfigured()}.
+ */
+@Path("/shard")
+public class ShardEndpoint {
+  /** the largest number of airports sent for an area or box, so how deep a router pages */
+  public static final int MAX_LIMIT = 10 * WeatherQueryEndpoint.MAX_PAGE_SIZE;
+
+  private final AirportService airportService;
+
+  public ShardEndpoint() {
+    this(AirportService.getInstance());
+  }
+
+  public ShardEndpoint(AirportService airportService) {
+    this.airportService = airportService;
+  }
+
+  /**
+   * @return a json list of the {@link AirportData} of every airport of the node
+   */
+  @GET
+  @Path("/airports")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response airports() {
+    List<AirportData> retval = new ArrayList<AirportData>();
+    airportService.forEachAirport(airport -> retval.add(airport.getAirportData()));
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<AirportData>>(retval) {}).build();
+  }
+
+  /**
+   * @param latitude the latitude of the center in degrees
+   * @param longitude the longitude of the center in degrees
+   * @param radius the radius in km
+   * @return a json list of the {@link AtmosphericInformation} with data of the node's airports
+   *         within the radius
+   */
+  @GET
+  @Path("/weather/{lat}/{long}/{radius}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response weather(@PathParam("lat") double latitude,
+      @PathParam("long") double longitude, @PathParam("radius") double radius) {
+    List<AtmosphericInformation> retval =
+        airportService.getWeatherWithinRadius(latitude, longitude, radius);
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<AtmosphericInformation>>(retval) {}).build();
+  }
+
+  /**
+   * @return a json list of the {@link DataPointAggregate} of the node's airports within the radius
+   *         of a point
+   */
+  @GET
+  @Path("/aggregate/{lat}/{long}/{radius}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response aggregate(@PathParam("lat") double latitude,
+      @PathParam("long") double longitude, @PathParam("radius") double radius) {
+    List<DataPointAggregate> retval =
+        airportService.getAggregateWithinRadius(latitude, longitude, radius);
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<DataPointAggregate>>(retval) {}).build();
+  }
+
+  /**
+   * @param limit the number of airports wanted, unlike the public query not limited to a page but
+   *        to {@link #MAX_LIMIT}
+   * @return the first airports with data within the radius of a point as an
+   *         {@link AirportWeatherPage}, 400 for an invalid limit
+   */
+  @GET
+  @Path("/area/{lat}/{long}/{radius}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response area(@PathParam("lat") double latitude, @PathParam("long") double longitude,
+      @PathParam("radius") double radius, @QueryParam("limit") int limit) {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return Response.status(Response.Status.OK)
+        .entity(airportService.getWeatherAround(latitude, longitude, radius, 0, limit)).build();
+  }
+
+  /**
+   * @param limit the number of airports wanted, 1 to {@link #MAX_LIMIT}
+   * @return the first airports with data within a latitude/longitude box as an
+   *         {@link AirportWeatherPage}, 400 for an invalid limit
+   */
+  @GET
+  @Path("/box/{minLat}/{minLong}/{maxLat}/{maxLong}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response box(@PathParam("minLat") double minLatitude,
+      @PathParam("minLong") double minLongitude, @PathParam("maxLat") double maxLatitude,
+      @PathParam("maxLong") double maxLongitude, @QueryParam("limit") int limit) {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return Response.status(Response.Status.OK)
+        .entity(airportService.getWeatherWithinBox(minLatitude, minLongitude, maxLatitude,
+            maxLongitude, 0, limit)).build();
+  }
+}
@@ -0,0 +1,201 @@
+package com.crossover.trial.weather.cluster;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.SpatialIndex;
+
+/**
+ * Assigns airports to shards by the latitude/longitude grid cell they are located in. Cells are
+ * spread over the shards by a hash of the cell number, so neighboring cells, and the load of a busy
+ * region, usually land on different shards. A radius search only has to ask the shards owning a
+ * cell which overlaps the search circle.
+ */
+public class ShardMap {
+  private static final Logger LOGGER = Logger.getLogger(ShardMap.class.getName());
+
+  /** default cell size in degrees, a 500 km search overlaps one to four cells */
+  public static final double DEFAULT_CELL_DEGREES = 10.0;
+
+  private final int shards;
+  private final double cellDegrees;
+  private final int rows;
+  private final int columns;
+  private final double earthRadius;
+
+  /**
+   * @param shards the number of shards
+   * @param cellDegrees the size of a grid cell in degrees, must divide the globe in whole cells
+   * @param earthRadius the radius in km used to convert search radii into angles
+   */
+  public ShardMap(int shards, double cellDegrees, double earthRadius) {
+    if (shards < 1) {
+      throw new IllegalArgumentException("no shards");
+    }
+    this.shards = shards;
+    this.cellDegrees = cellDegrees;
+    this.rows = (int) Math.ceil(180 / cellDegrees);
+    // as in the spatial index columns wrap around at the antimeridian
+    this.columns = SpatialIndex.columnsOf(cellDegrees);
+    this.earthRadius = earthRadius;
+  }
+
+  public int getShardCount() {
+    return shards;
+  }
+
+  /**
+   * @return whether the node is configured as a shard, see
+   *         {@link #retainConfigured(AirportService)}
+   */
+  public static boolean isConfigured() {
+    String shard = System.getProperty("weather.cluster.shard");
+    return shard != null && !shard.trim().isEmpty();
+  }
+
+  /**
+   * On a shard node, removes the airports other shards own, e.g. the sample airports or those of
+   * a catalog every node loads. Configured with -Dweather.cluster.shard, the node's position in the
+   * routers' list of shards and their number as index/count, e.g. 0/3, and
+   * -Dweather.cluster.cellDegrees as on the routers.
+   *
+   * @return the number of airports removed, 0 if the node isn't configured as a shard
+   */
+  public static int retainConfigured(AirportService airportService) {
+    if (!isConfigured()) {
+      return 0;
+    }
+    String shard = System.getProperty("weather.cluster.shard");
+    int slash = shard.indexOf('/');
+    if (slash < 0) {
+      throw new IllegalArgumentException("weather.cluster.shard must be index/count, not " + shard);
+    }
+    int index = Integer.parseInt(shard.substring(0, slash).trim());
+    int count = Integer.parseInt(shard.substring(slash + 1).trim());
+    if (index < 0 || index >= count) {
+      throw new IllegalArgumentException("no shard " + index + " of " + count);
+    }
+    ShardMap shardMap =
+        new ShardMap(count, Double.parseDouble(System.getProperty("weather.cluster.cellDegrees",
+            String.valueOf(DEFAULT_CELL_DEGREES))), airportService.earthRadius);
+    int removed = shardMap.retainOwned(airportService, index);
+    LOGGER.info("shard " + index + " of " + count + " removed " + removed
+        + " airports of other shards");
+    return removed;
+  }
+
+  /**
+   * Removes the airports the given shard doesn't own.
+   *
+   * @return the number of airports removed
+   */
+  public int retainOwned(AirportService airportService, int shard) {
+    List<String> foreign = new ArrayList<String>();
+    airportService.forEachAirport(airport -> {
+      AirportData airportData = airport.getAirportData();
+      if (shardOf(airportData.getLatitude(), airportData.getLongitude()) != shard) {
+        foreign.add(airportData.getIata());
+      }
+    });
+    for (String iata : foreign) {
+      airportService.removeAirport(iata);
+    }
+    return foreign.size();
+  }
+
+  /**
+   * @return the shard owning the airports located at the given point
+   */
+  public int shardOf(double latitude, double longitude) {
+    return shardOfCell(row(latitude), column(longitude));
+  }
+
+  /**
+   * The shards owning a cell which overlaps the circle of the given radius around a point, a
+   * superset of the shards owning an airport within the radius.
+   *
+   * @param latitude center latitude in degrees
+   * @param longitude center longitude in degrees
+   * @param radius search radius in km
+   */
+  public BitSet shardsWithin(double latitude, double longitude, double radius) {
+    BitSet retval = new BitSet(shards);
+    double angle = radius / earthRadius;
+    if (angle >= Math.PI) {
+      retval.set(0, shards);
+      return retval;
+    }
+    double latSpan = Math.toDegrees(angle);
+    double minLat = latitude - latSpan;
+    double maxLat = latitude + latSpan;
+    int minRow = row(Math.max(minLat, -90));
+    int maxRow = row(Math.min(maxLat, 90));
+
+    // as for the spatial index, a circle containing a pole covers every longitude
+    double sinAngle = Math.sin(angle);
+    double cosLat = Math.cos(Math.toRadians(latitude));
+    int minColumn = 0;
+    int maxColumn = columns - 1;
+    if (minLat > -90 && maxLat < 90 && sinAngle < cosLat) {
+      double lonSpan = Math.toDegrees(Math.asin(sinAngle / cosLat));
+      minColumn = (int) Math.floor((longitude - lonSpan + 180) / cellDegrees);
+      maxColumn = Math.min(minColumn + columns - 1,
+          (int) Math.floor((longitude + lonSpan + 180) / cellDegrees));
+    }
+    for (int r = minRow; r <= maxRow; r++) {
+      for (int c = minColumn; c <= maxColumn; c++) {
+        retval.set(shardOfCell(r, Math.floorMod(c, columns)));
+        if (retval.cardinality() == shards) {
+          return retval;
+        }
+      }
+    }
+    return retval;
+  }
+
+  /**
+   * The shards owning a cell which overlaps a latitude/longitude box.
+   *
+   * @param minLatitude the southern edge in degrees
+   * @param minLongitude the western edge in degrees, greater than maxLongitude if the box crosses
+   *        the antimeridian
+   * @param maxLatitude the northern edge in degrees
+   * @param maxLongitude the eastern edge in degrees
+   */
+  public BitSet shardsWithinBox(double minLatitude, double minLongitude, double maxLatitude,
+      double maxLongitude) {
+    BitSet retval = new BitSet(shards);
+    int minColumn = (int) Math.floor((minLongitude + 180) / cellDegrees);
+    int maxColumn = (int) Math.floor((maxLongitude + 180) / cellDegrees);
+    if (minLongitude > maxLongitude) {
+      maxColumn += columns;
+    }
+    maxColumn = Math.min(maxColumn, minColumn + columns - 1);
+    for (int r = row(minLatitude); r <= row(maxLatitude); r++) {
+      for (int c = minColumn; c <= maxColumn; c++) {
+        retval.set(shardOfCell(r, Math.floorMod(c, columns)));
+        if (retval.cardinality() == shards) {
+          return retval;
+        }
+      }
+    }
+    return retval;
+  }
+
+  private int shardOfCell(int row, int column) {
+    int hash = (row * columns + column) * 0x9E3779B9;
+    return Math.floorMod(hash ^ (hash >>> 16), shards);
+  }
+
+  private int row(double latitude) {
+    return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellDegrees)));
+  }
+
+  private int column(double longitude) {
+    return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), columns);
+  }
+}
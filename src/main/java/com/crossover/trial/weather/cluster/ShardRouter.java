@@ -0,0 +1,382 @@
+package com.crossover.trial.weather.cluster;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportWeatherPage;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherTile;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.TileGrid;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Routes requests to the shard nodes owning the airports, as given by a {@link ShardMap}, and keeps
+ * a directory of every airport's location to find the owner by iata code. The directory is loaded
+ * from the shards at startup and maintained by the router, so airports have to be added and
+ * removed through it.
+ *
+ * Configured with -Dweather.cluster.shards, a comma separated list of the base urls of the shard
+ * nodes, and -Dweather.cluster.cellDegrees. Every router of a cluster needs the same list. Shard
+ * nodes are started with -Dweather.cluster.shard, see {@link ShardMap#retainConfigured}, so they
+ * only keep the airports they own.
+ */
+public class ShardRouter {
+  private static final Logger LOGGER = Logger.getLogger(ShardRouter.class.getName());
+
+  /** the order of the shards' results, the same as the order of a single node */
+  private static final Comparator<JsonObject> BY_DISTANCE = Comparator.<JsonObject> comparingDouble(
+      result -> result.get("distance").getAsDouble()).thenComparing(
+      result -> result.get("iata").getAsString());
+
+  private final ShardMap shardMap;
+  private final List<ShardClient> shards;
+  private final Map<String, AirportData> directory = new ConcurrentHashMap<String, AirportData>();
+
+  public ShardRouter(ShardMap shardMap, List<ShardClient> shards) {
+    if (shardMap.getShardCount() != shards.size()) {
+      throw new IllegalArgumentException("the map has " + shardMap.getShardCount()
+          + " shards, not " + shards.size());
+    }
+    this.shardMap = shardMap;
+    this.shards = shards;
+  }
+
+  /**
+   * @param uris the base urls of the shard nodes, in the same order on every router
+   */
+  public static ShardRouter create(List<URI> uris, double cellDegrees) {
+    Client client = ClientBuilder.newClient();
+    List<ShardClient> shards = new ArrayList<ShardClient>();
+    for (URI uri : uris) {
+      shards.add(new ShardClient(client, uri));
+    }
+    return new ShardRouter(new ShardMap(uris.size(), cellDegrees,
+        AirportService.getInstance().earthRadius), shards);
+  }
+
+  /**
+   * @return the router configured by the system properties with its directory loaded, null if no
+   *         shards are configured
+   */
+  public static ShardRouter openConfigured() {
+    String urls = System.getProperty("weather.cluster.shards");
+    if (urls == null || urls.trim().isEmpty()) {
+      return null;
+    }
+    List<URI> uris = new ArrayList<URI>();
+    for (String url : urls.split(",")) {
+      uris.add(URI.create(url.trim()));
+    }
+    ShardRouter router =
+        create(uris, Double.parseDouble(System.getProperty("weather.cluster.cellDegrees",
+            String.valueOf(ShardMap.DEFAULT_CELL_DEGREES))));
+    router.loadDirectory();
+    return router;
+  }
+
+  /**
+   * Fills the directory with the airports of every shard. An airport a shard holds but doesn't own
+   * is left out, the router never sends its requests there.
+   */
+  public void loadDirectory() {
+    int misplaced = 0;
+    for (ShardClient shard : shards) {
+      for (AirportData airportData : shard.airports()) {
+        if (shardAt(airportData.getLatitude(), airportData.getLongitude()) == shard) {
+          directory.put(airportData.getIata(), airportData);
+        } else {
+          misplaced++;
+        }
+      }
+    }
+    if (misplaced > 0) {
+      LOGGER.warning(misplaced + " airports are held by shards not owning them, are the shard"
+          + " nodes started with -Dweather.cluster.shard?");
+    }
+    LOGGER.info("routing " + directory.size() + " airports to " + shards.size() + " shards");
+  }
+
+  public List<ShardClient> getShards() {
+    return shards;
+  }
+
+  /**
+   * @return the location of the airport, null if it is unknown
+   */
+  public AirportData getAirport(String iata) {
+    return directory.get(iata);
+  }
+
+  public Set<String> getAirportCodes() {
+    return directory.keySet();
+  }
+
+  /**
+   * @return the shard owning the airport, null if it is unknown
+   */
+  public ShardClient ownerOf(String iata) {
+    AirportData airportData = directory.get(iata);
+    return airportData == null ? null : shardAt(airportData.getLatitude(),
+        airportData.getLongitude());
+  }
+
+  /**
+   * @return the shard owning airports located at the given point
+   */
+  public ShardClient shardAt(double latitude, double longitude) {
+    return shards.get(shardMap.shardOf(latitude, longitude));
+  }
+
+  /**
+   * @return the shards which may own an airport within the radius of a point
+   */
+  public List<ShardClient> shardsWithin(double latitude, double longitude, double radius) {
+    BitSet indexes = shardMap.shardsWithin(latitude, longitude, radius);
+    List<ShardClient> retval = new ArrayList<ShardClient>(indexes.cardinality());
+    for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+      retval.add(shards.get(i));
+    }
+    return retval;
+  }
+
+  /**
+   * Records an airport which was added to its shard.
+   */
+  public void put(AirportData airportData) {
+    directory.put(airportData.getIata(), airportData);
+  }
+
+  /**
+   * Forgets an airport which was removed from its shard.
+   */
+  public void remove(String iata) {
+    directory.remove(iata);
+  }
+
+  /**
+   * Asks the shards overlapping the circle for their airports within it at the same time.
+   *
+   * @return a json list of the atmospheric information with data within the radius of a point
+   * @throws ExecutionException if a shard couldn't answer
+   */
+  public String weatherWithin(double latitude, double longitude, double radius)
+      throws ExecutionException, InterruptedException {
+    List<Future<String>> responses = new ArrayList<Future<String>>();
+    for (ShardClient shard : shardsWithin(latitude, longitude, radius)) {
+      responses.add(shard.weatherWithin(latitude, longitude, radius));
+    }
+    // concatenates the json arrays without parsing them
+    StringBuilder retval = new StringBuilder("[");
+    for (Future<String> response : responses) {
+      String list = response.get().trim();
+      if (list.length() > 2) {
+        if (retval.length() > 1) {
+          retval.append(',');
+        }
+        retval.append(list, 1, list.length() - 1);
+      }
+    }
+    return retval.append(']').toString();
+  }
+
+  /**
+   * Asks the shards overlapping the circle for the aggregates of their airports within it at the
+   * same time and merges them.
+   *
+   * @return a json list of a {@link DataPointAggregate} per data point type
+   * @throws ExecutionException if a shard couldn't answer
+   */
+  public String aggregateWithin(double latitude, double longitude, double radius)
+      throws ExecutionException, InterruptedException {
+    List<Future<String>> responses = new ArrayList<Future<String>>();
+    for (ShardClient shard : shardsWithin(latitude, longitude, radius)) {
+      responses.add(shard.aggregateWithin(latitude, longitude, radius));
+    }
+    List<DataPointAggregate> aggregates = DataPointAggregate.forEachType();
+    for (Future<String> response : responses) {
+      addAll(aggregates, new JsonParser().parse(response.get()).getAsJsonArray());
+    }
+    return toJson(aggregates).toString();
+  }
+
+  /**
+   * Asks the shards overlapping the tile for their part of it at the same time, every shard
+   * maintains the tiles of its own airports, and merges them.
+   *
+   * @return a json {@link WeatherTile}, null if the zoom level isn't maintained or the tile is
+   *         outside the grid
+   * @throws ExecutionException if a shard couldn't answer
+   */
+  public String tile(int zoom, int x, int y) throws ExecutionException, InterruptedException {
+    if (zoom < 0 || zoom > TileGrid.MAX_ZOOM || x < 0 || x >= 1 << zoom || y < 0
+        || y >= 1 << zoom) {
+      return null;
+    }
+    WeatherTile bounds = new WeatherTile(zoom, x, y, 0, null);
+    List<Future<Response>> responses = new ArrayList<Future<Response>>();
+    BitSet indexes =
+        shardMap.shardsWithinBox(bounds.getMinLatitude(), bounds.getMinLongitude(),
+            bounds.getMaxLatitude(), bounds.getMaxLongitude());
+    for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+      responses.add(shards.get(i).tile(zoom, x, y));
+    }
+    JsonObject retval = null;
+    int airports = 0;
+    List<DataPointAggregate> aggregates = DataPointAggregate.forEachType();
+    for (Future<Response> future : responses) {
+      Response response = future.get();
+      try {
+        if (response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+          return null;
+        }
+        if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+          throw new ExecutionException(new IllegalStateException("a shard answered "
+              + response.getStatus()));
+        }
+        retval = new JsonParser().parse(response.readEntity(String.class)).getAsJsonObject();
+      } finally {
+        response.close();
+      }
+      airports += retval.get("airports").getAsInt();
+      addAll(aggregates, retval.getAsJsonArray("aggregates"));
+    }
+    retval.addProperty("airports", airports);
+    retval.add("aggregates", toJson(aggregates));
+    return retval.toString();
+  }
+
+  /**
+   * Adds the json aggregates of a shard to those of their types.
+   */
+  private static void addAll(List<DataPointAggregate> aggregates, JsonArray json) {
+    for (JsonElement element : json) {
+      JsonObject aggregate = element.getAsJsonObject();
+      DataPointType type = DataPointType.valueOf(aggregate.get("type").getAsString());
+      aggregates.get(type.ordinal()).add(
+          new DataPointAggregate(type, aggregate.get("airports").getAsInt(), aggregate.get(
+              "count").getAsLong(), aggregate.get("mean").getAsDouble(), aggregate.get("first")
+              .getAsDouble(), aggregate.get("second").getAsDouble(), aggregate.get("third")
+              .getAsDouble()));
+    }
+  }
+
+  private static JsonArray toJson(List<DataPointAggregate> aggregates) {
+    JsonArray retval = new JsonArray();
+    for (DataPointAggregate aggregate : aggregates) {
+      JsonObject json = new JsonObject();
+      json.addProperty("type", aggregate.getType().name());
+      json.addProperty("airports", aggregate.getAirports());
+      json.addProperty("count", aggregate.getCount());
+      json.addProperty("mean", aggregate.getMean());
+      json.addProperty("first", aggregate.getFirst());
+      json.addProperty("second", aggregate.getSecond());
+      json.addProperty("third", aggregate.getThird());
+      retval.add(json);
+    }
+    return retval;
+  }
+
+  /**
+   * Asks the shards overlapping the circle for their first offset + limit airports at the same
+   * time and merges them.
+   *
+   * @return a json {@link AirportWeatherPage} of the airports with data within the radius of a
+   *         point
+   * @throws ExecutionException if a shard couldn't answer
+   */
+  public String area(double latitude, double longitude, double radius, int offset, int limit)
+      throws ExecutionException, InterruptedException {
+    int wanted = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    List<Future<String>> responses = new ArrayList<Future<String>>();
+    for (ShardClient shard : shardsWithin(latitude, longitude, radius)) {
+      responses.add(shard.area(latitude, longitude, radius, wanted));
+    }
+    return mergePages(responses, offset, limit);
+  }
+
+  /**
+   * As {@link #area(double, double, double, int, int)} for the shards overlapping a box.
+   */
+  public String box(double minLatitude, double minLongitude, double maxLatitude,
+      double maxLongitude, int offset, int limit) throws ExecutionException,
+      InterruptedException {
+    int wanted = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    List<Future<String>> responses = new ArrayList<Future<String>>();
+    BitSet indexes =
+        shardMap.shardsWithinBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+      responses.add(shards.get(i).box(minLatitude, minLongitude, maxLatitude, maxLongitude,
+          wanted));
+    }
+    return mergePages(responses, offset, limit);
+  }
+
+  /**
+   * Every shard sent its first offset + limit airports, the page is cut from all of them ordered
+   * the same way.
+   */
+  private static String mergePages(List<Future<String>> responses, int offset, int limit)
+      throws ExecutionException, InterruptedException {
+    int total = 0;
+    List<JsonObject> candidates = new ArrayList<JsonObject>();
+    for (Future<String> response : responses) {
+      JsonObject page = new JsonParser().parse(response.get()).getAsJsonObject();
+      total += page.get("total").getAsInt();
+      for (JsonElement element : page.getAsJsonArray("results")) {
+        candidates.add(element.getAsJsonObject());
+      }
+    }
+    candidates.sort(BY_DISTANCE);
+    JsonArray results = new JsonArray();
+    candidates.stream().skip(offset).limit(limit).forEach(results::add);
+    JsonObject retval = new JsonObject();
+    retval.addProperty("total", total);
+    retval.addProperty("offset", offset);
+    retval.add("results", results);
+    return retval.toString();
+  }
+
+  /**
+   * Asks every shard for its k nearest airports at the same time, the k closest of all are the
+   * nearest of the cluster.
+   *
+   * @return a json list of the k airports with data closest to a point, closest first
+   * @throws ExecutionException if a shard couldn't answer
+   */
+  public String nearest(double latitude, double longitude, int k) throws ExecutionException,
+      InterruptedException {
+    List<Future<String>> responses = new ArrayList<Future<String>>();
+    for (ShardClient shard : shards) {
+      responses.add(shard.nearest(latitude, longitude, k));
+    }
+    List<JsonObject> candidates = new ArrayList<JsonObject>();
+    for (Future<String> response : responses) {
+      for (JsonElement element : new JsonParser().parse(response.get()).getAsJsonArray()) {
+        candidates.add(element.getAsJsonObject());
+      }
+    }
+    candidates.sort(BY_DISTANCE);
+    JsonArray retval = new JsonArray();
+    candidates.stream().limit(k).forEach(retval::add);
+    return retval.toString();
+  }
+}
@@ -0,0 +1,66 @@
+package com.crossover.trial.weather.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.service.QueryCache;
+
+/**
+ * Writes a collection of {@link AtmosphericInformation} straight to the response stream with
+ * {@link WeatherJson}. The element type has to be known, so resources return these collections
+ * wrapped in a {@link GenericEntity}.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class AtmosphericInformationListWriter implements
+    MessageBodyWriter<Collection<AtmosphericInformation>> {
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType) {
+    if (!Collection.class.isAssignableFrom(type) || !(genericType instanceof ParameterizedType)) {
+      return false;
+    }
+    Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+    return arguments.length == 1 && arguments[0] == AtmosphericInformation.class;
+  }
+
+  @Override
+  public long getSize(Collection<AtmosphericInformation> ais, Class<?> type, Type genericType,
+      Annotation[] annotations, MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(Collection<AtmosphericInformation> ais, Class<?> type, Type genericType,
+      Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+      OutputStream entityStream) throws IOException {
+    if (ais instanceof QueryCache.CachedWeather) {
+      // cached results are serialized once and then copied
+      QueryCache.CachedWeather cached = (QueryCache.CachedWeather) ais;
+      byte[] serialized = cached.getSerialized();
+      if (serialized == null) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WeatherJson.write(ais, out);
+        serialized = out.toByteArray();
+        cached.setSerialized(serialized);
+      }
+      entityStream.write(serialized);
+      return;
+    }
+    WeatherJson.write(ais, entityStream);
+  }
+}
@@ -0,0 +1,42 @@
+package com.crossover.trial.weather.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+
+/**
+ * Writes an {@link AtmosphericInformation} response straight to the response stream with
+ * {@link WeatherJson}.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class AtmosphericInformationWriter implements MessageBodyWriter<AtmosphericInformation> {
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType) {
+    return AtmosphericInformation.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(AtmosphericInformation ai, Class<?> type, Type genericType,
+      Annotation[] annotations, MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(AtmosphericInformation ai, Class<?> type, Type genericType,
+      Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+      OutputStream entityStream) throws IOException {
+    WeatherJson.write(ai, entityStream);
+  }
+}
@@ -0,0 +1,40 @@
+package com.crossover.trial.weather.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import com.crossover.trial.weather.model.DataPoint;
+
+/**
+ * Parses {@link DataPoint} request bodies straight from the request stream with
+ * {@link WeatherJson}. Any media type is accepted, collectors haven't always sent a json content
+ * type.
+ */
+@Provider
+public class DataPointReader implements MessageBodyReader<DataPoint> {
+
+  @Override
+  public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType) {
+    return type == DataPoint.class;
+  }
+
+  @Override
+  public DataPoint readFrom(Class<DataPoint> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+      throws IOException {
+    try {
+      return WeatherJson.readDataPoint(entityStream);
+    } catch (IOException e) {
+      throw new BadRequestException(e.getMessage(), e);
+    }
+  }
+}
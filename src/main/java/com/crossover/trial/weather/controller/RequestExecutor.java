@@ -0,0 +1,58 @@
+package com.crossover.trial.weather.controller;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+/**
+ * Runs the endpoint methods bound to suspended requests. Without an executor they run right away
+ * on the container thread which received the request, as a synchronous resource method would.
+ */
+public final class RequestExecutor {
+  private static volatile Executor executor;
+
+  private RequestExecutor() {}
+
+  /**
+   * @param executor the executor for suspended requests, null to run them on the container thread
+   */
+  public static void setExecutor(Executor executor) {
+    RequestExecutor.executor = executor;
+  }
+
+  public static Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Resumes the response with the result of the task, or with what it threw so that the usual
+   * exception mapping applies.
+   */
+  public static void execute(AsyncResponse response, Supplier<Response> task) {
+    Executor executor = RequestExecutor.executor;
+    if (executor == null) {
+      resume(response, task);
+      return;
+    }
+    try {
+      executor.execute(() -> resume(response, task));
+    } catch (RejectedExecutionException e) {
+      response.resume(new ServiceUnavailableException());
+    }
+  }
+
+  private static void resume(AsyncResponse response, Supplier<Response> task) {
+    Response result;
+    try {
+      result = task.get();
+    } catch (RuntimeException e) {
+      response.resume(e);
+      return;
+    }
+    response.resume(result);
+  }
+}
@@ -1,17 +1,33 @@
 package com.crossover.trial.weather.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Response;
 
 import com.crossover.trial.weather.model.Airport;
 import com.crossover.trial.weather.model.AirportData;
 import com.crossover.trial.weather.model.DataPoint;
 import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.model.WeatherUpdate;
+import com.crossover.trial.weather.model.WeatherUpdateResult;
+import com.crossover.trial.weather.service.AirportCsvParser;
 import com.crossover.trial.weather.service.AirportService;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
 /**
  * A REST implementation of the WeatherCollector API. Accessible only to airport weather collection
@@ -24,11 +40,28 @@ import com.google.gson.Gson;
 public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
   public final static Logger LOGGER = Logger
       .getLogger(RestWeatherCollectorEndpoint.class.getName());
-  private final AirportService airportService = AirportService.getInstance();
+  private final AirportService airportService;
 
   /** shared gson json to object factory */
   public final static Gson gson = new Gson();
 
+  /** number of airports inserted at once by a bulk upload */
+  private static final int BULK_BATCH_SIZE = 1000;
+
+  /**
+   * An endpoint serving the shared airport service.
+   */
+  public RestWeatherCollectorEndpoint() {
+    this(AirportService.getInstance());
+  }
+
+  /**
+   * An endpoint serving an airport service of its own, e.g. that of a shard node.
+   */
+  public RestWeatherCollectorEndpoint(AirportService airportService) {
+    this.airportService = airportService;
+  }
+
   @Override
   public Response ping() {
     return Response.status(Response.Status.OK).entity("ready").build();
@@ -37,7 +70,15 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
   @Override
   public Response updateWeather(String iataCode, String pointType, String datapointJson) {
     try {
-      DataPoint dp = gson.fromJson(datapointJson, DataPoint.class);
+      return updateWeather(iataCode, pointType, WeatherJson.readDataPoint(datapointJson));
+    } catch (IOException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+  }
+
+  @Override
+  public Response updateWeather(String iataCode, String pointType, DataPoint dp) {
+    try {
       airportService.updateAtmosphericInformation(iataCode, pointType, dp);
     } catch (WeatherException e) {
       LOGGER.severe(e.getMessage());
@@ -46,6 +87,78 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
     return Response.status(Response.Status.OK).build();
   }
 
+  @Override
+  public void updateWeather(String iataCode, String pointType, DataPoint dp,
+      AsyncResponse response) {
+    RequestExecutor.execute(response, () -> updateWeather(iataCode, pointType, dp));
+  }
+
+  @Override
+  public Response updateWeatherBatch(InputStream updates) {
+    List<WeatherUpdate> records;
+    try {
+      records = readUpdates(updates);
+    } catch (IOException e) {
+      LOGGER.severe(e.getMessage());
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    List<WeatherUpdateResult> retval = new ArrayList<WeatherUpdateResult>(records.size());
+    for (WeatherUpdate update : records) {
+      if (update == null) {
+        retval.add(new WeatherUpdateResult(null, null, Response.Status.BAD_REQUEST
+            .getStatusCode()));
+      } else {
+        retval.add(new WeatherUpdateResult(update.getIata(), update.getPointType(),
+            applyUpdate(update).getStatusCode()));
+      }
+    }
+    return Response.status(Response.Status.OK).entity(retval).build();
+  }
+
+  /**
+   * Reads a whole batch of weather updates before any of them is applied, so a malformed batch
+   * changes nothing.
+   *
+   * @return the updates in request order, null for a record which is json but no update object,
+   *         e.g. null or a datapoint which isn't an object
+   * @throws IOException if the body isn't a json array
+   */
+  public static List<WeatherUpdate> readUpdates(InputStream updates) throws IOException {
+    List<WeatherUpdate> retval = new ArrayList<WeatherUpdate>();
+    try {
+      JsonReader reader = new JsonReader(new InputStreamReader(updates, StandardCharsets.UTF_8));
+      reader.beginArray();
+      while (reader.hasNext()) {
+        JsonElement record = gson.fromJson(reader, JsonElement.class);
+        try {
+          retval.add(gson.fromJson(record, WeatherUpdate.class));
+        } catch (JsonParseException e) {
+          retval.add(null);
+        }
+      }
+      reader.endArray();
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new IOException("malformed weather batch: " + e.getMessage(), e);
+    }
+    return retval;
+  }
+
+  private Response.Status applyUpdate(WeatherUpdate update) {
+    if (update.getIata() == null || airportService.getAirport(update.getIata()) == null) {
+      return Response.Status.NOT_FOUND;
+    }
+    if (update.getPointType() == null || update.getDataPoint() == null) {
+      return Response.Status.BAD_REQUEST;
+    }
+    try {
+      airportService.updateAtmosphericInformation(update.getIata(), update.getPointType(),
+          update.getDataPoint());
+      return Response.Status.OK;
+    } catch (WeatherException | IllegalStateException e) {
+      return Response.Status.BAD_REQUEST;
+    }
+  }
+
   @Override
   public Response getAirports() {
     Set<String> retval = airportService.getAllAirports();
@@ -72,6 +185,88 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
     }
   }
 
+  @Override
+  public Response addAirports(InputStream airports) {
+    int added = 0;
+    int rejected = 0;
+    List<AirportData> batch = new ArrayList<AirportData>(BULK_BATCH_SIZE);
+    boolean failed = false;
+    try {
+      AirportCsvParser parser = new AirportCsvParser(airports);
+      while (parser.next()) {
+        AirportData airportData = parseAirport(parser);
+        if (airportData == null) {
+          rejected++;
+          continue;
+        }
+        batch.add(airportData);
+        if (batch.size() == BULK_BATCH_SIZE) {
+          airportService.addAirports(batch);
+          added += batch.size();
+          batch.clear();
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.severe("bulk airport upload interrupted: " + e.getMessage());
+      failed = true;
+    }
+    // keep what was parsed before a failure, the counts tell the client how far it got
+    airportService.addAirports(batch);
+    added += batch.size();
+    Map<String, Integer> retval = new HashMap<String, Integer>();
+    retval.put("added", added);
+    retval.put("rejected", rejected);
+    return Response.status(failed ? Response.Status.BAD_REQUEST : Response.Status.OK)
+        .entity(retval).build();
+  }
+
+  /**
+   * @return the airport of an airports.dat or json line, null if it isn't valid or its position
+   *         isn't on the globe
+   */
+  public static AirportData parseAirport(AirportCsvParser parser) {
+    AirportData airportData = parser.getAirport();
+    if (airportData == null) {
+      // only lines which aren't airports.dat get turned into a string
+      airportData = parseAirportJson(parser.getLine().trim());
+    }
+    if (airportData == null
+        || !RestWeatherQueryEndpoint.isValidPoint(airportData.getLatitude(),
+            airportData.getLongitude())) {
+      return null;
+    }
+    return airportData;
+  }
+
+  /**
+   * @return the airport of a json object with iata, latitude and longitude keys, null if one is
+   *         missing
+   */
+  private static AirportData parseAirportJson(String line) {
+    if (line.isEmpty() || line.charAt(0) != '{') {
+      return null;
+    }
+    try {
+      JsonObject object = gson.fromJson(line, JsonObject.class);
+      // gson leaves a missing or null coordinate at 0
+      if (object == null || !hasValue(object, "latitude") || !hasValue(object, "longitude")) {
+        return null;
+      }
+      AirportData airportData = gson.fromJson(object, AirportData.class);
+      if (airportData.getIata() == null || airportData.getIata().isEmpty()) {
+        return null;
+      }
+      return airportData;
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static boolean hasValue(JsonObject object, String key) {
+    JsonElement value = object.get(key);
+    return value != null && value.isJsonPrimitive();
+  }
+
   @Override
   public Response deleteAirport(String iata) {
     try {
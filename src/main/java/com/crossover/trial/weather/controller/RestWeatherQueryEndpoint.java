@@ -4,12 +4,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.Response;
 
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportWeather;
 import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointReading;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherTile;
+import com.crossover.trial.weather.replication.ReplicationNode;
 import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.QueryCache;
 import com.crossover.trial.weather.service.StatsService;
+import com.crossover.trial.weather.service.WeatherSubscriptions;
 import com.google.gson.Gson;
 
 /**
@@ -22,16 +37,48 @@ import com.google.gson.Gson;
 public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
 
   public final static Logger LOGGER = Logger.getLogger("WeatherQuery");
-  private final static AirportService airportService = AirportService.getInstance();
-  private final static StatsService statsService = StatsService.getInstance();
   /** shared gson json to object factory */
   public static final Gson gson = new Gson();
 
+  private final AirportService airportService;
+  private final StatsService statsService;
+  private final QueryCache queryCache;
+  private final WeatherSubscriptions subscriptions;
+
+  /** the primary or replica this node is, reported by the ping */
+  private static volatile ReplicationNode replication;
 
   static {
     init();
   }
 
+  /**
+   * An endpoint serving the shared services.
+   */
+  public RestWeatherQueryEndpoint() {
+    this(AirportService.getInstance(), StatsService.getInstance(), QueryCache.getInstance(),
+        WeatherSubscriptions.getInstance());
+  }
+
+  /**
+   * An endpoint serving services of its own, e.g. those of a shard node. The cache and the
+   * subscriptions have to listen to the airport service.
+   */
+  public RestWeatherQueryEndpoint(AirportService airportService, StatsService statsService,
+      QueryCache queryCache, WeatherSubscriptions subscriptions) {
+    this.airportService = airportService;
+    this.statsService = statsService;
+    this.queryCache = queryCache;
+    this.subscriptions = subscriptions;
+  }
+
+  /**
+   * @param replication the replication role of this node, null if it isn't replicated
+   */
+  public static void setReplication(ReplicationNode replication) {
+    RestWeatherQueryEndpoint.replication = replication;
+  }
+
   /**
    * Retrieve service health including total size of valid data points and request frequency
    * information.
@@ -41,6 +88,12 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
   @Override
   public String ping() {
     Map<String, Object> retval = statsService.getStats();
+    retval.put("cache", queryCache.getStats());
+    retval.put("streams", subscriptions.getStats());
+    ReplicationNode node = replication;
+    if (node != null) {
+      retval.put("replication", node.getStats());
+    }
     return gson.toJson(retval);
   }
 
@@ -57,15 +110,232 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
   public Response weather(String iata, String radiusString) {
     double radius =
         radiusString == null || radiusString.trim().isEmpty() ? 0 : Double.valueOf(radiusString);
-    List<AtmosphericInformation> retval = airportService.getWeatherWithinRadius(iata, radius);
+    List<AtmosphericInformation> retval = queryCache.getWeatherWithinRadius(iata, radius);
+    if (retval == null) {
+      retval = airportService.getWeatherWithinRadius(iata, radius);
+    }
+    statsService.updateRequestFrequency(iata, radius);
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<AtmosphericInformation>>(retval) {}).build();
+  }
+
+  @Override
+  public void weather(String iata, String radiusString, AsyncResponse response) {
+    RequestExecutor.execute(response, () -> weather(iata, radiusString));
+  }
+
+  @Override
+  public Response aggregate(String iata, String radiusString) {
+    double radius = parseRadius(radiusString);
+    if (radius < 0) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    List<DataPointAggregate> retval = airportService.getAggregateWithinRadius(iata, radius);
+    if (retval == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
     statsService.updateRequestFrequency(iata, radius);
-    return Response.status(Response.Status.OK).entity(retval).build();
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<DataPointAggregate>>(retval) {}).build();
+  }
+
+  @Override
+  public Response nearest(String iata, String kString) {
+    Airport airport = airportService.getAirport(iata);
+    if (airport == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    int k = parseNearestCount(kString);
+    if (k < 0) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return nearest(airport.getAirportData().getLatitude(), airport.getAirportData()
+        .getLongitude(), k);
+  }
+
+  @Override
+  public Response nearest(String latString, String longString, String kString) {
+    double latitude;
+    double longitude;
+    try {
+      latitude = Double.parseDouble(latString);
+      longitude = Double.parseDouble(longString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int k = parseNearestCount(kString);
+    if (k < 0 || !isValidPoint(latitude, longitude)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return nearest(latitude, longitude, k);
+  }
+
+  private Response nearest(double latitude, double longitude, int k) {
+    List<AirportWeather> retval = airportService.getNearestWeather(latitude, longitude, k);
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<AirportWeather>>(retval) {}).build();
+  }
+
+  @Override
+  public Response area(String latString, String longString, String radiusString,
+      String offsetString, String limitString) {
+    double latitude;
+    double longitude;
+    double radius;
+    try {
+      latitude = Double.parseDouble(latString);
+      longitude = Double.parseDouble(longString);
+      radius = Double.parseDouble(radiusString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int offset = parseCount(offsetString, 0, 0, Integer.MAX_VALUE);
+    int limit = parseCount(limitString, DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+    if (offset < 0 || limit < 0 || !isValidPoint(latitude, longitude) || !(radius >= 0)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return Response.status(Response.Status.OK)
+        .entity(airportService.getWeatherAround(latitude, longitude, radius, offset, limit))
+        .build();
+  }
+
+  @Override
+  public Response box(String minLatString, String minLongString, String maxLatString,
+      String maxLongString, String offsetString, String limitString) {
+    double minLatitude;
+    double minLongitude;
+    double maxLatitude;
+    double maxLongitude;
+    try {
+      minLatitude = Double.parseDouble(minLatString);
+      minLongitude = Double.parseDouble(minLongString);
+      maxLatitude = Double.parseDouble(maxLatString);
+      maxLongitude = Double.parseDouble(maxLongString);
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int offset = parseCount(offsetString, 0, 0, Integer.MAX_VALUE);
+    int limit = parseCount(limitString, DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+    if (offset < 0 || limit < 0 || !isValidPoint(minLatitude, minLongitude)
+        || !isValidPoint(maxLatitude, maxLongitude) || minLatitude > maxLatitude) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return Response.status(Response.Status.OK)
+        .entity(airportService.getWeatherWithinBox(minLatitude, minLongitude, maxLatitude,
+            maxLongitude, offset, limit)).build();
+  }
+
+  @Override
+  public Response tiles(String zoomString, String xString, String yString) {
+    WeatherTile tile;
+    try {
+      tile =
+          airportService.getTile(Integer.parseInt(zoomString), Integer.parseInt(xString),
+              Integer.parseInt(yString));
+    } catch (NumberFormatException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    if (tile == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.status(Response.Status.OK).entity(tile).build();
+  }
+
+  /**
+   * @return the radius of an aggregate query in km, 0 if absent and -1 if it isn't valid
+   */
+  public static double parseRadius(String radiusString) {
+    if (radiusString == null || radiusString.trim().isEmpty()) {
+      return 0;
+    }
+    try {
+      double radius = Double.parseDouble(radiusString);
+      return radius >= 0 ? radius : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return the number of airports asked for by a nearest query, -1 if it isn't valid
+   */
+  public static int parseNearestCount(String kString) {
+    return kString == null ? -1 : parseCount(kString, 0, 1, MAX_NEAREST);
+  }
+
+  /**
+   * @param countString a count given by the client, possibly absent
+   * @param defaultValue the count if it is absent
+   * @return the count, -1 if it isn't a number between min and max
+   */
+  public static int parseCount(String countString, int defaultValue, int min, int max) {
+    if (countString == null || countString.trim().isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      int count = Integer.parseInt(countString.trim());
+      return count >= min && count <= max ? count : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return whether the latitude and longitude in degrees are on the globe
+   */
+  public static boolean isValidPoint(double latitude, double longitude) {
+    return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+  }
+
+  @Override
+  public Response history(String iata, String pointType, String fromString, String toString) {
+    DataPointType dataPointType;
+    long from;
+    long to;
+    try {
+      dataPointType = DataPointType.valueOf(pointType.toUpperCase());
+      from = fromString == null ? Long.MIN_VALUE : Long.parseLong(fromString);
+      to = toString == null ? Long.MAX_VALUE : Long.parseLong(toString);
+    } catch (IllegalArgumentException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    List<DataPointReading> retval = airportService.getHistory(iata, dataPointType, from, to);
+    if (retval == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.status(Response.Status.OK)
+        .entity(new GenericEntity<List<DataPointReading>>(retval) {}).build();
+  }
+
+  @Override
+  public ChunkedOutput<byte[]> stream(String iata) {
+    return stream(iata, "0");
+  }
+
+  @Override
+  public ChunkedOutput<byte[]> stream(String iata, String radiusString) {
+    double radius;
+    try {
+      radius = Double.parseDouble(radiusString);
+    } catch (NumberFormatException e) {
+      throw new BadRequestException(e);
+    }
+    if (!(radius >= 0)) {
+      throw new BadRequestException();
+    }
+    WeatherEventOutput output = new WeatherEventOutput();
+    if (subscriptions.subscribe(iata, radius, output) == null) {
+      throw new NotFoundException();
+    }
+    return output;
   }
 
   /**
    * A dummy init method that loads hard coded data
    */
   public static void init() {
+    AirportService airportService = AirportService.getInstance();
+    StatsService statsService = StatsService.getInstance();
     airportService.clearAirports();
     statsService.reset();
     airportService.addAirport("BOS", 42.364347, -71.005181);
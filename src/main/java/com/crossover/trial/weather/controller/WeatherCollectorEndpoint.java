@@ -1,15 +1,20 @@
 package com.crossover.trial.weather.controller;
 
+import java.io.InputStream;
+
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
 import com.crossover.trial.weather.model.DataPointType;
 
 /**
@@ -38,10 +43,51 @@ public interface WeatherCollectorEndpoint {
    *
    * @return HTTP Response code
    */
+  Response updateWeather(String iataCode, String pointType, String datapointJson);
+
+  /**
+   * Update the airports atmospheric information for a particular pointType with a parsed data
+   * point.
+   *
+   * @param iataCode the 3 letter airport code
+   * @param pointType the point type, {@link DataPointType} for a complete list
+   * @param dataPoint the data point
+   *
+   * @return HTTP Response code
+   */
+  Response updateWeather(String iataCode, String pointType, DataPoint dataPoint);
+
+  /**
+   * The HTTP binding of {@link #updateWeather(String, String, String)}, the data point is parsed
+   * from the request stream by {@link DataPointReader} and the update runs on the
+   * {@link RequestExecutor} if one is configured.
+   *
+   * @param iataCode the 3 letter airport code
+   * @param pointType the point type, {@link DataPointType} for a complete list
+   * @param dataPoint the data point
+   * @param response resumed with the response of
+   *        {@link #updateWeather(String, String, DataPoint)}
+   */
   @POST
   @Path("/weather/{iata}/{pointType}")
-  Response updateWeather(@PathParam("iata") String iataCode,
-      @PathParam("pointType") String pointType, String datapointJson);
+  void updateWeather(@PathParam("iata") String iataCode,
+      @PathParam("pointType") String pointType, DataPoint dataPoint,
+      @Suspended AsyncResponse response);
+
+  /**
+   * Update the atmospheric information of many airports in one request. Every record is applied on
+   * its own, a failing record doesn't prevent the others from being applied. The whole body is read
+   * first, a body which isn't a json array gets a 400 and applies no record, a record which isn't
+   * an update object, e.g. null, gets status 400.
+   *
+   * @param updates a json array of objects with iata, pointType and datapoint keys, the datapoint
+   *        formatted as for {@link #updateWeather(String, String, String)}
+   * @return HTTP Response code and a json list with the status of each record, in request order
+   */
+  @POST
+  @Path("/weather")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response updateWeatherBatch(InputStream updates);
 
   /**
    * Return a list of known airports as a json formatted list
@@ -77,6 +123,20 @@ public interface WeatherCollectorEndpoint {
   Response addAirport(@PathParam("iata") String iata, @PathParam("lat") String latString,
       @PathParam("long") String longString);
 
+  /**
+   * Add many airports in one request. The body is read as a stream, one airport per line, either
+   * in airports.dat format or as a json object with iata, latitude and longitude keys. Lines which
+   * can't be parsed, or whose position is missing or not on the globe, are skipped. If reading the
+   * body fails the airports read so far are kept and the response is a 400 with the counts.
+   *
+   * @param airports the request body
+   * @return HTTP Response code and a json object with the number of added and rejected lines
+   */
+  @POST
+  @Path("/airports")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response addAirports(InputStream airports);
+
   /**
    * Remove an airport from the known airport list
    *
@@ -0,0 +1,45 @@
+package com.crossover.trial.weather.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.service.WeatherSubscriptions;
+
+/**
+ * A server-sent event stream of weather updates. Every update is a weather event with a json object
+ * holding the iata code and the {@link AtmosphericInformation} of the airport, as written by
+ * {@link WeatherJson}. A heartbeat is a comment line.
+ */
+public class WeatherEventOutput extends ChunkedOutput<byte[]> implements WeatherSubscriptions.Sink {
+
+  public static final String MEDIA_TYPE = "text/event-stream";
+
+  private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+  public WeatherEventOutput() {
+    // the events carry their own delimiters
+    super(new byte[0]);
+  }
+
+  @Override
+  public void send(Map<String, AtmosphericInformation> weather) throws IOException {
+    if (weather.isEmpty()) {
+      write(HEARTBEAT);
+      return;
+    }
+    ByteArrayOutputStream events = new ByteArrayOutputStream();
+    for (Map.Entry<String, AtmosphericInformation> entry : weather.entrySet()) {
+      events.write(("event: weather\ndata: {\"iata\":"
+          + RestWeatherQueryEndpoint.gson.toJson(entry.getKey()) + ",\"weather\":")
+          .getBytes(StandardCharsets.UTF_8));
+      WeatherJson.write(entry.getValue(), events);
+      events.write("}\n\n".getBytes(StandardCharsets.US_ASCII));
+    }
+    write(events.toByteArray());
+  }
+}
@@ -0,0 +1,471 @@
+package com.crossover.trial.weather.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+
+/**
+ * Hand written json encoding of the weather model, reading and writing streams directly without
+ * reflection or intermediate strings. The output matches what Jackson produces for the same
+ * objects. The input is read like Gson reads a {@link DataPoint} from strict json: unknown keys are
+ * skipped, numbers may be quoted and null leaves a field at 0. Gson's lenient extensions, such as
+ * unquoted keys or comments, are rejected.
+ */
+public final class WeatherJson {
+
+  private static final byte[] NULL = ascii("null");
+
+  private WeatherJson() {}
+
+  /**
+   * Reads a json object with mean, first, second, third and count keys. Other keys are ignored,
+   * missing or null ones are 0.
+   *
+   * @throws IOException if the stream can't be read or doesn't hold a valid data point
+   */
+  public static DataPoint readDataPoint(InputStream in) throws IOException {
+    return new Parser(in).readDataPoint();
+  }
+
+  public static DataPoint readDataPoint(String json) throws IOException {
+    return readDataPoint(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static void write(AtmosphericInformation ai, OutputStream out) throws IOException {
+    Writer writer = new Writer(out);
+    writer.write(ai);
+    writer.flush();
+  }
+
+  public static void write(Collection<AtmosphericInformation> ais, OutputStream out)
+      throws IOException {
+    Writer writer = new Writer(out);
+    writer.writeByte('[');
+    boolean first = true;
+    for (AtmosphericInformation ai : ais) {
+      if (!first) {
+        writer.writeByte(',');
+      }
+      writer.write(ai);
+      first = false;
+    }
+    writer.writeByte(']');
+    writer.flush();
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Buffers output bytes, numbers are formatted straight into the buffer without a string.
+   */
+  private static class Writer {
+    private static final byte[] TEMPERATURE = ascii("{\"temperature\":");
+    private static final byte[] WIND = ascii(",\"wind\":");
+    private static final byte[] HUMIDITY = ascii(",\"humidity\":");
+    private static final byte[] PRECIPITATION = ascii(",\"precipitation\":");
+    private static final byte[] PRESSURE = ascii(",\"pressure\":");
+    private static final byte[] CLOUD_COVER = ascii(",\"cloudCover\":");
+    private static final byte[] LAST_UPDATE_TIME = ascii(",\"lastUpdateTime\":");
+    private static final byte[] MEAN = ascii("{\"mean\":");
+    private static final byte[] FIRST = ascii(",\"first\":");
+    private static final byte[] SECOND = ascii(",\"second\":");
+    private static final byte[] THIRD = ascii(",\"third\":");
+    private static final byte[] COUNT = ascii(",\"count\":");
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[4096];
+    private int position;
+
+    Writer(OutputStream out) {
+      this.out = out;
+    }
+
+    void write(AtmosphericInformation ai) throws IOException {
+      writeBytes(TEMPERATURE);
+      write(ai.getTemperature());
+      writeBytes(WIND);
+      write(ai.getWind());
+      writeBytes(HUMIDITY);
+      write(ai.getHumidity());
+      writeBytes(PRECIPITATION);
+      write(ai.getPrecipitation());
+      writeBytes(PRESSURE);
+      write(ai.getPressure());
+      writeBytes(CLOUD_COVER);
+      write(ai.getCloudCover());
+      writeBytes(LAST_UPDATE_TIME);
+      writeLong(ai.getLastUpdateTime());
+      writeByte('}');
+    }
+
+    void write(DataPoint dp) throws IOException {
+      if (dp == null) {
+        writeBytes(NULL);
+        return;
+      }
+      writeBytes(MEAN);
+      writeDouble(dp.getMean());
+      writeBytes(FIRST);
+      writeLong(dp.getFirst());
+      writeBytes(SECOND);
+      writeLong(dp.getSecond());
+      writeBytes(THIRD);
+      writeLong(dp.getThird());
+      writeBytes(COUNT);
+      writeLong(dp.getCount());
+      writeByte('}');
+    }
+
+    void writeLong(long value) throws IOException {
+      if (buffer.length - position < 20) {
+        flushBuffer();
+      }
+      // digits are taken from the negated value, which also holds Long.MIN_VALUE
+      if (value < 0) {
+        buffer[position++] = '-';
+      } else {
+        value = -value;
+      }
+      int start = position;
+      do {
+        buffer[position++] = (byte) ('0' - value % 10);
+        value /= 10;
+      } while (value != 0);
+      // digits were written least significant first
+      for (int i = start, j = position - 1; i < j; i++, j--) {
+        byte digit = buffer[i];
+        buffer[i] = buffer[j];
+        buffer[j] = digit;
+      }
+    }
+
+    /**
+     * Writes a double the way {@link Double#toString(double)} does. Values below 10^7 with up to
+     * three decimals, which is what collectors send, are formatted straight into the buffer as the
+     * integer of their decimals, the point put in place afterwards. Others go through the string.
+     */
+    void writeDouble(double value) throws IOException {
+      if (value != 0 && Math.abs(value) < 1e7) {
+        long scale = 1;
+        for (int decimals = 0; decimals <= 3; decimals++, scale *= 10) {
+          long scaled = Math.round(value * scale);
+          // a decimal whose nearest double is the value is what Double.toString picks, the
+          // first one found has the fewest digits
+          if (scaled != 0 && (double) scaled / scale == value) {
+            writeDecimal(scaled, decimals);
+            return;
+          }
+        }
+      }
+      String string = Double.toString(value);
+      if (buffer.length - position < string.length()) {
+        flushBuffer();
+      }
+      for (int i = 0; i < string.length(); i++) {
+        buffer[position++] = (byte) string.charAt(i);
+      }
+    }
+
+    /** writes scaled / 10^decimals with at least one digit on both sides of the point */
+    private void writeDecimal(long scaled, int decimals) throws IOException {
+      // room for the digits, the sign, the point and a zero before it, so the number stays in
+      // the buffer while the point is moved into it
+      if (buffer.length - position < 23) {
+        flushBuffer();
+      }
+      int start = position + (scaled < 0 ? 1 : 0);
+      writeLong(scaled);
+      if (decimals == 0) {
+        buffer[position++] = '.';
+        buffer[position++] = '0';
+        return;
+      }
+      // pad to a zero before the point, then shift the decimals right by one to make room for it
+      int digits = position - start;
+      int zeros = Math.max(0, decimals + 1 - digits);
+      System.arraycopy(buffer, start, buffer, start + zeros, digits);
+      for (int i = 0; i < zeros; i++) {
+        buffer[start + i] = '0';
+      }
+      position += zeros;
+      System.arraycopy(buffer, position - decimals, buffer, position - decimals + 1, decimals);
+      buffer[position - decimals] = '.';
+      position++;
+    }
+
+    void writeByte(int b) throws IOException {
+      if (position == buffer.length) {
+        flushBuffer();
+      }
+      buffer[position++] = (byte) b;
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+      if (buffer.length - position < bytes.length) {
+        flushBuffer();
+      }
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+
+    void flush() throws IOException {
+      flushBuffer();
+      out.flush();
+    }
+  }
+
+  /**
+   * A minimal pull parser over the raw bytes of a json document.
+   */
+  private static class Parser {
+    private final InputStream in;
+    private final byte[] buffer = new byte[512];
+    private int position;
+    private int limit;
+    private final StringBuilder scratch = new StringBuilder();
+
+    Parser(InputStream in) {
+      this.in = in;
+    }
+
+    DataPoint readDataPoint() throws IOException {
+      double mean = 0;
+      int first = 0;
+      int second = 0;
+      int third = 0;
+      int count = 0;
+      expect('{');
+      if (peekToken() == '}') {
+        position++;
+      } else {
+        int end;
+        do {
+          String key = readString();
+          expect(':');
+          if (readNull()) {
+            // gson leaves a null field at its default
+            continue;
+          }
+          switch (key) {
+            case "mean":
+              mean = readNumber();
+              break;
+            case "first":
+              first = readInt();
+              break;
+            case "second":
+              second = readInt();
+              break;
+            case "third":
+              third = readInt();
+              break;
+            case "count":
+              count = readInt();
+              break;
+            default:
+              skipValue();
+          }
+        } while ((end = nextToken()) == ',');
+        if (end != '}') {
+          throw malformed();
+        }
+      }
+      if (peekToken() != -1) {
+        throw malformed();
+      }
+      DataPoint dp =
+          new DataPoint.Builder().withFirst(first).withMedian(second).withLast(third)
+              .withCount(count).build();
+      dp.setMean(mean);
+      return dp;
+    }
+
+    private String readString() throws IOException {
+      expect('"');
+      scratch.setLength(0);
+      int b;
+      while ((b = read()) != '"') {
+        if (b == -1) {
+          throw malformed();
+        }
+        if (b == '\\') {
+          b = read();
+          if (b == 'u') {
+            char c = 0;
+            for (int i = 0; i < 4; i++) {
+              c = (char) (c << 4 | Character.digit(read(), 16));
+            }
+            scratch.append(c);
+            continue;
+          }
+          switch (b) {
+            case 'n':
+              b = '\n';
+              break;
+            case 't':
+              b = '\t';
+              break;
+            case 'r':
+              b = '\r';
+              break;
+            case 'b':
+              b = '\b';
+              break;
+            case 'f':
+              b = '\f';
+              break;
+            default:
+              break;
+          }
+        }
+        // keys we look for are ascii, other bytes only need to be skipped
+        scratch.append((char) b);
+      }
+      return scratch.toString();
+    }
+
+    private double readNumber() throws IOException {
+      int b = peekToken();
+      if (b == '"') {
+        // gson accepts numbers in strings
+        return parseNumber(readString());
+      }
+      scratch.setLength(0);
+      // plain integers, the common case, are accumulated without going through a string
+      boolean integer = true;
+      long value = 0;
+      while ((b = peek()) != -1 && (b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E'
+          || (b >= '0' && b <= '9'))) {
+        if (b >= '0' && b <= '9' && scratch.length() < 18) {
+          value = value * 10 + (b - '0');
+        } else if (b != '-' || scratch.length() > 0) {
+          integer = false;
+        }
+        scratch.append((char) b);
+        position++;
+      }
+      if (integer && scratch.length() > 0 && scratch.charAt(scratch.length() - 1) != '-') {
+        return scratch.charAt(0) == '-' ? -value : value;
+      }
+      return parseNumber(scratch.toString());
+    }
+
+    private double parseNumber(String number) throws IOException {
+      try {
+        return Double.parseDouble(number);
+      } catch (NumberFormatException e) {
+        throw malformed();
+      }
+    }
+
+    private int readInt() throws IOException {
+      double value = readNumber();
+      if (value != (int) value) {
+        throw malformed();
+      }
+      return (int) value;
+    }
+
+    /** @return true if the next value is null, consuming it */
+    private boolean readNull() throws IOException {
+      if (peekToken() != 'n') {
+        return false;
+      }
+      for (byte b : NULL) {
+        if (read() != b) {
+          throw malformed();
+        }
+      }
+      return true;
+    }
+
+    private void skipValue() throws IOException {
+      int b = peekToken();
+      if (b == '"') {
+        readString();
+      } else if (b == '{' || b == '[') {
+        int depth = 0;
+        do {
+          b = read();
+          if (b == '"') {
+            position--;
+            readString();
+          } else if (b == '{' || b == '[') {
+            depth++;
+          } else if (b == '}' || b == ']') {
+            depth--;
+          } else if (b == -1) {
+            throw malformed();
+          }
+        } while (depth > 0);
+      } else if (b == 't' || b == 'f') {
+        while ((b = peek()) >= 'a' && b <= 'z') {
+          position++;
+        }
+      } else {
+        readNumber();
+      }
+    }
+
+    private void expect(int expected) throws IOException {
+      if (nextToken() != expected) {
+        throw malformed();
+      }
+    }
+
+    /** @return the next byte which isn't whitespace, consuming it */
+    private int nextToken() throws IOException {
+      int b = peekToken();
+      if (b != -1) {
+        position++;
+      }
+      return b;
+    }
+
+    /** @return the next byte which isn't whitespace, without consuming it */
+    private int peekToken() throws IOException {
+      int b;
+      while ((b = peek()) == ' ' || b == '\n' || b == '\r' || b == '\t') {
+        position++;
+      }
+      return b;
+    }
+
+    private int read() throws IOException {
+      int b = peek();
+      if (b != -1) {
+        position++;
+      }
+      return b;
+    }
+
+    private int peek() throws IOException {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position] & 0xff;
+    }
+
+    private IOException malformed() {
+      return new IOException("malformed data point json");
+    }
+  }
+}
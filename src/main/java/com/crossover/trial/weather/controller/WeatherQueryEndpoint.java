@@ -4,10 +4,20 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import com.crossover.trial.weather.model.AirportWeather;
+import com.crossover.trial.weather.model.AirportWeatherPage;
 import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointReading;
+import com.crossover.trial.weather.model.WeatherTile;
 
 /**
  * The query only API for the Weather Server App. This API is made available to the public internet.
@@ -16,6 +26,15 @@ import com.crossover.trial.weather.model.AtmosphericInformation;
  */
 public interface WeatherQueryEndpoint {
 
+  /** the largest number of airports a nearest query returns */
+  int MAX_NEAREST = 1000;
+
+  /** the number of airports per page of an area query unless another limit is asked for */
+  int DEFAULT_PAGE_SIZE = 100;
+
+  /** the largest number of airports per page of an area query */
+  int MAX_PAGE_SIZE = 1000;
+
   /**
    * Retrieve health and status information for the the query api. Returns information about how the
    * number of datapoints currently held in memory, the frequency of requests for each IATA code and
@@ -37,8 +56,166 @@ public interface WeatherQueryEndpoint {
    * @return an HTTP Response and a list of {@link AtmosphericInformation} from the requested
    *         airport and airports in the given radius
    */
+  Response weather(String iata, String radiusString);
+
+  /**
+   * The HTTP binding of {@link #weather(String, String)}, the query runs on the
+   * {@link RequestExecutor} if one is configured.
+   *
+   * @param iata the three letter airport code
+   * @param radiusString the radius, in km, from which to collect weather data
+   * @param response resumed with the response of {@link #weather(String, String)}
+   */
   @GET
   @Path("/weather/{iata}/{radius}")
   @Produces(MediaType.APPLICATION_JSON)
-  Response weather(@PathParam("iata") String iata, @PathParam("radius") String radiusString);
+  void weather(@PathParam("iata") String iata, @PathParam("radius") String radiusString,
+      @Suspended AsyncResponse response);
+
+  /**
+   * Retrieve the weather of the given airport and the airports in the given radius summed up, for
+   * each data point type the count weighted mean and quartiles of their data points.
+   *
+   * @param iata the three letter airport code
+   * @param radiusString the radius, in km, from which to collect weather data
+   * @return an HTTP Response and a list of a {@link DataPointAggregate} per data point type, 404
+   *         if the airport is unknown and 400 for an invalid radius
+   */
+  @GET
+  @Path("/aggregate/{iata}/{radius}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response aggregate(@PathParam("iata") String iata, @PathParam("radius") String radiusString);
+
+  /**
+   * Retrieve the airports closest to the given one which have data updated in the last day, the
+   * airport itself included if it has.
+   *
+   * @param iata the three letter airport code
+   * @param kString the number of airports wanted, 1 to {@link #MAX_NEAREST}
+   * @return an HTTP Response and a list of up to k {@link AirportWeather} closest first, 404 if
+   *         the airport is unknown and 400 for an invalid k
+   */
+  @GET
+  @Path("/nearest/{iata}/{k}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response nearest(@PathParam("iata") String iata, @PathParam("k") String kString);
+
+  /**
+   * Retrieve the airports closest to a point which have data updated in the last day.
+   *
+   * @param latString the latitude of the point in degrees
+   * @param longString the longitude of the point in degrees
+   * @param kString the number of airports wanted, 1 to {@link #MAX_NEAREST}
+   * @return an HTTP Response and a list of up to k {@link AirportWeather} closest first, 400 for
+   *         an invalid point or k
+   */
+  @GET
+  @Path("/nearest/{lat}/{long}/{k}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response nearest(@PathParam("lat") String latString, @PathParam("long") String longString,
+      @PathParam("k") String kString);
+
+  /**
+   * Retrieve a page of the atmospheric information of the airports with data within the radius of
+   * any point, closest first.
+   *
+   * @param latString the latitude of the point in degrees
+   * @param longString the longitude of the point in degrees
+   * @param radiusString the radius in km
+   * @param offsetString the number of airports to skip, 0 if absent
+   * @param limitString the page size, 1 to {@link #MAX_PAGE_SIZE}, {@link #DEFAULT_PAGE_SIZE} if
+   *        absent
+   * @return an HTTP Response and an {@link AirportWeatherPage}, 400 for invalid parameters
+   */
+  @GET
+  @Path("/area/{lat}/{long}/{radius}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response area(@PathParam("lat") String latString, @PathParam("long") String longString,
+      @PathParam("radius") String radiusString, @QueryParam("offset") String offsetString,
+      @QueryParam("limit") String limitString);
+
+  /**
+   * Retrieve a page of the atmospheric information of the airports with data within a
+   * latitude/longitude box, e.g. a map viewport, closest to its center first.
+   *
+   * @param minLatString the southern edge in degrees
+   * @param minLongString the western edge in degrees, greater than the eastern edge if the box
+   *        crosses the antimeridian
+   * @param maxLatString the northern edge in degrees
+   * @param maxLongString the eastern edge in degrees
+   * @param offsetString the number of airports to skip, 0 if absent
+   * @param limitString the page size, 1 to {@link #MAX_PAGE_SIZE}, {@link #DEFAULT_PAGE_SIZE} if
+   *        absent
+   * @return an HTTP Response and an {@link AirportWeatherPage}, 400 for invalid parameters
+   */
+  @GET
+  @Path("/box/{minLat}/{minLong}/{maxLat}/{maxLong}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response box(@PathParam("minLat") String minLatString,
+      @PathParam("minLong") String minLongString, @PathParam("maxLat") String maxLatString,
+      @PathParam("maxLong") String maxLongString, @QueryParam("offset") String offsetString,
+      @QueryParam("limit") String limitString);
+
+  /**
+   * Retrieve a tile of the weather map, the data points of the airports within a
+   * latitude/longitude tile summed up as for {@link #aggregate(String, String)}. Tiles are kept up
+   * to date as data is collected, see {@link WeatherTile} for the grid, at the zoom levels the
+   * server is started with, -Dweather.tiles.zoomLevels, none by default.
+   *
+   * @param zoomString the zoom level, one of those the server maintains
+   * @param xString the column, 0 to 2^z - 1 from west to east
+   * @param yString the row, 0 to 2^z - 1 from north to south
+   * @return an HTTP Response and a {@link WeatherTile}, 404 if the zoom level isn't maintained or
+   *         the tile is outside the grid and 400 for parameters which aren't numbers
+   */
+  @GET
+  @Path("/tiles/{z}/{x}/{y}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response tiles(@PathParam("z") String zoomString, @PathParam("x") String xString,
+      @PathParam("y") String yString);
+
+  /**
+   * Retrieve the readings of one data point type collected at an airport in a time window. Only
+   * readings within the configured retention are kept.
+   *
+   * @param iata the three letter airport code
+   * @param pointType the data point type, e.g. wind
+   * @param fromString the start of the window in milliseconds since UTC epoch, unbounded if absent
+   * @param toString the end of the window in milliseconds since UTC epoch, unbounded if absent
+   *
+   * @return an HTTP Response and a list of {@link DataPointReading} oldest first, 404 if the
+   *         airport is unknown
+   */
+  @GET
+  @Path("/history/{iata}/{pointType}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Response history(@PathParam("iata") String iata, @PathParam("pointType") String pointType,
+      @QueryParam("from") String fromString, @QueryParam("to") String toString);
+
+  /**
+   * Subscribe to the weather of an airport as a stream of server-sent events. The current
+   * atmospheric information is sent first, then every update as it is collected. A slow client
+   * only receives the latest update of an airport.
+   *
+   * @param iata the three letter airport code
+   * @return the event stream, 404 if the airport is unknown
+   */
+  @GET
+  @Path("/stream/{iata}")
+  @Produces(WeatherEventOutput.MEDIA_TYPE)
+  ChunkedOutput<byte[]> stream(@PathParam("iata") String iata);
+
+  /**
+   * Subscribe to the weather of an airport and the airports within a radius of it, as for
+   * {@link #stream(String)}. Airports without data are only included once they have some.
+   *
+   * @param iata the three letter airport code
+   * @param radiusString the radius in km
+   * @return the event stream, 404 if the airport is unknown and 400 for an invalid radius
+   */
+  @GET
+  @Path("/stream/{iata}/{radius}")
+  @Produces(WeatherEventOutput.MEDIA_TYPE)
+  ChunkedOutput<byte[]> stream(@PathParam("iata") String iata,
+      @PathParam("radius") String radiusString);
 }
@@ -1,8 +1,18 @@
 package com.crossover.trial.weather.model;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public class Airport {
   private AirportData airportData;
-  private AtmosphericInformation atmosphericInformation;
+
+  /** the current immutable snapshot, replaced as a whole on every update */
+  private final AtomicReference<AtmosphericInformation> atmosphericInformation =
+      new AtomicReference<AtmosphericInformation>();
+
+  /** the reading history by data point type ordinal, created on the first reading of a type */
+  private final AtomicReferenceArray<DataPointHistory> history =
+      new AtomicReferenceArray<DataPointHistory>(DataPointType.values().length);
 
   public AirportData getAirportData() {
     return airportData;
@@ -13,10 +23,31 @@ public class Airport {
   }
 
   public AtmosphericInformation getAtmosphericInformation() {
-    return atmosphericInformation;
+    return atmosphericInformation.get();
   }
 
   public void setAtmosphericInformation(AtmosphericInformation atmosphericInformation) {
-    this.atmosphericInformation = atmosphericInformation;
+    this.atmosphericInformation.set(atmosphericInformation);
+  }
+
+  /**
+   * @return the reading history of the given type, null if there were no readings
+   */
+  public DataPointHistory getHistory(DataPointType dataPointType) {
+    return history.get(dataPointType.ordinal());
+  }
+
+  /**
+   * @param capacity the capacity of the history if it has to be created
+   * @return the reading history of the given type, created if there is none yet
+   */
+  public DataPointHistory getOrCreateHistory(DataPointType dataPointType, int capacity) {
+    DataPointHistory existing = history.get(dataPointType.ordinal());
+    if (existing != null) {
+      return existing;
+    }
+    DataPointHistory created = new DataPointHistory(capacity);
+    return history.compareAndSet(dataPointType.ordinal(), null, created) ? created : history
+        .get(dataPointType.ordinal());
   }
 }
@@ -0,0 +1,48 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * The atmospheric information of an airport found by a spatial query, with where the airport is
+ * and how far it is from the point searched around.
+ */
+public class AirportWeather {
+
+  /** the three letter IATA code */
+  private final String iata;
+
+  private final double latitude;
+
+  private final double longitude;
+
+  /** the distance from the point searched around, in km */
+  private final double distance;
+
+  private final AtmosphericInformation weather;
+
+  public AirportWeather(AirportData airportData, double distance, AtmosphericInformation weather) {
+    this.iata = airportData.getIata();
+    this.latitude = airportData.getLatitude();
+    this.longitude = airportData.getLongitude();
+    this.distance = distance;
+    this.weather = weather;
+  }
+
+  public String getIata() {
+    return iata;
+  }
+
+  public double getLatitude() {
+    return latitude;
+  }
+
+  public double getLongitude() {
+    return longitude;
+  }
+
+  public double getDistance() {
+    return distance;
+  }
+
+  public AtmosphericInformation getWeather() {
+    return weather;
+  }
+}
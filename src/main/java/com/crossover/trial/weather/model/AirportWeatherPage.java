@@ -0,0 +1,36 @@
+package com.crossover.trial.weather.model;
+
+import java.util.List;
+
+/**
+ * A page of the airports with data found by an area query, ordered by their distance from the
+ * center of the area.
+ */
+public class AirportWeatherPage {
+
+  /** the number of airports with data in the whole area */
+  private final int total;
+
+  /** the position of the first result among all of them */
+  private final int offset;
+
+  private final List<AirportWeather> results;
+
+  public AirportWeatherPage(int total, int offset, List<AirportWeather> results) {
+    this.total = total;
+    this.offset = offset;
+    this.results = results;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public List<AirportWeather> getResults() {
+    return results;
+  }
+}
@@ -1,131 +1,84 @@
 package com.crossover.trial.weather.model;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.BiConsumer;
-
 /**
- * encapsulates sensor information for a particular location
+ * encapsulates sensor information for a particular location. Instances are immutable snapshots, an
+ * update creates a new instance with {@link #withDataPoint(DataPointType, DataPoint)} so readers
+ * always see a consistent set of readings and update time.
  */
 public class AtmosphericInformation {
 
-  private final int milisecsInDay = 86400000;
+  private static final int milisecsInDay = 86400000;
 
   /** temperature in degrees celsius */
-  private DataPoint temperature;
+  private final DataPoint temperature;
 
   /** wind speed in km/h */
-  private DataPoint wind;
+  private final DataPoint wind;
 
   /** humidity in percent */
-  private DataPoint humidity;
+  private final DataPoint humidity;
 
   /** precipitation in cm */
-  private DataPoint precipitation;
+  private final DataPoint precipitation;
 
   /** pressure in mmHg */
-  private DataPoint pressure;
+  private final DataPoint pressure;
 
   /** cloud cover percent from 0 - 100 (integer) */
-  private DataPoint cloudCover;
+  private final DataPoint cloudCover;
 
   /** the last time this data was updated, in milliseconds since UTC epoch */
-  private long lastUpdateTime;
-
-  private static Map<DataPointType, BiConsumer<AtmosphericInformation, DataPoint>> dataPointSetterMap;
-
-  static {
-    dataPointSetterMap =
-        new HashMap<DataPointType, BiConsumer<AtmosphericInformation, DataPoint>>();
-    dataPointSetterMap.put(DataPointType.TEMPERATURE, (ai, dp) -> ai.setTemperature(dp));
-    dataPointSetterMap.put(DataPointType.WIND, (ai, dp) -> ai.setWind(dp));
-    dataPointSetterMap.put(DataPointType.HUMIDTY, (ai, dp) -> ai.setHumidity(dp));
-    dataPointSetterMap.put(DataPointType.PRECIPITATION, (ai, dp) -> ai.setPrecipitation(dp));
-    dataPointSetterMap.put(DataPointType.PRESSURE, (ai, dp) -> ai.setPressure(dp));
-    dataPointSetterMap.put(DataPointType.CLOUDCOVER, (ai, dp) -> ai.setCloudCover(dp));
-  }
+  private final long lastUpdateTime;
 
-  public AtmosphericInformation() {}
+  public AtmosphericInformation() {
+    this(null, null, null, null, null, null, 0);
+  }
 
   protected AtmosphericInformation(DataPoint temperature, DataPoint wind, DataPoint humidity,
       DataPoint percipitation, DataPoint pressure, DataPoint cloudCover) {
+    this(temperature, wind, humidity, percipitation, pressure, cloudCover, System
+        .currentTimeMillis());
+  }
+
+  private AtmosphericInformation(DataPoint temperature, DataPoint wind, DataPoint humidity,
+      DataPoint percipitation, DataPoint pressure, DataPoint cloudCover, long lastUpdateTime) {
     this.temperature = temperature;
     this.wind = wind;
     this.humidity = humidity;
     this.precipitation = percipitation;
     this.pressure = pressure;
     this.cloudCover = cloudCover;
-    this.lastUpdateTime = System.currentTimeMillis();
+    this.lastUpdateTime = lastUpdateTime;
   }
 
   public DataPoint getTemperature() {
     return temperature;
   }
 
-  public void setTemperature(DataPoint temperature) {
-    if (temperature.getMean() >= -50 && temperature.getMean() < 100) {
-      this.temperature = temperature;
-    }
-  }
-
   public DataPoint getWind() {
     return wind;
   }
 
-  public void setWind(DataPoint wind) {
-    if (wind.getMean() >= 0) {
-      this.wind = wind;
-    }
-  }
-
   public DataPoint getHumidity() {
     return humidity;
   }
 
-  public void setHumidity(DataPoint humidity) {
-    if (humidity.getMean() >= 0 && humidity.getMean() < 100) {
-      this.humidity = humidity;
-    }
-  }
-
   public DataPoint getPrecipitation() {
     return precipitation;
   }
 
-  public void setPrecipitation(DataPoint precipitation) {
-    if (precipitation.getMean() >= 0 && precipitation.getMean() < 100) {
-      this.precipitation = precipitation;
-    }
-  }
-
   public DataPoint getPressure() {
     return pressure;
   }
 
-  public void setPressure(DataPoint pressure) {
-    if (pressure.getMean() >= 650 && pressure.getMean() < 800) {
-      this.pressure = pressure;
-    }
-  }
-
   public DataPoint getCloudCover() {
     return cloudCover;
   }
 
-  public void setCloudCover(DataPoint cloudCover) {
-    if (cloudCover.getMean() >= 0 && cloudCover.getMean() < 100) {
-      this.cloudCover = cloudCover;
-    }
-  }
-
   public long getLastUpdateTime() {
     return this.lastUpdateTime;
   }
 
-  protected void setLastUpdateTime(long lastUpdateTime) {
-    this.lastUpdateTime = lastUpdateTime;
-  }
-
   public boolean hasAtleastOneNotNullField() {
     return this.getCloudCover() != null || this.getHumidity() != null
         || this.getPrecipitation() != null || this.getPressure() != null
@@ -136,9 +89,89 @@ public class AtmosphericInformation {
     return this.getLastUpdateTime() > System.currentTimeMillis() - milisecsInDay;
   }
 
-  public void setDataPoint(DataPointType dataPointType, DataPoint dataPoint) {
-    dataPointSetterMap.get(dataPointType).accept(this, dataPoint);
-    this.setLastUpdateTime(System.currentTimeMillis());
+  /**
+   * @return the data point of the given type, null if there is none
+   */
+  public DataPoint getDataPoint(DataPointType dataPointType) {
+    switch (dataPointType) {
+      case TEMPERATURE:
+        return temperature;
+      case WIND:
+        return wind;
+      case HUMIDTY:
+        return humidity;
+      case PRECIPITATION:
+        return precipitation;
+      case PRESSURE:
+        return pressure;
+      case CLOUDCOVER:
+        return cloudCover;
+      default:
+        throw new IllegalArgumentException("unknown data point type " + dataPointType);
+    }
+  }
+
+  /**
+   * Returns a copy of this information with the given data point and the update time set to now.
+   * A data point whose mean is outside the valid range of its type is ignored, only the update time
+   * changes. A copy of the data point is kept, so changing it later doesn't change the snapshot.
+   *
+   * @param dataPointType the type of the data point
+   * @param dataPoint the new reading
+   * @return the updated information
+   */
+  public AtmosphericInformation withDataPoint(DataPointType dataPointType, DataPoint dataPoint) {
+    return withDataPoint(dataPointType, dataPoint, System.currentTimeMillis());
+  }
+
+  /**
+   * As {@link #withDataPoint(DataPointType, DataPoint)} with an explicit update time.
+   */
+  public AtmosphericInformation withDataPoint(DataPointType dataPointType, DataPoint dataPoint,
+      long updateTime) {
+    DataPoint temperature = this.temperature;
+    DataPoint wind = this.wind;
+    DataPoint humidity = this.humidity;
+    DataPoint precipitation = this.precipitation;
+    DataPoint pressure = this.pressure;
+    DataPoint cloudCover = this.cloudCover;
+    double mean = dataPoint.getMean();
+    switch (dataPointType) {
+      case TEMPERATURE:
+        if (mean >= -50 && mean < 100) {
+          temperature = dataPoint.copy();
+        }
+        break;
+      case WIND:
+        if (mean >= 0) {
+          wind = dataPoint.copy();
+        }
+        break;
+      case HUMIDTY:
+        if (mean >= 0 && mean < 100) {
+          humidity = dataPoint.copy();
+        }
+        break;
+      case PRECIPITATION:
+        if (mean >= 0 && mean < 100) {
+          precipitation = dataPoint.copy();
+        }
+        break;
+      case PRESSURE:
+        if (mean >= 650 && mean < 800) {
+          pressure = dataPoint.copy();
+        }
+        break;
+      case CLOUDCOVER:
+        if (mean >= 0 && mean < 100) {
+          cloudCover = dataPoint.copy();
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("unknown data point type " + dataPointType);
+    }
+    return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure,
+        cloudCover, updateTime);
   }
 
 }
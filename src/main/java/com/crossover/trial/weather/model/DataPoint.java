@@ -24,6 +24,15 @@ public class DataPoint {
     this.setCount(count);
   }
 
+  /**
+   * @return a data point with the same values, which the caller's later changes don't affect
+   */
+  public DataPoint copy() {
+    DataPoint retval = new DataPoint(first, second, 0, third, count);
+    retval.setMean(mean);
+    return retval;
+  }
+
   /** the mean of the observations */
   public double getMean() {
     return mean;
@@ -112,7 +121,7 @@ public class DataPoint {
     }
 
     public DataPoint build() {
-      return new DataPoint(this.first, this.mean, this.median, this.last, this.count);
+      return new DataPoint(this.first, this.median, this.mean, this.last, this.count);
     }
   }
 }
@@ -0,0 +1,138 @@
+package com.crossover.trial.weather.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The data points of one type of several airports summed up: the mean and the quartiles of each
+ * data point weighted by its count. The merged quartiles are estimates, the count weighted average
+ * of the airports' quartiles, as the readings behind them aren't kept.
+ *
+ * Aggregates only hold sums, so they are merged without losing precision, e.g. those of several
+ * shards, and a data point is taken out again by subtracting it.
+ */
+public class DataPointAggregate {
+  private final DataPointType type;
+
+  /** the number of airports with a data point of the type */
+  private int airports;
+
+  /** the sum of the counts of the data points */
+  private long count;
+
+  /** the sums of the values multiplied by the counts */
+  private double meanSum;
+  private double firstSum;
+  private double secondSum;
+  private double thirdSum;
+
+  public DataPointAggregate(DataPointType type) {
+    this.type = type;
+  }
+
+  /**
+   * An aggregate as read back from its json, with the averages given.
+   */
+  public DataPointAggregate(DataPointType type, int airports, long count, double mean,
+      double first, double second, double third) {
+    this.type = type;
+    this.airports = airports;
+    this.count = count;
+    meanSum = mean * count;
+    firstSum = first * count;
+    secondSum = second * count;
+    thirdSum = third * count;
+  }
+
+  /**
+   * @return an empty aggregate for each data point type, in the order of {@link DataPointType}
+   */
+  public static List<DataPointAggregate> forEachType() {
+    List<DataPointAggregate> retval = new ArrayList<DataPointAggregate>();
+    for (DataPointType type : DataPointType.values()) {
+      retval.add(new DataPointAggregate(type));
+    }
+    return retval;
+  }
+
+  /**
+   * Adds the data points of an airport to the aggregates of their types.
+   *
+   * @param aggregates an aggregate for each data point type as given by {@link #forEachType()}
+   */
+  public static void addAll(List<DataPointAggregate> aggregates, AtmosphericInformation ai) {
+    for (DataPointAggregate aggregate : aggregates) {
+      DataPoint dataPoint = ai.getDataPoint(aggregate.type);
+      if (dataPoint != null) {
+        aggregate.add(dataPoint);
+      }
+    }
+  }
+
+  public void add(DataPoint dataPoint) {
+    int weight = dataPoint.getCount();
+    airports++;
+    count += weight;
+    meanSum += dataPoint.getMean() * weight;
+    firstSum += (double) dataPoint.getFirst() * weight;
+    secondSum += (double) dataPoint.getSecond() * weight;
+    thirdSum += (double) dataPoint.getThird() * weight;
+  }
+
+  /**
+   * Takes out a data point added before, e.g. when it was replaced by a newer one.
+   */
+  public void remove(DataPoint dataPoint) {
+    int weight = dataPoint.getCount();
+    airports--;
+    count -= weight;
+    meanSum -= dataPoint.getMean() * weight;
+    firstSum -= (double) dataPoint.getFirst() * weight;
+    secondSum -= (double) dataPoint.getSecond() * weight;
+    thirdSum -= (double) dataPoint.getThird() * weight;
+  }
+
+  public void add(DataPointAggregate other) {
+    airports += other.airports;
+    count += other.count;
+    meanSum += other.meanSum;
+    firstSum += other.firstSum;
+    secondSum += other.secondSum;
+    thirdSum += other.thirdSum;
+  }
+
+  public DataPointType getType() {
+    return type;
+  }
+
+  public int getAirports() {
+    return airports;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the count weighted mean, 0 if the count is 0
+   */
+  public double getMean() {
+    return average(meanSum);
+  }
+
+  public double getFirst() {
+    return average(firstSum);
+  }
+
+  public double getSecond() {
+    return average(secondSum);
+  }
+
+  public double getThird() {
+    return average(thirdSum);
+  }
+
+  private double average(double sum) {
+    return count == 0 ? 0 : sum / count;
+  }
+}
@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The most recent readings of one data point type at one airport, in a ring buffer of parallel
+ * primitive arrays so a reading costs 32 bytes and no object. The arrays start small and grow up
+ * to the capacity, after which the oldest reading is overwritten.
+ */
+public class DataPointHistory {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final int capacity;
+
+  /** the following fields are guarded by this */
+  private long[] times;
+  private double[] means;
+  private int[] firsts;
+  private int[] seconds;
+  private int[] thirds;
+  private int[] counts;
+
+  /** the slot the next reading goes to */
+  private int next;
+  private int size;
+
+  /**
+   * @param capacity the maximum number of readings kept
+   */
+  public DataPointHistory(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    int initial = Math.min(capacity, INITIAL_CAPACITY);
+    times = new long[initial];
+    means = new double[initial];
+    firsts = new int[initial];
+    seconds = new int[initial];
+    thirds = new int[initial];
+    counts = new int[initial];
+  }
+
+  public synchronized void add(long time, DataPoint dataPoint) {
+    if (size == times.length && size < capacity) {
+      // not wrapped yet, the readings are in order from slot 0
+      int length = Math.min(capacity, size * 2);
+      times = Arrays.copyOf(times, length);
+      means = Arrays.copyOf(means, length);
+      firsts = Arrays.copyOf(firsts, length);
+      seconds = Arrays.copyOf(seconds, length);
+      thirds = Arrays.copyOf(thirds, length);
+      counts = Arrays.copyOf(counts, length);
+      next = size;
+    }
+    times[next] = time;
+    means[next] = dataPoint.getMean();
+    firsts[next] = dataPoint.getFirst();
+    seconds[next] = dataPoint.getSecond();
+    thirds[next] = dataPoint.getThird();
+    counts[next] = dataPoint.getCount();
+    next = (next + 1) % times.length;
+    if (size < times.length) {
+      size++;
+    }
+  }
+
+  /**
+   * @param from the earliest time to include, in milliseconds since UTC epoch
+   * @param to the latest time to include
+   * @return the readings collected between from and to, oldest first
+   */
+  public synchronized List<DataPointReading> get(long from, long to) {
+    List<DataPointReading> readings = new ArrayList<DataPointReading>();
+    int length = times.length;
+    int slot = (next - size + length) % length;
+    for (int i = 0; i < size; i++) {
+      if (times[slot] >= from && times[slot] <= to) {
+        DataPoint dp = new DataPoint(firsts[slot], seconds[slot], 0, thirds[slot], counts[slot]);
+        dp.setMean(means[slot]);
+        readings.add(new DataPointReading(times[slot], dp));
+      }
+      slot = (slot + 1) % length;
+    }
+    return readings;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+}
@@ -0,0 +1,24 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * A data point as it was collected at a point in time.
+ */
+public class DataPointReading {
+  /** when the data point was collected, in milliseconds since UTC epoch */
+  private final long time;
+
+  private final DataPoint dataPoint;
+
+  public DataPointReading(long time, DataPoint dataPoint) {
+    this.time = time;
+    this.dataPoint = dataPoint;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public DataPoint getDataPoint() {
+    return dataPoint;
+  }
+}
@@ -0,0 +1,75 @@
+package com.crossover.trial.weather.model;
+
+import java.util.List;
+
+/**
+ * The weather of the airports within a tile of a latitude/longitude grid summed up. At zoom level z
+ * the globe is split into 2^z columns of 360 / 2^z degrees of longitude and 2^z rows of 180 / 2^z
+ * degrees of latitude, column x = 0 starting at -180 and row y = 0 at the north pole.
+ */
+public class WeatherTile {
+  private final int zoom;
+  private final int x;
+  private final int y;
+
+  private final double minLatitude;
+  private final double minLongitude;
+  private final double maxLatitude;
+  private final double maxLongitude;
+
+  /** the number of airports within the tile, with or without data */
+  private final int airports;
+
+  /** an aggregate per data point type, in the order of {@link DataPointType} */
+  private final List<DataPointAggregate> aggregates;
+
+  public WeatherTile(int zoom, int x, int y, int airports, List<DataPointAggregate> aggregates) {
+    this.zoom = zoom;
+    this.x = x;
+    this.y = y;
+    double width = 360.0 / (1 << zoom);
+    double height = 180.0 / (1 << zoom);
+    minLongitude = -180 + x * width;
+    maxLongitude = minLongitude + width;
+    maxLatitude = 90 - y * height;
+    minLatitude = maxLatitude - height;
+    this.airports = airports;
+    this.aggregates = aggregates;
+  }
+
+  public int getZoom() {
+    return zoom;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public double getMinLatitude() {
+    return minLatitude;
+  }
+
+  public double getMinLongitude() {
+    return minLongitude;
+  }
+
+  public double getMaxLatitude() {
+    return maxLatitude;
+  }
+
+  public double getMaxLongitude() {
+    return maxLongitude;
+  }
+
+  public int getAirports() {
+    return airports;
+  }
+
+  public List<DataPointAggregate> getAggregates() {
+    return aggregates;
+  }
+}
@@ -0,0 +1,39 @@
+package com.crossover.trial.weather.model;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A single record of a batch weather update, the data point to apply to an airport's atmospheric
+ * information for a point type.
+ */
+public class WeatherUpdate {
+
+  /** the three letter IATA code */
+  private String iata;
+
+  /** the point type, {@link DataPointType} for a complete list */
+  private String pointType;
+
+  @SerializedName("datapoint")
+  private DataPoint dataPoint;
+
+  public WeatherUpdate() {}
+
+  public WeatherUpdate(String iata, String pointType, DataPoint dataPoint) {
+    this.iata = iata;
+    this.pointType = pointType;
+    this.dataPoint = dataPoint;
+  }
+
+  public String getIata() {
+    return iata;
+  }
+
+  public String getPointType() {
+    return pointType;
+  }
+
+  public DataPoint getDataPoint() {
+    return dataPoint;
+  }
+}
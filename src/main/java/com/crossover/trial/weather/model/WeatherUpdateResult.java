@@ -0,0 +1,37 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * The outcome of one record of a batch weather update.
+ */
+public class WeatherUpdateResult {
+
+  /** the three letter IATA code of the update */
+  private final String iata;
+
+  /** the point type of the update */
+  private final String pointType;
+
+  /**
+   * HTTP style status of the update, 200 when applied, 404 for an unknown airport and 400 for an
+   * invalid point type or data point
+   */
+  private final int status;
+
+  public WeatherUpdateResult(String iata, String pointType, int status) {
+    this.iata = iata;
+    this.pointType = pointType;
+    this.status = status;
+  }
+
+  public String getIata() {
+    return iata;
+  }
+
+  public String getPointType() {
+    return pointType;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
@@ -0,0 +1,255 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Keeps the state of the {@link AirportService} in a directory: a snapshot of all airports and
+ * their latest atmospheric information, plus {@link WriteAheadLog} segments with the changes made
+ * since. A snapshot is a compacted log, it starts by clearing the airports and then adds each one
+ * and its data points, so recovery replays the snapshot and the later segments the same way.
+ *
+ * A snapshot first rotates the log, then writes the state to a temporary file which atomically
+ * replaces the previous snapshot, and finally deletes the segments it covers. Changes made while
+ * the snapshot is written may be in both the snapshot and the new segment, replaying them again
+ * leads to the same state.
+ *
+ * Changes the log couldn't write are lost from it, a snapshot is then taken within a second so
+ * they are on disk again.
+ *
+ * Configured with the system properties weather.persistence.dir, weather.persistence.fsync and
+ * weather.persistence.snapshotInterval (seconds).
+ */
+public class PersistenceManager implements Closeable {
+  public final static Logger LOGGER = Logger.getLogger(PersistenceManager.class.getName());
+
+  private static final int SNAPSHOT_MAGIC = 0x57534e31;
+  private static final String SNAPSHOT = "snapshot.bin";
+  private static final DataPointType[] DATA_POINT_TYPES = DataPointType.values();
+
+  private final Path directory;
+  private final AirportService airportService;
+  private final WriteAheadLog wal;
+  private final ScheduledExecutorService scheduler;
+
+  /** the records the log had dropped when the last snapshot started, guarded by this */
+  private long droppedAtSnapshot;
+
+  private PersistenceManager(Path directory, AirportService airportService, long segment,
+      boolean fsync, long snapshotIntervalSeconds) throws IOException {
+    this.directory = directory;
+    this.airportService = airportService;
+    this.wal = new WriteAheadLog(directory, segment, fsync);
+    airportService.addListener(wal);
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "weather-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (snapshotIntervalSeconds > 0) {
+      scheduler.scheduleWithFixedDelay(() -> {
+        try {
+          snapshot();
+        } catch (IOException | RuntimeException e) {
+          LOGGER.log(Level.SEVERE, "snapshot failed", e);
+        }
+      }, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        snapshotIfDropped();
+      } catch (IOException | RuntimeException e) {
+        LOGGER.log(Level.SEVERE, "snapshot failed", e);
+      }
+    }, 1, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Recovers the airport service from the directory and logs all later changes to it.
+   *
+   * @param directory created if it doesn't exist
+   * @param airportService the service to restore, it should hold what it holds on a fresh start
+   * @param fsync whether log writes are forced to the disk
+   * @param snapshotIntervalSeconds the time between snapshots, 0 for no periodic snapshots
+   */
+  public static PersistenceManager open(Path directory, AirportService airportService,
+      boolean fsync, long snapshotIntervalSeconds) throws IOException {
+    Files.createDirectories(directory);
+    long started = System.currentTimeMillis();
+    long next = recover(directory, airportService);
+    LOGGER.info("recovered " + airportService.getAirportCount() + " airports in "
+        + (System.currentTimeMillis() - started) + " ms");
+    return new PersistenceManager(directory, airportService, next, fsync,
+        snapshotIntervalSeconds);
+  }
+
+  /**
+   * Opens the directory configured by the weather.persistence properties.
+   *
+   * @return the manager, null if persistence isn't configured
+   */
+  public static PersistenceManager openConfigured(AirportService airportService)
+      throws IOException {
+    String dir = System.getProperty("weather.persistence.dir");
+    if (dir == null || dir.isEmpty()) {
+      return null;
+    }
+    return open(Paths.get(dir), airportService,
+        Boolean.getBoolean("weather.persistence.fsync"),
+        Long.getLong("weather.persistence.snapshotInterval", 600));
+  }
+
+  /**
+   * @return the number of the segment to write next
+   */
+  private static long recover(Path directory, AirportService airportService) throws IOException {
+    long first = 0;
+    Path snapshot = directory.resolve(SNAPSHOT);
+    if (Files.exists(snapshot)) {
+      try (InputStream in = Files.newInputStream(snapshot)) {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != SNAPSHOT_MAGIC) {
+          throw new IOException(snapshot + " is not a snapshot");
+        }
+        first = header.readLong();
+        // a snapshot is only in place once completely written, it is never torn
+        replay(in, airportService);
+      }
+    }
+    List<Long> segments = new ArrayList<Long>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+      for (Path file : files) {
+        long segment = WriteAheadLog.segmentNumber(file);
+        if (segment >= first) {
+          segments.add(segment);
+        }
+      }
+    }
+    Collections.sort(segments);
+    long next = first;
+    for (long segment : segments) {
+      Path file = WriteAheadLog.segmentPath(directory, segment);
+      try (InputStream in = Files.newInputStream(file)) {
+        replay(in, airportService);
+      } catch (IOException e) {
+        // a crash tears the end of the segment being written, what was before is good
+        LOGGER.warning("stopped replaying " + file + " at a damaged record: " + e.getMessage());
+      }
+      // never append to a segment that may end in a torn record
+      next = segment + 1;
+    }
+    return next;
+  }
+
+  private static void replay(InputStream in, AirportService airportService) throws IOException {
+    WalRecord.Reader records = new WalRecord.Reader(in);
+    WalRecord record;
+    while ((record = records.read()) != null) {
+      record.applyTo(airportService);
+    }
+  }
+
+  /**
+   * Writes a snapshot of the current state and drops the log segments it covers.
+   */
+  public synchronized void snapshot() throws IOException {
+    long dropped = wal.getDroppedRecords();
+    long segment = wal.rotate();
+    Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+      DataOutputStream header = new DataOutputStream(file);
+      header.writeInt(SNAPSHOT_MAGIC);
+      header.writeLong(segment);
+      WalRecord.Writer records = new WalRecord.Writer(file);
+      writeState(airportService, records);
+      records.flush();
+      file.getChannel().force(true);
+    }
+    Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+      for (Path file : files) {
+        long number = WriteAheadLog.segmentNumber(file);
+        if (number >= 0 && number < segment) {
+          Files.delete(file);
+        }
+      }
+    }
+    droppedAtSnapshot = dropped;
+  }
+
+  /**
+   * Takes a snapshot if the log dropped changes since the last one started.
+   */
+  synchronized void snapshotIfDropped() throws IOException {
+    long dropped = wal.getDroppedRecords();
+    if (dropped > droppedAtSnapshot) {
+      LOGGER.warning("the log dropped " + (dropped - droppedAtSnapshot)
+          + " changes, taking a snapshot");
+      snapshot();
+    }
+  }
+
+  /**
+   * Writes the current state of the service as records which rebuild it from any state: a clear
+   * followed by each airport and its data points.
+   */
+  public static void writeState(AirportService airportService, WalRecord.Writer records)
+      throws IOException {
+    records.write(WalRecord.clear());
+    // oldest first, restoring then reports updates in order as they happened
+    List<Airport> airports = new ArrayList<Airport>();
+    airportService.forEachAirport(airports::add);
+    airports.sort(Comparator.comparingLong(airport -> airport.getAtmosphericInformation()
+        .getLastUpdateTime()));
+    for (Airport airport : airports) {
+      records.write(WalRecord.add(airport.getAirportData()));
+      AtmosphericInformation ai = airport.getAtmosphericInformation();
+      for (DataPointType type : DATA_POINT_TYPES) {
+        DataPoint dp = ai.getDataPoint(type);
+        if (dp != null) {
+          records.write(WalRecord.update(airport.getAirportData().getIata(), type, dp,
+              ai.getLastUpdateTime()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes a last snapshot, so the next start doesn't have to replay the log, and stops logging.
+   */
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdownNow();
+    try {
+      snapshot();
+    } finally {
+      airportService.removeListener(wal);
+      wal.close();
+    }
+  }
+}
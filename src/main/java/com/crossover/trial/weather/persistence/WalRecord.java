@@ -0,0 +1,357 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * A change to the {@link AirportService} as written to the log. On disk a record is framed as its
+ * length, the encoded record and a CRC32 of it, so a record torn by a crash is detected. The
+ * same records are streamed to read replicas, with {@link Type#MARK} records giving their position
+ * in the primary's change stream.
+ */
+public final class WalRecord {
+
+  public enum Type {
+    ADD, REMOVE, CLEAR, UPDATE, MARK
+  }
+
+  private static final DataPointType[] DATA_POINT_TYPES = DataPointType.values();
+
+  /** an encoded record is small, anything larger is corrupt */
+  private static final int MAX_LENGTH = 1 << 16;
+
+  private final Type type;
+  private final String iata;
+  private final double latitude;
+  private final double longitude;
+  private final DataPointType dataPointType;
+  private final DataPoint dataPoint;
+  private final long time;
+  private final long sequence;
+
+  private WalRecord(Type type, String iata, double latitude, double longitude,
+      DataPointType dataPointType, DataPoint dataPoint, long time, long sequence) {
+    this.type = type;
+    this.iata = iata;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.dataPointType = dataPointType;
+    this.dataPoint = dataPoint;
+    this.time = time;
+    this.sequence = sequence;
+  }
+
+  public static WalRecord add(AirportData airportData) {
+    return new WalRecord(Type.ADD, airportData.getIata(), airportData.getLatitude(),
+        airportData.getLongitude(), null, null, 0, 0);
+  }
+
+  public static WalRecord remove(String iata) {
+    return new WalRecord(Type.REMOVE, iata, 0, 0, null, null, 0, 0);
+  }
+
+  public static WalRecord clear() {
+    return new WalRecord(Type.CLEAR, null, 0, 0, null, null, 0, 0);
+  }
+
+  public static WalRecord update(String iata, DataPointType dataPointType, DataPoint dataPoint,
+      long time) {
+    return new WalRecord(Type.UPDATE, iata, 0, 0, dataPointType, dataPoint, time, 0);
+  }
+
+  /**
+   * @param sequence the number of changes streamed before the mark
+   * @param time when the mark was written, in the primary's clock
+   */
+  public static WalRecord mark(long sequence, long time) {
+    return new WalRecord(Type.MARK, null, 0, 0, null, null, time, sequence);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getIata() {
+    return iata;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Applies the change to the service as it was originally made.
+   */
+  public void applyTo(AirportService airportService) {
+    switch (type) {
+      case ADD:
+        airportService.addAirport(iata, latitude, longitude);
+        break;
+      case REMOVE:
+        airportService.removeAirport(iata);
+        break;
+      case CLEAR:
+        airportService.clearAirports();
+        break;
+      case UPDATE:
+        airportService.updateAtmosphericInformation(iata, dataPointType, dataPoint, time);
+        break;
+      case MARK:
+        // changes nothing
+        break;
+      default:
+        throw new IllegalStateException("unknown record type " + type);
+    }
+  }
+
+  private void encode(ByteBuffer record) {
+    record.put((byte) type.ordinal());
+    switch (type) {
+      case ADD:
+        putString(record, iata);
+        record.putDouble(latitude);
+        record.putDouble(longitude);
+        break;
+      case REMOVE:
+        putString(record, iata);
+        break;
+      case CLEAR:
+        break;
+      case UPDATE:
+        putString(record, iata);
+        record.put((byte) dataPointType.ordinal());
+        record.putLong(time);
+        record.putDouble(dataPoint.getMean());
+        record.putInt(dataPoint.getFirst());
+        record.putInt(dataPoint.getSecond());
+        record.putInt(dataPoint.getThird());
+        record.putInt(dataPoint.getCount());
+        break;
+      case MARK:
+        record.putLong(sequence);
+        record.putLong(time);
+        break;
+      default:
+        throw new IllegalStateException("unknown record type " + type);
+    }
+  }
+
+  /**
+   * Puts the string as {@link DataOutputStream#writeUTF(String)} does, so it is read back with
+   * {@link DataInputStream#readUTF()}. Airport codes are ascii, anything else is encoded as
+   * modified UTF-8 up to 3 bytes per char.
+   */
+  private static void putString(ByteBuffer record, String value) {
+    int lengthPosition = record.position();
+    record.putShort((short) 0);
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x01 && c < 0x80) {
+        record.put((byte) c);
+      } else if (c < 0x800) {
+        record.put((byte) (0xc0 | (c >> 6)));
+        record.put((byte) (0x80 | (c & 0x3f)));
+      } else {
+        record.put((byte) (0xe0 | (c >> 12)));
+        record.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+        record.put((byte) (0x80 | (c & 0x3f)));
+      }
+    }
+    int length = record.position() - lengthPosition - 2;
+    if (length > 0xffff) {
+      throw new IllegalArgumentException("string too long for a record");
+    }
+    record.putShort(lengthPosition, (short) length);
+  }
+
+  /**
+   * Writes framed records to a stream. Records are encoded straight into a buffer which is written
+   * out when full or flushed, so a record costs no allocation and no call to the stream.
+   * Not thread safe.
+   */
+  public static final class Writer {
+    /** the length and checksum around each record */
+    private static final int FRAME = 8;
+
+    private final OutputStream out;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+
+    public Writer(OutputStream out) {
+      this.out = out;
+    }
+
+    public void write(WalRecord walRecord) throws IOException {
+      int maxLength = maxLength(walRecord);
+      if (buffer.remaining() < maxLength + FRAME) {
+        writeBuffer();
+        if (buffer.capacity() < maxLength + FRAME) {
+          buffer = ByteBuffer.allocate(maxLength + FRAME);
+        }
+      }
+      int start = buffer.position();
+      buffer.position(start + 4);
+      walRecord.encode(buffer);
+      int length = buffer.position() - start - 4;
+      crc.reset();
+      crc.update(buffer.array(), start + 4, length);
+      buffer.putInt(start, length);
+      buffer.putInt((int) crc.getValue());
+    }
+
+    private static int maxLength(WalRecord walRecord) {
+      return 64 + (walRecord.iata == null ? 0 : 3 * walRecord.iata.length());
+    }
+
+    private void writeBuffer() throws IOException {
+      out.write(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+
+    public void flush() throws IOException {
+      writeBuffer();
+      out.flush();
+    }
+  }
+
+  private static WalRecord decode(ByteBuffer record) throws IOException {
+    int ordinal = record.get() & 0xff;
+    if (ordinal >= Type.values().length) {
+      throw new IOException("unknown record type " + ordinal);
+    }
+    Type type = Type.values()[ordinal];
+    switch (type) {
+      case ADD:
+        return new WalRecord(type, getString(record), record.getDouble(), record.getDouble(),
+            null, null, 0, 0);
+      case REMOVE:
+        return remove(getString(record));
+      case CLEAR:
+        return clear();
+      case UPDATE:
+        String iata = getString(record);
+        DataPointType dataPointType = DATA_POINT_TYPES[record.get() & 0xff];
+        long time = record.getLong();
+        double mean = record.getDouble();
+        DataPoint dp =
+            new DataPoint.Builder().withFirst(record.getInt()).withMedian(record.getInt())
+                .withLast(record.getInt()).withCount(record.getInt()).build();
+        dp.setMean(mean);
+        return update(iata, dataPointType, dp, time);
+      case MARK:
+        return mark(record.getLong(), record.getLong());
+      default:
+        throw new IOException("unknown record type " + type);
+    }
+  }
+
+  private static String getString(ByteBuffer record) throws IOException {
+    int length = record.getShort() & 0xffff;
+    int start = record.position();
+    boolean ascii = true;
+    for (int i = start; i < start + length; i++) {
+      if (record.get(i) < 0x01) {
+        ascii = false;
+        break;
+      }
+    }
+    if (ascii) {
+      record.position(start + length);
+      return new String(record.array(), start, length, StandardCharsets.US_ASCII);
+    }
+    return new DataInputStream(new ByteArrayInputStream(record.array(), start - 2, length + 2))
+        .readUTF();
+  }
+
+  /**
+   * Reads framed records from a stream through a buffer of its own.
+   * Not thread safe.
+   */
+  public static final class Reader {
+    private final InputStream in;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+
+    public Reader(InputStream in) {
+      this.in = in;
+      buffer.limit(0);
+    }
+
+    /**
+     * @return the next record, null at the end of the stream
+     * @throws IOException if the record is torn or corrupt
+     */
+    public WalRecord read() throws IOException {
+      if (!fill(4)) {
+        if (buffer.hasRemaining()) {
+          throw new EOFException("torn record length");
+        }
+        return null;
+      }
+      int length = buffer.getInt();
+      if (length <= 0 || length > MAX_LENGTH) {
+        throw new IOException("corrupt record length " + length);
+      }
+      if (!fill(length + 4)) {
+        throw new EOFException("torn record");
+      }
+      crc.reset();
+      crc.update(buffer.array(), buffer.position(), length);
+      int end = buffer.position() + length;
+      ByteBuffer record = buffer.duplicate();
+      record.limit(end);
+      buffer.position(end);
+      if (buffer.getInt() != (int) crc.getValue()) {
+        throw new IOException("record checksum mismatch");
+      }
+      try {
+        return decode(record);
+      } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+        throw new IOException("malformed record", e);
+      }
+    }
+
+    /**
+     * @return whether the given number of bytes is buffered, reading more if need be
+     */
+    private boolean fill(int bytes) throws IOException {
+      if (buffer.remaining() >= bytes) {
+        return true;
+      }
+      buffer.compact();
+      if (buffer.capacity() < bytes) {
+        ByteBuffer larger = ByteBuffer.allocate(bytes);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+      while (buffer.position() < bytes) {
+        int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+        if (read < 0) {
+          break;
+        }
+        buffer.position(buffer.position() + read);
+      }
+      buffer.flip();
+      return buffer.remaining() >= bytes;
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.service.AirportListener;
+
+/**
+ * Appends every change of the airport service to a log segment. Changes are only queued on the
+ * request thread, in the order the service applied them to an airport. A background thread writes
+ * whatever accumulated and flushes once for all of it (group commit), so logging doesn't add disk
+ * latency to the collect path. An idle writer sleeps until a change is queued, the first change
+ * wakes it and it waits a commit interval for more to join before writing, so a change is on disk
+ * about a commit interval after it was made. The request thread still pays for the record and the
+ * queue node, and on a busy machine the writer competes with it for the CPU.
+ *
+ * A batch which can't be written is dropped and counted, see {@link #getDroppedRecords()}, the
+ * next snapshot covers what was lost.
+ *
+ * The log is split in numbered segments, {@link #rotate()} starts a new one so that the older ones
+ * can be dropped once a snapshot covers them.
+ */
+public class WriteAheadLog implements AirportListener, Closeable {
+  public final static Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+  /** changes queued beyond this block the request threads until the writer caught up */
+  private static final int QUEUE_CAPACITY = 1 << 16;
+
+  /** how long the writer waits for more changes after the first one woke it */
+  private static final long COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** the maximum number of changes written per flush */
+  private static final int MAX_BATCH = 4096;
+
+  /** asks the writer thread to switch segments or to stop */
+  private static class Command {
+    final boolean close;
+    final CompletableFuture<Long> done = new CompletableFuture<Long>();
+
+    Command(boolean close) {
+      this.close = close;
+    }
+  }
+
+  private final Path directory;
+  private final boolean fsync;
+  private final Queue<Object> queue = new ConcurrentLinkedQueue<Object>();
+
+  /** the number of queued changes */
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Thread writer;
+
+  /** whether the writer is parked until something is queued */
+  private volatile boolean sleeping;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  /** the following fields are only used by the writer thread after construction */
+  private long segment;
+  private FileOutputStream file;
+  private WalRecord.Writer out;
+
+  /**
+   * @param directory where the segments are kept
+   * @param segment the number of the first segment to write
+   * @param fsync whether every flush is forced to the disk, otherwise the operating system decides
+   *        when the data gets there
+   */
+  public WriteAheadLog(Path directory, long segment, boolean fsync) throws IOException {
+    this.directory = directory;
+    this.fsync = fsync;
+    this.segment = segment;
+    open();
+    writer = new Thread(this::run, "weather-wal");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public static Path segmentPath(Path directory, long segment) {
+    return directory.resolve(String.format("wal-%016d.log", segment));
+  }
+
+  /**
+   * @return the segment number of a segment file name, -1 if it isn't one
+   */
+  public static long segmentNumber(Path file) {
+    String name = file.getFileName().toString();
+    if (!name.startsWith("wal-") || !name.endsWith(".log")) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(4, name.length() - 4));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public void airportAdded(Airport airport) {
+    append(WalRecord.add(airport.getAirportData()));
+  }
+
+  @Override
+  public void airportRemoved(Airport airport) {
+    append(WalRecord.remove(airport.getAirportData().getIata()));
+  }
+
+  @Override
+  public void airportsCleared() {
+    append(WalRecord.clear());
+  }
+
+  @Override
+  public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+      DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+    append(WalRecord.update(airport.getAirportData().getIata(), dataPointType, dataPoint,
+        current.getLastUpdateTime()));
+  }
+
+  public void append(WalRecord record) {
+    if (pending.incrementAndGet() > QUEUE_CAPACITY) {
+      // the disk can't keep up, slow the writers down rather than running out of memory
+      while (pending.get() > QUEUE_CAPACITY && writer.isAlive()) {
+        LockSupport.parkNanos(COMMIT_INTERVAL_NANOS);
+      }
+    }
+    enqueue(record);
+  }
+
+  private void enqueue(Object item) {
+    queue.offer(item);
+    if (sleeping) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * @return the number of changes which couldn't be written since the log was opened
+   */
+  public long getDroppedRecords() {
+    return dropped.get();
+  }
+
+  /**
+   * Closes the current segment once everything queued so far is written and continues in a new one.
+   *
+   * @return the number of the new segment, all changes queued later are in it or later segments
+   */
+  public long rotate() throws IOException {
+    return execute(new Command(false));
+  }
+
+  /**
+   * Writes everything queued so far and stops the writer.
+   */
+  @Override
+  public void close() throws IOException {
+    if (writer.isAlive()) {
+      execute(new Command(true));
+    }
+  }
+
+  private long execute(Command command) throws IOException {
+    enqueue(command);
+    while (true) {
+      try {
+        return command.done.get(1, TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        if (!writer.isAlive() && !command.done.isDone()) {
+          throw new IOException("the log writer stopped");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted waiting for the log writer", e);
+      } catch (ExecutionException e) {
+        throw new IOException("log writer failed", e.getCause());
+      }
+    }
+  }
+
+  private void open() throws IOException {
+    file = new FileOutputStream(segmentPath(directory, segment).toFile(), true);
+    out = new WalRecord.Writer(file);
+  }
+
+  private void sync() throws IOException {
+    out.flush();
+    if (fsync) {
+      file.getChannel().force(false);
+    }
+  }
+
+  /**
+   * Parks until something is queued, then gives other changes a commit interval to join it.
+   */
+  private void idle() {
+    sleeping = true;
+    if (queue.isEmpty()) {
+      LockSupport.park(this);
+    }
+    sleeping = false;
+    LockSupport.parkNanos(COMMIT_INTERVAL_NANOS);
+  }
+
+  private void run() {
+    try {
+      write();
+    } finally {
+      // whatever stopped the writer, nobody may wait for it forever
+      Object queued;
+      while ((queued = queue.poll()) != null) {
+        if (queued instanceof Command) {
+          ((Command) queued).done.completeExceptionally(new IOException(
+              "the log writer stopped"));
+        }
+      }
+    }
+  }
+
+  private void write() {
+    List<Object> batch = new ArrayList<Object>(MAX_BATCH);
+    while (true) {
+      try {
+        Object item;
+        while (batch.size() < MAX_BATCH && (item = queue.poll()) != null) {
+          batch.add(item);
+        }
+        if (batch.isEmpty()) {
+          idle();
+          continue;
+        }
+        int records = 0;
+        for (Object queued : batch) {
+          if (queued instanceof WalRecord) {
+            out.write((WalRecord) queued);
+            records++;
+            continue;
+          }
+          Command command = (Command) queued;
+          sync();
+          file.close();
+          if (command.close) {
+            command.done.complete(segment);
+            return;
+          }
+          segment++;
+          open();
+          command.done.complete(segment);
+        }
+        sync();
+        pending.addAndGet(-records);
+      } catch (IOException | RuntimeException e) {
+        // keep going, a later flush may succeed, but whoever waits for a command has to know
+        LOGGER.log(Level.SEVERE, "could not write to the log", e);
+        for (Object queued : batch) {
+          if (queued instanceof Command) {
+            ((Command) queued).done.completeExceptionally(e);
+          } else {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+          }
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+}
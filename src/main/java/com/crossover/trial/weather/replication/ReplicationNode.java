@@ -0,0 +1,15 @@
+package com.crossover.trial.weather.replication;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * The primary or a replica of a replicated deployment, as reported by the query ping.
+ */
+public interface ReplicationNode extends Closeable {
+
+  /**
+   * @return the role of the node and the state of its replication
+   */
+  Map<String, Object> getStats();
+}
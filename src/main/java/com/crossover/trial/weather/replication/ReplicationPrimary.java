@@ -0,0 +1,446 @@
+package com.crossover.trial.weather.replication;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+import com.crossover.trial.weather.persistence.WalRecord;
+import com.crossover.trial.weather.service.AirportListener;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Publishes the changes of the airport service to read replicas over a socket, in the order they
+ * were applied to each airport (see {@link AirportListener}), as the same records the write-ahead
+ * log holds. A replica joining gets the current state first, then every later change. Changes are
+ * only queued on the request thread, a publisher thread writes them to all replicas, so the
+ * collectors never wait for a replica. The state is sent to a joining replica by a thread of its
+ * own, the changes published meanwhile are held back for it, so the others don't wait for it
+ * either. The publisher sleeps while there is nothing to write.
+ *
+ * After each batch, and every {@link #HEARTBEAT_MILLIS} when there are no changes, the publisher
+ * writes a {@link WalRecord#mark(long, long)} with the number of changes published so far and the
+ * time, from which replicas tell how far behind they are. A replica which can't keep up is
+ * disconnected and gets the whole state again when it reconnects.
+ *
+ * Configured with -Dweather.replication.port and -Dweather.replication.bindAddress, the loopback
+ * address by default.
+ */
+public class ReplicationPrimary implements AirportListener, ReplicationNode {
+  public final static Logger LOGGER = Logger.getLogger(ReplicationPrimary.class.getName());
+
+  /** how often a mark is sent when there are no changes */
+  public static final long HEARTBEAT_MILLIS = 1000;
+
+  /** changes queued beyond this disconnect the replicas rather than slowing the collectors */
+  private static final int QUEUE_CAPACITY = 1 << 16;
+
+  /** the maximum number of changes written per mark */
+  private static final int MAX_BATCH = 4096;
+
+  private static class Replica {
+    final Socket socket;
+    final WalRecord.Writer out;
+
+    /** the changes and marks published while the state is sent, only used by the publisher */
+    final List<WalRecord> backlog = new ArrayList<WalRecord>();
+
+    /** set by the thread sending the state once it is done */
+    volatile boolean stateSent;
+    volatile boolean failed;
+
+    Replica(Socket socket) throws IOException {
+      this.socket = socket;
+      this.out = new WalRecord.Writer(socket.getOutputStream());
+    }
+  }
+
+  private final AirportService airportService;
+  private final ServerSocket serverSocket;
+  private final Queue<WalRecord> queue = new ConcurrentLinkedQueue<WalRecord>();
+
+  /** the number of queued changes */
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Queue<Socket> joining = new ConcurrentLinkedQueue<Socket>();
+
+  /** whether changes are queued, only while there are replicas */
+  private volatile boolean replicated;
+  private volatile boolean overflowed;
+  private volatile boolean closed;
+
+  private final AtomicInteger replicaCount = new AtomicInteger();
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread acceptor;
+  private final Thread publisher;
+
+  /** whether the publisher is parked until there is something to write */
+  private volatile boolean sleeping;
+
+  /** the following fields are only used by the publisher thread */
+  private final List<Replica> replicas = new ArrayList<Replica>();
+  /** replicas being sent the state */
+  private final List<Replica> joiners = new ArrayList<Replica>();
+
+  /**
+   * Publishes the changes of the service to replicas connecting to the address.
+   *
+   * @param address the address to listen on, port 0 for any free port
+   */
+  public ReplicationPrimary(AirportService airportService, InetSocketAddress address)
+      throws IOException {
+    this.airportService = airportService;
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address);
+    airportService.addListener(this);
+    acceptor = new Thread(this::accept, "weather-replication-accept");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    publisher = new Thread(this::publish, "weather-replication");
+    publisher.setDaemon(true);
+    publisher.start();
+    LOGGER.info("publishing changes on " + serverSocket.getLocalSocketAddress());
+  }
+
+  /**
+   * @return the primary configured by the weather.replication properties, null if none is
+   */
+  public static ReplicationPrimary openConfigured(AirportService airportService)
+      throws IOException {
+    Integer port = Integer.getInteger("weather.replication.port");
+    if (port == null) {
+      return null;
+    }
+    String bindAddress = System.getProperty("weather.replication.bindAddress");
+    InetAddress address =
+        bindAddress == null ? InetAddress.getLoopbackAddress() : InetAddress
+            .getByName(bindAddress);
+    return new ReplicationPrimary(airportService, new InetSocketAddress(address, port));
+  }
+
+  /**
+   * @return the port replicas connect to
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  @Override
+  public void airportAdded(Airport airport) {
+    append(WalRecord.add(airport.getAirportData()));
+  }
+
+  @Override
+  public void airportRemoved(Airport airport) {
+    append(WalRecord.remove(airport.getAirportData().getIata()));
+  }
+
+  @Override
+  public void airportsCleared() {
+    append(WalRecord.clear());
+  }
+
+  @Override
+  public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+      DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+    append(WalRecord.update(airport.getAirportData().getIata(), dataPointType, dataPoint,
+        current.getLastUpdateTime()));
+  }
+
+  private void append(WalRecord record) {
+    // a change made while nobody is replicating is in the state sent to the next replica
+    if (!replicated) {
+      return;
+    }
+    if (pending.incrementAndGet() > QUEUE_CAPACITY) {
+      pending.decrementAndGet();
+      overflowed = true;
+    } else {
+      queue.offer(record);
+    }
+    wakePublisher();
+  }
+
+  private void wakePublisher() {
+    if (sleeping) {
+      LockSupport.unpark(publisher);
+    }
+  }
+
+  private void accept() {
+    while (!closed) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        // queue the changes from now on, the state sent to the replica covers the earlier ones
+        joining.offer(socket);
+        replicated = true;
+        wakePublisher();
+      } catch (IOException e) {
+        if (!closed) {
+          LOGGER.log(Level.WARNING, "could not accept a replica", e);
+        }
+      }
+    }
+  }
+
+  private void publish() {
+    List<WalRecord> batch = new ArrayList<WalRecord>(MAX_BATCH);
+    long lastMark = System.currentTimeMillis();
+    while (!closed) {
+      Socket socket;
+      while ((socket = joining.poll()) != null) {
+        join(socket);
+      }
+      if (overflowed) {
+        overflowed = false;
+        disconnectAll("fell behind");
+      }
+      catchUp();
+      WalRecord record;
+      while (batch.size() < MAX_BATCH && (record = queue.poll()) != null) {
+        batch.add(record);
+      }
+      pending.addAndGet(-batch.size());
+      if (batch.isEmpty() && System.currentTimeMillis() - lastMark < HEARTBEAT_MILLIS) {
+        idle(lastMark);
+        continue;
+      }
+      long sequence = published.addAndGet(batch.size());
+      WalRecord mark = WalRecord.mark(sequence, System.currentTimeMillis());
+      for (Iterator<Replica> it = replicas.iterator(); it.hasNext();) {
+        Replica replica = it.next();
+        try {
+          for (WalRecord change : batch) {
+            replica.out.write(change);
+          }
+          replica.out.write(mark);
+          replica.out.flush();
+        } catch (IOException e) {
+          LOGGER.info("replica " + replica.socket.getRemoteSocketAddress() + " left: "
+              + e.getMessage());
+          close(replica);
+          it.remove();
+          replicaCount.set(replicas.size());
+        }
+      }
+      for (Iterator<Replica> it = joiners.iterator(); it.hasNext();) {
+        Replica joiner = it.next();
+        joiner.backlog.addAll(batch);
+        joiner.backlog.add(mark);
+        if (joiner.backlog.size() > QUEUE_CAPACITY) {
+          LOGGER.warning("replica " + joiner.socket.getRemoteSocketAddress()
+              + " fell behind while joining");
+          close(joiner);
+          it.remove();
+        }
+      }
+      batch.clear();
+      lastMark = mark.getTime();
+      if (replicas.isEmpty() && joiners.isEmpty() && stopReplicating()) {
+        // nobody to publish to until the next replica joins
+        discardQueued();
+      }
+    }
+    disconnectAll("primary closed");
+  }
+
+  /**
+   * Parks until something is queued, a replica joins or got its state, or the next mark is due.
+   * Without replicas there are no marks to send.
+   */
+  private void idle(long lastMark) {
+    sleeping = true;
+    if (queue.isEmpty() && joining.isEmpty() && !overflowed && !closed && !stateSent()) {
+      if (replicas.isEmpty() && joiners.isEmpty()) {
+        LockSupport.park(this);
+      } else {
+        long wait = lastMark + HEARTBEAT_MILLIS - System.currentTimeMillis();
+        if (wait > 0) {
+          LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+        }
+      }
+    }
+    sleeping = false;
+  }
+
+  private boolean stateSent() {
+    for (Replica joiner : joiners) {
+      if (joiner.stateSent || joiner.failed) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Starts sending the current state to a new replica, followed by a mark at the current position.
+   * The changes published from now on are held back until the state is sent.
+   */
+  private void join(Socket socket) {
+    Replica replica;
+    try {
+      replica = new Replica(socket);
+    } catch (IOException e) {
+      LOGGER.warning("replica " + socket.getRemoteSocketAddress() + " failed to join: "
+          + e.getMessage());
+      closeQuietly(socket);
+      return;
+    }
+    long sequence = published.get();
+    joiners.add(replica);
+    Thread sender = new Thread(() -> sendState(replica, sequence), "weather-replication-join");
+    sender.setDaemon(true);
+    sender.start();
+  }
+
+  private void sendState(Replica replica, long sequence) {
+    try {
+      PersistenceManager.writeState(airportService, replica.out);
+      replica.out.write(WalRecord.mark(sequence, System.currentTimeMillis()));
+      replica.out.flush();
+      replica.stateSent = true;
+    } catch (IOException e) {
+      LOGGER.warning("replica " + replica.socket.getRemoteSocketAddress() + " failed to join: "
+          + e.getMessage());
+      replica.failed = true;
+    }
+    wakePublisher();
+  }
+
+  /**
+   * Sends the replicas which got the state what was held back for them, they get every change from
+   * then on.
+   */
+  private void catchUp() {
+    for (Iterator<Replica> it = joiners.iterator(); it.hasNext();) {
+      Replica joiner = it.next();
+      if (joiner.failed) {
+        closeQuietly(joiner.socket);
+        it.remove();
+      } else if (joiner.stateSent) {
+        it.remove();
+        try {
+          for (WalRecord record : joiner.backlog) {
+            joiner.out.write(record);
+          }
+          joiner.out.flush();
+          joiner.backlog.clear();
+          replicas.add(joiner);
+          replicaCount.set(replicas.size());
+          LOGGER.info("replica " + joiner.socket.getRemoteSocketAddress() + " joined");
+        } catch (IOException e) {
+          LOGGER.warning("replica " + joiner.socket.getRemoteSocketAddress()
+              + " failed to join: " + e.getMessage());
+          closeQuietly(joiner.socket);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whether changes are no longer queued, false if a replica is joining meanwhile
+   */
+  private boolean stopReplicating() {
+    replicated = false;
+    if (!joining.isEmpty()) {
+      replicated = true;
+      return false;
+    }
+    return true;
+  }
+
+  private void discardQueued() {
+    int discarded = 0;
+    while (queue.poll() != null) {
+      discarded++;
+    }
+    pending.addAndGet(-discarded);
+  }
+
+  private void disconnectAll(String reason) {
+    if (!replicas.isEmpty() || !joiners.isEmpty()) {
+      LOGGER.warning("disconnecting " + (replicas.size() + joiners.size()) + " replicas: "
+          + reason);
+    }
+    for (Replica replica : replicas) {
+      close(replica);
+    }
+    replicas.clear();
+    // their senders fail on the closed sockets
+    for (Replica joiner : joiners) {
+      close(joiner);
+    }
+    joiners.clear();
+    replicaCount.set(0);
+    discardQueued();
+  }
+
+  private void close(Replica replica) {
+    closeQuietly(replica.socket);
+    dropped.incrementAndGet();
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // already gone
+    }
+  }
+
+  /**
+   * @return the role, the number of connected replicas, the number of changes published and the
+   *         number of replicas disconnected so far
+   */
+  @Override
+  public Map<String, Object> getStats() {
+    Map<String, Object> retval = new HashMap<String, Object>();
+    retval.put("role", "primary");
+    retval.put("replicas", replicaCount.get());
+    retval.put("sequence", published.get());
+    retval.put("dropped", dropped.get());
+    return retval;
+  }
+
+  /**
+   * Stops publishing and disconnects the replicas.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    airportService.removeListener(this);
+    LockSupport.unpark(publisher);
+    try {
+      serverSocket.close();
+    } catch (SocketException e) {
+      // the acceptor is unblocked either way
+    }
+    try {
+      publisher.join(TimeUnit.SECONDS.toMillis(1));
+      acceptor.join(TimeUnit.SECONDS.toMillis(1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
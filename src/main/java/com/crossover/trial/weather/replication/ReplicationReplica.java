@@ -0,0 +1,168 @@
+package com.crossover.trial.weather.replication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.persistence.WalRecord;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Keeps an airport service in step with a {@link ReplicationPrimary}, applying its changes in the
+ * order they were made. The service of a replica is only changed this way, the replica serves
+ * queries and no collect API.
+ *
+ * A replica reconnects whenever the connection is lost, without a mark from the primary for three
+ * heartbeats it considers the connection lost. On every connect it gets the whole state again,
+ * starting with a clear, so queries briefly see fewer airports while it catches up.
+ *
+ * Configured with -Dweather.replication.primary, the host:port of the primary.
+ */
+public class ReplicationReplica implements ReplicationNode {
+  public final static Logger LOGGER = Logger.getLogger(ReplicationReplica.class.getName());
+
+  /** how long to wait before reconnecting */
+  private static final long RETRY_MILLIS = 1000;
+
+  private final AirportService airportService;
+  private final InetSocketAddress primary;
+  private final Thread reader;
+
+  private volatile boolean closed;
+  private volatile Socket socket;
+  private volatile boolean connected;
+
+  /** the position of the last mark applied */
+  private volatile long sequence;
+
+  /** when the last mark was written by the primary and when it was applied here */
+  private volatile long markTime;
+  private volatile long appliedTime;
+  private volatile long connects;
+
+  public ReplicationReplica(AirportService airportService, InetSocketAddress primary) {
+    this.airportService = airportService;
+    this.primary = primary;
+    reader = new Thread(this::run, "weather-replica");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * @return whether the weather.replication properties configure a replica
+   */
+  public static boolean isConfigured() {
+    String address = System.getProperty("weather.replication.primary");
+    return address != null && !address.trim().isEmpty();
+  }
+
+  /**
+   * @return the replica configured by the weather.replication properties, null if none is
+   */
+  public static ReplicationReplica openConfigured(AirportService airportService) {
+    if (!isConfigured()) {
+      return null;
+    }
+    String address = System.getProperty("weather.replication.primary");
+    int colon = address.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("weather.replication.primary must be host:port, not "
+          + address);
+    }
+    return new ReplicationReplica(airportService, new InetSocketAddress(address.substring(0,
+        colon).trim(), Integer.parseInt(address.substring(colon + 1).trim())));
+  }
+
+  private void run() {
+    while (!closed) {
+      try (Socket connection = new Socket()) {
+        socket = connection;
+        connection.connect(primary, (int) RETRY_MILLIS);
+        connection.setSoTimeout((int) (3 * ReplicationPrimary.HEARTBEAT_MILLIS));
+        connected = true;
+        connects++;
+        LOGGER.info("replicating from " + primary);
+        apply(connection.getInputStream());
+        LOGGER.warning("the primary " + primary + " closed the connection");
+      } catch (IOException e) {
+        if (!closed) {
+          LOGGER.warning("replication from " + primary + " failed: " + e.getMessage());
+        }
+      } finally {
+        connected = false;
+      }
+      try {
+        Thread.sleep(RETRY_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void apply(InputStream in) throws IOException {
+    WalRecord.Reader records = new WalRecord.Reader(in);
+    WalRecord record;
+    while ((record = records.read()) != null) {
+      if (record.getType() == WalRecord.Type.MARK) {
+        markTime = record.getTime();
+        appliedTime = System.currentTimeMillis();
+        sequence = record.getSequence();
+      } else {
+        record.applyTo(airportService);
+      }
+    }
+  }
+
+  /**
+   * @return whether the replica is connected to the primary
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * @return the number of changes of the primary applied, as of the last mark
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return the role, the primary, whether connected, the sequence of the last mark applied, how
+   *         long after it was written it was applied (lagMillis) and how long ago that was
+   *         (lastContactMillis), -1 before the first mark
+   */
+  @Override
+  public Map<String, Object> getStats() {
+    Map<String, Object> retval = new HashMap<String, Object>();
+    retval.put("role", "replica");
+    retval.put("primary", primary.getHostString() + ":" + primary.getPort());
+    retval.put("connected", connected);
+    retval.put("connects", connects);
+    retval.put("sequence", sequence);
+    long applied = appliedTime;
+    retval.put("lagMillis", applied == 0 ? -1 : Math.max(0, applied - markTime));
+    retval.put("lastContactMillis", applied == 0 ? -1 : System.currentTimeMillis() - applied);
+    return retval;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    reader.interrupt();
+    Socket current = socket;
+    if (current != null) {
+      current.close();
+    }
+    try {
+      reader.join(TimeUnit.SECONDS.toMillis(1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package com.crossover.trial.weather.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * A compiled, read only airport catalog. The file is memory mapped and airports are read straight
+ * from the mapping, so opening it costs no parsing and the catalog stays off the heap.
+ *
+ * The file starts with a 16 byte header: magic, version, airport count and record size. Records
+ * follow sorted by iata code, each 24 bytes: the 3 byte iata code, the 4 byte icao code (zeros if
+ * unknown), a pad byte, then latitude and longitude as little endian doubles. Lookups are a binary
+ * search over the records.
+ *
+ * Compile airports.dat with {@code java com.crossover.trial.weather.service.AirportCatalog
+ * airports.dat airports.cat}, the server loads it with -Dweather.catalog=airports.cat.
+ */
+public class AirportCatalog {
+  private static final int MAGIC = 0x57414331;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int RECORD_SIZE = 24;
+  private static final int ICAO = 3;
+  private static final int LATITUDE = 8;
+  private static final int LONGITUDE = 16;
+
+  private final ByteBuffer records;
+  private final int size;
+
+  private AirportCatalog(ByteBuffer records, int size) {
+    this.records = records;
+    this.size = size;
+  }
+
+  /**
+   * Maps a compiled catalog.
+   *
+   * @throws IOException if the file can't be read or isn't a catalog
+   */
+  public static AirportCatalog open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      mapped.order(ByteOrder.LITTLE_ENDIAN);
+      if (mapped.capacity() < HEADER_SIZE || mapped.getInt(0) != MAGIC
+          || mapped.getInt(4) != VERSION || mapped.getInt(12) != RECORD_SIZE) {
+        throw new IOException(file + " is not an airport catalog");
+      }
+      int size = mapped.getInt(8);
+      if (size < 0 || mapped.capacity() != HEADER_SIZE + (long) size * RECORD_SIZE) {
+        throw new IOException(file + " is truncated");
+      }
+      mapped.position(HEADER_SIZE);
+      ByteBuffer records = mapped.slice().order(ByteOrder.LITTLE_ENDIAN);
+      return new AirportCatalog(records, size);
+    }
+  }
+
+  /**
+   * Opens the catalog configured by the weather.catalog property.
+   *
+   * @return the catalog, null if none is configured
+   */
+  public static AirportCatalog openConfigured() throws IOException {
+    String file = System.getProperty("weather.catalog");
+    if (file == null || file.isEmpty()) {
+      return null;
+    }
+    return open(Paths.get(file));
+  }
+
+  /**
+   * Adds every airport of the catalog to the service in one batch.
+   */
+  public void loadInto(AirportService airportService) {
+    List<AirportData> airports = new ArrayList<AirportData>(size);
+    forEach(airports::add);
+    airportService.addAirports(airports);
+  }
+
+  /**
+   * @return the number of airports
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the airport with the given iata code, null if there is none
+   */
+  public AirportData get(String iata) {
+    int index = indexOf(iata);
+    return index < 0 ? null : get(index);
+  }
+
+  /**
+   * @return the icao code of the airport with the given iata code, null if it or the code is
+   *         unknown
+   */
+  public String getIcao(String iata) {
+    int index = indexOf(iata);
+    if (index < 0) {
+      return null;
+    }
+    int offset = index * RECORD_SIZE + ICAO;
+    if (records.get(offset) == 0) {
+      return null;
+    }
+    return ascii(offset, 4);
+  }
+
+  /**
+   * Visits every airport in iata code order.
+   */
+  public void forEach(Consumer<AirportData> action) {
+    for (int i = 0; i < size; i++) {
+      action.accept(get(i));
+    }
+  }
+
+  private AirportData get(int index) {
+    int offset = index * RECORD_SIZE;
+    return new AirportData(ascii(offset, 3), records.getDouble(offset + LATITUDE),
+        records.getDouble(offset + LONGITUDE));
+  }
+
+  private String ascii(int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = records.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * @return the record index of the iata code, negative if it isn't in the catalog
+   */
+  private int indexOf(String iata) {
+    if (iata == null || iata.length() != 3) {
+      return -1;
+    }
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int offset = middle * RECORD_SIZE;
+      int compare = 0;
+      for (int i = 0; i < 3 && compare == 0; i++) {
+        compare = (records.get(offset + i) & 0xff) - iata.charAt(i);
+      }
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Compiles an airports.dat file into a catalog. Lines without a 3 letter iata code are skipped,
+   * for a duplicate code the last line wins.
+   *
+   * @return the number of airports in the catalog
+   */
+  public static int compile(Path airportsDat, Path catalog) throws IOException {
+    TreeMap<String, Entry> airports = new TreeMap<String, Entry>();
+    try (InputStream in = Files.newInputStream(airportsDat)) {
+      AirportCsvParser parser = new AirportCsvParser(in);
+      while (parser.next()) {
+        AirportData airport = parser.getAirport();
+        if (airport != null && isCode(airport.getIata(), 3)) {
+          airports.put(airport.getIata(), new Entry(airport, parser.getIcao()));
+        }
+      }
+    }
+    ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER_SIZE + airports.size() * RECORD_SIZE).order(
+            ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(airports.size()).putInt(RECORD_SIZE);
+    for (Entry entry : airports.values()) {
+      buffer.put(entry.airport.getIata().getBytes(StandardCharsets.US_ASCII));
+      buffer.put(isCode(entry.icao, 4) ? entry.icao.getBytes(StandardCharsets.US_ASCII)
+          : new byte[4]);
+      buffer.put((byte) 0);
+      buffer.putDouble(entry.airport.getLatitude());
+      buffer.putDouble(entry.airport.getLongitude());
+    }
+    buffer.flip();
+    Path temporary = catalog.resolveSibling(catalog.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(temporary, catalog, StandardCopyOption.REPLACE_EXISTING);
+    return airports.size();
+  }
+
+  private static class Entry {
+    final AirportData airport;
+    final String icao;
+
+    Entry(AirportData airport, String icao) {
+      this.airport = airport;
+      this.icao = icao;
+    }
+  }
+
+  private static boolean isCode(String code, int length) {
+    if (code == null || code.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = code.charAt(i);
+      if (c < '0' || c > 'Z' || (c > '9' && c < 'A')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static void main(String args[]) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: AirportCatalog <airports.dat> <catalog>");
+      System.exit(1);
+    }
+    int size = compile(Paths.get(args[0]), Paths.get(args[1]));
+    System.out.println(size + " airports written to " + args[1]);
+  }
+}
@@ -0,0 +1,265 @@
+package com.crossover.trial.weather.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Reads airports.dat lines straight from the bytes of a stream. Each line is scanned once, only up
+ * to the longitude column, and only the start and end of the columns are recorded: nothing is
+ * materialized until {@link #getAirport()} or {@link #getIcao()} asks for it.
+ *
+ * Fields in double quotes may contain commas, a quote inside them is either doubled or escaped with
+ * a backslash. A line always ends at a newline, even inside quotes, so one broken line can't take
+ * the rest of the file with it. Unknown values are empty or \N, as in the OpenFlights data.
+ */
+public class AirportCsvParser {
+  private static final int IATA = 4;
+  private static final int ICAO = 5;
+  private static final int LATITUDE = 6;
+  private static final int LONGITUDE = 7;
+  private static final int COLUMNS = LONGITUDE + 1;
+
+  /** doubles below 2^53 divided by these are exact, so they round as Double.parseDouble does */
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+      1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+  private static final long MAX_EXACT = 1L << 53;
+
+  private final InputStream in;
+  private byte[] buffer;
+  private int position;
+  private int limit;
+  private boolean eof;
+
+  /** the current line, without its line terminator */
+  private int lineStart;
+  private int lineEnd;
+
+  /** the bounds of the columns of the current line, quotes excluded */
+  private final int[] starts = new int[COLUMNS];
+  private final int[] ends = new int[COLUMNS];
+  private int columns;
+
+  public AirportCsvParser(InputStream in) {
+    this.in = in;
+    this.buffer = new byte[1 << 16];
+  }
+
+  private AirportCsvParser(byte[] line) {
+    this.in = null;
+    this.buffer = line;
+    this.limit = line.length;
+    this.eof = true;
+  }
+
+  /**
+   * Parses a single airports.dat line.
+   *
+   * @return the airport or null if the line has no iata code or position
+   */
+  public static AirportData parseLine(String line) {
+    AirportCsvParser parser = new AirportCsvParser(line.getBytes(StandardCharsets.UTF_8));
+    try {
+      return parser.next() ? parser.getAirport() : null;
+    } catch (IOException e) {
+      // there is no stream to fail
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Moves to the next line.
+   *
+   * @return false at the end of the stream
+   */
+  public boolean next() throws IOException {
+    int scan = position;
+    while (true) {
+      while (scan < limit && buffer[scan] != '\n') {
+        scan++;
+      }
+      if (scan < limit) {
+        break;
+      }
+      if (eof) {
+        if (position == limit) {
+          return false;
+        }
+        // the last line has no newline
+        break;
+      }
+      scan -= position;
+      fill();
+    }
+    lineStart = position;
+    lineEnd = scan;
+    position = scan < limit ? scan + 1 : scan;
+    if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+      lineEnd--;
+    }
+    split();
+    return true;
+  }
+
+  /**
+   * Reads more of the stream behind the unread bytes, which are moved to the start of the buffer.
+   */
+  private void fill() throws IOException {
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+    if (limit == buffer.length) {
+      // a line longer than the buffer
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    int read = in.read(buffer, limit, buffer.length - limit);
+    if (read < 0) {
+      eof = true;
+    } else {
+      limit += read;
+    }
+  }
+
+  private void split() {
+    columns = 0;
+    int i = lineStart;
+    while (columns < COLUMNS) {
+      int start;
+      int end;
+      if (i < lineEnd && buffer[i] == '"') {
+        start = ++i;
+        while (i < lineEnd) {
+          byte b = buffer[i];
+          if ((b == '\\' || b == '"') && i + 1 < lineEnd && buffer[i + 1] == '"') {
+            i += 2;
+          } else if (b == '"') {
+            break;
+          } else {
+            i++;
+          }
+        }
+        end = i;
+        // whatever follows the closing quote up to the comma is dropped
+        while (i < lineEnd && buffer[i] != ',') {
+          i++;
+        }
+      } else {
+        start = i;
+        while (i < lineEnd && buffer[i] != ',') {
+          i++;
+        }
+        end = i;
+      }
+      starts[columns] = start;
+      ends[columns] = end;
+      columns++;
+      if (i >= lineEnd) {
+        break;
+      }
+      i++;
+    }
+  }
+
+  /**
+   * @return the airport on the current line, null if it has no iata code or position
+   */
+  public AirportData getAirport() {
+    String iata = getString(IATA);
+    if (iata == null || columns <= LONGITUDE) {
+      return null;
+    }
+    double latitude = getDouble(LATITUDE);
+    double longitude = getDouble(LONGITUDE);
+    if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+      return null;
+    }
+    return new AirportData(iata, latitude, longitude);
+  }
+
+  /**
+   * @return the icao code on the current line, null if it is unknown
+   */
+  public String getIcao() {
+    return getString(ICAO);
+  }
+
+  /**
+   * @return the whole current line
+   */
+  public String getLine() {
+    return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the value of a column, null if it is missing, empty or \N
+   */
+  private String getString(int column) {
+    if (column >= columns) {
+      return null;
+    }
+    int start = starts[column];
+    int length = ends[column] - start;
+    if (length == 0 || (length == 2 && buffer[start] == '\\' && buffer[start + 1] == 'N')) {
+      return null;
+    }
+    return new String(buffer, start, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses plain decimals like 42.364347 without creating a string, anything else goes through
+   * Double.parseDouble.
+   *
+   * @return the value of a column, NaN if it isn't a number
+   */
+  private double getDouble(int column) {
+    int start = starts[column];
+    int end = ends[column];
+    int i = start;
+    boolean negative = false;
+    if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+      negative = buffer[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int fractionDigits = 0;
+    boolean digits = false;
+    boolean point = false;
+    for (; i < end; i++) {
+      byte b = buffer[i];
+      if (b >= '0' && b <= '9') {
+        if (mantissa >= MAX_EXACT) {
+          return parseDouble(start, end);
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        digits = true;
+        if (point) {
+          fractionDigits++;
+        }
+      } else if (b == '.' && !point) {
+        point = true;
+      } else {
+        return parseDouble(start, end);
+      }
+    }
+    if (!digits || mantissa >= MAX_EXACT || fractionDigits >= POWERS_OF_TEN.length) {
+      return parseDouble(start, end);
+    }
+    double value = mantissa / POWERS_OF_TEN[fractionDigits];
+    return negative ? -value : value;
+  }
+
+  private double parseDouble(int start, int end) {
+    try {
+      return Double.parseDouble(new String(buffer, start, end - start,
+          StandardCharsets.ISO_8859_1));
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+}
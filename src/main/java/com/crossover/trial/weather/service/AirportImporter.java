@@ -0,0 +1,369 @@
+package com.crossover.trial.weather.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Imports several airports.dat files at once. Every file is cut in chunks which end at a line
+ * boundary, the chunks of all files are parsed in parallel on a fork join pool and the results are
+ * merged in file and line order.
+ *
+ * An iata code found more than once is a conflict: the later occurrence replaces the earlier one,
+ * so a file listed later overrides the ones before it, and the conflict is reported in the
+ * {@link Result}. So is an imported airport replacing one the service already holds.
+ *
+ * The server imports the comma separated files of the weather.airports property at startup.
+ */
+public class AirportImporter {
+  public final static Logger LOGGER = Logger.getLogger(AirportImporter.class.getName());
+
+  /** the default chunk size, big enough to keep the task overhead negligible */
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  /** how many conflicts are logged individually */
+  private static final int LOGGED_CONFLICTS = 10;
+
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+
+  public AirportImporter() {
+    this(ForkJoinPool.commonPool(), CHUNK_SIZE);
+  }
+
+  /**
+   * @param pool parses the chunks
+   * @param chunkSize the approximate number of bytes parsed by a task
+   */
+  public AirportImporter(ForkJoinPool pool, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunk size must be positive");
+    }
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * An iata code found twice.
+   */
+  public static class Conflict {
+    private final String iata;
+    private final Path replacedFile;
+    private final AirportData replaced;
+    private final Path file;
+    private final AirportData airport;
+
+    Conflict(Path replacedFile, AirportData replaced, Path file, AirportData airport) {
+      this.iata = airport.getIata();
+      this.replacedFile = replacedFile;
+      this.replaced = replaced;
+      this.file = file;
+      this.airport = airport;
+    }
+
+    public String getIata() {
+      return iata;
+    }
+
+    /** @return the file of the occurrence which was dropped, null if the service held it */
+    public Path getReplacedFile() {
+      return replacedFile;
+    }
+
+    public AirportData getReplaced() {
+      return replaced;
+    }
+
+    /** @return the file of the occurrence which was kept */
+    public Path getFile() {
+      return file;
+    }
+
+    public AirportData getAirport() {
+      return airport;
+    }
+
+    @Override
+    public String toString() {
+      return iata + " in " + file + " replaces " + replaced + " from "
+          + (replacedFile == null ? "the airport service" : replacedFile);
+    }
+  }
+
+  /**
+   * The merged airports of an import.
+   */
+  public static class Result {
+    private final List<AirportData> airports;
+    private final int rejected;
+    private final List<Conflict> conflicts;
+
+    Result(List<AirportData> airports, int rejected, List<Conflict> conflicts) {
+      this.airports = airports;
+      this.rejected = rejected;
+      this.conflicts = conflicts;
+    }
+
+    /** @return the airports, one per iata code, in the order they were first found */
+    public List<AirportData> getAirports() {
+      return airports;
+    }
+
+    /** @return the number of lines which weren't airports */
+    public int getRejected() {
+      return rejected;
+    }
+
+    public List<Conflict> getConflicts() {
+      return conflicts;
+    }
+  }
+
+  /**
+   * A part of a file which starts at the beginning of a line and ends after a newline or at the end
+   * of the file.
+   */
+  private static class Chunk {
+    final int file;
+    final long start;
+    final long end;
+    List<AirportData> airports;
+    int rejected;
+
+    Chunk(int file, long start, long end) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * Imports the files configured by the weather.airports property.
+   *
+   * @return the result, null if no files are configured
+   */
+  public static Result importConfigured(AirportService airportService) throws IOException {
+    String files = System.getProperty("weather.airports");
+    if (files == null || files.trim().isEmpty()) {
+      return null;
+    }
+    List<Path> paths = new ArrayList<Path>();
+    for (String file : files.split(",")) {
+      paths.add(Paths.get(file.trim()));
+    }
+    return new AirportImporter().importFiles(paths, airportService);
+  }
+
+  /**
+   * Reads the files and adds the airports to the service in one batch.
+   */
+  public Result importFiles(List<Path> files, AirportService airportService) throws IOException {
+    long started = System.currentTimeMillis();
+    Result result = read(files, airportService);
+    airportService.addAirports(result.getAirports());
+    LOGGER.info("imported " + result.getAirports().size() + " airports from " + files.size()
+        + " files in " + (System.currentTimeMillis() - started) + " ms, " + result.getRejected()
+        + " lines rejected, " + result.getConflicts().size() + " conflicts");
+    return result;
+  }
+
+  /**
+   * Reads and merges the files without adding them anywhere.
+   */
+  public Result read(List<Path> files) throws IOException {
+    return read(files, null);
+  }
+
+  /**
+   * Reads and merges the files without adding them anywhere, reporting the airports which would
+   * replace one of the service as conflicts as well.
+   *
+   * @param airportService the service the airports are meant for, null for none
+   */
+  public Result read(List<Path> files, AirportService airportService) throws IOException {
+    List<FileChannel> channels = new ArrayList<FileChannel>(files.size());
+    try {
+      List<Chunk> chunks = new ArrayList<Chunk>();
+      for (int i = 0; i < files.size(); i++) {
+        FileChannel channel = FileChannel.open(files.get(i), StandardOpenOption.READ);
+        channels.add(channel);
+        split(i, channel, chunks);
+      }
+      try {
+        pool.invoke(new ParseTask(channels, chunks, 0, chunks.size()));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      return merge(files, chunks, airportService);
+    } finally {
+      for (FileChannel channel : channels) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Cuts a file in chunks of about the chunk size, each one extended to the end of its last line.
+   */
+  private void split(int file, FileChannel channel, List<Chunk> chunks) throws IOException {
+    long size = channel.size();
+    long start = 0;
+    while (start < size) {
+      long end = start + chunkSize >= size ? size : lineEnd(channel, start + chunkSize, size);
+      chunks.add(new Chunk(file, start, end));
+      start = end;
+    }
+  }
+
+  /**
+   * @return the position after the first newline at or after the given position, or the size
+   */
+  private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Parses a range of chunks, splitting it until a task is left with a single chunk.
+   */
+  private static class ParseTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<FileChannel> channels;
+    private final List<Chunk> chunks;
+    private final int from;
+    private final int to;
+
+    ParseTask(List<FileChannel> channels, List<Chunk> chunks, int from, int to) {
+      this.channels = channels;
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ParseTask(channels, chunks, from, middle), new ParseTask(channels, chunks,
+            middle, to));
+        return;
+      }
+      if (from < to) {
+        try {
+          parse(channels.get(chunks.get(from).file), chunks.get(from));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  private static void parse(FileChannel channel, Chunk chunk) throws IOException {
+    ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end
+        - chunk.start);
+    AirportCsvParser parser = new AirportCsvParser(new ByteBufferInputStream(bytes));
+    List<AirportData> airports = new ArrayList<AirportData>();
+    int rejected = 0;
+    while (parser.next()) {
+      AirportData airport = parser.getAirport();
+      if (airport == null) {
+        rejected++;
+      } else {
+        airports.add(airport);
+      }
+    }
+    chunk.airports = airports;
+    chunk.rejected = rejected;
+  }
+
+  private static Result merge(List<Path> files, List<Chunk> chunks,
+      AirportService airportService) {
+    Map<String, AirportData> airports = new LinkedHashMap<String, AirportData>();
+    Map<String, Integer> fileOf = new HashMap<String, Integer>();
+    List<Conflict> conflicts = new ArrayList<Conflict>();
+    int rejected = 0;
+    for (Chunk chunk : chunks) {
+      rejected += chunk.rejected;
+      for (AirportData airport : chunk.airports) {
+        AirportData replaced = airports.put(airport.getIata(), airport);
+        Integer replacedFile = fileOf.put(airport.getIata(), chunk.file);
+        Conflict conflict = null;
+        if (replaced != null) {
+          conflict =
+              new Conflict(files.get(replacedFile), replaced, files.get(chunk.file), airport);
+        } else if (airportService != null) {
+          Airport existing = airportService.getAirport(airport.getIata());
+          if (existing != null) {
+            conflict =
+                new Conflict(null, existing.getAirportData(), files.get(chunk.file), airport);
+          }
+        }
+        if (conflict != null) {
+          if (conflicts.size() < LOGGED_CONFLICTS) {
+            LOGGER.warning("duplicate airport: " + conflict);
+          }
+          conflicts.add(conflict);
+        }
+      }
+    }
+    return new Result(new ArrayList<AirportData>(airports.values()), rejected,
+        Collections.unmodifiableList(conflicts));
+  }
+
+  /**
+   * Reads a mapped chunk through the stream based parser.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer bytes;
+
+    ByteBufferInputStream(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int read() {
+      return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (!bytes.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(length, bytes.remaining());
+      bytes.get(buffer, offset, read);
+      return read;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.crossover.trial.weather.service;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+/**
+ * Notified of changes made through the {@link AirportService}, after they were applied and on the
+ * thread which made them, so implementations must be quick and thread safe. The changes of an
+ * airport code are reported in the order they were applied, under a lock of the code, changes of
+ * different codes may be reported concurrently. A clear or a batch add holds every code.
+ */
+public interface AirportListener {
+
+  /**
+   * An airport was added. If it replaced an airport with the same iata code
+   * {@link #airportRemoved(Airport)} was called for that one first.
+   */
+  default void airportAdded(Airport airport) {}
+
+  default void airportRemoved(Airport airport) {}
+
+  default void airportsCleared() {}
+
+  /**
+   * A data point was collected for an airport.
+   *
+   * @param airport the updated airport
+   * @param dataPointType the type of the collected data point
+   * @param dataPoint the collected data point, current doesn't hold it if it was out of range
+   * @param previous the atmospheric information before the update
+   * @param current the atmospheric information published by the update
+   */
+  default void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+      DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {}
+}
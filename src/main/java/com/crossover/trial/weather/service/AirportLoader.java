@@ -1,21 +1,27 @@
 package com.crossover.trial.weather.service;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 
 import com.crossover.trial.weather.model.AirportData;
 
 /**
- * A simple airport loader which reads a file from disk and sends entries to the webservice
+ * A simple airport loader which reads a file from disk and streams it to the webservice's bulk
+ * airport endpoint
  *
  * @author code test administrator
  */
@@ -28,7 +34,10 @@ public class AirportLoader {
   private WebTarget collect;
 
   public AirportLoader() {
-    Client client = ClientBuilder.newClient();
+    // stream the upload rather than buffering the whole file to compute a content length
+    Client client =
+        ClientBuilder.newClient(new ClientConfig().property(
+            ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED));
     query = client.target("http://localhost:9090/query");
     collect = client.target("http://localhost:9090/collect");
   }
@@ -42,53 +51,51 @@ public class AirportLoader {
   }
 
   public static List<AirportData> readData(String fileName) throws Exception {
-    FileInputStream airportDataStream = null;
-    try {
-      URL url = AirportLoader.class.getResource("/" + fileName);
-      File airportDataFile = new File(url.toURI());
-      if (!airportDataFile.exists() || airportDataFile.length() == 0) {
-        System.err.println(airportDataFile + " is not a valid input");
-        System.exit(1);
-      }
-      airportDataStream = new FileInputStream(airportDataFile);
-      BufferedReader reader = new BufferedReader(new InputStreamReader(airportDataStream));
-      String l = null;
+    try (InputStream airportDataStream = new FileInputStream(findFile(fileName))) {
+      AirportCsvParser parser = new AirportCsvParser(airportDataStream);
       List<AirportData> data = new ArrayList<AirportData>();
-      while ((l = reader.readLine()) != null) {
-        String[] split = l.split(",");
-        String iata = (String) split[4].subSequence(1, split[4].length() - 1);
-        String latitude = split[6];
-        String longitude = split[7];
-        AirportData airport = new AirportData();
-        airport.setIata(iata);
-        airport.setLatitude(Double.parseDouble(latitude));
-        airport.setLongitude(Double.parseDouble(longitude));
-        data.add(airport);
+      while (parser.next()) {
+        AirportData airport = parser.getAirport();
+        if (airport != null) {
+          data.add(airport);
+        }
       }
       return data;
-    } catch (Exception e) {
-      throw e;
-    } finally {
-      if (airportDataStream != null) {
-        airportDataStream.close();
-      }
     }
   }
 
+  /**
+   * Parses a line of airports.dat.
+   *
+   * @param line a comma separated line, the iata code is the quoted 5th column, latitude and
+   *        longitude are the 7th and 8th
+   * @return the airport or null if the line has no iata code or position
+   * @see AirportCsvParser
+   */
+  public static AirportData parseLine(String line) {
+    return AirportCsvParser.parseLine(line);
+  }
+
+  private static File findFile(String fileName) throws Exception {
+    URL url = AirportLoader.class.getResource("/" + fileName);
+    File airportDataFile = url == null ? new File(fileName) : new File(url.toURI());
+    if (!airportDataFile.exists() || airportDataFile.length() == 0) {
+      System.err.println(airportDataFile + " is not a valid input");
+      System.exit(1);
+    }
+    return airportDataFile;
+  }
+
+  /**
+   * Streams the file to the bulk airport endpoint in a single request.
+   *
+   * @param fileName an airports.dat file on the classpath or the file system
+   */
   public void upload(String fileName) throws Exception {
-    try {
-      List<AirportData> data = readData(fileName);
-      for (AirportData airportData : data) {
-        StringBuilder pathString = new StringBuilder();
-        pathString.append("/airport/");
-        pathString.append(airportData.getIata());
-        pathString.append("/");
-        pathString.append(airportData.getLatitude());
-        pathString.append("/");
-        pathString.append(airportData.getLongitude());
-        WebTarget collectTarget = collect.path(pathString.toString());
-        collectTarget.request().post(null);
-      }
+    try (InputStream airportDataStream = new FileInputStream(findFile(fileName))) {
+      Response response =
+          collect.path("/airports").request().post(Entity.entity(airportDataStream, "text/csv"));
+      System.out.println("airports uploaded: " + response.readEntity(String.class));
     } catch (Exception e) {
       throw new IllegalStateException("Could not upload airport data to webservice", e);
     }
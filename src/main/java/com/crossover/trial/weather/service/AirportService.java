@@ -1,29 +1,108 @@
 package com.crossover.trial.weather.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import com.crossover.trial.weather.model.Airport;
 import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportWeather;
+import com.crossover.trial.weather.model.AirportWeatherPage;
 import com.crossover.trial.weather.model.AtmosphericInformation;
 import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointHistory;
+import com.crossover.trial.weather.model.DataPointReading;
 import com.crossover.trial.weather.model.DataPointType;
 import com.crossover.trial.weather.model.WeatherException;
+import com.crossover.trial.weather.model.WeatherTile;
 
 public class AirportService {
   public final double earthRadius = 6372.8;
-  private Map<String, Airport> airportMap;
+
+  /**
+   * the known airports, an {@link IndexedAirportStore} unless -Dweather.airportStore=array selects
+   * the {@link ArrayAirportStore}
+   */
+  private final AirportStore airportStore;
+
+  /** the airports with data updated in the last day, maintained on update for a cheap datasize */
+  private final FreshnessTracker freshness = new FreshnessTracker();
+
+  /**
+   * the number of readings kept per airport and data point type, 0 disables the history. Memory is
+   * bounded by airports x types x capacity x 32 bytes.
+   */
+  private final int historyCapacity = Integer.getInteger("weather.history.capacity", 288);
+
+  /** how long readings are kept in the history, in milliseconds */
+  private final long historyRetention = Long.getLong("weather.history.retention", 86400000L);
+
+  /**
+   * sorted neighbor lists for radius queries up to the largest of the -Dweather.neighborTiers
+   * radii, e.g. 50,100,250,500, null if none are configured
+   */
+  private final NeighborIndex neighbors;
+
+  /**
+   * the weather summed up per tile at the zoom levels of -Dweather.tiles.zoomLevels, e.g. 2,4,6 for
+   * tiles of 90 x 45 degrees down to 5.6 x 2.8 degrees, null if none are configured
+   */
+  private final TileGrid tiles;
+
+  private final List<AirportListener> listeners = new CopyOnWriteArrayList<AirportListener>();
+
+  /**
+   * serialize the changes of an airport code with the notification of the listeners, so listeners
+   * see the changes of an airport in the order they were applied, see {@link #lockOf(String)}
+   */
+  private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+  /** the number of locks the airport codes are spread over */
+  private static final int LOCK_STRIPES = 256;
+
+  /** the smallest radius of the first search for the nearest airports, in km */
+  private static final double NEAREST_MIN_RADIUS = 10;
+
+  /** the order of area query results, ties broken by iata code so that pages don't overlap */
+  private static final Comparator<AirportWeather> BY_DISTANCE = Comparator.comparingDouble(
+      AirportWeather::getDistance).thenComparing(AirportWeather::getIata);
 
   private static class InstanceHolder {
     public static AirportService INSTANCE = new AirportService();
   }
 
-  private AirportService() {
-    airportMap = new ConcurrentHashMap<String, Airport>();
+  /**
+   * A service of its own, configured by the same system properties as the shared one. Most code
+   * uses {@link #getInstance()}, shard nodes running in the same JVM each have their own.
+   */
+  public AirportService() {
+    if ("array".equals(System.getProperty("weather.airportStore"))) {
+      airportStore = new ArrayAirportStore(earthRadius);
+    } else {
+      airportStore =
+          new IndexedAirportStore(Double.parseDouble(System.getProperty(
+              "weather.index.cellDegrees", String.valueOf(SpatialIndex.DEFAULT_CELL_DEGREES))),
+              earthRadius);
+    }
+    double[] tiers = NeighborIndex.parseTiers(System.getProperty("weather.neighborTiers"));
+    neighbors = tiers == null ? null : new NeighborIndex(airportStore, earthRadius, tiers);
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+    int[] zoomLevels = TileGrid.parseZoomLevels(System.getProperty("weather.tiles.zoomLevels"));
+    tiles = zoomLevels == null ? null : new TileGrid(zoomLevels, airportStore);
+    if (tiles != null) {
+      listeners.add(tiles);
+    }
   }
 
   public static AirportService getInstance() {
@@ -40,31 +119,142 @@ public class AirportService {
    * @return the added airport
    */
   public void addAirport(String iataCode, double latitude, double longitude) {
+    Airport airport = newAirport(new AirportData(iataCode, latitude, longitude));
+    ReentrantLock lock = lockOf(iataCode);
+    lock.lock();
+    try {
+      Airport replaced = airportStore.put(airport);
+      if (neighbors != null) {
+        neighbors.add(Collections.singletonList(airport));
+      }
+      // re-adding an airport starts it over without data
+      freshness.remove(iataCode);
+      if (replaced != null) {
+        listeners.forEach(listener -> listener.airportRemoved(replaced));
+      }
+      listeners.forEach(listener -> listener.airportAdded(airport));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add a batch of new known airports, cheaper than adding them one by one.
+   *
+   * @param airports the airports to add
+   */
+  public void addAirports(Collection<AirportData> airports) {
+    List<Airport> batch = new ArrayList<Airport>(airports.size());
+    for (AirportData airportData : airports) {
+      batch.add(newAirport(airportData));
+    }
+    lockAll();
+    try {
+      List<Airport> replaced = airportStore.putAll(batch);
+      if (neighbors != null) {
+        neighbors.add(batch);
+      }
+      for (AirportData airportData : airports) {
+        freshness.remove(airportData.getIata());
+      }
+      for (AirportListener listener : listeners) {
+        replaced.forEach(listener::airportRemoved);
+        batch.forEach(listener::airportAdded);
+      }
+    } finally {
+      unlockAll();
+    }
+  }
+
+  private Airport newAirport(AirportData airportData) {
     Airport airport = new Airport();
-    airport.setAirportData(new AirportData(iataCode, latitude, longitude));
+    airport.setAirportData(airportData);
     airport.setAtmosphericInformation(new AtmosphericInformation());
-    airportMap.put(iataCode, airport);
+    return airport;
   }
 
   public Airport getAirport(String iata) {
-    return airportMap.get(iata);
+    return airportStore.get(iata);
   }
 
   public Set<String> getAllAirports() {
-    return airportMap.keySet();
+    return airportStore.codes();
+  }
+
+  /**
+   * @return the number of known airports
+   */
+  public int getAirportCount() {
+    return airportStore.size();
   }
 
   /**
-   * Deletes the airport from the airportMap
+   * Deletes the airport from the airport store
    * 
    * @param iata
    */
   public void removeAirport(String iata) {
-    airportMap.remove(iata);
+    ReentrantLock lock = lockOf(iata);
+    lock.lock();
+    try {
+      Airport removed = airportStore.remove(iata);
+      freshness.remove(iata);
+      if (removed != null) {
+        if (neighbors != null) {
+          neighbors.remove(removed);
+        }
+        listeners.forEach(listener -> listener.airportRemoved(removed));
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   public void clearAirports() {
-    airportMap.clear();
+    lockAll();
+    try {
+      airportStore.clear();
+      if (neighbors != null) {
+        neighbors.clear();
+      }
+      freshness.clear();
+      listeners.forEach(AirportListener::airportsCleared);
+    } finally {
+      unlockAll();
+    }
+  }
+
+  private ReentrantLock lockOf(String iata) {
+    int hash = iata.hashCode() * 0x9E3779B9;
+    return locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+  }
+
+  /** locks every airport code, for the changes of many airports at once */
+  private void lockAll() {
+    for (ReentrantLock lock : locks) {
+      lock.lock();
+    }
+  }
+
+  private void unlockAll() {
+    for (int i = locks.length - 1; i >= 0; i--) {
+      locks[i].unlock();
+    }
+  }
+
+  /**
+   * Visits every known airport.
+   */
+  public void forEachAirport(Consumer<Airport> action) {
+    airportStore.forEach(action);
+  }
+
+  public void addListener(AirportListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(AirportListener listener) {
+    listeners.remove(listener);
   }
 
   /**
@@ -80,13 +270,65 @@ public class AirportService {
     if (airport != null) {
       try {
         DataPointType dptype = DataPointType.valueOf(pointType.toUpperCase());
-        airport.getAtmosphericInformation().setDataPoint(dptype, dp);
+        update(airport, dptype, dp, System.currentTimeMillis());
       } catch (Exception e) {
         throw new IllegalStateException("couldn't update atmospheric data");
       }
     }
   }
 
+  /**
+   * update atmospheric information as of the given time, used to restore collected data
+   *
+   * @param iataCode the airport whose atmospheric information object to update
+   * @param dataPointType the data point type
+   * @param dp the actual data point
+   * @param updateTime when the data point was collected, in milliseconds since UTC epoch
+   */
+  public void updateAtmosphericInformation(String iataCode, DataPointType dataPointType,
+      DataPoint dp, long updateTime) {
+    Airport airport = getAirport(iataCode);
+    if (airport != null) {
+      update(airport, dataPointType, dp, updateTime);
+    }
+  }
+
+  /**
+   * Applies the update under the lock of the airport code, so it is reported to the listeners, the
+   * write-ahead log among them, in the order updates, adds and removes of the airport were applied.
+   */
+  private void update(Airport airport, DataPointType dptype, DataPoint dp, long updateTime) {
+    String iataCode = airport.getAirportData().getIata();
+    ReentrantLock lock = lockOf(iataCode);
+    lock.lock();
+    try {
+      if (airportStore.get(iataCode) != airport) {
+        // removed or replaced before we got the lock, the update is lost with the airport
+        return;
+      }
+      AtmosphericInformation previous = airport.getAtmosphericInformation();
+      AtmosphericInformation ai = previous.withDataPoint(dptype, dp, updateTime);
+      airport.setAtmosphericInformation(ai);
+
+      // the snapshot keeps a copy of an accepted data point, pass on that one rather than the
+      // caller's, which it may still change
+      DataPoint applied = ai.getDataPoint(dptype);
+      if (applied == previous.getDataPoint(dptype)) {
+        applied = dp.copy();
+      } else if (historyCapacity > 0) {
+        airport.getOrCreateHistory(dptype, historyCapacity).add(updateTime, applied);
+      }
+      if (ai.hasAtleastOneNotNullField()) {
+        freshness.update(iataCode, updateTime);
+      }
+      for (AirportListener listener : listeners) {
+        listener.atmosphericInformationUpdated(airport, dptype, applied, previous, ai);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
   /**
    * 
    * Generates AtmosphericInformation for the requested IATA code and the airports within
@@ -98,7 +340,7 @@ public class AirportService {
    */
   public List<AtmosphericInformation> getWeatherWithinRadius(String iata, double radius) {
     List<AtmosphericInformation> retval = new ArrayList<AtmosphericInformation>();
-    Airport airport = airportMap.get(iata);
+    Airport airport = airportStore.get(iata);
     if (airport == null) {
       return retval;
     }
@@ -106,52 +348,293 @@ public class AirportService {
       retval.add(airport.getAtmosphericInformation());
       return retval;
     }
-    AirportData airportData = airport.getAirportData();
-    for (Entry<String, Airport> entry : airportMap.entrySet()) {
-      Airport targetAirport = entry.getValue();
-      double distance = calculateDistance(airportData, targetAirport.getAirportData());
-      if (distance <= radius) {
-        AtmosphericInformation ai = targetAirport.getAtmosphericInformation();
-        if (ai.hasAtleastOneNotNullField()) {
-          retval.add(ai);
-        }
+    forEachAirportWithinRadius(airport, radius, targetAirport -> {
+      AtmosphericInformation ai = targetAirport.getAtmosphericInformation();
+      if (ai.hasAtleastOneNotNullField()) {
+        retval.add(ai);
       }
+    });
+    return retval;
+  }
+
+  /**
+   * The atmospheric information of the airports within the radius of a point which have data.
+   *
+   * @param latitude the latitude of the point in degrees
+   * @param longitude the longitude of the point in degrees
+   * @param radius the distance in km
+   */
+  public List<AtmosphericInformation> getWeatherWithinRadius(double latitude, double longitude,
+      double radius) {
+    List<AtmosphericInformation> retval = new ArrayList<AtmosphericInformation>();
+    airportStore.forEachWithinRadius(latitude, longitude, radius, airport -> {
+      AtmosphericInformation ai = airport.getAtmosphericInformation();
+      if (ai.hasAtleastOneNotNullField()) {
+        retval.add(ai);
+      }
+    });
+    return retval;
+  }
+
+  /**
+   * Sums up the data points of the airports the radius query of the given one returns, per data
+   * point type in a single pass without collecting them.
+   *
+   * @param iata the three letter airport code
+   * @param radius the distance in km, 0 for the airport alone
+   * @return an aggregate for each data point type, null if the airport is unknown
+   */
+  public List<DataPointAggregate> getAggregateWithinRadius(String iata, double radius) {
+    Airport airport = airportStore.get(iata);
+    if (airport == null) {
+      return null;
+    }
+    List<DataPointAggregate> retval = DataPointAggregate.forEachType();
+    if (radius == 0) {
+      DataPointAggregate.addAll(retval, airport.getAtmosphericInformation());
+    } else {
+      forEachAirportWithinRadius(airport, radius,
+          targetAirport -> DataPointAggregate.addAll(retval,
+              targetAirport.getAtmosphericInformation()));
     }
     return retval;
   }
 
+  /**
+   * As {@link #getAggregateWithinRadius(String, double)} around any point.
+   */
+  public List<DataPointAggregate> getAggregateWithinRadius(double latitude, double longitude,
+      double radius) {
+    List<DataPointAggregate> retval = DataPointAggregate.forEachType();
+    airportStore.forEachWithinRadius(latitude, longitude, radius,
+        airport -> DataPointAggregate.addAll(retval, airport.getAtmosphericInformation()));
+    return retval;
+  }
 
   /**
-   * Haversine distance between two airports.
+   * The airports with data updated in the last day closest to a point. The index is searched within
+   * a radius which is doubled until it holds k such airports, the k closest seen are kept in a
+   * bounded heap with the farthest on top. The first radius would hold k airports if they were
+   * spread evenly over the globe, so a search rarely takes more than a couple of rounds.
    *
-   * @param ad1 airport 1
-   * @param ad2 airport 2
-   * @return the distance in KM
+   * @param latitude the latitude of the point in degrees
+   * @param longitude the longitude of the point in degrees
+   * @param k the number of airports wanted
+   * @return up to k airports, closest first
    */
-  private double calculateDistance(AirportData ad1, AirportData ad2) {
-    double deltaLat = Math.toRadians(ad2.getLatitude() - ad1.getLatitude());
-    double deltaLon = Math.toRadians(ad2.getLongitude() - ad1.getLongitude());
-    double a =
-        Math.pow(Math.sin(deltaLat / 2), 2) + Math.pow(Math.sin(deltaLon / 2), 2)
-            * Math.cos(ad1.getLatitude()) * Math.cos(ad2.getLatitude());
-    double c = 2 * Math.asin(Math.sqrt(a));
-    return earthRadius * c;
+  public List<AirportWeather> getNearestWeather(double latitude, double longitude, int k) {
+    if (k <= 0) {
+      return new ArrayList<AirportWeather>();
+    }
+    PriorityQueue<AirportWeather> nearest =
+        new PriorityQueue<AirportWeather>(k, Comparator.comparingDouble(
+            AirportWeather::getDistance).reversed());
+    // only airports with fresh data are returned, size the search by those
+    int fresh = freshness.count();
+    if (fresh == 0) {
+      return new ArrayList<AirportWeather>();
+    }
+    long expiry = System.currentTimeMillis() - FreshnessTracker.WINDOW;
+    double maxRadius = Math.PI * earthRadius;
+    // a cap of radius r covers about pi r^2 of the 4 pi R^2 of the globe
+    double firstRadius =
+        Math.max(NEAREST_MIN_RADIUS, 2 * earthRadius * Math.sqrt((double) k / fresh));
+    for (double radius = firstRadius;; radius = Math.min(2 * radius, maxRadius)) {
+      nearest.clear();
+      airportStore.forEachWithinRadius(latitude, longitude, radius, airport -> {
+        AtmosphericInformation ai = airport.getAtmosphericInformation();
+        if (ai.getLastUpdateTime() <= expiry || !ai.hasAtleastOneNotNullField()) {
+          return;
+        }
+        double distance = calculateDistance(latitude, longitude, airport.getAirportData(),
+            earthRadius);
+        if (nearest.size() < k) {
+          nearest.add(new AirportWeather(airport.getAirportData(), distance, ai));
+        } else if (distance < nearest.peek().getDistance()) {
+          nearest.poll();
+          nearest.add(new AirportWeather(airport.getAirportData(), distance, ai));
+        }
+      });
+      // every airport closer than the radius was seen, so k found within it are the nearest
+      if (nearest.size() == k || radius >= maxRadius) {
+        break;
+      }
+    }
+    AirportWeather[] retval = new AirportWeather[nearest.size()];
+    for (int i = retval.length - 1; i >= 0; i--) {
+      retval[i] = nearest.poll();
+    }
+    return Arrays.asList(retval);
   }
 
   /**
-   * @return Number of valid atmosphericInformation which was updates in last 24 hours
+   * A page of the airports with data within the radius of a point, closest first.
+   *
+   * @param latitude the latitude of the point in degrees
+   * @param longitude the longitude of the point in degrees
+   * @param radius the distance in km
+   * @param offset the number of airports to skip
+   * @param limit the largest number of airports to return
    */
-  public Integer getDataSize() {
-    int datasize = 0;
-    for (Entry<String, Airport> entry : airportMap.entrySet()) {
-      AtmosphericInformation atmosphericInformation = entry.getValue().getAtmosphericInformation();
-      // we only count recent readings updated in the last day
-      if (atmosphericInformation.hasAtleastOneNotNullField()
-          && atmosphericInformation.wasUpdatedInLastDay()) {
-        datasize++;
+  public AirportWeatherPage getWeatherAround(double latitude, double longitude, double radius,
+      int offset, int limit) {
+    AreaPage page = new AreaPage(latitude, longitude, offset, limit);
+    airportStore.forEachWithinRadius(latitude, longitude, radius, page);
+    return page.build();
+  }
+
+  /**
+   * A page of the airports with data within a latitude/longitude box, closest to its center first.
+   *
+   * @param minLatitude the southern edge in degrees
+   * @param minLongitude the western edge in degrees, greater than maxLongitude if the box crosses
+   *        the antimeridian
+   * @param maxLatitude the northern edge in degrees
+   * @param maxLongitude the eastern edge in degrees
+   * @param offset the number of airports to skip
+   * @param limit the largest number of airports to return
+   */
+  public AirportWeatherPage getWeatherWithinBox(double minLatitude, double minLongitude,
+      double maxLatitude, double maxLongitude, int offset, int limit) {
+    double width =
+        minLongitude <= maxLongitude ? maxLongitude - minLongitude : maxLongitude + 360
+            - minLongitude;
+    double centerLongitude = minLongitude + width / 2;
+    if (centerLongitude > 180) {
+      centerLongitude -= 360;
+    }
+    AreaPage page =
+        new AreaPage((minLatitude + maxLatitude) / 2, centerLongitude, offset, limit);
+    airportStore.forEachWithinBox(minLatitude, minLongitude, maxLatitude, maxLongitude, page);
+    return page.build();
+  }
+
+  /**
+   * Collects a page of the airports with data of an area. Only the first offset + limit airports
+   * are kept, in a bounded heap with the farthest on top, the others are just counted.
+   */
+  private class AreaPage implements Consumer<Airport> {
+    private final double latitude;
+    private final double longitude;
+    private final int offset;
+    private final int size;
+    private final PriorityQueue<AirportWeather> heap;
+    private int total;
+
+    AreaPage(double latitude, double longitude, int offset, int limit) {
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.offset = offset;
+      this.size = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+      heap =
+          new PriorityQueue<AirportWeather>(Math.max(1, Math.min(size, 1024)),
+              BY_DISTANCE.reversed());
+    }
+
+    @Override
+    public void accept(Airport airport) {
+      AtmosphericInformation ai = airport.getAtmosphericInformation();
+      if (!ai.hasAtleastOneNotNullField()) {
+        return;
+      }
+      total++;
+      double distance = calculateDistance(latitude, longitude, airport.getAirportData(),
+          earthRadius);
+      if (heap.size() < size) {
+        heap.add(new AirportWeather(airport.getAirportData(), distance, ai));
+      } else if (size > 0 && distance <= heap.peek().getDistance()) {
+        AirportWeather candidate = new AirportWeather(airport.getAirportData(), distance, ai);
+        if (BY_DISTANCE.compare(candidate, heap.peek()) < 0) {
+          heap.poll();
+          heap.add(candidate);
+        }
       }
     }
-    return datasize;
+
+    AirportWeatherPage build() {
+      AirportWeather[] sorted = new AirportWeather[heap.size()];
+      for (int i = sorted.length - 1; i >= 0; i--) {
+        sorted[i] = heap.poll();
+      }
+      List<AirportWeather> results = new ArrayList<AirportWeather>();
+      for (int i = offset; i < sorted.length; i++) {
+        results.add(sorted[i]);
+      }
+      return new AirportWeatherPage(total, offset, results);
+    }
+  }
+
+  /**
+   * A tile of the grid maintained as data is collected, see {@link WeatherTile}.
+   *
+   * @return the tile, null if its zoom level isn't maintained or it is outside the grid
+   */
+  public WeatherTile getTile(int zoom, int x, int y) {
+    return tiles == null ? null : tiles.get(zoom, x, y);
+  }
+
+  /**
+   * Visits every airport within the radius of the given one, with or without data.
+   *
+   * @param airport the center, it is visited as well
+   * @param radius the distance in km
+   */
+  public void forEachAirportWithinRadius(Airport airport, double radius,
+      Consumer<Airport> action) {
+    if (neighbors != null && neighbors.covers(radius)
+        && neighbors.forEachWithinRadius(airport, radius, action)) {
+      return;
+    }
+    AirportData airportData = airport.getAirportData();
+    airportStore.forEachWithinRadius(airportData.getLatitude(), airportData.getLongitude(),
+        radius, action);
+  }
+
+  /**
+   * Readings of the given airport and type collected in a time window, limited to the retention.
+   *
+   * @param iata the airport
+   * @param dataPointType the type of the readings
+   * @param from the start of the window in milliseconds since UTC epoch
+   * @param to the end of the window
+   * @return the readings oldest first, null if the airport is unknown
+   */
+  public List<DataPointReading> getHistory(String iata, DataPointType dataPointType, long from,
+      long to) {
+    Airport airport = airportStore.get(iata);
+    if (airport == null) {
+      return null;
+    }
+    DataPointHistory history = airport.getHistory(dataPointType);
+    if (history == null) {
+      return new ArrayList<DataPointReading>();
+    }
+    return history.get(Math.max(from, System.currentTimeMillis() - historyRetention), to);
+  }
+
+  /**
+   * @return Number of valid atmosphericInformation which was updates in last 24 hours
+   */
+  public Integer getDataSize() {
+    return freshness.count();
+  }
+
+  /**
+   * Haversine distance between a point and an airport. Every radius check of the service uses it,
+   * so the store, the caches and the subscriptions agree on which airports are within a radius.
+   *
+   * @param earthRadius the radius of the earth in km
+   * @return the distance in KM
+   */
+  static double calculateDistance(double latitude, double longitude, AirportData ad,
+      double earthRadius) {
+    double deltaLat = Math.toRadians(ad.getLatitude() - latitude);
+    double deltaLon = Math.toRadians(ad.getLongitude() - longitude);
+    double a =
+        Math.pow(Math.sin(deltaLat / 2), 2) + Math.pow(Math.sin(deltaLon / 2), 2)
+            * Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(ad.getLatitude()));
+    double c = 2 * Math.asin(Math.sqrt(a));
+    return earthRadius * c;
   }
 
 }
@@ -0,0 +1,114 @@
+package com.crossover.trial.weather.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Backing store of the {@link AirportService}, holds the known airports and answers spatial
+ * queries over them. Implementations must be safe for concurrent use.
+ */
+public interface AirportStore {
+
+  /**
+   * Adds an airport, replacing any airport with the same iata code.
+   *
+   * @return the replaced airport or null
+   */
+  Airport put(Airport airport);
+
+  /**
+   * Adds a batch of airports, replacing any airports with the same iata codes.
+   *
+   * @return the replaced airports
+   */
+  default List<Airport> putAll(Collection<Airport> airports) {
+    List<Airport> replaced = new ArrayList<Airport>();
+    for (Airport airport : airports) {
+      Airport previous = put(airport);
+      if (previous != null) {
+        replaced.add(previous);
+      }
+    }
+    return replaced;
+  }
+
+  /**
+   * @return the airport with the given iata code or null
+   */
+  Airport get(String iata);
+
+  /**
+   * Removes the airport with the given iata code, if any.
+   *
+   * @return the removed airport or null
+   */
+  Airport remove(String iata);
+
+  void clear();
+
+  /**
+   * @return the iata codes of all known airports
+   */
+  Set<String> codes();
+
+  /**
+   * @return the number of known airports, without copying their codes
+   */
+  int size();
+
+  void forEach(Consumer<Airport> action);
+
+  /**
+   * Visits every airport within the given distance of a point.
+   *
+   * @param latitude center latitude in degrees
+   * @param longitude center longitude in degrees
+   * @param radius the distance in km
+   * @param action called once per airport within the radius
+   */
+  void forEachWithinRadius(double latitude, double longitude, double radius,
+      Consumer<Airport> action);
+
+  /**
+   * Visits every airport within a latitude/longitude box. The default scans all airports.
+   *
+   * @param minLatitude the southern edge in degrees
+   * @param minLongitude the western edge in degrees, greater than maxLongitude if the box crosses
+   *        the antimeridian
+   * @param maxLatitude the northern edge in degrees
+   * @param maxLongitude the eastern edge in degrees
+   * @param action called once per airport within the box, edges included
+   */
+  default void forEachWithinBox(double minLatitude, double minLongitude, double maxLatitude,
+      double maxLongitude, Consumer<Airport> action) {
+    forEach(airport -> {
+      if (isWithinBox(airport.getAirportData(), minLatitude, minLongitude, maxLatitude,
+          maxLongitude)) {
+        action.accept(airport);
+      }
+    });
+  }
+
+  /**
+   * @return whether the airport is located within the box, see
+   *         {@link #forEachWithinBox(double, double, double, double, Consumer)}
+   */
+  static boolean isWithinBox(AirportData airportData, double minLatitude, double minLongitude,
+      double maxLatitude, double maxLongitude) {
+    double latitude = airportData.getLatitude();
+    double longitude = airportData.getLongitude();
+    if (latitude < minLatitude || latitude > maxLatitude) {
+      return false;
+    }
+    if (minLongitude <= maxLongitude) {
+      return longitude >= minLongitude && longitude <= maxLongitude;
+    }
+    return longitude >= minLongitude || longitude <= maxLongitude;
+  }
+}
@@ -0,0 +1,227 @@
+package com.crossover.trial.weather.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * An {@link AirportStore} keeping airport positions in parallel primitive arrays indexed by a dense
+ * int id. Each position is stored as a unit vector, x = cos(lat) cos(lon), y = cos(lat) sin(lon),
+ * z = sin(lat), so the distance check of a radius scan is a dot product against a precomputed
+ * threshold: a tight multiply-add loop over contiguous memory which the JIT can vectorize, without
+ * following a pointer per airport or allocating.
+ *
+ * Ids of removed airports are reused. A free slot has NaN coordinates, which never passes the
+ * distance check, so the scan doesn't need a branch for it.
+ */
+public class ArrayAirportStore implements AirportStore {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final double earthRadius;
+  private final StampedLock lock = new StampedLock();
+
+  /** the following fields are guarded by {@link #lock} */
+  private final Map<String, Integer> ids = new HashMap<String, Integer>();
+  private Airport[] airports = new Airport[INITIAL_CAPACITY];
+  private double[] xs = new double[INITIAL_CAPACITY];
+  private double[] ys = new double[INITIAL_CAPACITY];
+  private double[] zs = new double[INITIAL_CAPACITY];
+
+  /** number of ids handed out, every id below is either in use or free */
+  private int size;
+  private int[] freeIds = new int[16];
+  private int freeCount;
+
+  /** per thread dot product buffer for the scan */
+  private final ThreadLocal<double[]> dots = ThreadLocal.withInitial(() -> new double[0]);
+
+  public ArrayAirportStore(double earthRadius) {
+    this.earthRadius = earthRadius;
+  }
+
+  @Override
+  public Airport put(Airport airport) {
+    long stamp = lock.writeLock();
+    try {
+      return store(airport);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public List<Airport> putAll(Collection<Airport> airports) {
+    List<Airport> replaced = new ArrayList<Airport>();
+    long stamp = lock.writeLock();
+    try {
+      for (Airport airport : airports) {
+        Airport previous = store(airport);
+        if (previous != null) {
+          replaced.add(previous);
+        }
+      }
+      return replaced;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** must be called holding the write lock, returns the replaced airport */
+  private Airport store(Airport airport) {
+    AirportData ad = airport.getAirportData();
+    Integer id = ids.get(ad.getIata());
+    Airport previous = null;
+    if (id == null) {
+      id = freeCount > 0 ? freeIds[--freeCount] : nextId();
+      ids.put(ad.getIata(), id);
+    } else {
+      previous = airports[id];
+    }
+    double lat = Math.toRadians(ad.getLatitude());
+    double lon = Math.toRadians(ad.getLongitude());
+    double cosLat = Math.cos(lat);
+    xs[id] = cosLat * Math.cos(lon);
+    ys[id] = cosLat * Math.sin(lon);
+    zs[id] = Math.sin(lat);
+    this.airports[id] = airport;
+    return previous;
+  }
+
+  private int nextId() {
+    if (size == airports.length) {
+      int capacity = size * 2;
+      airports = Arrays.copyOf(airports, capacity);
+      xs = Arrays.copyOf(xs, capacity);
+      ys = Arrays.copyOf(ys, capacity);
+      zs = Arrays.copyOf(zs, capacity);
+    }
+    return size++;
+  }
+
+  @Override
+  public Airport get(String iata) {
+    long stamp = lock.readLock();
+    try {
+      Integer id = ids.get(iata);
+      return id == null ? null : airports[id];
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public Airport remove(String iata) {
+    long stamp = lock.writeLock();
+    try {
+      Integer id = ids.remove(iata);
+      if (id == null) {
+        return null;
+      }
+      Airport removed = airports[id];
+      airports[id] = null;
+      xs[id] = Double.NaN;
+      ys[id] = Double.NaN;
+      zs[id] = Double.NaN;
+      if (freeCount == freeIds.length) {
+        freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+      }
+      freeIds[freeCount++] = id;
+      return removed;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void clear() {
+    long stamp = lock.writeLock();
+    try {
+      ids.clear();
+      Arrays.fill(airports, 0, size, null);
+      size = 0;
+      freeCount = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public Set<String> codes() {
+    long stamp = lock.readLock();
+    try {
+      return new HashSet<String>(ids.keySet());
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return ids.size();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public void forEach(Consumer<Airport> action) {
+    long stamp = lock.readLock();
+    try {
+      for (int i = 0; i < size; i++) {
+        if (airports[i] != null) {
+          action.accept(airports[i]);
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public void forEachWithinRadius(double latitude, double longitude, double radius,
+      Consumer<Airport> action) {
+    double lat = Math.toRadians(latitude);
+    double lon = Math.toRadians(longitude);
+    double x = Math.cos(lat) * Math.cos(lon);
+    double y = Math.cos(lat) * Math.sin(lon);
+    double z = Math.sin(lat);
+    // two points are within the radius when the cosine of the angle between them is at least the
+    // cosine of the radius as an angle
+    double minDot = Math.cos(Math.min(radius / earthRadius, Math.PI));
+
+    long stamp = lock.readLock();
+    try {
+      int n = size;
+      double[] dot = dots.get();
+      if (dot.length < n) {
+        dot = new double[airports.length];
+        dots.set(dot);
+      }
+      double[] xs = this.xs;
+      double[] ys = this.ys;
+      double[] zs = this.zs;
+      for (int i = 0; i < n; i++) {
+        dot[i] = x * xs[i] + y * ys[i] + z * zs[i];
+      }
+      for (int i = 0; i < n; i++) {
+        if (dot[i] >= minDot) {
+          action.accept(airports[i]);
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+}
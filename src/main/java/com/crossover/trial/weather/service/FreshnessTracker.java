@@ -0,0 +1,185 @@
+package com.crossover.trial.weather.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the airports with data updated in the last day without looking at every airport. Airports
+ * are kept in a list ordered by their last update time: an update moves the airport to the tail and
+ * counting first drops the expired airports from the head, so both are amortized O(1).
+ *
+ * Updates may be reported slightly out of order by concurrent collectors, an update is therefore
+ * inserted walking back from the tail to its place, which is at or next to the tail in practice.
+ *
+ * The airports are spread over {@link #STRIPES} such lists by a hash of their code, each guarded by
+ * its own monitor, so concurrent updates of different airports rarely wait for each other. A count
+ * only takes the monitor of a list whose head expired, otherwise it reads the list's size.
+ */
+public class FreshnessTracker {
+  /** how long an update keeps an airport fresh, in milliseconds */
+  public static final long WINDOW = 86400000;
+
+  /** the number of lists, a power of two */
+  private static final int STRIPES = 32;
+
+  private static class Node {
+    final String iata;
+    long updateTime;
+    Node prev;
+    Node next;
+
+    Node(String iata) {
+      this.iata = iata;
+    }
+  }
+
+  private static class Stripe {
+    /** the following fields are guarded by this */
+    final Map<String, Node> nodes = new HashMap<String, Node>();
+    Node head;
+    Node tail;
+
+    /** the number of airports and the update time of the head, written while holding this */
+    volatile int size;
+    volatile long headTime = Long.MAX_VALUE;
+
+    synchronized void update(String iata, long updateTime) {
+      Node node = nodes.get(iata);
+      if (node == null) {
+        node = new Node(iata);
+        nodes.put(iata, node);
+      } else if (node.updateTime >= updateTime) {
+        return;
+      } else {
+        unlink(node);
+      }
+      node.updateTime = updateTime;
+      Node after = tail;
+      while (after != null && after.updateTime > updateTime) {
+        after = after.prev;
+      }
+      linkAfter(after, node);
+      published();
+    }
+
+    synchronized void remove(String iata) {
+      Node node = nodes.remove(iata);
+      if (node != null) {
+        unlink(node);
+        published();
+      }
+    }
+
+    synchronized void clear() {
+      nodes.clear();
+      head = null;
+      tail = null;
+      published();
+    }
+
+    int count(long expiry) {
+      if (headTime > expiry) {
+        return size;
+      }
+      synchronized (this) {
+        while (head != null && head.updateTime <= expiry) {
+          nodes.remove(head.iata);
+          unlink(head);
+        }
+        published();
+        return nodes.size();
+      }
+    }
+
+    private void published() {
+      size = nodes.size();
+      headTime = head == null ? Long.MAX_VALUE : head.updateTime;
+    }
+
+    private void unlink(Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+    }
+
+    /** links the node after the given one, at the head if it is null */
+    private void linkAfter(Node after, Node node) {
+      Node next = after == null ? head : after.next;
+      node.prev = after;
+      node.next = next;
+      if (after == null) {
+        head = node;
+      } else {
+        after.next = node;
+      }
+      if (next == null) {
+        tail = node;
+      } else {
+        next.prev = node;
+      }
+    }
+  }
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  public FreshnessTracker() {
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Records an update of the airport. An update time older than the one already recorded for the
+   * airport is ignored.
+   *
+   * @param iata the airport
+   * @param updateTime milliseconds since UTC epoch
+   */
+  public void update(String iata, long updateTime) {
+    stripeOf(iata).update(iata, updateTime);
+  }
+
+  public void remove(String iata) {
+    stripeOf(iata).remove(iata);
+  }
+
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  /**
+   * @return the number of airports updated in the last day
+   */
+  public int count() {
+    return count(System.currentTimeMillis());
+  }
+
+  /**
+   * @param now milliseconds since UTC epoch
+   * @return the number of airports updated in the day before now
+   */
+  public int count(long now) {
+    long expiry = now - WINDOW;
+    int retval = 0;
+    for (Stripe stripe : stripes) {
+      retval += stripe.count(expiry);
+    }
+    return retval;
+  }
+
+  private Stripe stripeOf(String iata) {
+    int hash = iata.hashCode() * 0x9E3779B9;
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+}
@@ -0,0 +1,100 @@
+package com.crossover.trial.weather.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * The default {@link AirportStore}, airports are kept in a map by iata code and a
+ * {@link SpatialIndex} narrows radius searches down to nearby grid cells.
+ */
+public class IndexedAirportStore implements AirportStore {
+  private final double earthRadius;
+  private final Map<String, Airport> airportMap = new ConcurrentHashMap<String, Airport>();
+
+  /** grid over the airports in {@link #airportMap} */
+  private final SpatialIndex spatialIndex;
+
+  public IndexedAirportStore(double cellDegrees, double earthRadius) {
+    this.earthRadius = earthRadius;
+    this.spatialIndex = new SpatialIndex(cellDegrees, earthRadius);
+  }
+
+  @Override
+  public Airport put(Airport airport) {
+    Airport[] replaced = new Airport[1];
+    airportMap.compute(airport.getAirportData().getIata(), (iata, previous) -> {
+      if (previous != null) {
+        spatialIndex.remove(previous);
+      }
+      spatialIndex.add(airport);
+      replaced[0] = previous;
+      return airport;
+    });
+    return replaced[0];
+  }
+
+  @Override
+  public Airport get(String iata) {
+    return airportMap.get(iata);
+  }
+
+  @Override
+  public Airport remove(String iata) {
+    Airport[] removed = new Airport[1];
+    airportMap.computeIfPresent(iata, (key, previous) -> {
+      spatialIndex.remove(previous);
+      removed[0] = previous;
+      return null;
+    });
+    return removed[0];
+  }
+
+  @Override
+  public void clear() {
+    airportMap.clear();
+    spatialIndex.clear();
+  }
+
+  @Override
+  public Set<String> codes() {
+    return airportMap.keySet();
+  }
+
+  @Override
+  public int size() {
+    return airportMap.size();
+  }
+
+  @Override
+  public void forEach(Consumer<Airport> action) {
+    airportMap.values().forEach(action);
+  }
+
+  @Override
+  public void forEachWithinRadius(double latitude, double longitude, double radius,
+      Consumer<Airport> action) {
+    spatialIndex.forEachCandidate(latitude, longitude, radius, airport -> {
+      if (AirportService.calculateDistance(latitude, longitude, airport.getAirportData(),
+          earthRadius) <= radius) {
+        action.accept(airport);
+      }
+    });
+  }
+
+  @Override
+  public void forEachWithinBox(double minLatitude, double minLongitude, double maxLatitude,
+      double maxLongitude, Consumer<Airport> action) {
+    spatialIndex.forEachCandidateInBox(minLatitude, minLongitude, maxLatitude, maxLongitude,
+        airport -> {
+          if (AirportStore.isWithinBox(airport.getAirportData(), minLatitude, minLongitude,
+              maxLatitude, maxLongitude)) {
+            action.accept(airport);
+          }
+        });
+  }
+}
@@ -0,0 +1,286 @@
+package com.crossover.trial.weather.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Precomputed neighbors of every airport up to the largest configured radius tier, so a query at
+ * or below it walks a sorted list instead of searching the store.
+ *
+ * Airports get int ids. Every airport has an immutable node with the ids of its neighbors,
+ * itself included, sorted by distance along with the distances. The list of a smaller tier is a
+ * prefix of the list of a larger one, so a single list serves all tiers, and any radius up to the
+ * largest tier is a prefix walk. Adding or removing an airport replaces the nodes of its neighbors.
+ *
+ * Changes are serialized, queries don't lock. A query checks its node was still current after the
+ * walk and retries otherwise, an id is only reused after every list containing it was replaced.
+ *
+ * Memory is about 12 bytes per neighbor pair, the number of pairs depends on how dense the
+ * airports are within the largest tier.
+ */
+public class NeighborIndex {
+  private final AirportStore airportStore;
+  private final double earthRadius;
+  private final double maxRadius;
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+  private volatile AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<Node>(1024);
+
+  /** guarded by this */
+  private final ArrayDeque<Integer> freeIds = new ArrayDeque<Integer>();
+  private int nextId;
+
+  /**
+   * @param airportStore the store to search for the neighbors of new airports
+   * @param tiers the radius tiers in km, lists cover the largest one
+   */
+  public NeighborIndex(AirportStore airportStore, double earthRadius, double[] tiers) {
+    if (tiers.length == 0) {
+      throw new IllegalArgumentException("no radius tiers");
+    }
+    this.airportStore = airportStore;
+    this.earthRadius = earthRadius;
+    this.maxRadius = Arrays.stream(tiers).max().getAsDouble();
+  }
+
+  /**
+   * Parses a comma separated list of radii.
+   *
+   * @return the tiers, null if the list is empty
+   */
+  public static double[] parseTiers(String tiers) {
+    if (tiers == null || tiers.trim().isEmpty()) {
+      return null;
+    }
+    String[] split = tiers.split(",");
+    double[] radii = new double[split.length];
+    for (int i = 0; i < split.length; i++) {
+      radii[i] = Double.parseDouble(split[i].trim());
+    }
+    return radii;
+  }
+
+  private static class Node {
+    final Airport airport;
+    final int[] neighbors;
+    final double[] distances;
+
+    Node(Airport airport, int[] neighbors, double[] distances) {
+      this.airport = airport;
+      this.neighbors = neighbors;
+      this.distances = distances;
+    }
+  }
+
+  /**
+   * @return whether queries with the radius can be answered
+   */
+  public boolean covers(double radius) {
+    return radius <= maxRadius;
+  }
+
+  /**
+   * Visits every airport within the radius of the given one, nearest first.
+   *
+   * @param radius at most the largest tier
+   * @return false if the airport isn't indexed (yet), nothing was visited then
+   */
+  public boolean forEachWithinRadius(Airport airport, double radius, Consumer<Airport> action) {
+    Integer id = ids.get(airport.getAirportData().getIata());
+    if (id == null) {
+      return false;
+    }
+    while (true) {
+      AtomicReferenceArray<Node> nodes = this.nodes;
+      Node node = id < nodes.length() ? nodes.get(id) : null;
+      if (node == null || node.airport != airport) {
+        return false;
+      }
+      List<Airport> found = new ArrayList<Airport>();
+      for (int i = 0; i < node.neighbors.length && node.distances[i] <= radius; i++) {
+        Node neighbor = nodes.get(node.neighbors[i]);
+        if (neighbor != null) {
+          found.add(neighbor.airport);
+        }
+      }
+      // a changed neighbor replaces the node, then an id may refer to another airport
+      if (this.nodes.get(id) == node) {
+        found.forEach(action);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Indexes airports which were put in the store.
+   */
+  public synchronized void add(Collection<Airport> airports) {
+    List<Airport> added = new ArrayList<Airport>(airports.size());
+    Set<Integer> addedIds = new HashSet<Integer>();
+    for (Airport airport : airports) {
+      String iata = airport.getAirportData().getIata();
+      // it may have been removed or replaced in the meantime
+      if (airportStore.get(iata) != airport) {
+        continue;
+      }
+      Integer replaced = ids.get(iata);
+      if (replaced != null) {
+        remove(nodes.get(replaced).airport);
+      }
+      int id = allocate(iata);
+      nodes.set(id, new Node(airport, new int[0], new double[0]));
+      added.add(airport);
+      addedIds.add(id);
+    }
+    // the new neighbors of airports which were indexed before
+    Map<Integer, List<Neighbor>> additions = new HashMap<Integer, List<Neighbor>>();
+    for (Airport airport : added) {
+      int id = ids.get(airport.getAirportData().getIata());
+      List<Neighbor> neighbors = new ArrayList<Neighbor>();
+      AirportData center = airport.getAirportData();
+      airportStore.forEachWithinRadius(center.getLatitude(), center.getLongitude(), maxRadius,
+          neighbor -> {
+            Integer neighborId = ids.get(neighbor.getAirportData().getIata());
+            if (neighborId == null || nodes.get(neighborId).airport != neighbor) {
+              // not indexed yet, it adds itself to this list when it is
+              return;
+            }
+            double distance =
+                AirportService.calculateDistance(center.getLatitude(), center.getLongitude(),
+                    neighbor.getAirportData(), earthRadius);
+            neighbors.add(new Neighbor(neighborId, distance));
+            if (!addedIds.contains(neighborId)) {
+              additions.computeIfAbsent(neighborId, k -> new ArrayList<Neighbor>()).add(
+                  new Neighbor(id, distance));
+            }
+          });
+      nodes.set(id, build(airport, neighbors));
+    }
+    for (Map.Entry<Integer, List<Neighbor>> entry : additions.entrySet()) {
+      nodes.set(entry.getKey(), merge(nodes.get(entry.getKey()), entry.getValue()));
+    }
+  }
+
+  /**
+   * Drops an airport which was removed from the store.
+   */
+  public synchronized void remove(Airport airport) {
+    String iata = airport.getAirportData().getIata();
+    Integer id = ids.get(iata);
+    if (id == null || nodes.get(id).airport != airport) {
+      return;
+    }
+    Node node = nodes.get(id);
+    for (int neighborId : node.neighbors) {
+      if (neighborId == id) {
+        continue;
+      }
+      nodes.set(neighborId, without(nodes.get(neighborId), id));
+    }
+    // only now that no list refers to it the id can go
+    ids.remove(iata);
+    nodes.set(id, null);
+    freeIds.add(id);
+  }
+
+  public synchronized void clear() {
+    ids.clear();
+    nodes = new AtomicReferenceArray<Node>(1024);
+    freeIds.clear();
+    nextId = 0;
+  }
+
+  private int allocate(String iata) {
+    Integer id = freeIds.poll();
+    if (id == null) {
+      id = nextId++;
+      if (id == nodes.length()) {
+        AtomicReferenceArray<Node> grown = new AtomicReferenceArray<Node>(id * 2);
+        for (int i = 0; i < id; i++) {
+          grown.set(i, nodes.get(i));
+        }
+        nodes = grown;
+      }
+    }
+    ids.put(iata, id);
+    return id;
+  }
+
+  private static class Neighbor {
+    final int id;
+    final double distance;
+
+    Neighbor(int id, double distance) {
+      this.id = id;
+      this.distance = distance;
+    }
+  }
+
+  private static Node build(Airport airport, List<Neighbor> neighbors) {
+    neighbors.sort((a, b) -> Double.compare(a.distance, b.distance));
+    int[] ids = new int[neighbors.size()];
+    double[] distances = new double[neighbors.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = neighbors.get(i).id;
+      distances[i] = neighbors.get(i).distance;
+    }
+    return new Node(airport, ids, distances);
+  }
+
+  /**
+   * @return the node with the additional neighbors, merged into the sorted list
+   */
+  private static Node merge(Node node, List<Neighbor> additions) {
+    additions.sort((a, b) -> Double.compare(a.distance, b.distance));
+    int length = node.neighbors.length + additions.size();
+    int[] ids = new int[length];
+    double[] distances = new double[length];
+    int existing = 0;
+    int added = 0;
+    for (int i = 0; i < length; i++) {
+      if (added == additions.size()
+          || (existing < node.neighbors.length && node.distances[existing] <= additions
+              .get(added).distance)) {
+        ids[i] = node.neighbors[existing];
+        distances[i] = node.distances[existing++];
+      } else {
+        ids[i] = additions.get(added).id;
+        distances[i] = additions.get(added++).distance;
+      }
+    }
+    return new Node(node.airport, ids, distances);
+  }
+
+  /**
+   * @return the node without the given neighbor
+   */
+  private static Node without(Node node, int id) {
+    int index = 0;
+    while (index < node.neighbors.length && node.neighbors[index] != id) {
+      index++;
+    }
+    if (index == node.neighbors.length) {
+      return node;
+    }
+    int[] ids = new int[node.neighbors.length - 1];
+    double[] distances = new double[ids.length];
+    System.arraycopy(node.neighbors, 0, ids, 0, index);
+    System.arraycopy(node.distances, 0, distances, 0, index);
+    System.arraycopy(node.neighbors, index + 1, ids, index, ids.length - index);
+    System.arraycopy(node.distances, index + 1, distances, index, ids.length - index);
+    return new Node(node.airport, ids, distances);
+  }
+}
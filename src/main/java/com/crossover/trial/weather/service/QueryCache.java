@@ -0,0 +1,388 @@
+package com.crossover.trial.weather.service;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+/**
+ * Caches weather query results by iata code and radius. Only whole km radii are cached, which
+ * covers the standard radii clients use; any other radius is computed every time.
+ *
+ * A result depends on every airport within its radius, with or without data. Those airports are
+ * indexed, so an update or removal of one invalidates exactly the results which include it. An
+ * added airport invalidates the results whose radius it falls in. Invalidated entries keep their
+ * slot and access count and are recomputed on the next request.
+ *
+ * The number of entries is bounded. A new key evicts the least frequently requested of a few
+ * randomly sampled entries, counts are halved regularly so that formerly hot keys age out.
+ *
+ * Configured with -Dweather.queryCache.size, the number of entries, 0 disables the cache.
+ */
+public class QueryCache implements AirportListener {
+  /** the number of entries compared to pick an eviction victim */
+  private static final int SAMPLE_SIZE = 8;
+
+  /** the counts are halved every time this many entries per slot were inserted */
+  private static final int AGING_PERIOD = 4;
+
+  /** added airports this close to a radius are treated as inside, covering rounding differences */
+  private static final double RADIUS_MARGIN = 0.001;
+
+  private final AirportService airportService;
+  private final int capacity;
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+  /** the results by iata code of the airports they depend on */
+  private final Map<String, Set<Result>> dependents = new ConcurrentHashMap<String, Set<Result>>();
+
+  /** the following fields are guarded by this */
+  private final Entry[] slots;
+  private int size;
+  private long inserts;
+  private final Random random = new Random();
+
+  /** counts added airports, a result computed while one was added can't be trusted */
+  private final AtomicLong additions = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  private static class InstanceHolder {
+    public static QueryCache INSTANCE = create(AirportService.getInstance());
+  }
+
+  public static QueryCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * @return a cache of the configured size listening to the given service
+   */
+  public static QueryCache create(AirportService airportService) {
+    QueryCache cache =
+        new QueryCache(airportService, Integer.getInteger("weather.queryCache.size", 1024));
+    airportService.addListener(cache);
+    return cache;
+  }
+
+  /**
+   * A cache which still has to be added as a listener of the service.
+   *
+   * @param capacity the maximum number of entries
+   */
+  public QueryCache(AirportService airportService, int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must not be negative");
+    }
+    this.airportService = airportService;
+    this.capacity = capacity;
+    this.slots = new Entry[capacity];
+  }
+
+  /**
+   * The atmospheric information of a cached query. The response writer may keep the serialized
+   * form here so that later hits don't serialize again.
+   */
+  public static class CachedWeather extends AbstractList<AtmosphericInformation> {
+    private final List<AtmosphericInformation> weather;
+    private volatile byte[] serialized;
+
+    CachedWeather(List<AtmosphericInformation> weather) {
+      this.weather = weather;
+    }
+
+    @Override
+    public AtmosphericInformation get(int index) {
+      return weather.get(index);
+    }
+
+    @Override
+    public int size() {
+      return weather.size();
+    }
+
+    public byte[] getSerialized() {
+      return serialized;
+    }
+
+    public void setSerialized(byte[] serialized) {
+      this.serialized = serialized;
+    }
+  }
+
+  private static class Key {
+    final String iata;
+    final long radius;
+
+    Key(String iata, long radius) {
+      this.iata = iata;
+      this.radius = radius;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return radius == key.radius && iata.equals(key.iata);
+    }
+
+    @Override
+    public int hashCode() {
+      return iata.hashCode() * 31 + Long.hashCode(radius);
+    }
+  }
+
+  /**
+   * A cache slot, its result comes and goes with invalidations.
+   */
+  private static class Entry {
+    final Key key;
+    final AtomicReference<Result> result = new AtomicReference<Result>();
+
+    /** approximate, racing increments may get lost */
+    int frequency;
+
+    /** guarded by the cache */
+    int slot;
+    volatile boolean evicted;
+
+    Entry(Key key, int slot) {
+      this.key = key;
+      this.slot = slot;
+    }
+  }
+
+  /**
+   * A computed result and the airports it was computed from, as they were at the time.
+   */
+  private static class Result {
+    final Entry entry;
+    final double latitude;
+    final double longitude;
+    final Airport[] airports;
+    final AtmosphericInformation[] snapshot;
+    final CachedWeather weather;
+
+    Result(Entry entry, AirportData center, Airport[] airports,
+        AtmosphericInformation[] snapshot, CachedWeather weather) {
+      this.entry = entry;
+      this.latitude = center.getLatitude();
+      this.longitude = center.getLongitude();
+      this.airports = airports;
+      this.snapshot = snapshot;
+      this.weather = weather;
+    }
+  }
+
+  /**
+   * Same result as {@link AirportService#getWeatherWithinRadius(String, double)}, from the cache
+   * if possible.
+   *
+   * @return the atmospheric information, null if the query can't be cached
+   */
+  public List<AtmosphericInformation> getWeatherWithinRadius(String iata, double radius) {
+    if (capacity == 0 || iata == null || !(radius >= 0) || radius != Math.rint(radius)) {
+      return null;
+    }
+    Key key = new Key(iata, (long) radius);
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      entry.frequency++;
+      Result result = entry.result.get();
+      if (result != null) {
+        hits.increment();
+        return result.weather;
+      }
+    }
+    misses.increment();
+    long additionsBefore = additions.get();
+    Airport center = airportService.getAirport(iata);
+    if (center == null) {
+      return null;
+    }
+    List<Airport> airports = new ArrayList<Airport>();
+    if (radius == 0) {
+      airports.add(center);
+    } else {
+      airportService.forEachAirportWithinRadius(center, radius, airports::add);
+    }
+    AtmosphericInformation[] snapshot = new AtmosphericInformation[airports.size()];
+    List<AtmosphericInformation> weather = new ArrayList<AtmosphericInformation>();
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = airports.get(i).getAtmosphericInformation();
+      // as the service does, the center alone is returned even without data
+      if (radius == 0 || snapshot[i].hasAtleastOneNotNullField()) {
+        weather.add(snapshot[i]);
+      }
+    }
+    if (entry == null) {
+      entry = insert(key);
+    }
+    Result result =
+        new Result(entry, center.getAirportData(), airports.toArray(new Airport[airports.size()]),
+            snapshot, new CachedWeather(Collections.unmodifiableList(weather)));
+    register(result);
+    Result replaced = entry.result.getAndSet(result);
+    if (replaced != null) {
+      unregister(replaced);
+    }
+    // a change made before the result was registered didn't invalidate it, look for one now
+    if (entry.evicted || additions.get() != additionsBefore || changed(result)) {
+      invalidate(result);
+    }
+    return result.weather;
+  }
+
+  private boolean changed(Result result) {
+    for (int i = 0; i < result.airports.length; i++) {
+      Airport airport = result.airports[i];
+      if (airportService.getAirport(airport.getAirportData().getIata()) != airport
+          || airport.getAtmosphericInformation() != result.snapshot[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private synchronized Entry insert(Key key) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      return entry;
+    }
+    if (size == capacity) {
+      evict();
+    }
+    entry = new Entry(key, size);
+    slots[size++] = entry;
+    entries.put(key, entry);
+    if (++inserts % ((long) capacity * AGING_PERIOD) == 0) {
+      for (int i = 0; i < size; i++) {
+        slots[i].frequency >>= 1;
+      }
+    }
+    return entry;
+  }
+
+  /** called with the lock held and a full cache */
+  private void evict() {
+    boolean sample = size > SAMPLE_SIZE;
+    Entry victim = slots[sample ? random.nextInt(size) : 0];
+    for (int i = 1; i < Math.min(size, SAMPLE_SIZE); i++) {
+      Entry candidate = slots[sample ? random.nextInt(size) : i];
+      if (candidate.frequency < victim.frequency) {
+        victim = candidate;
+      }
+    }
+    remove(victim);
+    evictions.increment();
+  }
+
+  /** called with the lock held */
+  private void remove(Entry entry) {
+    entries.remove(entry.key);
+    entry.evicted = true;
+    Result result = entry.result.getAndSet(null);
+    if (result != null) {
+      unregister(result);
+    }
+    Entry last = slots[--size];
+    slots[entry.slot] = last;
+    last.slot = entry.slot;
+    slots[size] = null;
+  }
+
+  private void register(Result result) {
+    for (Airport airport : result.airports) {
+      dependents.computeIfAbsent(airport.getAirportData().getIata(),
+          iata -> ConcurrentHashMap.<Result> newKeySet()).add(result);
+    }
+  }
+
+  private void unregister(Result result) {
+    for (Airport airport : result.airports) {
+      dependents.computeIfPresent(airport.getAirportData().getIata(), (iata, results) -> {
+        results.remove(result);
+        return results.isEmpty() ? null : results;
+      });
+    }
+  }
+
+  private void invalidate(Result result) {
+    if (result.entry.result.compareAndSet(result, null)) {
+      invalidations.increment();
+    }
+    unregister(result);
+  }
+
+  private void invalidateDependents(String iata) {
+    Set<Result> results = dependents.remove(iata);
+    if (results != null) {
+      results.forEach(this::invalidate);
+    }
+  }
+
+  @Override
+  public void airportAdded(Airport airport) {
+    additions.incrementAndGet();
+    AirportData airportData = airport.getAirportData();
+    for (Entry entry : entries.values()) {
+      Result result = entry.result.get();
+      if (result != null
+          && AirportService.calculateDistance(result.latitude, result.longitude, airportData,
+              airportService.earthRadius) <= entry.key.radius + RADIUS_MARGIN) {
+        invalidate(result);
+      }
+    }
+  }
+
+  @Override
+  public void airportRemoved(Airport airport) {
+    invalidateDependents(airport.getAirportData().getIata());
+  }
+
+  @Override
+  public synchronized void airportsCleared() {
+    additions.incrementAndGet();
+    while (size > 0) {
+      remove(slots[size - 1]);
+    }
+    dependents.clear();
+  }
+
+  @Override
+  public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+      DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+    invalidateDependents(airport.getAirportData().getIata());
+  }
+
+  /**
+   * @return hits, misses, evictions, invalidations and the number of entries
+   */
+  public Map<String, Long> getStats() {
+    Map<String, Long> stats = new HashMap<String, Long>();
+    stats.put("hits", hits.sum());
+    stats.put("misses", misses.sum());
+    stats.put("evictions", evictions.sum());
+    stats.put("invalidations", invalidations.sum());
+    stats.put("size", (long) entries.size());
+    return stats;
+  }
+}
@@ -0,0 +1,173 @@
+package com.crossover.trial.weather.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * A latitude/longitude grid over the airports. Each cell holds the airports located inside it, so a
+ * radius search only has to visit the cells overlapping the search circle instead of every known
+ * airport. The grid is maintained incrementally by {@link #add(Airport)} and
+ * {@link #remove(Airport)}.
+ */
+public class SpatialIndex {
+
+  /** default cell size in degrees, roughly 111 km along a meridian */
+  public static final double DEFAULT_CELL_DEGREES = 1.0;
+
+  private final double cellDegrees;
+  private final int rows;
+  private final int columns;
+  private final double earthRadius;
+
+  /** airports by cell, keyed by iata code inside a cell */
+  private final Map<Integer, Map<String, Airport>> cells =
+      new ConcurrentHashMap<Integer, Map<String, Airport>>();
+
+  /**
+   * @param cellDegrees the size of a grid cell in degrees, must divide the globe in whole cells
+   * @param earthRadius the radius in km used to convert search radii into angles
+   */
+  public SpatialIndex(double cellDegrees, double earthRadius) {
+    this.cellDegrees = cellDegrees;
+    this.rows = (int) Math.ceil(180 / cellDegrees);
+    this.columns = columnsOf(cellDegrees);
+    this.earthRadius = earthRadius;
+  }
+
+  /**
+   * Columns wrap around at the antimeridian, which only lines up with the cells on either side if
+   * the cells divide the 360 degrees of longitude.
+   *
+   * @return the number of columns of a grid with the given cell size in degrees
+   * @throws IllegalArgumentException if the cell size doesn't divide the globe in whole cells
+   */
+  public static int columnsOf(double cellDegrees) {
+    double columns = 360 / cellDegrees;
+    if (!(cellDegrees > 0 && cellDegrees <= 180)
+        || !(Math.abs(columns - Math.rint(columns)) <= 1e-9 * columns)) {
+      throw new IllegalArgumentException("cell size must divide 360 degrees: " + cellDegrees);
+    }
+    return (int) Math.rint(columns);
+  }
+
+  public void add(Airport airport) {
+    cells.computeIfAbsent(cellOf(airport.getAirportData()),
+        k -> new ConcurrentHashMap<String, Airport>()).put(airport.getAirportData().getIata(),
+        airport);
+  }
+
+  public void remove(Airport airport) {
+    Map<String, Airport> cell = cells.get(cellOf(airport.getAirportData()));
+    if (cell != null) {
+      cell.remove(airport.getAirportData().getIata(), airport);
+    }
+  }
+
+  public void clear() {
+    cells.clear();
+  }
+
+  /**
+   * Visits every airport in the cells overlapping the circle of the given radius around a point.
+   * The candidates are a superset of the airports within the radius, callers still have to check
+   * the exact distance.
+   *
+   * @param latitude center latitude in degrees
+   * @param longitude center longitude in degrees
+   * @param radius search radius in km
+   * @param action called once per candidate airport
+   */
+  public void forEachCandidate(double latitude, double longitude, double radius,
+      Consumer<Airport> action) {
+    double angle = radius / earthRadius;
+    if (angle >= Math.PI) {
+      cells.values().forEach(cell -> cell.values().forEach(action));
+      return;
+    }
+    double latSpan = Math.toDegrees(angle);
+    double minLat = latitude - latSpan;
+    double maxLat = latitude + latSpan;
+    int minRow = row(Math.max(minLat, -90));
+    int maxRow = row(Math.min(maxLat, 90));
+
+    // a circle containing a pole covers every longitude, otherwise the widest longitude span of a
+    // spherical cap is asin(sin(angle) / cos(latitude))
+    double sinAngle = Math.sin(angle);
+    double cosLat = Math.cos(Math.toRadians(latitude));
+    if (minLat <= -90 || maxLat >= 90 || sinAngle >= cosLat) {
+      visitRows(minRow, maxRow, 0, columns - 1, action);
+      return;
+    }
+    double lonSpan = Math.toDegrees(Math.asin(sinAngle / cosLat));
+    int minColumn = (int) Math.floor((longitude - lonSpan + 180) / cellDegrees);
+    int maxColumn = (int) Math.floor((longitude + lonSpan + 180) / cellDegrees);
+    if (maxColumn - minColumn + 1 >= columns) {
+      visitRows(minRow, maxRow, 0, columns - 1, action);
+    } else {
+      visitRows(minRow, maxRow, minColumn, maxColumn, action);
+    }
+  }
+
+  /**
+   * Visits every airport in the cells overlapping a latitude/longitude box, a superset of the
+   * airports within it.
+   *
+   * @param minLatitude the southern edge in degrees
+   * @param minLongitude the western edge in degrees, greater than maxLongitude if the box crosses
+   *        the antimeridian
+   * @param maxLatitude the northern edge in degrees
+   * @param maxLongitude the eastern edge in degrees
+   * @param action called once per candidate airport
+   */
+  public void forEachCandidateInBox(double minLatitude, double minLongitude, double maxLatitude,
+      double maxLongitude, Consumer<Airport> action) {
+    int minRow = row(Math.max(minLatitude, -90));
+    int maxRow = row(Math.min(maxLatitude, 90));
+    int minColumn = (int) Math.floor((minLongitude + 180) / cellDegrees);
+    int maxColumn = (int) Math.floor((maxLongitude + 180) / cellDegrees);
+    if (minLongitude > maxLongitude) {
+      maxColumn += columns;
+    }
+    if (maxColumn - minColumn + 1 >= columns) {
+      visitRows(minRow, maxRow, 0, columns - 1, action);
+    } else {
+      visitRows(minRow, maxRow, minColumn, maxColumn, action);
+    }
+  }
+
+  /**
+   * Visits the cells in the given row and column range, column numbers outside of [0, columns) wrap
+   * around the antimeridian.
+   */
+  private void visitRows(int minRow, int maxRow, int minColumn, int maxColumn,
+      Consumer<Airport> action) {
+    for (int r = minRow; r <= maxRow; r++) {
+      for (int c = minColumn; c <= maxColumn; c++) {
+        Map<String, Airport> cell = cells.get(key(r, Math.floorMod(c, columns)));
+        if (cell != null) {
+          cell.values().forEach(action);
+        }
+      }
+    }
+  }
+
+  private int cellOf(AirportData airportData) {
+    return key(row(airportData.getLatitude()), column(airportData.getLongitude()));
+  }
+
+  private int row(double latitude) {
+    return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellDegrees)));
+  }
+
+  private int column(double longitude) {
+    return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), columns);
+  }
+
+  private int key(int row, int column) {
+    return row * columns + column;
+  }
+}
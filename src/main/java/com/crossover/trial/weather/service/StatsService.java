@@ -1,42 +1,69 @@
 package com.crossover.trial.weather.service;
 
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class StatsService {
+  /** radius histogram bucket size in km */
+  private static final int RADIUS_BUCKET_SIZE = 10;
+
+  /** radii beyond half the earth's circumference are all counted in the last bucket */
+  private static final int RADIUS_BUCKETS = 20040 / RADIUS_BUCKET_SIZE + 1;
+
   /**
    * Internal performance counter to better understand most requested information, this map can be
    * improved but for now provides the basis for future performance optimizations. Due to the
    * stateless deployment architecture we don't want to write this to disk, but will pull it off
-   * using a REST request and aggregate with other performance metrics {@link #ping()}
+   * using a REST request and aggregate with other performance metrics {@link #getStats()}. The
+   * counters are striped so concurrent queries neither block nor lose updates.
    */
-  public static Map<String, Integer> requestFrequency;
-  public static Map<Double, Integer> radiusFreq;
-  public static AtomicInteger totalFrequency;
+  private final Map<String, LongAdder> requestFrequency =
+      new ConcurrentHashMap<String, LongAdder>();
+  private final LongAdder[] radiusFreq = new LongAdder[RADIUS_BUCKETS];
+  private final LongAdder totalFrequency = new LongAdder();
+
+  /** the highest radius bucket requested so far, -1 if none */
+  private final AtomicInteger maxRadiusBucket = new AtomicInteger(-1);
   AirportService airportServ;
 
   private static class InstanceHolder {
-    public static StatsService INSTANCE = new StatsService();
+    public static StatsService INSTANCE = new StatsService(AirportService.getInstance());
   }
 
   public static StatsService getInstance() {
     return InstanceHolder.INSTANCE;
   }
 
-  private StatsService() {
-    requestFrequency = new ConcurrentHashMap<String, Integer>();
-    radiusFreq = new ConcurrentHashMap<Double, Integer>();
-    airportServ = AirportService.getInstance();
-    totalFrequency = new AtomicInteger(0);
+  /**
+   * Counts requests about airports held elsewhere, e.g. by the shards of a router. There is no
+   * datasize nor list of airports for {@link #getStats()}, see
+   * {@link #getRequestFrequency(Collection)}.
+   */
+  public StatsService() {
+    this(null);
+  }
+
+  /**
+   * Statistics of an airport service of its own, e.g. that of a shard node.
+   */
+  public StatsService(AirportService airportService) {
+    for (int i = 0; i < radiusFreq.length; i++) {
+      radiusFreq[i] = new LongAdder();
+    }
+    airportServ = airportService;
   }
 
   public void reset() {
     requestFrequency.clear();
-    radiusFreq.clear();
-    totalFrequency.set(0);
+    for (LongAdder bucket : radiusFreq) {
+      bucket.reset();
+    }
+    maxRadiusBucket.set(-1);
+    totalFrequency.reset();
   }
 
   /**
@@ -45,10 +72,20 @@ public class StatsService {
    * @param iata an iata code
    * @param radius query radius
    */
-  public void updateRequestFrequency(String iata, Double radius) {
-    requestFrequency.put(iata, requestFrequency.getOrDefault(iata, 0) + 1);
-    radiusFreq.put(radius, radiusFreq.getOrDefault(radius, 0));
-    totalFrequency.incrementAndGet();
+  public void updateRequestFrequency(String iata, double radius) {
+    LongAdder counter = requestFrequency.get(iata);
+    if (counter == null) {
+      counter = requestFrequency.computeIfAbsent(iata, k -> new LongAdder());
+    }
+    counter.increment();
+
+    int bucket = (int) Math.min(Math.max(radius, 0) / RADIUS_BUCKET_SIZE, RADIUS_BUCKETS - 1);
+    radiusFreq[bucket].increment();
+    int max = maxRadiusBucket.get();
+    while (bucket > max && !maxRadiusBucket.compareAndSet(max, bucket)) {
+      max = maxRadiusBucket.get();
+    }
+    totalFrequency.increment();
   }
 
   /**
@@ -63,30 +100,51 @@ public class StatsService {
     return retval;
   }
 
-  
   /**
-   * @return Returns a map of ratios of each iata request to the total requests 
+   * @return the number of requests recorded for the given iata code
+   */
+  public long getRequestCount(String iata) {
+    LongAdder counter = requestFrequency.get(iata);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * @return the number of requests recorded for all iata codes
+   */
+  public long getTotalRequestCount() {
+    return totalFrequency.sum();
+  }
+
+  /**
+   * @return Returns a map of ratios of each iata request to the total requests
    */
   public Map<String, Double> getRequestFrequency() {
+    return getRequestFrequency(airportServ.getAllAirports());
+  }
+
+  /**
+   * @return Returns a map of ratios of the requests of each of the given iata codes to the total
+   *         requests
+   */
+  public Map<String, Double> getRequestFrequency(Collection<String> iataCodes) {
     Map<String, Double> frequencyMap = new HashMap<String, Double>();
-    for (String iata : airportServ.getAllAirports()) {
-      double frac = requestFrequency.getOrDefault(iata, 0) / totalFrequency.get();
+    long total = totalFrequency.sum();
+    for (String iata : iataCodes) {
+      double frac = total == 0 ? 0 : (double) getRequestCount(iata) / total;
       frequencyMap.put(iata, frac);
     }
     return frequencyMap;
   }
 
   /**
-   * @return returns a histogram of radius searches with a bucket size of 10
+   * @return returns a histogram of radius searches with a bucket size of 10, covering up to the
+   *         largest radius requested or 1000 km if there were no requests
    */
   public int[] getRadiusFreqHist() {
-    int m = radiusFreq.keySet().stream().max(Double::compare).orElse(1000.0).intValue();
-    m = m / 10 + 1;
-    int[] hist = new int[m];
-    Arrays.fill(hist, 0);
-    for (Map.Entry<Double, Integer> e : radiusFreq.entrySet()) {
-      int i = e.getKey().intValue() / 10;
-      hist[i] += e.getValue();
+    int max = maxRadiusBucket.get();
+    int[] hist = new int[max < 0 ? 1000 / RADIUS_BUCKET_SIZE + 1 : max + 1];
+    for (int i = 0; i <= max; i++) {
+      hist[i] = radiusFreq[i].intValue();
     }
     return hist;
   }
@@ -0,0 +1,253 @@
+package com.crossover.trial.weather.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherTile;
+
+/**
+ * The airports' data points summed up per tile of a latitude/longitude grid at a few zoom levels,
+ * see {@link WeatherTile}, so a map asks for a tile instead of the airports within it. Tiles are
+ * created when the first airport falls in them and kept up to date as data is collected, reading a
+ * tile is a lookup and a copy of its six aggregates.
+ *
+ * The grid remembers the atmospheric information it summed up for every airport. An update takes
+ * out the data points which changed since and adds the airport's current ones, so updates of one
+ * airport reported out of order by concurrent collectors still leave the grid at its latest data.
+ * Likewise an added airport only stays in the grid while the store holds it under its code.
+ */
+public class TileGrid implements AirportListener {
+  /** the largest zoom level, its tiles are about 5 km high */
+  public static final int MAX_ZOOM = 12;
+
+  private static class Tile {
+    /** the following fields are guarded by this */
+    int airports;
+    final List<DataPointAggregate> aggregates = DataPointAggregate.forEachType();
+  }
+
+  /** what the grid summed up for an airport */
+  private static class Entry {
+    final Airport airport;
+    /** the tiles of the airport, one per zoom level */
+    final Tile[] tiles;
+
+    /** the following fields are guarded by this */
+    AtmosphericInformation applied;
+    boolean removed;
+
+    Entry(Airport airport, Tile[] tiles) {
+      this.airport = airport;
+      this.tiles = tiles;
+    }
+  }
+
+  private final int[] zoomLevels;
+
+  /** the store of the airports, which tells the airport a code currently stands for */
+  private final AirportStore airportStore;
+
+  /** the tiles of every zoom level, by row and column */
+  private final List<Map<Long, Tile>> levels = new ArrayList<Map<Long, Tile>>();
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  /**
+   * @param zoomLevels the zoom levels maintained, 0 to {@link #MAX_ZOOM}
+   * @param airportStore the store of the airports whose changes are reported to the grid
+   */
+  public TileGrid(int[] zoomLevels, AirportStore airportStore) {
+    if (zoomLevels.length == 0) {
+      throw new IllegalArgumentException("no zoom levels");
+    }
+    for (int zoom : zoomLevels) {
+      if (zoom < 0 || zoom > MAX_ZOOM) {
+        throw new IllegalArgumentException("zoom levels must be 0 to " + MAX_ZOOM + ": " + zoom);
+      }
+    }
+    this.zoomLevels = zoomLevels.clone();
+    this.airportStore = airportStore;
+    for (int i = 0; i < zoomLevels.length; i++) {
+      levels.add(new ConcurrentHashMap<Long, Tile>());
+    }
+  }
+
+  /**
+   * Parses a comma separated list of zoom levels.
+   *
+   * @return the zoom levels, null if the list is empty
+   */
+  public static int[] parseZoomLevels(String zoomLevels) {
+    if (zoomLevels == null || zoomLevels.trim().isEmpty()) {
+      return null;
+    }
+    String[] split = zoomLevels.split(",");
+    int[] retval = new int[split.length];
+    for (int i = 0; i < split.length; i++) {
+      retval[i] = Integer.parseInt(split[i].trim());
+    }
+    return retval;
+  }
+
+  public int[] getZoomLevels() {
+    return zoomLevels.clone();
+  }
+
+  /**
+   * @return the tile summed up as of now, null if the zoom level isn't maintained or the tile is
+   *         outside the grid
+   */
+  public WeatherTile get(int zoom, int x, int y) {
+    int level = levelOf(zoom);
+    if (level < 0 || x < 0 || x >= 1 << zoom || y < 0 || y >= 1 << zoom) {
+      return null;
+    }
+    Tile tile = levels.get(level).get(key(x, y));
+    List<DataPointAggregate> aggregates = DataPointAggregate.forEachType();
+    int airports = 0;
+    if (tile != null) {
+      synchronized (tile) {
+        airports = tile.airports;
+        for (int i = 0; i < aggregates.size(); i++) {
+          aggregates.get(i).add(tile.aggregates.get(i));
+        }
+      }
+    }
+    return new WeatherTile(zoom, x, y, airports, aggregates);
+  }
+
+  @Override
+  public void airportAdded(Airport airport) {
+    AirportData airportData = airport.getAirportData();
+    String iata = airportData.getIata();
+    if (airportStore.get(iata) != airport) {
+      // removed or replaced since, a later add reports the airport the code stands for
+      return;
+    }
+    Tile[] tiles = new Tile[zoomLevels.length];
+    for (int level = 0; level < zoomLevels.length; level++) {
+      int size = 1 << zoomLevels[level];
+      long key =
+          key(cell((airportData.getLongitude() + 180) / 360, size),
+              cell((90 - airportData.getLatitude()) / 180, size));
+      tiles[level] = levels.get(level).computeIfAbsent(key, k -> new Tile());
+    }
+    Entry entry = new Entry(airport, tiles);
+    Entry replaced;
+    synchronized (entry) {
+      replaced = entries.put(iata, entry);
+      for (Tile tile : tiles) {
+        synchronized (tile) {
+          tile.airports++;
+        }
+      }
+      apply(entry, airport.getAtmosphericInformation());
+    }
+    // an airport the add replaced is taken out even if its removal is reported late, or not at all
+    if (replaced != null) {
+      take(replaced);
+    }
+  }
+
+  @Override
+  public void airportRemoved(Airport airport) {
+    Entry entry = entries.get(airport.getAirportData().getIata());
+    if (entry == null || entry.airport != airport) {
+      return;
+    }
+    entries.remove(airport.getAirportData().getIata(), entry);
+    take(entry);
+  }
+
+  /**
+   * Takes what was summed up for an airport out of its tiles, once.
+   */
+  private void take(Entry entry) {
+    synchronized (entry) {
+      if (entry.removed) {
+        return;
+      }
+      apply(entry, new AtmosphericInformation());
+      for (Tile tile : entry.tiles) {
+        synchronized (tile) {
+          tile.airports--;
+        }
+      }
+      entry.removed = true;
+    }
+  }
+
+  @Override
+  public void airportsCleared() {
+    for (Entry entry : entries.values()) {
+      airportRemoved(entry.airport);
+    }
+  }
+
+  @Override
+  public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+      DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+    Entry entry = entries.get(airport.getAirportData().getIata());
+    if (entry == null || entry.airport != airport) {
+      return;
+    }
+    synchronized (entry) {
+      if (!entry.removed) {
+        apply(entry, airport.getAtmosphericInformation());
+      }
+    }
+  }
+
+  /**
+   * Replaces what was summed up for the airport by the given atmospheric information, only the
+   * data points which changed are touched.
+   */
+  private void apply(Entry entry, AtmosphericInformation ai) {
+    AtmosphericInformation applied = entry.applied;
+    entry.applied = ai;
+    for (DataPointType type : DataPointType.values()) {
+      DataPoint before = applied == null ? null : applied.getDataPoint(type);
+      DataPoint after = ai.getDataPoint(type);
+      if (before == after) {
+        continue;
+      }
+      for (Tile tile : entry.tiles) {
+        synchronized (tile) {
+          DataPointAggregate aggregate = tile.aggregates.get(type.ordinal());
+          if (before != null) {
+            aggregate.remove(before);
+          }
+          if (after != null) {
+            aggregate.add(after);
+          }
+        }
+      }
+    }
+  }
+
+  private int levelOf(int zoom) {
+    for (int level = 0; level < zoomLevels.length; level++) {
+      if (zoomLevels[level] == zoom) {
+        return level;
+      }
+    }
+    return -1;
+  }
+
+  /** the cell of a fraction of the width or height, the last one for the far edge */
+  private static int cell(double fraction, int size) {
+    return Math.min(size - 1, Math.max(0, (int) Math.floor(fraction * size)));
+  }
+
+  private static long key(int x, int y) {
+    return ((long) y << 32) | x;
+  }
+}
@@ -0,0 +1,357 @@
+package com.crossover.trial.weather.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+
+/**
+ * Pushes the weather of an airport, or of the airports within a radius of it, to subscribers as it
+ * is updated.
+ *
+ * Every subscription has its own queue of the latest atmospheric information per airport. A
+ * subscriber is sent its queue by one task at a time on the executor; updates arriving while it is
+ * being sent replace the queued information of the same airport, so a slow subscriber receives
+ * fewer, newer updates instead of falling behind. Subscriptions whose sink fails are closed.
+ *
+ * As for queries, the region of a subscription is fixed by the position of its airport when it
+ * subscribed. Airports added to the region later are included.
+ *
+ * Idle subscribers are sent a heartbeat every -Dweather.stream.heartbeat seconds, default 30, so
+ * that closed connections are noticed.
+ */
+public class WeatherSubscriptions implements AirportListener {
+  private static final Logger LOGGER = Logger.getLogger(WeatherSubscriptions.class.getName());
+
+  private final AirportService airportService;
+  private final Executor executor;
+
+  /**
+   * the subscriptions by iata code of the airports in their region, codes nobody watches are
+   * removed
+   */
+  private final Map<String, Set<Subscription>> byAirport =
+      new ConcurrentHashMap<String, Set<Subscription>>();
+
+  /** subscriptions with a radius, which new airports may fall into */
+  private final Set<Subscription> regions = ConcurrentHashMap.newKeySet();
+
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  private static class InstanceHolder {
+    public static WeatherSubscriptions INSTANCE = create(AirportService.getInstance());
+  }
+
+  public static WeatherSubscriptions getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * @return subscriptions listening to the given service, sending on daemon threads and with the
+   *         configured heartbeat
+   */
+  public static WeatherSubscriptions create(AirportService airportService) {
+    AtomicInteger count = new AtomicInteger();
+    WeatherSubscriptions subscriptions =
+        new WeatherSubscriptions(airportService, Executors.newCachedThreadPool(runnable -> {
+          Thread thread = new Thread(runnable, "weather-stream-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }));
+    airportService.addListener(subscriptions);
+    long heartbeat = Long.getLong("weather.stream.heartbeat", 30);
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "weather-stream-heartbeat");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(subscriptions::heartbeat, heartbeat, heartbeat,
+        TimeUnit.SECONDS);
+    return subscriptions;
+  }
+
+  /**
+   * Subscriptions which still have to be added as a listener of the service.
+   *
+   * @param executor runs the tasks sending to subscribers, which may block on slow ones
+   */
+  public WeatherSubscriptions(AirportService airportService, Executor executor) {
+    this.airportService = airportService;
+    this.executor = executor;
+  }
+
+  /**
+   * Where a subscription's updates go.
+   */
+  public interface Sink extends Closeable {
+
+    /**
+     * Sends updates, called by one thread at a time and allowed to block.
+     *
+     * @param weather the latest atmospheric information by iata code in the order the airports
+     *        were updated, empty for a heartbeat
+     * @throws IOException if the subscriber is gone, the subscription is closed then
+     */
+    void send(Map<String, AtmosphericInformation> weather) throws IOException;
+  }
+
+  /**
+   * Subscribes to the weather of an airport and the airports within a radius of it. The current
+   * weather of the region is sent first, the center airport even without data.
+   *
+   * @param radius in km, 0 for the airport alone
+   * @return the subscription, null if the airport is unknown
+   */
+  public Subscription subscribe(String iata, double radius, Sink sink) {
+    Airport center = airportService.getAirport(iata);
+    if (center == null) {
+      return null;
+    }
+    Subscription subscription = new Subscription(center.getAirportData(), radius, sink);
+    subscriptions.add(subscription);
+    if (radius > 0) {
+      regions.add(subscription);
+    }
+    Map<String, Airport> region = new LinkedHashMap<String, Airport>();
+    region.put(iata, center);
+    if (radius > 0) {
+      airportService.forEachAirportWithinRadius(center, radius,
+          airport -> region.put(airport.getAirportData().getIata(), airport));
+    }
+    // the listener waits for the lock, so updates read here are replaced by any it queues after
+    synchronized (subscription) {
+      region.keySet().forEach(code -> watch(code, subscription));
+      for (Map.Entry<String, Airport> entry : region.entrySet()) {
+        AtmosphericInformation ai = entry.getValue().getAtmosphericInformation();
+        if (entry.getKey().equals(iata) || ai.hasAtleastOneNotNullField()) {
+          subscription.pending.put(entry.getKey(), ai);
+        }
+      }
+      subscription.schedule();
+    }
+    return subscription;
+  }
+
+  /**
+   * A subscriber's region and its queue of updates.
+   */
+  public class Subscription {
+    private final String iata;
+    private final double latitude;
+    private final double longitude;
+    private final double radius;
+    private final Sink sink;
+
+    /** the codes the subscription is in the set of in {@link #byAirport} */
+    private final Set<String> watched = ConcurrentHashMap.newKeySet();
+
+    /** the following fields are guarded by this */
+    private Map<String, AtmosphericInformation> pending =
+        new LinkedHashMap<String, AtmosphericInformation>();
+    private boolean scheduled;
+    private boolean heartbeat;
+    private boolean closed;
+
+    Subscription(AirportData center, double radius, Sink sink) {
+      this.iata = center.getIata();
+      this.latitude = center.getLatitude();
+      this.longitude = center.getLongitude();
+      this.radius = radius;
+      this.sink = sink;
+    }
+
+    private synchronized void offer(String code, AtmosphericInformation ai) {
+      if (closed) {
+        return;
+      }
+      if (pending.put(code, ai) != null) {
+        coalesced.increment();
+      }
+      schedule();
+    }
+
+    private synchronized void heartbeat() {
+      if (!closed && !scheduled) {
+        heartbeat = true;
+        schedule();
+      }
+    }
+
+    /** called with the lock held */
+    private void schedule() {
+      if (!scheduled) {
+        scheduled = true;
+        executor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        Map<String, AtmosphericInformation> batch;
+        synchronized (this) {
+          if (closed || (pending.isEmpty() && !heartbeat)) {
+            scheduled = false;
+            return;
+          }
+          batch = pending;
+          pending = new LinkedHashMap<String, AtmosphericInformation>();
+          heartbeat = false;
+        }
+        try {
+          sink.send(Collections.unmodifiableMap(batch));
+          sent.add(batch.size());
+        } catch (IOException | RuntimeException e) {
+          LOGGER.log(Level.FINE, "closing the subscription to " + iata, e);
+          close();
+          return;
+        }
+      }
+    }
+
+    /**
+     * Stops the updates and closes the sink.
+     */
+    public void close() {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        pending.clear();
+      }
+      subscriptions.remove(this);
+      regions.remove(this);
+      for (String code : watched) {
+        unwatch(code, this);
+      }
+      try {
+        sink.close();
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "could not close the subscription to " + iata, e);
+      }
+    }
+
+    public boolean isClosed() {
+      synchronized (this) {
+        return closed;
+      }
+    }
+  }
+
+  private void watch(String code, Subscription subscription) {
+    byAirport.compute(code, (k, watching) -> {
+      Set<Subscription> retval =
+          watching == null ? ConcurrentHashMap.<Subscription> newKeySet() : watching;
+      retval.add(subscription);
+      subscription.watched.add(code);
+      return retval;
+    });
+    // a subscription closing meanwhile may not have seen the code
+    if (subscription.isClosed()) {
+      unwatch(code, subscription);
+    }
+  }
+
+  private void unwatch(String code, Subscription subscription) {
+    byAirport.computeIfPresent(code, (k, watching) -> {
+      watching.remove(subscription);
+      subscription.watched.remove(code);
+      return watching.isEmpty() ? null : watching;
+    });
+  }
+
+  /**
+   * Removes the airport from the regions it is in, the subscriptions to it as a center stay.
+   */
+  private void unwatchRegions(String code) {
+    byAirport.computeIfPresent(code, (k, watching) -> {
+      watching.removeIf(subscription -> {
+        if (subscription.iata.equals(code)) {
+          return false;
+        }
+        subscription.watched.remove(code);
+        return true;
+      });
+      return watching.isEmpty() ? null : watching;
+    });
+  }
+
+  /**
+   * Sends a heartbeat to every subscriber with nothing to send.
+   */
+  public void heartbeat() {
+    subscriptions.forEach(Subscription::heartbeat);
+  }
+
+  @Override
+  public void airportAdded(Airport airport) {
+    AirportData airportData = airport.getAirportData();
+    for (Subscription subscription : regions) {
+      if (!subscription.iata.equals(airportData.getIata())
+          && AirportService.calculateDistance(subscription.latitude, subscription.longitude,
+              airportData, airportService.earthRadius) <= subscription.radius) {
+        watch(airportData.getIata(), subscription);
+      }
+    }
+  }
+
+  @Override
+  public void airportRemoved(Airport airport) {
+    // the center stays subscribed, an airport re-added elsewhere may no longer be in a region
+    unwatchRegions(airport.getAirportData().getIata());
+  }
+
+  @Override
+  public void airportsCleared() {
+    for (String code : byAirport.keySet()) {
+      unwatchRegions(code);
+    }
+  }
+
+  @Override
+  public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+      DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+    if (previous == current) {
+      return;
+    }
+    Set<Subscription> watching = byAirport.get(airport.getAirportData().getIata());
+    if (watching != null) {
+      for (Subscription subscription : watching) {
+        subscription.offer(airport.getAirportData().getIata(), current);
+      }
+    }
+  }
+
+  /**
+   * @return the number of subscriptions, airports watched, updates sent and updates replaced by
+   *         newer ones before they were sent
+   */
+  public Map<String, Long> getStats() {
+    Map<String, Long> stats = new HashMap<String, Long>();
+    stats.put("subscriptions", (long) subscriptions.size());
+    stats.put("airports", (long) byAirport.size());
+    stats.put("sent", sent.sum());
+    stats.put("coalesced", coalesced.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,82 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportCatalog;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Compiles the bundled airports.dat into a catalog and reads it back.
+ */
+public class AirportCatalogTest {
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private AirportCatalog _catalog;
+
+  @Before
+  public void setUp() throws Exception {
+    Path source = Paths.get(getClass().getResource("/airports.dat").toURI());
+    Path file = _folder.getRoot().toPath().resolve("airports.cat");
+    assertEquals(10, AirportCatalog.compile(source, file));
+    _catalog = AirportCatalog.open(file);
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    assertEquals(10, _catalog.size());
+    AirportData bos = _catalog.get("BOS");
+    assertEquals("BOS", bos.getIata());
+    assertEquals(42.364347, bos.getLatitude(), 0);
+    assertEquals(-71.005181, bos.getLongitude(), 0);
+    assertEquals("KBOS", _catalog.getIcao("BOS"));
+    assertEquals("EGSS", _catalog.getIcao("STN"));
+    assertNull(_catalog.get("XXX"));
+    assertNull(_catalog.get("BO"));
+    assertNull(_catalog.getIcao("XXX"));
+  }
+
+  @Test
+  public void testOrder() throws Exception {
+    List<String> codes = new ArrayList<String>();
+    _catalog.forEach(airport -> codes.add(airport.getIata()));
+    assertEquals(10, codes.size());
+    for (int i = 1; i < codes.size(); i++) {
+      assertTrue(codes.get(i - 1).compareTo(codes.get(i)) < 0);
+    }
+    for (String code : codes) {
+      assertEquals(code, _catalog.get(code).getIata());
+    }
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    AirportService service = AirportService.getInstance();
+    service.clearAirports();
+    _catalog.loadInto(service);
+    assertEquals(10, service.getAllAirports().size());
+    assertEquals(51.4775, service.getAirport("LHR").getAirportData().getLatitude(), 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotACatalog() throws Exception {
+    Path file = _folder.newFile("garbage.cat").toPath();
+    Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    AirportCatalog.open(file);
+  }
+}
@@ -0,0 +1,103 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportCsvParser;
+
+/**
+ * Checks the airports.dat parser against quoted fields, unknown values and line endings.
+ */
+public class AirportCsvParserTest {
+
+  private AirportCsvParser parser(String data) {
+    return new AirportCsvParser(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testQuotedCommas() throws Exception {
+    AirportData airport =
+        AirportCsvParser.parseLine("3,\"Kennedy, \"\"JFK\"\" Intl\",\"New York, NY\",\"United "
+            + "States\",\"JFK\",\"KJFK\",40.639751,-73.778925,13,-5,\"A\"");
+    assertEquals("JFK", airport.getIata());
+    assertEquals(40.639751, airport.getLatitude(), 0);
+    assertEquals(-73.778925, airport.getLongitude(), 0);
+
+    airport =
+        AirportCsvParser.parseLine("7,\"Luton \\\"London\\\", UK\",\"London\",\"United Kingdom\","
+            + "\"LTN\",\"EGGW\",51.874722,-0.368333,526,0,\"E\"");
+    assertEquals("LTN", airport.getIata());
+    assertEquals(-0.368333, airport.getLongitude(), 0);
+  }
+
+  @Test
+  public void testInvalidLines() throws Exception {
+    assertNull(AirportCsvParser.parseLine(""));
+    assertNull(AirportCsvParser.parseLine("not an airport"));
+    assertNull(AirportCsvParser.parseLine("2,\"No Code\",\"X\",\"Y\",\"\",\"\",1.0,2.0,0,0,\"U\""));
+    assertNull(AirportCsvParser.parseLine("2,\"No Code\",\"X\",\"Y\",\\N,\\N,1.0,2.0,0,0,\"U\""));
+    assertNull(AirportCsvParser.parseLine("2,\"Bad\",\"X\",\"Y\",\"BAD\",\"\",north,2.0"));
+    assertNull(AirportCsvParser.parseLine("2,\"Short\",\"X\",\"Y\",\"SRT\",\"\",1.0"));
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    AirportCsvParser parser =
+        parser("1,\"Logan\",\"Boston\",\"US\",\"BOS\",\"KBOS\",42.364347,-71.005181,19\r\n"
+            + "\r\n"
+            + "2,\"Newark\",\"Newark\",\"US\",\"EWR\",\\N,40.6925,-74.168667");
+    assertTrue(parser.next());
+    assertEquals("BOS", parser.getAirport().getIata());
+    assertEquals("KBOS", parser.getIcao());
+    assertTrue(parser.next());
+    assertNull(parser.getAirport());
+    assertEquals("", parser.getLine());
+    assertTrue(parser.next());
+    assertEquals(-74.168667, parser.getAirport().getLongitude(), 0);
+    assertNull(parser.getIcao());
+    assertFalse(parser.next());
+  }
+
+  @Test
+  public void testLongLine() throws Exception {
+    char[] name = new char[200000];
+    Arrays.fill(name, 'x');
+    AirportCsvParser parser =
+        parser("1,\"" + new String(name) + "\",\"A\",\"B\",\"AAA\",\"\",1.5,2.5\n"
+            + "2,\"Short\",\"A\",\"B\",\"BBB\",\"\",3.5,4.5\n");
+    assertTrue(parser.next());
+    assertEquals("AAA", parser.getAirport().getIata());
+    assertTrue(parser.next());
+    assertEquals(3.5, parser.getAirport().getLatitude(), 0);
+    assertFalse(parser.next());
+  }
+
+  @Test
+  public void testNumbersMatchParseDouble() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      String latitude =
+          String.format(Locale.ROOT, "%." + random.nextInt(12) + "f",
+              -90 + random.nextDouble() * 180);
+      String longitude = Double.toString(-180 + random.nextDouble() * 360);
+      AirportData airport =
+          AirportCsvParser.parseLine("1,\"A\",\"B\",\"C\",\"XXX\",\"\"," + latitude + ","
+              + longitude);
+      assertEquals(latitude, Double.parseDouble(latitude), airport.getLatitude(), 0);
+      assertEquals(longitude, Double.parseDouble(longitude), airport.getLongitude(), 0);
+    }
+    assertEquals(1.5e-3, AirportCsvParser.parseLine("1,\"A\",\"B\",\"C\",\"XXX\",\"\",1.5e-3,"
+        + "-0").getLatitude(), 0);
+  }
+}
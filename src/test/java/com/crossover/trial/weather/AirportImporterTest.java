@@ -0,0 +1,127 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportCsvParser;
+import com.crossover.trial.weather.service.AirportImporter;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Imports files cut in many small chunks and compares the result to reading them in one go.
+ */
+public class AirportImporterTest {
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private ForkJoinPool _pool = new ForkJoinPool(4);
+
+  /** small enough that every file is parsed by many tasks */
+  private AirportImporter _importer = new AirportImporter(_pool, 100);
+
+  @After
+  public void tearDown() {
+    _pool.shutdown();
+  }
+
+  private Path write(String name, String content) throws Exception {
+    Path file = _folder.getRoot().toPath().resolve(name);
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private String airports(String prefix, int from, int to, double latitude) {
+    StringBuilder file = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      file.append(i).append(",\"Airport, ").append(i).append("\",\"City\",\"Country\",\"")
+          .append(prefix).append(i).append("\",\"\",").append(latitude).append(',').append(i)
+          .append(",0,0,\"U\"\n");
+    }
+    return file.toString();
+  }
+
+  @Test
+  public void testMatchesSequentialRead() throws Exception {
+    String content = airports("A", 0, 500, 1.5) + "not an airport\n" + airports("B", 0, 500, 2.5);
+    Path file = write("big.dat", content);
+
+    AirportCsvParser parser =
+        new AirportCsvParser(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    List<String> expected = new ArrayList<String>();
+    while (parser.next()) {
+      AirportData airport = parser.getAirport();
+      if (airport != null) {
+        expected.add(airport.getIata());
+      }
+    }
+
+    AirportImporter.Result result = _importer.read(Arrays.asList(file));
+    List<String> codes = new ArrayList<String>();
+    for (AirportData airport : result.getAirports()) {
+      codes.add(airport.getIata());
+    }
+    assertEquals(expected, codes);
+    assertEquals(1, result.getRejected());
+    assertTrue(result.getConflicts().isEmpty());
+  }
+
+  @Test
+  public void testConflicts() throws Exception {
+    Path first = write("first.dat", airports("A", 0, 100, 1.5));
+    // overrides A10 to A19, the last line has no newline
+    Path second = write("second.dat", (airports("B", 0, 10, 3.5) + airports("A", 10, 20, 2.5))
+        .trim());
+
+    AirportImporter.Result result = _importer.read(Arrays.asList(first, second));
+    assertEquals(110, result.getAirports().size());
+    assertEquals(10, result.getConflicts().size());
+    AirportImporter.Conflict conflict = result.getConflicts().get(0);
+    assertEquals("A10", conflict.getIata());
+    assertEquals(first, conflict.getReplacedFile());
+    assertEquals(second, conflict.getFile());
+    assertEquals(1.5, conflict.getReplaced().getLatitude(), 0);
+    assertEquals(2.5, conflict.getAirport().getLatitude(), 0);
+
+    AirportService service = AirportService.getInstance();
+    RestWeatherQueryEndpoint.init();
+    _importer.importFiles(Arrays.asList(first, second), service);
+    assertEquals(2.5, service.getAirport("A19").getAirportData().getLatitude(), 0);
+    assertEquals(1.5, service.getAirport("A20").getAirportData().getLatitude(), 0);
+    assertTrue(service.getAllAirports().contains("BOS"));
+  }
+
+  @Test
+  public void testConflictsWithTheService() throws Exception {
+    Path file = write("service.dat", airports("A", 0, 10, 1.5));
+    AirportService service = new AirportService();
+    service.addAirport("A3", 40.5, -73.5);
+    service.addAirport("BOS", 42.364347, -71.005181);
+
+    AirportImporter.Result result = _importer.importFiles(Arrays.asList(file), service);
+    assertEquals(1, result.getConflicts().size());
+    AirportImporter.Conflict conflict = result.getConflicts().get(0);
+    assertEquals("A3", conflict.getIata());
+    assertNull(conflict.getReplacedFile());
+    assertEquals(40.5, conflict.getReplaced().getLatitude(), 0);
+    assertEquals(file, conflict.getFile());
+    assertEquals(1.5, service.getAirport("A3").getAirportData().getLatitude(), 0);
+    assertEquals(11, service.getAirportCount());
+  }
+}
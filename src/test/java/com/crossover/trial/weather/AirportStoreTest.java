@@ -0,0 +1,77 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.AirportStore;
+import com.crossover.trial.weather.service.ArrayAirportStore;
+import com.crossover.trial.weather.service.IndexedAirportStore;
+
+public class AirportStoreTest {
+  private static final double EARTH_RADIUS = 6372.8;
+
+  private AirportStore _indexed;
+  private AirportStore _array;
+
+  @Before
+  public void setUp() throws Exception {
+    _indexed = new IndexedAirportStore(1.0, EARTH_RADIUS);
+    _array = new ArrayAirportStore(EARTH_RADIUS);
+    Random random = new Random(3);
+    for (int i = 0; i < 3000; i++) {
+      put("A" + i, -90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360);
+    }
+  }
+
+  @Test
+  public void testSameRadiusResults() throws Exception {
+    Random random = new Random(5);
+    for (int i = 0; i < 100; i++) {
+      double lat = -90 + random.nextDouble() * 180;
+      double lon = -180 + random.nextDouble() * 360;
+      double radius = random.nextDouble() * 2000;
+      assertEquals(radiusQuery(_indexed, lat, lon, radius), radiusQuery(_array, lat, lon, radius));
+    }
+  }
+
+  @Test
+  public void testRemoveAndReuse() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      _indexed.remove("A" + i);
+      _array.remove("A" + i);
+    }
+    assertNull(_array.get("A1"));
+    put("NEW", 10, 10);
+    put("A2000", 11, 11);
+    assertEquals(_indexed.codes(), _array.codes());
+    assertEquals(_indexed.codes().size(), _array.size());
+    assertEquals(_indexed.size(), _array.size());
+    assertEquals(radiusQuery(_indexed, 10, 10, 500), radiusQuery(_array, 10, 10, 500));
+    assertEquals("NEW", _array.get("NEW").getAirportData().getIata());
+  }
+
+  private void put(String iata, double latitude, double longitude) {
+    for (AirportStore store : new AirportStore[] {_indexed, _array}) {
+      Airport airport = new Airport();
+      airport.setAirportData(new AirportData(iata, latitude, longitude));
+      store.put(airport);
+    }
+  }
+
+  private Set<String> radiusQuery(AirportStore store, double latitude, double longitude,
+      double radius) {
+    Set<String> retval = new HashSet<String>();
+    store.forEachWithinRadius(latitude, longitude, radius,
+        airport -> retval.add(airport.getAirportData().getIata()));
+    return retval;
+  }
+}
@@ -0,0 +1,86 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Checks updates create new snapshots and concurrent updates of an airport don't overwrite each
+ * other.
+ */
+public class AtmosphericInformationTest {
+  private DataPoint _dp =
+      new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22)
+          .build();
+
+  @Test
+  public void testWithDataPointCopies() throws Exception {
+    AtmosphericInformation empty = new AtmosphericInformation();
+    AtmosphericInformation ai = empty.withDataPoint(DataPointType.WIND, _dp, 1000);
+    assertNull(empty.getWind());
+    assertEquals(0, empty.getLastUpdateTime());
+    assertEquals(_dp, ai.getWind());
+    assertEquals(1000, ai.getLastUpdateTime());
+
+    // the snapshot keeps its own data point
+    DataPoint wind = ai.getWind();
+    _dp.setMean(-12.5);
+    assertSame(wind, ai.getWind());
+    assertEquals(22, ai.getWind().getMean(), 0);
+
+    // out of range readings are dropped, the update time still moves
+    DataPoint cold = new DataPoint.Builder().withMean(-100).build();
+    AtmosphericInformation rejected = ai.withDataPoint(DataPointType.TEMPERATURE, cold, 2000);
+    assertNull(rejected.getTemperature());
+    assertSame(wind, rejected.getWind());
+    assertEquals(2000, rejected.getLastUpdateTime());
+  }
+
+  @Test
+  public void testConcurrentUpdatesAllLand() throws Exception {
+    AirportService airportService = new AirportService();
+    airportService.addAirport("BOS", 42.364347, -71.005181);
+    DataPointType[] types = DataPointType.values();
+    ExecutorService executor = Executors.newFixedThreadPool(types.length);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (DataPointType type : types) {
+      DataPoint dp =
+          new DataPoint.Builder().withMean(type == DataPointType.PRESSURE ? 700 : 22).build();
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < 10000; i++) {
+          airportService.updateAtmosphericInformation("BOS", type, dp, System.currentTimeMillis());
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    AtmosphericInformation ai = airportService.getAirport("BOS").getAtmosphericInformation();
+    for (DataPointType type : types) {
+      assertNotNull(type.name(), ai.getDataPoint(type));
+    }
+    assertTrue(ai.wasUpdatedInLastDay());
+  }
+}
@@ -0,0 +1,46 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointHistory;
+import com.crossover.trial.weather.model.DataPointReading;
+
+/**
+ * Checks the history ring buffer keeps the most recent readings in order while it grows and wraps.
+ */
+public class DataPointHistoryTest {
+
+  @Test
+  public void testGrowAndWrap() throws Exception {
+    DataPointHistory history = new DataPointHistory(20);
+    for (int i = 0; i < 50; i++) {
+      history.add(i, new DataPoint.Builder().withMean(i).withCount(i).build());
+      List<DataPointReading> readings = history.get(Long.MIN_VALUE, Long.MAX_VALUE);
+      int expected = Math.min(i + 1, 20);
+      assertEquals(expected, readings.size());
+      for (int j = 0; j < expected; j++) {
+        long time = i + 1 - expected + j;
+        assertEquals(time, readings.get(j).getTime());
+        assertEquals(time, readings.get(j).getDataPoint().getMean(), 0);
+        assertEquals(time, readings.get(j).getDataPoint().getCount());
+      }
+    }
+  }
+
+  @Test
+  public void testWindow() throws Exception {
+    DataPointHistory history = new DataPointHistory(10);
+    for (int i = 0; i < 10; i++) {
+      history.add(i * 100, new DataPoint.Builder().withMean(i).build());
+    }
+    List<DataPointReading> readings = history.get(250, 500);
+    assertEquals(3, readings.size());
+    assertEquals(300, readings.get(0).getTime());
+    assertEquals(500, readings.get(2).getTime());
+  }
+}
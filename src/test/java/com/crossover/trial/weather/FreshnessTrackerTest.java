@@ -0,0 +1,109 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.FreshnessTracker;
+
+/**
+ * Checks the incremental datasize expires airports exactly a day after their last update.
+ */
+public class FreshnessTrackerTest {
+  private static final long NOW = 1500000000000L;
+
+  private FreshnessTracker _tracker = new FreshnessTracker();
+
+  @Test
+  public void testExpiry() throws Exception {
+    _tracker.update("BOS", NOW);
+    _tracker.update("JFK", NOW + 1000);
+    assertEquals(2, _tracker.count(NOW + FreshnessTracker.WINDOW - 1));
+    assertEquals(1, _tracker.count(NOW + FreshnessTracker.WINDOW));
+    assertEquals(0, _tracker.count(NOW + FreshnessTracker.WINDOW + 1000));
+  }
+
+  @Test
+  public void testUpdateRefreshes() throws Exception {
+    _tracker.update("BOS", NOW);
+    _tracker.update("JFK", NOW + 1000);
+    _tracker.update("BOS", NOW + 2000);
+    // a late report of an older update doesn't move the airport back
+    _tracker.update("BOS", NOW + 500);
+    assertEquals(2, _tracker.count(NOW + FreshnessTracker.WINDOW + 1000 - 1));
+    assertEquals(1, _tracker.count(NOW + FreshnessTracker.WINDOW + 1000));
+    assertEquals(0, _tracker.count(NOW + FreshnessTracker.WINDOW + 2000));
+  }
+
+  @Test
+  public void testOutOfOrder() throws Exception {
+    _tracker.update("JFK", NOW + 1000);
+    _tracker.update("BOS", NOW);
+    _tracker.update("EWR", NOW + 500);
+    assertEquals(2, _tracker.count(NOW + FreshnessTracker.WINDOW));
+    assertEquals(1, _tracker.count(NOW + FreshnessTracker.WINDOW + 500));
+  }
+
+  @Test
+  public void testRemoveAndClear() throws Exception {
+    _tracker.update("BOS", NOW);
+    _tracker.update("JFK", NOW);
+    _tracker.remove("BOS");
+    _tracker.remove("LGA");
+    assertEquals(1, _tracker.count(NOW));
+    _tracker.clear();
+    assertEquals(0, _tracker.count(NOW));
+    _tracker.update("BOS", NOW);
+    assertEquals(1, _tracker.count(NOW));
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      String prefix = "T" + t + "-";
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          _tracker.update(prefix + i, NOW + i);
+          _tracker.update(prefix + (i / 2), NOW + i);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(4000, _tracker.count(NOW + FreshnessTracker.WINDOW - 1));
+    // code j was last updated at 2j + 1 below 500, at j from there
+    assertEquals(4 * 750, _tracker.count(NOW + FreshnessTracker.WINDOW + 499));
+    assertEquals(0, _tracker.count(NOW + FreshnessTracker.WINDOW + 1000));
+  }
+
+  @Test
+  public void testReAddRacesUpdate() throws Exception {
+    AirportService airportService = new AirportService();
+    airportService.addAirport("BOS", 42.364347, -71.005181);
+    DataPoint dp = new DataPoint.Builder().withCount(1).withMean(10).build();
+    Thread adder = new Thread(() -> {
+      for (int i = 0; i < 2000; i++) {
+        airportService.addAirport("BOS", 42.364347, -71.005181);
+      }
+    });
+    adder.start();
+    for (int i = 0; i < 2000; i++) {
+      airportService.updateAtmosphericInformation("BOS", DataPointType.WIND, dp,
+          System.currentTimeMillis());
+    }
+    adder.join();
+    // the count agrees with whether the airport as it is now has data
+    boolean hasData =
+        airportService.getAirport("BOS").getAtmosphericInformation().hasAtleastOneNotNullField();
+    assertEquals(hasData ? 1 : 0, airportService.getDataSize().intValue());
+  }
+}
@@ -0,0 +1,89 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.IndexedAirportStore;
+import com.crossover.trial.weather.service.NeighborIndex;
+
+/**
+ * Compares neighbor list walks with searches of the store while airports come and go.
+ */
+public class NeighborIndexTest {
+  private static final double[] RADII = {0, 50, 100, 250, 499, 500};
+
+  private IndexedAirportStore _store = new IndexedAirportStore(1.0, 6372.8);
+  private NeighborIndex _index = new NeighborIndex(_store, 6372.8, new double[] {50, 100, 250,
+      500});
+  private Random _random = new Random(42);
+
+  private Airport put(String iata) {
+    Airport airport = new Airport();
+    // a small area, so airports have plenty of neighbors
+    airport.setAirportData(new AirportData(iata, 40 + _random.nextDouble() * 8,
+        -75 + _random.nextDouble() * 10));
+    _store.put(airport);
+    return airport;
+  }
+
+  private void assertMatchesStore() {
+    _store.forEach(airport -> {
+      AirportData center = airport.getAirportData();
+      for (double radius : RADII) {
+        Set<String> expected = new HashSet<String>();
+        _store.forEachWithinRadius(center.getLatitude(), center.getLongitude(), radius,
+            neighbor -> expected.add(neighbor.getAirportData().getIata()));
+        List<Airport> walked = new ArrayList<Airport>();
+        assertTrue(_index.forEachWithinRadius(airport, radius, walked::add));
+        Set<String> actual = new HashSet<String>();
+        for (Airport neighbor : walked) {
+          actual.add(neighbor.getAirportData().getIata());
+        }
+        assertEquals(center.getIata() + " " + radius, expected, actual);
+        assertEquals(expected.size(), walked.size());
+      }
+    });
+  }
+
+  @Test
+  public void testIncremental() throws Exception {
+    List<Airport> batch = new ArrayList<Airport>();
+    for (int i = 0; i < 200; i++) {
+      batch.add(put("A" + i));
+    }
+    _index.add(batch);
+    assertMatchesStore();
+
+    for (int i = 0; i < 50; i++) {
+      _index.add(Collections.singletonList(put("B" + i)));
+    }
+    for (int i = 0; i < 200; i += 3) {
+      _index.remove(_store.remove("A" + i));
+    }
+    // moved airports
+    for (int i = 1; i < 200; i += 7) {
+      _index.add(Collections.singletonList(put("A" + i)));
+    }
+    assertMatchesStore();
+  }
+
+  @Test
+  public void testNotIndexed() throws Exception {
+    Airport airport = put("XXX");
+    assertFalse(_index.forEachWithinRadius(airport, 50, neighbor -> {}));
+    assertTrue(_index.covers(500));
+    assertFalse(_index.covers(500.5));
+  }
+}
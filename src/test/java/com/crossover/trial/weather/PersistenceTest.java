@@ -0,0 +1,184 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+import com.crossover.trial.weather.persistence.WriteAheadLog;
+import com.crossover.trial.weather.service.AirportListener;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * Restarts the airport service from a persistence directory, from a snapshot and from the log
+ * alone.
+ */
+public class PersistenceTest {
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private AirportService _airports = AirportService.getInstance();
+  private DataPoint _dp =
+      new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22)
+          .build();
+  private Path _dir;
+
+  @Before
+  public void setUp() throws Exception {
+    RestWeatherQueryEndpoint.init();
+    _dir = _folder.getRoot().toPath();
+  }
+
+  private void change() throws Exception {
+    _airports.addAirport("ZZZ", 10, 20);
+    _airports.updateAtmosphericInformation("BOS", "wind", _dp);
+    _airports.updateAtmosphericInformation("ZZZ", "temperature", _dp);
+    _airports.removeAirport("MMU");
+  }
+
+  private void assertRestored(long bosUpdateTime) {
+    assertNotNull(_airports.getAirport("ZZZ"));
+    assertNull(_airports.getAirport("MMU"));
+    AtmosphericInformation bos = _airports.getAirport("BOS").getAtmosphericInformation();
+    assertEquals(_dp, bos.getWind());
+    assertEquals(bosUpdateTime, bos.getLastUpdateTime());
+    assertEquals(_dp, _airports.getAirport("ZZZ").getAtmosphericInformation().getTemperature());
+    assertEquals(2, _airports.getDataSize().intValue());
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    PersistenceManager persistence = PersistenceManager.open(_dir, _airports, false, 0);
+    change();
+    long bosUpdateTime = _airports.getAirport("BOS").getAtmosphericInformation()
+        .getLastUpdateTime();
+    persistence.close();
+
+    RestWeatherQueryEndpoint.init();
+    persistence = PersistenceManager.open(_dir, _airports, false, 0);
+    assertRestored(bosUpdateTime);
+    // changes after the snapshot come from the log
+    _airports.removeAirport("ZZZ");
+    persistence.snapshot();
+    _airports.addAirport("YYY", 1, 2);
+    persistence.close();
+
+    RestWeatherQueryEndpoint.init();
+    persistence = PersistenceManager.open(_dir, _airports, false, 0);
+    assertFalse(_airports.getAllAirports().contains("ZZZ"));
+    assertTrue(_airports.getAllAirports().contains("YYY"));
+    persistence.close();
+  }
+
+  @Test
+  public void testLogOnly() throws Exception {
+    // as if the process died before any snapshot was taken
+    WriteAheadLog wal = new WriteAheadLog(_dir, 0, false);
+    _airports.addListener(wal);
+    change();
+    long bosUpdateTime = _airports.getAirport("BOS").getAtmosphericInformation()
+        .getLastUpdateTime();
+    _airports.removeListener(wal);
+    wal.close();
+    // and tore the record it was writing
+    try (FileOutputStream out =
+        new FileOutputStream(WriteAheadLog.segmentPath(_dir, 0).toFile(), true)) {
+      out.write(new byte[] {0, 0, 0, 40, 1, 2});
+    }
+
+    RestWeatherQueryEndpoint.init();
+    PersistenceManager persistence = PersistenceManager.open(_dir, _airports, false, 0);
+    assertRestored(bosUpdateTime);
+    persistence.close();
+  }
+
+  @Test
+  public void testConcurrentWritersReplayInOrder() throws Exception {
+    AirportService live = new AirportService();
+    CountDownLatch othersDone = new CountDownLatch(3);
+    // a listener before the log holds the last update of the first writer until the others are
+    // done, they can't be while it holds the airport, or for a while if they are blocked
+    live.addListener(new AirportListener() {
+      @Override
+      public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+          DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+        if (dataPoint.getCount() == 1 && dataPoint.getFirst() == 1999) {
+          try {
+            othersDone.await(200, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    WriteAheadLog wal = new WriteAheadLog(_dir, 0, false);
+    live.addListener(wal);
+    live.addAirport("BOS", 42.364347, -71.005181);
+    // the writers race on the same airport and type, and on removing and re-adding a code
+    List<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      int writer = t;
+      writers.add(new Thread(() -> {
+        for (int i = 0; i < 2000; i++) {
+          DataPoint dp =
+              new DataPoint.Builder().withCount(writer + 1).withFirst(i).withMedian(i)
+                  .withLast(i).withMean(writer * 10000 + i).build();
+          live.updateAtmosphericInformation("BOS", DataPointType.WIND, dp, i);
+          if (i % 50 == writer) {
+            live.removeAirport("ZZZ");
+            live.addAirport("ZZZ", writer, i % 90);
+          }
+          live.updateAtmosphericInformation("ZZZ", DataPointType.WIND, dp, i);
+        }
+        if (writer > 0) {
+          othersDone.countDown();
+        }
+      }));
+    }
+    writers.forEach(Thread::start);
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    live.removeListener(wal);
+    wal.close();
+
+    AirportService replayed = new AirportService();
+    PersistenceManager persistence = PersistenceManager.open(_dir, replayed, false, 0);
+    try {
+      assertEquals(live.getAllAirports(), replayed.getAllAirports());
+      for (String iata : live.getAllAirports()) {
+        Airport expected = live.getAirport(iata);
+        Airport actual = replayed.getAirport(iata);
+        assertEquals(iata, expected.getAirportData().getLatitude(), actual.getAirportData()
+            .getLatitude(), 0);
+        assertEquals(iata, expected.getAirportData().getLongitude(), actual.getAirportData()
+            .getLongitude(), 0);
+        assertEquals(iata, expected.getAtmosphericInformation().getWind(), actual
+            .getAtmosphericInformation().getWind());
+        assertEquals(iata, expected.getAtmosphericInformation().getLastUpdateTime(), actual
+            .getAtmosphericInformation().getLastUpdateTime());
+      }
+    } finally {
+      persistence.close();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.QueryCache;
+
+/**
+ * Checks cached query results are reused until an airport within their radius changes.
+ */
+public class QueryCacheTest {
+  private AirportService _airports = AirportService.getInstance();
+  private QueryCache _cache = new QueryCache(_airports, 2);
+  private DataPoint _dp =
+      new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22)
+          .build();
+
+  @Before
+  public void setUp() throws Exception {
+    RestWeatherQueryEndpoint.init();
+    _airports.addListener(_cache);
+    _airports.updateAtmosphericInformation("JFK", "wind", _dp);
+    _airports.updateAtmosphericInformation("LGA", "wind", _dp);
+  }
+
+  @After
+  public void tearDown() {
+    _airports.removeListener(_cache);
+  }
+
+  @Test
+  public void testHit() throws Exception {
+    List<AtmosphericInformation> first = _cache.getWeatherWithinRadius("JFK", 50);
+    assertEquals(2, first.size());
+    assertSame(first, _cache.getWeatherWithinRadius("JFK", 50));
+    assertEquals(1L, _cache.getStats().get("hits").longValue());
+    assertEquals(1L, _cache.getStats().get("misses").longValue());
+    // fractional radii and unknown airports aren't cached
+    assertNull(_cache.getWeatherWithinRadius("JFK", 50.5));
+    assertNull(_cache.getWeatherWithinRadius("XXX", 50));
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    List<AtmosphericInformation> jfk = _cache.getWeatherWithinRadius("JFK", 50);
+    List<AtmosphericInformation> bos = _cache.getWeatherWithinRadius("BOS", 0);
+
+    // LGA is near JFK only
+    _airports.updateAtmosphericInformation("LGA", "temperature", _dp);
+    assertSame(bos, _cache.getWeatherWithinRadius("BOS", 0));
+    List<AtmosphericInformation> updated = _cache.getWeatherWithinRadius("JFK", 50);
+    assertNotSame(jfk, updated);
+    assertEquals(_dp, updated.get(updated.get(0).getTemperature() == null ? 1 : 0)
+        .getTemperature());
+
+    // airports without data still invalidate, they may get some
+    _airports.updateAtmosphericInformation("EWR", "wind", _dp);
+    assertEquals(3, _cache.getWeatherWithinRadius("JFK", 50).size());
+
+    _airports.addAirport("ZZZ", 40.64, -73.78);
+    _airports.updateAtmosphericInformation("ZZZ", "wind", _dp);
+    assertEquals(4, _cache.getWeatherWithinRadius("JFK", 50).size());
+    _airports.removeAirport("ZZZ");
+    assertEquals(3, _cache.getWeatherWithinRadius("JFK", 50).size());
+
+    // far away additions don't matter
+    List<AtmosphericInformation> cached = _cache.getWeatherWithinRadius("JFK", 50);
+    _airports.addAirport("YYY", 10, 10);
+    assertSame(cached, _cache.getWeatherWithinRadius("JFK", 50));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      _cache.getWeatherWithinRadius("JFK", 50);
+    }
+    _cache.getWeatherWithinRadius("BOS", 0);
+    _cache.getWeatherWithinRadius("EWR", 0);
+    _cache.getWeatherWithinRadius("LGA", 0);
+    assertEquals(2L, _cache.getStats().get("size").longValue());
+    assertEquals(2L, _cache.getStats().get("evictions").longValue());
+    // the frequently requested entry survived
+    long hits = _cache.getStats().get("hits");
+    _cache.getWeatherWithinRadius("JFK", 50);
+    assertEquals(hits + 1, _cache.getStats().get("hits").longValue());
+  }
+}
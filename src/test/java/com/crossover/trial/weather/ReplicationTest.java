@@ -0,0 +1,221 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.replication.ReplicationPrimary;
+import com.crossover.trial.weather.replication.ReplicationReplica;
+import com.crossover.trial.weather.service.AirportListener;
+import com.crossover.trial.weather.service.AirportService;
+
+/**
+ * A primary and its replicas in one process, connected over the loopback interface.
+ */
+public class ReplicationTest {
+  private AirportService _primaryAirports = new AirportService();
+  private AirportService _replicaAirports = new AirportService();
+  private ReplicationPrimary _primary;
+  private ReplicationReplica _replica;
+  private DataPoint _dp =
+      new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22)
+          .build();
+
+  @Before
+  public void setUp() throws Exception {
+    _primaryAirports.addAirport("BOS", 42.364347, -71.005181);
+    _primaryAirports.addAirport("JFK", 40.639751, -73.778925);
+    _primaryAirports.updateAtmosphericInformation("BOS", "wind", _dp);
+    // the replica starts with airports of its own, the primary's state replaces them
+    _replicaAirports.addAirport("MMU", 40.79935, -74.4148747);
+    _primary =
+        new ReplicationPrimary(_primaryAirports, new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 0));
+    _replica = connect(_replicaAirports);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    RestWeatherQueryEndpoint.setReplication(null);
+    _replica.close();
+    _primary.close();
+  }
+
+  private ReplicationReplica connect(AirportService airportService) {
+    return new ReplicationReplica(airportService, new InetSocketAddress(
+        InetAddress.getLoopbackAddress(), _primary.getPort()));
+  }
+
+  private void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue("timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testInitialState() throws Exception {
+    await(() -> _replicaAirports.getAllAirports().size() == 2);
+    assertNull(_replicaAirports.getAirport("MMU"));
+    assertEquals(_dp, _replicaAirports.getAirport("BOS").getAtmosphericInformation().getWind());
+    assertEquals(_primaryAirports.getAirport("BOS").getAtmosphericInformation()
+        .getLastUpdateTime(), _replicaAirports.getAirport("BOS").getAtmosphericInformation()
+        .getLastUpdateTime());
+  }
+
+  @Test
+  public void testChangesInOrder() throws Exception {
+    await(() -> _replica.isConnected() && _replicaAirports.getAllAirports().size() == 2);
+    _primaryAirports.addAirport("LGA", 40.777245, -73.872608);
+    _primaryAirports.updateAtmosphericInformation("LGA", "temperature", _dp);
+    _primaryAirports.removeAirport("JFK");
+    for (int i = 0; i < 1000; i++) {
+      _primaryAirports.updateAtmosphericInformation("BOS", "humidty", new DataPoint.Builder()
+          .withCount(1).withFirst(1).withMedian(2).withLast(3).withMean(i % 100).build());
+    }
+    await(() -> _replica.getSequence() == 1003);
+    assertNull(_replicaAirports.getAirport("JFK"));
+    assertEquals(_dp, _replicaAirports.getAirport("LGA").getAtmosphericInformation()
+        .getTemperature());
+    assertEquals(99.0, _replicaAirports.getAirport("BOS").getAtmosphericInformation()
+        .getHumidity().getMean(), 0);
+    assertEquals(_primaryAirports.getDataSize(), _replicaAirports.getDataSize());
+  }
+
+  @Test
+  public void testLateReplicaAndPing() throws Exception {
+    _primaryAirports.addAirport("LGA", 40.777245, -73.872608);
+    AirportService lateAirports = new AirportService();
+    ReplicationReplica late = connect(lateAirports);
+    try {
+      await(() -> lateAirports.getAllAirports().size() == 3
+          && _replicaAirports.getAllAirports().size() == 3);
+      await(() -> (int) _primary.getStats().get("replicas") == 2);
+
+      RestWeatherQueryEndpoint.setReplication(late);
+      String ping = new RestWeatherQueryEndpoint().ping();
+      assertTrue(ping, ping.contains("\"role\":\"replica\""));
+      Map<String, Object> stats = late.getStats();
+      assertEquals(true, stats.get("connected"));
+      assertTrue(stats.toString(), (long) stats.get("lagMillis") >= 0);
+      assertTrue(stats.toString(), (long) stats.get("lagMillis") < 5000);
+    } finally {
+      late.close();
+    }
+    await(() -> (int) _primary.getStats().get("replicas") == 1);
+    _primaryAirports.removeAirport("LGA");
+    await(() -> _replicaAirports.getAirport("LGA") == null);
+  }
+
+  @Test
+  public void testConcurrentWritersConverge() throws Exception {
+    AirportService primaryAirports = new AirportService();
+    CountDownLatch othersDone = new CountDownLatch(3);
+    // holds the last update of the first writer before it is published until the others are done,
+    // they can't be while it holds the airport, or for a while if they are blocked
+    primaryAirports.addListener(new AirportListener() {
+      @Override
+      public void atmosphericInformationUpdated(Airport airport, DataPointType dataPointType,
+          DataPoint dataPoint, AtmosphericInformation previous, AtmosphericInformation current) {
+        if (dataPoint.getCount() == 1 && dataPoint.getFirst() == 999) {
+          try {
+            othersDone.await(200, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    primaryAirports.addAirport("BOS", 42.364347, -71.005181);
+    AirportService replicaAirports = new AirportService();
+    ReplicationPrimary primary =
+        new ReplicationPrimary(primaryAirports, new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 0));
+    ReplicationReplica replica =
+        new ReplicationReplica(replicaAirports, new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), primary.getPort()));
+    try {
+      await(() -> replica.isConnected() && replicaAirports.getAirport("BOS") != null);
+      List<Thread> writers = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+        int writer = t;
+        writers.add(new Thread(() -> {
+          for (int i = 0; i < 1000; i++) {
+            DataPoint dp =
+                new DataPoint.Builder().withCount(writer + 1).withFirst(i).withMedian(i)
+                    .withLast(i).withMean(writer * 10000 + i).build();
+            primaryAirports.updateAtmosphericInformation("BOS", DataPointType.WIND, dp, i);
+          }
+          if (writer > 0) {
+            othersDone.countDown();
+          }
+        }));
+      }
+      writers.forEach(Thread::start);
+      for (Thread writer : writers) {
+        writer.join();
+      }
+      await(() -> replica.getSequence() == 4000);
+      assertEquals(primaryAirports.getAirport("BOS").getAtmosphericInformation().getWind(),
+          replicaAirports.getAirport("BOS").getAtmosphericInformation().getWind());
+    } finally {
+      replica.close();
+      primary.close();
+    }
+  }
+
+  @Test
+  public void testStalledJoinerDoesNotHoldBackReplicas() throws Exception {
+    for (int i = 0; i < 100000; i++) {
+      _primaryAirports.addAirport("A" + i, (i % 170) - 85, (i % 350) - 175);
+    }
+    await(() -> _replica.isConnected() && _replicaAirports.getAirportCount() == 100002);
+    // a replica which never reads the state, which is larger than what the socket buffers hold
+    try (Socket stalled = new Socket()) {
+      stalled.setReceiveBufferSize(4096);
+      stalled.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), _primary.getPort()));
+      Thread.sleep(200);
+      _primaryAirports.removeAirport("JFK");
+      await(() -> _replicaAirports.getAirport("JFK") == null);
+    }
+  }
+
+  @Test
+  public void testReplicaStartup() throws Exception {
+    System.setProperty("weather.replication.primary", "localhost:" + _primary.getPort());
+    WeatherServer.Node node = WeatherServer.openNode();
+    try {
+      AirportService airportService = AirportService.getInstance();
+      // the sample airports of the query endpoint don't replace the state of the primary
+      await(() -> airportService.getAirport("BOS") != null
+          && _dp.equals(airportService.getAirport("BOS").getAtmosphericInformation().getWind()));
+      assertEquals(_primaryAirports.getAllAirports(), airportService.getAllAirports());
+      String ping = new RestWeatherQueryEndpoint().ping();
+      assertTrue(ping, ping.contains("\"role\":\"replica\""));
+    } finally {
+      System.clearProperty("weather.replication.primary");
+      node.getReplication().close();
+      RestWeatherQueryEndpoint.init();
+    }
+  }
+}
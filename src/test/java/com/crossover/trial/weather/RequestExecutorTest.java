@@ -0,0 +1,105 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.controller.RequestExecutor;
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+
+/**
+ * Round trips through an in-process server, with the suspended requests run on the container
+ * thread and on a request executor.
+ */
+public class RequestExecutorTest {
+  private static final String BASE_URL = "http://localhost:9291";
+
+  private HttpServer _server;
+  private ExecutorService _executor;
+
+  @Before
+  public void setUp() throws Exception {
+    RestWeatherQueryEndpoint.init();
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setWorkerThreads(2);
+    config.setSelectorThreads(1);
+    config.setAsyncThreads(4);
+    config.setUrl(BASE_URL + "/");
+    config.setAccessLogSample(0);
+    _server = WeatherServer.createServer(config);
+    _server.start();
+    _executor = config.createRequestExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    RequestExecutor.setExecutor(null);
+    _executor.shutdownNow();
+    _server.shutdownNow();
+  }
+
+  private void assertRoundTrips() throws IOException {
+    HttpURLConnection update = open("/collect/weather/BOS/wind");
+    update.setRequestMethod("POST");
+    update.setDoOutput(true);
+    try (OutputStream out = update.getOutputStream()) {
+      out.write("{\"mean\":22.0,\"first\":10,\"second\":20,\"third\":30,\"count\":10}"
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals(200, update.getResponseCode());
+    read(update);
+
+    HttpURLConnection query = open("/query/weather/BOS/0");
+    assertEquals(200, query.getResponseCode());
+    assertTrue(read(query).contains("\"mean\":22.0"));
+
+    assertEquals(500, open("/query/weather/BOS/far").getResponseCode());
+    HttpURLConnection unknown = open("/collect/weather/BOS/snow");
+    unknown.setRequestMethod("POST");
+    unknown.setDoOutput(true);
+    try (OutputStream out = unknown.getOutputStream()) {
+      out.write("{\"mean\":1.0,\"count\":1}".getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals(500, unknown.getResponseCode());
+  }
+
+  @Test
+  public void testContainerThread() throws Exception {
+    assertRoundTrips();
+  }
+
+  @Test
+  public void testExecutor() throws Exception {
+    RequestExecutor.setExecutor(_executor);
+    assertRoundTrips();
+  }
+
+  private HttpURLConnection open(String path) throws IOException {
+    return (HttpURLConnection) new URL(BASE_URL + path).openConnection();
+  }
+
+  private String read(HttpURLConnection connection) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = connection.getInputStream()) {
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        body.write(buffer, 0, n);
+      }
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
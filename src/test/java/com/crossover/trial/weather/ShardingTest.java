@@ -0,0 +1,353 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.cluster.ShardMap;
+import com.crossover.trial.weather.cluster.ShardRouter;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.service.AirportService;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A router in front of three in-process shard nodes, compared with what a single node answers.
+ */
+public class ShardingTest {
+  private static final String ROUTER_URL = "http://localhost:9297";
+  private static final int[] SHARD_PORTS = {9294, 9295, 9296};
+  private static final double CELL_DEGREES = 2;
+
+  private static final Type MAP_LIST = new TypeToken<List<Map<String, Object>>>() {}.getType();
+
+  private Gson _gson = new Gson();
+  private List<HttpServer> _servers = new ArrayList<HttpServer>();
+  private List<AirportService> _shards = new ArrayList<AirportService>();
+  private AirportService _single;
+
+  @Before
+  public void setUp() throws Exception {
+    List<URI> uris = new ArrayList<URI>();
+    System.setProperty("weather.tiles.zoomLevels", "2,4,6");
+    try {
+      _single = new AirportService();
+      for (int port : SHARD_PORTS) {
+        AirportService shard = new AirportService();
+        String url = "http://localhost:" + port + "/";
+        _servers.add(start(url, WeatherServer.createResourceConfig(shard)));
+        _shards.add(shard);
+        uris.add(URI.create(url));
+      }
+    } finally {
+      System.clearProperty("weather.tiles.zoomLevels");
+    }
+    ShardRouter router = ShardRouter.create(uris, CELL_DEGREES);
+    router.loadDirectory();
+    _servers.add(start(ROUTER_URL + "/", WeatherServer.createResourceConfig(router)));
+
+    // the new york airports spread over several cells, MMU being the farthest
+    addAirport("BOS", 42.364347, -71.005181);
+    addAirport("EWR", 40.6925, -74.168667);
+    addAirport("JFK", 40.639751, -73.778925);
+    addAirport("LGA", 40.777245, -73.872608);
+    addAirport("MMU", 40.79935, -74.4148747);
+    addAirport("SYD", -33.946111, 151.177222);
+  }
+
+  private HttpServer start(String url, ResourceConfig resourceConfig) throws IOException {
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setWorkerThreads(2);
+    config.setSelectorThreads(1);
+    config.setUrl(url);
+    config.setAccessLogSample(0);
+    HttpServer server = WeatherServer.createServer(config, resourceConfig);
+    server.start();
+    return server;
+  }
+
+  @After
+  public void tearDown() {
+    for (HttpServer server : _servers) {
+      server.shutdownNow();
+    }
+  }
+
+  private void addAirport(String iata, double latitude, double longitude) throws IOException {
+    HttpURLConnection connection =
+        open("/collect/airport/" + iata + "/" + latitude + "/" + longitude);
+    connection.setRequestMethod("POST");
+    assertEquals(200, connection.getResponseCode());
+    _single.addAirport(iata, latitude, longitude);
+  }
+
+  private void updateWeather(String iata, String pointType, String dataPoint) throws Exception {
+    HttpURLConnection connection = open("/collect/weather/" + iata + "/" + pointType);
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(dataPoint.getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals(200, connection.getResponseCode());
+    read(connection);
+    _single.updateAtmosphericInformation(iata, pointType, _gson.fromJson(dataPoint,
+        DataPoint.class));
+  }
+
+  @Test
+  public void testShardNodeKeepsItsAirports() throws Exception {
+    AirportService node = new AirportService();
+    _single.forEachAirport(airport -> node.addAirport(airport.getAirportData().getIata(), airport
+        .getAirportData().getLatitude(), airport.getAirportData().getLongitude()));
+    System.setProperty("weather.cluster.shard", "1/" + SHARD_PORTS.length);
+    System.setProperty("weather.cluster.cellDegrees", String.valueOf(CELL_DEGREES));
+    int removed;
+    try {
+      removed = ShardMap.retainConfigured(node);
+    } finally {
+      System.clearProperty("weather.cluster.shard");
+      System.clearProperty("weather.cluster.cellDegrees");
+    }
+    assertEquals(_shards.get(1).getAllAirports(), node.getAllAirports());
+    assertEquals(_single.getAirportCount(), removed + node.getAirportCount());
+  }
+
+  @Test
+  public void testDirectorySkipsMisplacedAirports() throws Exception {
+    // shard nodes started without their shard configuration hold every airport
+    List<URI> uris = new ArrayList<URI>();
+    for (int i = 0; i < SHARD_PORTS.length; i++) {
+      AirportService shard = _shards.get(i);
+      _single.forEachAirport(airport -> shard.addAirport(airport.getAirportData().getIata(),
+          airport.getAirportData().getLatitude(), airport.getAirportData().getLongitude()));
+      uris.add(URI.create("http://localhost:" + SHARD_PORTS[i] + "/"));
+    }
+    ShardMap shardMap = new ShardMap(SHARD_PORTS.length, CELL_DEGREES, _single.earthRadius);
+    // and one only a shard not owning its location has
+    int sydney = shardMap.shardOf(-33.946111, 151.177222);
+    _shards.get((sydney + 1) % SHARD_PORTS.length).addAirport("ZZZ", -33.946111, 151.177222);
+    ShardRouter router = ShardRouter.create(uris, CELL_DEGREES);
+    router.loadDirectory();
+    assertEquals(_single.getAllAirports(), router.getAirportCodes());
+    for (String iata : _single.getAllAirports()) {
+      AirportData airportData = _single.getAirport(iata).getAirportData();
+      assertEquals(iata, router.getShards().get(
+          shardMap.shardOf(airportData.getLatitude(), airportData.getLongitude())), router
+          .ownerOf(iata));
+    }
+  }
+
+  @Test
+  public void testAirportsLandOnTheirOwner() throws Exception {
+    ShardMap shardMap = new ShardMap(SHARD_PORTS.length, CELL_DEGREES, _single.earthRadius);
+    Set<Integer> used = new HashSet<Integer>();
+    for (String iata : new String[] {"BOS", "EWR", "JFK", "LGA", "MMU", "SYD"}) {
+      AirportData airportData = _single.getAirport(iata).getAirportData();
+      int owner = shardMap.shardOf(airportData.getLatitude(), airportData.getLongitude());
+      used.add(owner);
+      for (int i = 0; i < _shards.size(); i++) {
+        assertEquals(iata, i == owner, _shards.get(i).getAirport(iata) != null);
+      }
+    }
+    assertTrue(used.size() > 1);
+
+    String airports = read(open("/collect/airports"));
+    assertTrue(airports.contains("SYD") && airports.contains("MMU"));
+
+    HttpURLConnection delete = open("/collect/airport/SYD");
+    delete.setRequestMethod("DELETE");
+    assertEquals(200, delete.getResponseCode());
+    for (AirportService shard : _shards) {
+      assertNull(shard.getAirport("SYD"));
+    }
+    assertFalse(read(open("/collect/airports")).contains("SYD"));
+  }
+
+  @Test
+  public void testFailedMoveKeepsTheAirport() throws Exception {
+    ShardMap shardMap = new ShardMap(SHARD_PORTS.length, CELL_DEGREES, _single.earthRadius);
+    int sydney = shardMap.shardOf(-33.946111, 151.177222);
+    double longitude = 151.177222;
+    while (shardMap.shardOf(-33.946111, longitude) == sydney) {
+      longitude -= CELL_DEGREES;
+    }
+    // the shard the airport would move to is down
+    _servers.get(shardMap.shardOf(-33.946111, longitude)).shutdownNow();
+
+    HttpURLConnection move = open("/collect/airport/SYD/-33.946111/" + longitude);
+    move.setRequestMethod("POST");
+    assertEquals(502, move.getResponseCode());
+    HttpURLConnection invalid = open("/collect/airport/SYD/-95/" + longitude);
+    invalid.setRequestMethod("POST");
+    assertEquals(400, invalid.getResponseCode());
+
+    HttpURLConnection upload = open("/collect/airports");
+    upload.setRequestMethod("POST");
+    upload.setDoOutput(true);
+    try (OutputStream out = upload.getOutputStream()) {
+      out.write(("{\"iata\":\"SYD\",\"latitude\":-33.946111,\"longitude\":" + longitude + "}\n")
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals(200, upload.getResponseCode());
+    assertTrue(read(upload).contains("\"rejected\":1"));
+
+    assertNotNull(_shards.get(sydney).getAirport("SYD"));
+    assertTrue(read(open("/collect/airport/SYD")).contains("151.177222"));
+  }
+
+  @Test
+  public void testRadiusQueryMatchesSingleNode() throws Exception {
+    String quartiles = "\"first\":10,\"second\":20,\"third\":30,\"count\":10}";
+    updateWeather("BOS", "wind", "{\"mean\":22.0," + quartiles);
+    updateWeather("JFK", "temperature", "{\"mean\":17.0," + quartiles);
+    updateWeather("MMU", "humidty", "{\"mean\":60.0," + quartiles);
+    updateWeather("SYD", "wind", "{\"mean\":5.0," + quartiles);
+
+    for (String radius : new String[] {"0", "50", "200", "500"}) {
+      List<Map<String, Object>> routed =
+          _gson.fromJson(read(open("/query/weather/JFK/" + radius)), MAP_LIST);
+      assertEquals(radius, _single.getWeatherWithinRadius("JFK", Double.valueOf(radius)).size(),
+          routed.size());
+    }
+    List<Map<String, Object>> all =
+        _gson.fromJson(read(open("/query/weather/JFK/500")), MAP_LIST);
+    assertEquals(3, all.size());
+    assertEquals("[]", read(open("/query/weather/XXX/500")).trim());
+
+    List<Map<String, Object>> nearest =
+        _gson.fromJson(read(open("/query/nearest/JFK/2")), MAP_LIST);
+    assertEquals(2, nearest.size());
+    assertEquals("JFK", nearest.get(0).get("iata"));
+    assertEquals("MMU", nearest.get(1).get("iata"));
+
+    // a page cut from the results of every shard
+    Map<String, Object> page =
+        _gson.fromJson(read(open("/query/area/40.639751/-73.778925/500?offset=1&limit=1")),
+            new TypeToken<Map<String, Object>>() {}.getType());
+    assertEquals(3.0, page.get("total"));
+    assertEquals("MMU", ((List<Map<String, Object>>) page.get("results")).get(0).get("iata"));
+    // shards send at most ShardEndpoint.MAX_LIMIT airports
+    assertEquals(400, open("/query/area/40.639751/-73.778925/500?offset=9500&limit=1000")
+        .getResponseCode());
+    String box = read(open("/query/box/40/-75/43/-70?limit=10"));
+    assertEquals(_single.getWeatherWithinBox(40, -75, 43, -70, 0, 10).getTotal(),
+        ((Number) _gson.fromJson(box, Map.class).get("total")).intValue());
+
+    // the shards' aggregates merge into those of a single node
+    List<Map<String, Object>> aggregates =
+        _gson.fromJson(read(open("/query/aggregate/JFK/500")), MAP_LIST);
+    List<DataPointAggregate> expected = _single.getAggregateWithinRadius("JFK", 500);
+    assertEquals(expected.size(), aggregates.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getType().name(), aggregates.get(i).get("type"));
+      assertEquals((double) expected.get(i).getAirports(), aggregates.get(i).get("airports"));
+      assertEquals(expected.get(i).getMean(), (double) aggregates.get(i).get("mean"), 1e-9);
+    }
+    // BOS wind, JFK temperature and MMU humidity, SYD is too far away
+    assertEquals(1.0, aggregates.get(DataPointType.WIND.ordinal()).get("airports"));
+    assertEquals(1.0, aggregates.get(DataPointType.HUMIDTY.ordinal()).get("airports"));
+
+    // every shard holds its part of the tile of north america
+    Map<String, Object> tile =
+        _gson.fromJson(read(open("/query/tiles/2/1/1")),
+            new TypeToken<Map<String, Object>>() {}.getType());
+    assertEquals((double) _single.getTile(2, 1, 1).getAirports(), tile.get("airports"));
+    List<Map<String, Object>> tileAggregates =
+        (List<Map<String, Object>>) tile.get("aggregates");
+    DataPointAggregate temperature =
+        _single.getTile(2, 1, 1).getAggregates().get(DataPointType.TEMPERATURE.ordinal());
+    assertEquals(temperature.getMean(),
+        (double) tileAggregates.get(DataPointType.TEMPERATURE.ordinal()).get("mean"), 1e-9);
+    assertEquals(404, open("/query/tiles/3/0/0").getResponseCode());
+    assertEquals(400, open("/query/stream/JFK/NaN").getResponseCode());
+    assertEquals(404, open("/query/stream/XXX/0").getResponseCode());
+
+    String ping = read(open("/query/ping"));
+    assertTrue(ping, ping.contains("\"datasize\":4"));
+  }
+
+  @Test
+  public void testPingCountsRoutedQueries() throws Exception {
+    read(open("/query/weather/JFK/500"));
+    read(open("/query/weather/JFK/500"));
+    read(open("/query/weather/BOS/0"));
+    read(open("/query/aggregate/JFK/200"));
+
+    Map<String, Object> ping =
+        _gson.fromJson(read(open("/query/ping")),
+            new TypeToken<Map<String, Object>>() {}.getType());
+    Map<String, Double> iataFreq = (Map<String, Double>) ping.get("iata_freq");
+    assertEquals(_single.getAllAirports(), iataFreq.keySet());
+    assertEquals(0.75, iataFreq.get("JFK"), 1e-9);
+    assertEquals(0.25, iataFreq.get("BOS"), 1e-9);
+    assertEquals(0.0, iataFreq.get("SYD"), 1e-9);
+    List<Double> radiusFreq = (List<Double>) ping.get("radius_freq");
+    assertEquals(51, radiusFreq.size());
+    assertEquals(2.0, radiusFreq.get(50), 1e-9);
+    assertEquals(1.0, radiusFreq.get(20), 1e-9);
+    assertEquals(1.0, radiusFreq.get(0), 1e-9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCellSizeNotDividingTheGlobe() {
+    new ShardMap(SHARD_PORTS.length, 7, _single.earthRadius);
+  }
+
+  @Test
+  public void testShardsWithinCoverOwners() {
+    ShardMap shardMap = new ShardMap(5, CELL_DEGREES, _single.earthRadius);
+    for (double latitude = -80; latitude <= 80; latitude += 7.3) {
+      for (double longitude = -179; longitude <= 179; longitude += 11.9) {
+        BitSet shards = shardMap.shardsWithin(latitude, longitude, 400);
+        assertNotNull(shards);
+        assertTrue(shards.get(shardMap.shardOf(latitude, longitude)));
+        // points 3 degrees of latitude away are about 330km apart
+        double other = latitude + 3;
+        assertTrue(shards.get(shardMap.shardOf(other, longitude)));
+      }
+    }
+  }
+
+  private HttpURLConnection open(String path) throws IOException {
+    return (HttpURLConnection) new URL(ROUTER_URL + path).openConnection();
+  }
+
+  private String read(HttpURLConnection connection) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = connection.getInputStream()) {
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        body.write(buffer, 0, n);
+      }
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
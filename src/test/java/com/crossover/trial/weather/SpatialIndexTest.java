@@ -0,0 +1,114 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.service.SpatialIndex;
+
+public class SpatialIndexTest {
+  private static final double EARTH_RADIUS = 6372.8;
+
+  private SpatialIndex _index;
+  private List<Airport> _airports;
+
+  @Before
+  public void setUp() throws Exception {
+    _index = new SpatialIndex(2.5, EARTH_RADIUS);
+    _airports = new ArrayList<Airport>();
+    Random random = new Random(7);
+    for (int i = 0; i < 2000; i++) {
+      add("A" + i, -90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360);
+    }
+    add("FIJ", -17.75, 179.99);
+    add("SAM", -13.8, -171.99);
+    add("NPL", 89.9, 10);
+    add("SPL", -89.9, -170);
+  }
+
+  @Test
+  public void testCellSizes() throws Exception {
+    assertEquals(3600, SpatialIndex.columnsOf(0.1));
+    assertEquals(2, SpatialIndex.columnsOf(180));
+    assertEquals(24, SpatialIndex.columnsOf(15));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCellSizeNotDividingTheGlobe() throws Exception {
+    // 175 degrees of longitude would be in column 50, -185 degrees in column 51
+    new SpatialIndex(7, EARTH_RADIUS);
+  }
+
+  @Test
+  public void testMatchesLinearScan() throws Exception {
+    Random random = new Random(11);
+    for (int i = 0; i < 200; i++) {
+      double lat = -90 + random.nextDouble() * 180;
+      double lon = -180 + random.nextDouble() * 360;
+      double radius = random.nextDouble() * 3000;
+      assertEquals(linearScan(lat, lon, radius), indexed(lat, lon, radius));
+    }
+  }
+
+  @Test
+  public void testAntimeridianAndPoles() throws Exception {
+    assertEquals(linearScan(-17.75, 179.99, 1000), indexed(-17.75, 179.99, 1000));
+    assertEquals(linearScan(-17.75, -179.99, 1000), indexed(-17.75, -179.99, 1000));
+    assertEquals(linearScan(88, 100, 500), indexed(88, 100, 500));
+    assertEquals(linearScan(-88, 0, 500), indexed(-88, 0, 500));
+    assertEquals(_airports.size(), indexed(0, 0, Math.PI * EARTH_RADIUS).size());
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    Airport fiji = _airports.get(_airports.size() - 4);
+    _index.remove(fiji);
+    _airports.remove(fiji);
+    assertEquals(linearScan(-17.75, 179.99, 1000), indexed(-17.75, 179.99, 1000));
+  }
+
+  private void add(String iata, double latitude, double longitude) {
+    Airport airport = new Airport();
+    airport.setAirportData(new AirportData(iata, latitude, longitude));
+    _airports.add(airport);
+    _index.add(airport);
+  }
+
+  private Set<String> indexed(double latitude, double longitude, double radius) {
+    Set<String> retval = new HashSet<String>();
+    _index.forEachCandidate(latitude, longitude, radius, airport -> {
+      if (distance(latitude, longitude, airport.getAirportData()) <= radius) {
+        retval.add(airport.getAirportData().getIata());
+      }
+    });
+    return retval;
+  }
+
+  private Set<String> linearScan(double latitude, double longitude, double radius) {
+    Set<String> retval = new HashSet<String>();
+    for (Airport airport : _airports) {
+      if (distance(latitude, longitude, airport.getAirportData()) <= radius) {
+        retval.add(airport.getAirportData().getIata());
+      }
+    }
+    return retval;
+  }
+
+  private double distance(double latitude, double longitude, AirportData ad) {
+    double deltaLat = Math.toRadians(ad.getLatitude() - latitude);
+    double deltaLon = Math.toRadians(ad.getLongitude() - longitude);
+    double a =
+        Math.pow(Math.sin(deltaLat / 2), 2) + Math.pow(Math.sin(deltaLon / 2), 2)
+            * Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(ad.getLatitude()));
+    return EARTH_RADIUS * 2 * Math.asin(Math.sqrt(a));
+  }
+}
@@ -0,0 +1,70 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.service.StatsService;
+
+/**
+ * Hammers the request frequency counters from many threads and checks no update got lost.
+ */
+public class StatsServiceTest {
+  private static final int THREADS = 200;
+  private static final int REQUESTS_PER_THREAD = 5000;
+  private static final String[] CODES = {"BOS", "EWR", "JFK", "LGA", "MMU"};
+  private static final double[] RADII = {0, 50, 100, 250, 500};
+
+  private StatsService _stats = StatsService.getInstance();
+
+  @Before
+  public void setUp() throws Exception {
+    _stats.reset();
+  }
+
+  @Test
+  public void testNoLostCounts() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int t = 0; t < THREADS; t++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+          _stats.updateRequestFrequency(CODES[i % CODES.length], RADII[i % RADII.length]);
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    long total = (long) THREADS * REQUESTS_PER_THREAD;
+    assertEquals(total, _stats.getTotalRequestCount());
+    for (String iata : CODES) {
+      assertEquals(total / CODES.length, _stats.getRequestCount(iata));
+    }
+    int[] hist = _stats.getRadiusFreqHist();
+    assertEquals(51, hist.length);
+    for (double radius : RADII) {
+      assertEquals(total / RADII.length, hist[(int) radius / 10]);
+    }
+  }
+
+  @Test
+  public void testEmptyHistogram() throws Exception {
+    assertEquals(101, _stats.getRadiusFreqHist().length);
+    assertEquals(0, _stats.getTotalRequestCount());
+  }
+}
@@ -0,0 +1,170 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.Airport;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherTile;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.AirportStore;
+import com.crossover.trial.weather.service.IndexedAirportStore;
+import com.crossover.trial.weather.service.TileGrid;
+
+/**
+ * Checks the incrementally maintained tiles always hold what summing up their airports gives.
+ */
+public class TileGridTest {
+  private AirportService _airportService;
+
+  @Before
+  public void setUp() throws Exception {
+    System.setProperty("weather.tiles.zoomLevels", "2,4,6");
+    try {
+      _airportService = new AirportService();
+    } finally {
+      System.clearProperty("weather.tiles.zoomLevels");
+    }
+  }
+
+  private DataPoint dataPoint(int count, int mean) {
+    return new DataPoint.Builder().withCount(count).withFirst(mean - 5).withMedian(mean)
+        .withLast(mean + 5).withMean(mean).build();
+  }
+
+  @Test
+  public void testUpdatesReplaceDataPoints() throws Exception {
+    _airportService.addAirport("JFK", 40.639751, -73.778925);
+    _airportService.addAirport("LGA", 40.777245, -73.872608);
+    _airportService.updateAtmosphericInformation("JFK", "wind", dataPoint(10, 20));
+    _airportService.updateAtmosphericInformation("LGA", "wind", dataPoint(30, 40));
+    _airportService.updateAtmosphericInformation("JFK", "wind", dataPoint(10, 60));
+
+    // both in column 18 and row 17 of the 64 x 64 tiles of zoom level 6
+    WeatherTile tile = _airportService.getTile(6, 18, 17);
+    assertEquals(2, tile.getAirports());
+    assertEquals(-73.125, tile.getMaxLongitude(), 1e-9);
+    DataPointAggregate wind = tile.getAggregates().get(DataPointType.WIND.ordinal());
+    assertEquals(2, wind.getAirports());
+    assertEquals(40, wind.getCount());
+    assertEquals((60 * 10 + 40 * 30) / 40.0, wind.getMean(), 1e-9);
+    assertEquals((55 * 10 + 35 * 30) / 40.0, wind.getFirst(), 1e-9);
+
+    _airportService.removeAirport("LGA");
+    tile = _airportService.getTile(6, 18, 17);
+    assertEquals(1, tile.getAirports());
+    assertEquals(60, tile.getAggregates().get(DataPointType.WIND.ordinal()).getMean(), 1e-9);
+
+    _airportService.clearAirports();
+    tile = _airportService.getTile(2, 1, 1);
+    assertEquals(0, tile.getAirports());
+    assertEquals(0, tile.getAggregates().get(DataPointType.WIND.ordinal()).getCount());
+  }
+
+  @Test
+  public void testOffByDefault() throws Exception {
+    assertNull(new AirportService().getTile(2, 1, 1));
+  }
+
+  @Test
+  public void testReAddsReportedOutOfOrder() throws Exception {
+    AirportStore store = new IndexedAirportStore(10, _airportService.earthRadius);
+    TileGrid grid = new TileGrid(new int[] {2}, store);
+    Airport first = airport("JFK", 40.639751, -73.778925);
+    Airport second = airport("JFK", 40.639751, -73.778925);
+    Airport third = airport("JFK", 40.639751, -73.778925);
+
+    // an add replacing an airport whose removal isn't reported
+    store.put(first);
+    grid.airportAdded(first);
+    store.put(second);
+    grid.airportAdded(second);
+    assertEquals(1, grid.get(2, 1, 1).getAirports());
+    grid.airportRemoved(first);
+    assertEquals(1, grid.get(2, 1, 1).getAirports());
+
+    // an add of an airport the store no longer holds
+    store.put(third);
+    grid.airportRemoved(second);
+    grid.airportAdded(third);
+    grid.airportAdded(second);
+    assertEquals(1, grid.get(2, 1, 1).getAirports());
+    grid.airportRemoved(third);
+    assertEquals(0, grid.get(2, 1, 1).getAirports());
+  }
+
+  private Airport airport(String iata, double latitude, double longitude) {
+    Airport airport = new Airport();
+    airport.setAirportData(new AirportData(iata, latitude, longitude));
+    airport.setAtmosphericInformation(new AtmosphericInformation());
+    return airport;
+  }
+
+  @Test
+  public void testOutsideTheGrid() throws Exception {
+    assertNull(_airportService.getTile(3, 0, 0));
+    assertNull(_airportService.getTile(2, 4, 0));
+    assertNull(_airportService.getTile(2, 0, -1));
+    assertEquals(0, _airportService.getTile(2, 3, 3).getAirports());
+  }
+
+  @Test
+  public void testMatchesRecomputedTiles() throws Exception {
+    Random random = new Random(7);
+    String[] codes = new String[200];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = "A" + i;
+      _airportService.addAirport(codes[i], random.nextDouble() * 40 + 20,
+          random.nextDouble() * 40 - 100);
+    }
+    DataPointType[] types = DataPointType.values();
+    for (int i = 0; i < 5000; i++) {
+      String iata = codes[random.nextInt(codes.length)];
+      if (random.nextInt(100) == 0) {
+        _airportService.removeAirport(iata);
+        _airportService.addAirport(iata, random.nextDouble() * 40 + 20,
+            random.nextDouble() * 40 - 100);
+      } else {
+        _airportService.updateAtmosphericInformation(iata,
+            types[random.nextInt(types.length)].name(),
+            dataPoint(random.nextInt(20) + 1, random.nextInt(100)));
+      }
+    }
+
+    for (int x = 0; x < 16; x++) {
+      for (int y = 0; y < 16; y++) {
+        WeatherTile tile = _airportService.getTile(4, x, y);
+        List<DataPointAggregate> expected = DataPointAggregate.forEachType();
+        int[] airports = new int[1];
+        _airportService.forEachAirport(airport -> {
+          AirportData ad = airport.getAirportData();
+          if (ad.getLongitude() >= tile.getMinLongitude()
+              && ad.getLongitude() < tile.getMaxLongitude()
+              && ad.getLatitude() > tile.getMinLatitude()
+              && ad.getLatitude() <= tile.getMaxLatitude()) {
+            airports[0]++;
+            DataPointAggregate.addAll(expected, airport.getAtmosphericInformation());
+          }
+        });
+        assertEquals(airports[0], tile.getAirports());
+        for (int i = 0; i < expected.size(); i++) {
+          DataPointAggregate aggregate = tile.getAggregates().get(i);
+          assertEquals(expected.get(i).getAirports(), aggregate.getAirports());
+          assertEquals(expected.get(i).getCount(), aggregate.getCount());
+          assertEquals(expected.get(i).getMean(), aggregate.getMean(), 1e-6);
+          assertEquals(expected.get(i).getThird(), aggregate.getThird(), 1e-6);
+        }
+      }
+    }
+  }
+}
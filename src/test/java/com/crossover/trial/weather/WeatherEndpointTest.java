@@ -1,8 +1,16 @@
 package com.crossover.trial.weather;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.core.Response;
 
@@ -15,8 +23,20 @@ import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
 import com.crossover.trial.weather.controller.WeatherCollectorEndpoint;
 import com.crossover.trial.weather.controller.WeatherQueryEndpoint;
 import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportWeather;
+import com.crossover.trial.weather.model.AirportWeatherPage;
 import com.crossover.trial.weather.model.AtmosphericInformation;
 import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointAggregate;
+import com.crossover.trial.weather.model.DataPointReading;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.WeatherUpdate;
+import com.crossover.trial.weather.model.WeatherTile;
+import com.crossover.trial.weather.model.WeatherUpdateResult;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.QueryCache;
+import com.crossover.trial.weather.service.StatsService;
+import com.crossover.trial.weather.service.WeatherSubscriptions;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -44,6 +64,7 @@ public class WeatherEndpointTest {
     assertEquals(1, pingResult.getAsJsonObject().get("datasize").getAsInt());
     assertEquals(5, pingResult.getAsJsonObject().get("iata_freq").getAsJsonObject().entrySet()
         .size());
+    assertTrue(pingResult.getAsJsonObject().get("cache").getAsJsonObject().has("hits"));
   }
 
   @Test
@@ -108,4 +129,289 @@ public class WeatherEndpointTest {
     Assert.assertNull(ad);
   }
 
+  @Test
+  public void addAirports() throws Exception {
+    String body =
+        "1,\"Stansted\",\"London\",\"United Kingdom\",\"STN\",\"EGSS\",51.885,0.235,348,0,\"E\"\n"
+            + "{\"iata\":\"LTN\",\"latitude\":51.874722,\"longitude\":-0.368333}\n"
+            + "2,\"No Code\",\"Nowhere\",\"Nowhere\",\"\",\"\",1.0,2.0,0,0,\"U\"\n"
+            + "not an airport\n";
+    Response response =
+        _update.addAirports(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    Map<String, Integer> result = (Map<String, Integer>) response.getEntity();
+    assertEquals(2, result.get("added").intValue());
+    assertEquals(2, result.get("rejected").intValue());
+    AirportData ad = (AirportData) _update.getAirport("LTN").getEntity();
+    assertEquals(51.874722, ad.getLatitude(), 1e-9);
+    assertEquals(0.235, ((AirportData) _update.getAirport("STN").getEntity()).getLongitude(), 1e-9);
+  }
+
+  @Test
+  public void addAirportsRejectsPositions() throws Exception {
+    String body =
+        "{\"iata\":\"LTN\",\"latitude\":51.874722}\n"
+            + "{\"iata\":\"LCY\",\"latitude\":null,\"longitude\":0.055278}\n"
+            + "{\"iata\":\"LHR\",\"latitude\":151.4775,\"longitude\":-0.461389}\n"
+            + "1,\"Stansted\",\"London\",\"United Kingdom\",\"STN\",\"EGSS\",51.885,180.5,348,0,"
+            + "\"E\"\n";
+    Response response =
+        _update.addAirports(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    Map<String, Integer> result = (Map<String, Integer>) response.getEntity();
+    assertEquals(0, result.get("added").intValue());
+    assertEquals(4, result.get("rejected").intValue());
+    Assert.assertNull(_update.getAirport("LTN").getEntity());
+  }
+
+  @Test
+  public void addAirportsReportsFailure() throws Exception {
+    byte[] body =
+        "{\"iata\":\"LTN\",\"latitude\":51.874722,\"longitude\":-0.368333}\nnot an airport\n"
+            .getBytes(StandardCharsets.UTF_8);
+    InputStream reset = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("connection reset");
+      }
+    };
+    InputStream failing = new SequenceInputStream(new ByteArrayInputStream(body), reset);
+    Response response = _update.addAirports(failing);
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    Map<String, Integer> result = (Map<String, Integer>) response.getEntity();
+    assertEquals(1, result.get("added").intValue());
+    assertEquals(1, result.get("rejected").intValue());
+    assertEquals("LTN", ((AirportData) _update.getAirport("LTN").getEntity()).getIata());
+  }
+
+  @Test
+  public void testUpdateBatch() throws Exception {
+    List<WeatherUpdate> updates = new ArrayList<WeatherUpdate>();
+    updates.add(new WeatherUpdate("JFK", "wind", _dp));
+    updates.add(new WeatherUpdate("EWR", "wind", _dp));
+    updates.add(new WeatherUpdate("XXX", "wind", _dp));
+    updates.add(new WeatherUpdate("LGA", "fog", _dp));
+    byte[] body = _gson.toJson(updates).getBytes(StandardCharsets.UTF_8);
+
+    Response response = _update.updateWeatherBatch(new ByteArrayInputStream(body));
+    assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    List<WeatherUpdateResult> results = (List<WeatherUpdateResult>) response.getEntity();
+    assertEquals(200, results.get(0).getStatus());
+    assertEquals(200, results.get(1).getStatus());
+    assertEquals(404, results.get(2).getStatus());
+    assertEquals(400, results.get(3).getStatus());
+
+    List<AtmosphericInformation> ais =
+        (List<AtmosphericInformation>) _query.weather("JFK", "200").getEntity();
+    assertEquals(2, ais.size());
+  }
+
+  @Test
+  public void testUpdateBatchInvalidRecords() throws Exception {
+    String record = _gson.toJson(new WeatherUpdate("JFK", "wind", _dp));
+    byte[] body =
+        ("[" + record + ", null, 5, {\"iata\":\"EWR\",\"pointType\":\"wind\","
+            + "\"datapoint\":1}]").getBytes(StandardCharsets.UTF_8);
+    Response response = _update.updateWeatherBatch(new ByteArrayInputStream(body));
+    assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    List<WeatherUpdateResult> results = (List<WeatherUpdateResult>) response.getEntity();
+    assertEquals(4, results.size());
+    assertEquals(200, results.get(0).getStatus());
+    assertEquals(400, results.get(1).getStatus());
+    assertEquals(400, results.get(2).getStatus());
+    assertEquals(400, results.get(3).getStatus());
+
+    // a malformed body applies none of its records
+    _update.deleteAirport("JFK");
+    _update.addAirport("JFK", "40.639751", "-73.778925");
+    body = ("[" + record + ", {\"iata\":").getBytes(StandardCharsets.UTF_8);
+    response = _update.updateWeatherBatch(new ByteArrayInputStream(body));
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    List<AtmosphericInformation> ais =
+        (List<AtmosphericInformation>) _query.weather("JFK", "0").getEntity();
+    Assert.assertNull(ais.get(0).getWind());
+  }
+
+  @Test
+  public void testHistory() throws Exception {
+    _dp.setMean(40);
+    _update.updateWeather("BOS", "wind", _gson.toJson(_dp));
+    // rejected readings aren't part of the history
+    _dp.setMean(-5);
+    _update.updateWeather("BOS", "wind", _gson.toJson(_dp));
+
+    List<DataPointReading> readings =
+        (List<DataPointReading>) _query.history("BOS", "wind", null, null).getEntity();
+    assertEquals(2, readings.size());
+    assertEquals(22, readings.get(0).getDataPoint().getMean(), 0);
+    assertEquals(40, readings.get(1).getDataPoint().getMean(), 0);
+    assertEquals(10, readings.get(1).getDataPoint().getFirst());
+
+    long from = readings.get(1).getTime() + 1;
+    readings =
+        (List<DataPointReading>) _query.history("BOS", "wind", String.valueOf(from), null)
+            .getEntity();
+    assertEquals(0, readings.size());
+    readings = (List<DataPointReading>) _query.history("JFK", "wind", null, null).getEntity();
+    assertEquals(0, readings.size());
+
+    assertEquals(Response.Status.NOT_FOUND.getStatusCode(),
+        _query.history("XXX", "wind", null, null).getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.history("BOS", "fog", null, null).getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.history("BOS", "wind", "yesterday", null).getStatus());
+  }
+
+  @Test
+  public void testNearest() throws Exception {
+    _update.updateWeather("JFK", "wind", _gson.toJson(_dp));
+    _update.updateWeather("MMU", "wind", _gson.toJson(_dp));
+
+    // LGA and EWR are closer than MMU but have no data
+    List<AirportWeather> nearest =
+        (List<AirportWeather>) _query.nearest("JFK", "2").getEntity();
+    assertEquals(2, nearest.size());
+    assertEquals("JFK", nearest.get(0).getIata());
+    assertEquals(0, nearest.get(0).getDistance(), 1e-9);
+    assertEquals("MMU", nearest.get(1).getIata());
+    assertEquals(_dp, nearest.get(1).getWeather().getWind());
+
+    // BOS is a few hundred km away, found by widening the search
+    nearest = (List<AirportWeather>) _query.nearest("40.7", "-73.9", "10").getEntity();
+    assertEquals(3, nearest.size());
+    assertEquals("BOS", nearest.get(2).getIata());
+    assertTrue(nearest.get(1).getDistance() < nearest.get(2).getDistance());
+
+    assertEquals(Response.Status.NOT_FOUND.getStatusCode(), _query.nearest("XXX", "1")
+        .getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), _query.nearest("JFK", "0")
+        .getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), _query.nearest("91", "0", "1")
+        .getStatus());
+  }
+
+  @Test
+  public void testArea() throws Exception {
+    _update.updateWeather("JFK", "wind", _gson.toJson(_dp));
+    _update.updateWeather("LGA", "wind", _gson.toJson(_dp));
+    _update.updateWeather("EWR", "wind", _gson.toJson(_dp));
+    _update.updateWeather("MMU", "wind", _gson.toJson(_dp));
+
+    AirportWeatherPage page =
+        (AirportWeatherPage) _query.area("40.639751", "-73.778925", "100", null, null)
+            .getEntity();
+    assertEquals(4, page.getTotal());
+    assertEquals(0, page.getOffset());
+    assertEquals(4, page.getResults().size());
+    assertEquals("JFK", page.getResults().get(0).getIata());
+    assertEquals("MMU", page.getResults().get(3).getIata());
+
+    // the second page of two holds the third and fourth closest
+    page = (AirportWeatherPage) _query.area("40.639751", "-73.778925", "100", "2", "2")
+        .getEntity();
+    assertEquals(4, page.getTotal());
+    assertEquals(2, page.getOffset());
+    assertEquals(2, page.getResults().size());
+    assertEquals("MMU", page.getResults().get(1).getIata());
+    assertTrue(page.getResults().get(0).getDistance() < page.getResults().get(1).getDistance());
+
+    page = (AirportWeatherPage) _query.area("40.639751", "-73.778925", "100", "4", "2")
+        .getEntity();
+    assertEquals(4, page.getTotal());
+    assertEquals(0, page.getResults().size());
+
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.area("40", "-73", "-1", null, null).getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.area("40", "-73", "100", null, "0").getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.area("40", "-73", "100", "-1", null).getStatus());
+  }
+
+  @Test
+  public void testBox() throws Exception {
+    _update.updateWeather("JFK", "wind", _gson.toJson(_dp));
+    _update.updateWeather("MMU", "wind", _gson.toJson(_dp));
+
+    // a viewport over new york, BOS lies outside it
+    AirportWeatherPage page =
+        (AirportWeatherPage) _query.box("40", "-75", "41", "-73", null, "1").getEntity();
+    assertEquals(2, page.getTotal());
+    assertEquals(1, page.getResults().size());
+
+    // crossing the antimeridian, from east of japan to west of boston
+    page = (AirportWeatherPage) _query.box("42", "170", "43", "-70", null, null).getEntity();
+    assertEquals(1, page.getTotal());
+    assertEquals("BOS", page.getResults().get(0).getIata());
+
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.box("41", "-75", "40", "-73", null, null).getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+        _query.box("40", "-75", "41", "-181", null, null).getStatus());
+  }
+
+  @Test
+  public void testAggregate() throws Exception {
+    _update.updateWeather("JFK", "wind", _gson.toJson(new DataPoint.Builder().withCount(30)
+        .withFirst(20).withMedian(30).withLast(50).withMean(40).build()));
+
+    List<DataPointAggregate> aggregates =
+        (List<DataPointAggregate>) _query.aggregate("BOS", "500").getEntity();
+    assertEquals(DataPointType.values().length, aggregates.size());
+    DataPointAggregate wind = aggregates.get(DataPointType.WIND.ordinal());
+    assertEquals(DataPointType.WIND, wind.getType());
+    assertEquals(2, wind.getAirports());
+    assertEquals(40, wind.getCount());
+    // JFK has three times the readings of BOS
+    assertEquals((22 * 10 + 40 * 30) / 40.0, wind.getMean(), 1e-9);
+    assertEquals((10 * 10 + 20 * 30) / 40.0, wind.getFirst(), 1e-9);
+    assertEquals((30 * 10 + 50 * 30) / 40.0, wind.getThird(), 1e-9);
+    assertEquals(0, aggregates.get(DataPointType.TEMPERATURE.ordinal()).getAirports());
+
+    aggregates = (List<DataPointAggregate>) _query.aggregate("BOS", "0").getEntity();
+    assertEquals(1, aggregates.get(DataPointType.WIND.ordinal()).getAirports());
+    assertEquals(22, aggregates.get(DataPointType.WIND.ordinal()).getMean(), 1e-9);
+
+    assertEquals(Response.Status.NOT_FOUND.getStatusCode(), _query.aggregate("XXX", "500")
+        .getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), _query.aggregate("BOS", "-1")
+        .getStatus());
+  }
+
+  @Test
+  public void testTiles() throws Exception {
+    // the tiles are off unless zoom levels are configured
+    assertEquals(Response.Status.NOT_FOUND.getStatusCode(), _query.tiles("4", "4", "4")
+        .getStatus());
+
+    System.setProperty("weather.tiles.zoomLevels", "2,4,6");
+    AirportService airportService;
+    try {
+      airportService = new AirportService();
+    } finally {
+      System.clearProperty("weather.tiles.zoomLevels");
+    }
+    WeatherCollectorEndpoint update = new RestWeatherCollectorEndpoint(airportService);
+    WeatherQueryEndpoint query =
+        new RestWeatherQueryEndpoint(airportService, new StatsService(airportService),
+            QueryCache.create(airportService), WeatherSubscriptions.create(airportService));
+    update.addAirport("BOS", "42.364347", "-71.005181");
+    update.addAirport("JFK", "40.639751", "-73.778925");
+    update.updateWeather("BOS", "wind", _gson.toJson(_dp));
+    update.updateWeather("JFK", "wind", _gson.toJson(_dp));
+
+    // BOS and JFK share the tile of zoom level 4 north west of the atlantic
+    WeatherTile tile = (WeatherTile) query.tiles("4", "4", "4").getEntity();
+    assertEquals(2, tile.getAirports());
+    DataPointAggregate wind = tile.getAggregates().get(DataPointType.WIND.ordinal());
+    assertEquals(2, wind.getAirports());
+    assertEquals(22, wind.getMean(), 1e-9);
+
+    assertEquals(Response.Status.NOT_FOUND.getStatusCode(), query.tiles("3", "0", "0")
+        .getStatus());
+    assertEquals(Response.Status.NOT_FOUND.getStatusCode(), query.tiles("4", "16", "0")
+        .getStatus());
+    assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), query.tiles("4", "x", "0")
+        .getStatus());
+  }
 }
@@ -0,0 +1,89 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.controller.WeatherJson;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+
+public class WeatherJsonTest {
+  private DataPoint _dp =
+      new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22)
+          .build();
+
+  @Test
+  public void testWriteMatchesJackson() throws Exception {
+    AtmosphericInformation empty = new AtmosphericInformation();
+    AtmosphericInformation ai = new AtmosphericInformation().withDataPoint(DataPointType.WIND, _dp);
+    _dp.setMean(-12.5);
+    ai = ai.withDataPoint(DataPointType.TEMPERATURE, _dp);
+    List<AtmosphericInformation> ais = Arrays.asList(empty, ai);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WeatherJson.write(ais, out);
+    assertEquals(new ObjectMapper().writeValueAsString(ais),
+        new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testNumbersMatchJackson() throws Exception {
+    AtmosphericInformation ai = new AtmosphericInformation().withDataPoint(DataPointType.WIND, _dp);
+    double[] means =
+        {0.5, 0.001, -0.025, 1234567.125, 9999999.999, 1e7, 0.0, -0.0, 1.0 / 3, 1e-4, 3e20};
+    for (double mean : means) {
+      ai.getDataPoint(DataPointType.WIND).setMean(mean);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      WeatherJson.write(ai, out);
+      assertEquals(new ObjectMapper().writeValueAsString(ai),
+          new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testReadMatchesGson() throws Exception {
+    String json = new Gson().toJson(_dp);
+    assertEquals(_dp, WeatherJson.readDataPoint(json));
+
+    String spaced =
+        " { \"count\" : 10, \"unknown\": {\"a\": [1, \"}\"]}, \"first\":1e1, \"second\": 20,"
+            + "\"flag\": true, \"third\": \"30\", \"mean\": 22.0 }\n";
+    assertEquals(_dp, WeatherJson.readDataPoint(spaced));
+    assertEquals(new Gson().fromJson("{}", DataPoint.class), WeatherJson.readDataPoint("{}"));
+  }
+
+  @Test
+  public void testReadNullsMatchGson() throws Exception {
+    String json = "{\"mean\": null, \"first\": 10, \"second\": null, \"other\": null,"
+        + " \"count\": 3}";
+    DataPoint dp = WeatherJson.readDataPoint(json);
+    assertEquals(new Gson().fromJson(json, DataPoint.class), dp);
+    assertEquals(0, dp.getMean(), 0);
+    assertEquals(10, dp.getFirst());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadMisspelledNull() throws Exception {
+    WeatherJson.readDataPoint("{\"mean\": nul}");
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadMalformed() throws Exception {
+    WeatherJson.readDataPoint("{\"mean\": 1, \"first\": 1.5}");
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadTruncated() throws Exception {
+    WeatherJson.readDataPoint("{\"mean\": 1, ");
+  }
+}
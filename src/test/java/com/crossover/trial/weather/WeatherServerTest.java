@@ -0,0 +1,148 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+
+/**
+ * The server configuration and what it does to a running server.
+ */
+public class WeatherServerTest {
+  private static final String BASE_URL = "http://localhost:9292";
+
+  private HttpServer _server;
+  /** held so the logger with the handler isn't collected before the access log gets it */
+  private Logger _accessLogger = Logger.getLogger("WeatherAccess");
+  private BlockingQueue<String> _logged = new LinkedBlockingQueue<String>();
+  private Handler _handler = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      _logged.add(record.getMessage());
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    RestWeatherQueryEndpoint.init();
+    _accessLogger.addHandler(_handler);
+  }
+
+  @After
+  public void tearDown() {
+    _accessLogger.removeHandler(_handler);
+    if (_server != null) {
+      _server.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testProperties() throws Exception {
+    WeatherServerConfig defaults = WeatherServerConfig.from(new Properties());
+    assertEquals("http://localhost:9090/", defaults.getUrl());
+    assertFalse(defaults.isAsync());
+    assertTrue(defaults.isTcpNoDelay());
+    assertNull(defaults.getKeepAliveTimeout());
+    assertEquals("off", defaults.getCompression());
+
+    Properties properties = new Properties();
+    properties.setProperty("weather.server.url", "http://0.0.0.0:8080/");
+    properties.setProperty("weather.server.async", "true");
+    properties.setProperty("weather.server.workerThreads", "16");
+    properties.setProperty("weather.server.keepAlive.timeout", "30");
+    properties.setProperty("weather.server.tcpNoDelay", "false");
+    properties.setProperty("weather.server.compression", "on");
+    properties.setProperty("weather.server.accessLog.sample", "0");
+    WeatherServerConfig config = WeatherServerConfig.from(properties);
+    assertEquals("http://0.0.0.0:8080/", config.getUrl());
+    assertTrue(config.isAsync());
+    assertEquals(16, config.getWorkerThreads());
+    assertEquals(Integer.valueOf(30), config.getKeepAliveTimeout());
+    assertFalse(config.isTcpNoDelay());
+    assertEquals("on", config.getCompression());
+    assertEquals(0, config.getAccessLogSample());
+  }
+
+  @Test
+  public void testCompressionAndAccessLog() throws Exception {
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setUrl(BASE_URL + "/");
+    config.setCompression("force");
+    config.setCompressionMinSize(0);
+    config.setKeepAliveTimeout(5);
+    config.setAccessLogSample(1);
+    _server = WeatherServer.createServer(config);
+    _server.start();
+
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL(BASE_URL + "/collect/airports").openConnection();
+    connection.setRequestProperty("Accept-Encoding", "gzip");
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("gzip", connection.getContentEncoding());
+    assertTrue(read(new GZIPInputStream(connection.getInputStream())).contains("BOS"));
+
+    String line = _logged.poll(5, TimeUnit.SECONDS);
+    assertTrue(line, line.contains("GET /collect/airports 200"));
+  }
+
+  @Test
+  public void testShardEndpointOnlyOnShards() throws Exception {
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setUrl(BASE_URL + "/");
+    config.setAccessLogSample(0);
+    _server = WeatherServer.createServer(config);
+    _server.start();
+    assertEquals(404, ((HttpURLConnection) new URL(BASE_URL + "/shard/airports")
+        .openConnection()).getResponseCode());
+    _server.shutdownNow();
+
+    System.setProperty("weather.cluster.shard", "0/1");
+    try {
+      _server = WeatherServer.createServer(config);
+    } finally {
+      System.clearProperty("weather.cluster.shard");
+    }
+    _server.start();
+    assertEquals(200, ((HttpURLConnection) new URL(BASE_URL + "/shard/airports")
+        .openConnection()).getResponseCode());
+    assertEquals(400, ((HttpURLConnection) new URL(BASE_URL + "/shard/area/0/0/100?limit=20000")
+        .openConnection()).getResponseCode());
+  }
+
+  private String read(InputStream in) throws IOException {
+    StringBuilder text = new StringBuilder();
+    try (InputStream input = in) {
+      int c;
+      while ((c = input.read()) != -1) {
+        text.append((char) c);
+      }
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,171 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.controller.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.service.AirportService;
+import com.crossover.trial.weather.service.WeatherSubscriptions;
+
+public class WeatherSubscriptionsTest {
+  private AirportService _airportService = AirportService.getInstance();
+  private ExecutorService _executor = Executors.newSingleThreadExecutor();
+  private WeatherSubscriptions _subscriptions = new WeatherSubscriptions(_airportService,
+      _executor);
+  private HttpServer _server;
+
+  /** records what it is sent, the first send waits for the gate */
+  private static class RecordingSink implements WeatherSubscriptions.Sink {
+    final List<Map<String, AtmosphericInformation>> batches =
+        new ArrayList<Map<String, AtmosphericInformation>>();
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    volatile boolean closed;
+
+    @Override
+    public synchronized void send(Map<String, AtmosphericInformation> weather)
+        throws IOException {
+      entered.countDown();
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      batches.add(new LinkedHashMap<String, AtmosphericInformation>(weather));
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    RestWeatherQueryEndpoint.init();
+    _airportService.addListener(_subscriptions);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    _airportService.removeListener(_subscriptions);
+    _executor.shutdownNow();
+    if (_server != null) {
+      _server.shutdownNow();
+    }
+  }
+
+  private DataPoint wind(int mean) {
+    return new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30)
+        .withMean(mean).build();
+  }
+
+  private void drain() throws Exception {
+    _executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testRegionAndCoalescing() throws Exception {
+    assertNull(_subscriptions.subscribe("XXX", 0, new RecordingSink()));
+    RecordingSink sink = new RecordingSink();
+    WeatherSubscriptions.Subscription subscription = _subscriptions.subscribe("JFK", 50, sink);
+
+    // queued while the initial batch is held at the gate
+    assertTrue(sink.entered.await(5, TimeUnit.SECONDS));
+    _airportService.updateAtmosphericInformation("EWR", "wind", wind(1));
+    _airportService.updateAtmosphericInformation("EWR", "wind", wind(2));
+    _airportService.updateAtmosphericInformation("LGA", "wind", wind(3));
+    _airportService.updateAtmosphericInformation("BOS", "wind", wind(4));
+    sink.gate.countDown();
+    drain();
+
+    assertEquals(2, sink.batches.size());
+    assertEquals(1, sink.batches.get(0).size());
+    assertTrue(sink.batches.get(0).containsKey("JFK"));
+    Map<String, AtmosphericInformation> updates = sink.batches.get(1);
+    assertEquals(2, updates.size());
+    assertEquals(2.0, updates.get("EWR").getWind().getMean(), 0);
+    assertEquals(3.0, updates.get("LGA").getWind().getMean(), 0);
+    assertEquals(1L, (long) _subscriptions.getStats().get("coalesced"));
+
+    // an airport added within the region
+    long watched = _subscriptions.getStats().get("airports");
+    _airportService.addAirport("NEW", 40.7, -73.9);
+    _airportService.updateAtmosphericInformation("NEW", "wind", wind(5));
+    drain();
+    assertEquals(3, sink.batches.size());
+    assertTrue(sink.batches.get(2).containsKey("NEW"));
+    assertEquals(watched + 1, (long) _subscriptions.getStats().get("airports"));
+    _airportService.removeAirport("NEW");
+    assertEquals(watched, (long) _subscriptions.getStats().get("airports"));
+
+    _subscriptions.heartbeat();
+    drain();
+    assertTrue(sink.batches.get(3).isEmpty());
+
+    subscription.close();
+    assertTrue(sink.closed);
+    _airportService.updateAtmosphericInformation("JFK", "wind", wind(6));
+    drain();
+    assertEquals(4, sink.batches.size());
+    assertEquals(0L, (long) _subscriptions.getStats().get("subscriptions"));
+    assertEquals(0L, (long) _subscriptions.getStats().get("airports"));
+  }
+
+  @Test
+  public void testEventStream() throws Exception {
+    WeatherServerConfig config = new WeatherServerConfig();
+    config.setUrl("http://localhost:9293/");
+    config.setAccessLogSample(0);
+    _server = WeatherServer.createServer(config);
+    _server.start();
+
+    HttpURLConnection unknown =
+        (HttpURLConnection) new URL("http://localhost:9293/query/stream/XXX").openConnection();
+    assertEquals(404, unknown.getResponseCode());
+    HttpURLConnection negative =
+        (HttpURLConnection) new URL("http://localhost:9293/query/stream/BOS/-5").openConnection();
+    assertEquals(400, negative.getResponseCode());
+
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL("http://localhost:9293/query/stream/BOS").openConnection();
+    connection.setReadTimeout(5000);
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(connection.getContentType().startsWith("text/event-stream"));
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(connection.getInputStream(),
+            StandardCharsets.UTF_8))) {
+      assertEquals("event: weather", reader.readLine());
+      assertTrue(reader.readLine().startsWith("data: {\"iata\":\"BOS\",\"weather\":{"));
+      assertEquals("", reader.readLine());
+
+      _airportService.updateAtmosphericInformation("BOS", "wind", wind(22));
+      assertEquals("event: weather", reader.readLine());
+      String data = reader.readLine();
+      assertTrue(data, data.contains("\"mean\":22.0"));
+    }
+  }
+}